@@ -0,0 +1,139 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-benchmarks
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.smooks.edi.edisax.BufferedSegmentReader;
+import org.smooks.edi.edisax.model.internal.Delimiters;
+import org.smooks.edi.edisax.unedifact.UNEdifactInterchangeParser;
+import org.smooks.edi.edisax.util.EDIUtils;
+import org.xml.sax.InputSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks segment reading and field splitting in {@link BufferedSegmentReader}, comparing a
+ * reader created per input against a single reader {@link BufferedSegmentReader#reset(InputSource, Delimiters) reset}
+ * for each input, and reading from a stream against reading from a memory mapped file
+ * ({@link BufferedSegmentReader#reset(ByteBuffer, Charset, Delimiters)}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BufferedSegmentReaderBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "WIDE_SEGMENTS"})
+    public MessageShape shape;
+
+    private byte[] interchange;
+    private BufferedSegmentReader reusedReader;
+    private ByteBuffer mappedInterchange;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        interchange = EdiGenerator.interchange(shape).getBytes(StandardCharsets.UTF_8);
+        reusedReader = new BufferedSegmentReader(newInputSource(), UNEdifactInterchangeParser.defaultUNEdifactDelimiters);
+
+        Path interchangeFile = Files.createTempFile("interchange", ".edi");
+        interchangeFile.toFile().deleteOnExit();
+        Files.write(interchangeFile, interchange);
+        mappedInterchange = EDIUtils.mapFile(interchangeFile);
+    }
+
+    @Benchmark
+    public void newReader(Blackhole blackhole, ByteCounter counter) throws IOException {
+        readSegments(new BufferedSegmentReader(newInputSource(), UNEdifactInterchangeParser.defaultUNEdifactDelimiters), blackhole);
+        counter.bytes += interchange.length;
+    }
+
+    @Benchmark
+    public void resetReader(Blackhole blackhole, ByteCounter counter) throws IOException {
+        reusedReader.reset(newInputSource(), UNEdifactInterchangeParser.defaultUNEdifactDelimiters);
+        readSegments(reusedReader, blackhole);
+        counter.bytes += interchange.length;
+    }
+
+    @Benchmark
+    public void mappedReader(Blackhole blackhole, ByteCounter counter) throws IOException {
+        mappedInterchange.rewind();
+        reusedReader.reset(mappedInterchange, StandardCharsets.ISO_8859_1, UNEdifactInterchangeParser.defaultUNEdifactDelimiters);
+        readSegments(reusedReader, blackhole);
+        counter.bytes += interchange.length;
+    }
+
+    private void readSegments(BufferedSegmentReader reader, Blackhole blackhole) throws IOException {
+        reader.setIgnoreNewLines(true);
+        while (reader.moveToNextSegment()) {
+            // Trailing whitespace at the end of the stream is read as an empty segment...
+            if (reader.getSegmentBuilder().length() > 0) {
+                blackhole.consume(reader.getCurrentSegmentFieldSlices());
+            }
+        }
+    }
+
+    private InputSource newInputSource() {
+        return new InputSource(new ByteArrayInputStream(interchange));
+    }
+}
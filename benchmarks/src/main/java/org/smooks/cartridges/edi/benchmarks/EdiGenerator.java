@@ -0,0 +1,179 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-benchmarks
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi.benchmarks;
+
+/**
+ * Generates synthetic, deterministic EDI input for the benchmarks.
+ * <p/>
+ * EDIFACT input is modelled on a D.03B ORDERS interchange (UNB/UNH/BGM/DTM/NAD, a LIN/QTY/FTX
+ * group per line item, UNS/CNT/UNT/UNZ), with correct UNT segment counts and UNZ message counts
+ * so as the output can be fed through both the EDI SAX parser and the Daffodil EDIFACT parser.
+ * Generic EDI input follows the structure of the <code>benchmark-edi.dfdl.xsd</code> schema.
+ */
+public final class EdiGenerator {
+
+    private static final int MAX_FREE_TEXT_COMPONENT_LENGTH = 512;
+    private static final String TEXT_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ abcdefghijklmnopqrstuvwxyz 0123456789";
+
+    private EdiGenerator() {
+    }
+
+    /**
+     * Generate a UN/EDIFACT ORDERS interchange of the given shape.
+     *
+     * @param shape The interchange shape.
+     * @return The interchange.
+     */
+    public static String interchange(MessageShape shape) {
+        StringBuilder interchange = new StringBuilder();
+
+        interchange.append("UNB+UNOA:4+APPLICATION:1+COMPANY:1+20051107:1159+6002'\n");
+        for (int i = 1; i <= shape.getMessageCount(); i++) {
+            String messageRef = "SSDD" + i;
+
+            interchange.append("UNH+").append(messageRef).append("+ORDERS:D:03B:UN:EAN008'\n");
+            appendOrderBody(interchange, shape);
+            interchange.append("UNT+").append(segmentCount(shape)).append('+').append(messageRef).append("'\n");
+        }
+        interchange.append("UNZ+").append(shape.getMessageCount()).append("+6002'\n");
+
+        return interchange.toString();
+    }
+
+    /**
+     * Generate the body of a single ORDERS message (the segments between UNH and UNT) of the given shape.
+     * <p/>
+     * The message count of the shape is ignored.
+     *
+     * @param shape The message shape.
+     * @return The message body.
+     */
+    public static String orderMessage(MessageShape shape) {
+        StringBuilder message = new StringBuilder();
+        appendOrderBody(message, shape);
+        return message.toString();
+    }
+
+    /**
+     * Generate a generic EDI message, matching the <code>benchmark-edi.dfdl.xsd</code> schema, of the given shape.
+     * <p/>
+     * Every line item is mapped to an <code>XXX</code> segment followed by three <code>Y</code> segments.
+     *
+     * @param shape The message shape.
+     * @return The message.
+     */
+    public static String ediMessage(MessageShape shape) {
+        StringBuilder message = new StringBuilder();
+        int innerSegmentCount = shape.getMessageCount() * shape.getLineItemCount();
+
+        message.append("SEG*1*2**4*5\n");
+        for (int i = 1; i <= innerSegmentCount; i++) {
+            String text = text(i, shape.getFreeTextLength());
+
+            message.append("XXX*").append(i).append("*7\n");
+            for (int j = 0; j < 3; j++) {
+                message.append("Y*Some^stuff*").append(text).append("*yes!\n");
+            }
+        }
+        message.append("YYY*Mr~Tom^Fennelly*Ireland\n");
+
+        return message.toString();
+    }
+
+    private static void appendOrderBody(StringBuilder message, MessageShape shape) {
+        message.append("BGM+220+BKOD99+9'\n");
+        message.append("DTM+137:20051107:102'\n");
+        message.append("NAD+BY+5412345000176::9'\n");
+        message.append("NAD+SU+4012345000094::9'\n");
+        for (int i = 1; i <= shape.getLineItemCount(); i++) {
+            message.append("LIN+").append(i).append("+1+").append(itemNumber(i)).append(":IB'\n");
+            message.append("QTY+1:").append(i % 100 + 1).append("'\n");
+            message.append("FTX+AFM+1++");
+            appendFreeText(message, i, shape.getFreeTextLength());
+            message.append("'\n");
+        }
+        message.append("UNS+S'\n");
+        message.append("CNT+2:").append(shape.getLineItemCount()).append("'\n");
+    }
+
+    private static int segmentCount(MessageShape shape) {
+        // UNH, BGM, DTM, NAD x 2, LIN/QTY/FTX per line item, UNS, CNT and UNT...
+        return 5 + (3 * shape.getLineItemCount()) + 3;
+    }
+
+    private static String itemNumber(int lineItem) {
+        String number = Integer.toString(764569104 + lineItem);
+        StringBuilder itemNumber = new StringBuilder();
+
+        for (int i = number.length(); i < 10; i++) {
+            itemNumber.append('0');
+        }
+
+        return itemNumber.append(number).toString();
+    }
+
+    private static void appendFreeText(StringBuilder message, int seed, int length) {
+        int remaining = length;
+
+        while (remaining > 0) {
+            int componentLength = Math.min(remaining, MAX_FREE_TEXT_COMPONENT_LENGTH);
+
+            // Every component carries an escaped segment delimiter, so as the escape handling is exercised...
+            message.append(text(seed, componentLength - 1)).append("?'");
+            remaining -= componentLength;
+            if (remaining > 0) {
+                message.append(':');
+            }
+        }
+    }
+
+    private static String text(int seed, int length) {
+        StringBuilder text = new StringBuilder(length);
+
+        for (int i = 0; i < length; i++) {
+            text.append(TEXT_ALPHABET.charAt((seed + i) % TEXT_ALPHABET.length()));
+        }
+
+        return text.toString();
+    }
+}
@@ -0,0 +1,165 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-benchmarks
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.smooks.edi.edisax.EDIConfigurationException;
+import org.smooks.edi.edisax.EDIParser;
+import org.smooks.edi.edisax.model.EdifactModel;
+import org.smooks.edi.edisax.registry.DefaultMappingsRegistry;
+import org.smooks.edi.edisax.unedifact.UNEdifactInterchangeParser;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the EDI SAX parsers: {@link EDIParser} on a single ORDERS message body and
+ * {@link UNEdifactInterchangeParser} on a complete ORDERS interchange, parsing its messages serially and
+ * concurrently.
+ * <p/>
+ * SAX events are delivered to a no-op handler, so as only the cost of reading, splitting,
+ * mapping and validating the input is measured. Parsers are reused across invocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EdiSaxBenchmark {
+
+    public static final String ORDERS_EDIMAP = "/orders-d03b-edimap.xml";
+
+    @Param
+    public MessageShape shape;
+
+    private EdifactModel model;
+    private byte[] message;
+    private byte[] interchange;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SAXException, EDIConfigurationException {
+        model = loadOrdersModel();
+        message = EdiGenerator.orderMessage(shape).getBytes(StandardCharsets.UTF_8);
+        interchange = EdiGenerator.interchange(shape).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @State(Scope.Thread)
+    public static class Parsers {
+
+        final DefaultHandler contentHandler = new DefaultHandler();
+        EDIParser ediParser;
+        UNEdifactInterchangeParser interchangeParser;
+        UNEdifactInterchangeParser parallelInterchangeParser;
+        ExecutorService messageExecutor;
+
+        @Setup(Level.Trial)
+        public void setUp(EdiSaxBenchmark benchmark) {
+            ediParser = new EDIParser();
+            ediParser.setMappingModel(benchmark.model);
+            ediParser.setFeature(EDIParser.FEATURE_IGNORE_NEWLINES, true);
+
+            interchangeParser = new UNEdifactInterchangeParser();
+            interchangeParser.setMappingsRegistry(new DefaultMappingsRegistry(benchmark.model));
+            interchangeParser.ignoreNewLines(true);
+
+            messageExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            parallelInterchangeParser = new UNEdifactInterchangeParser().setMessageExecutor(messageExecutor);
+            parallelInterchangeParser.setMappingsRegistry(new DefaultMappingsRegistry(benchmark.model));
+            parallelInterchangeParser.ignoreNewLines(true);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            messageExecutor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void ediParser(Parsers parsers, ByteCounter counter) throws IOException, SAXException {
+        // The content handler is released at the end of every parse...
+        parsers.ediParser.setContentHandler(parsers.contentHandler);
+        parsers.ediParser.parse(new InputSource(new ByteArrayInputStream(message)));
+        counter.bytes += message.length;
+    }
+
+    @Benchmark
+    public void unEdifactInterchangeParser(Parsers parsers, ByteCounter counter) throws IOException, SAXException {
+        parsers.interchangeParser.setContentHandler(parsers.contentHandler);
+        parsers.interchangeParser.parse(new InputSource(new ByteArrayInputStream(interchange)));
+        counter.bytes += interchange.length;
+    }
+
+    @Benchmark
+    public void parallelUnEdifactInterchangeParser(Parsers parsers, ByteCounter counter) throws IOException, SAXException {
+        parsers.parallelInterchangeParser.setContentHandler(parsers.contentHandler);
+        parsers.parallelInterchangeParser.parse(new InputSource(new ByteArrayInputStream(interchange)));
+        counter.bytes += interchange.length;
+    }
+
+    static EdifactModel loadOrdersModel() throws IOException, SAXException, EDIConfigurationException {
+        try (InputStream mappingModel = EdiSaxBenchmark.class.getResourceAsStream(ORDERS_EDIMAP)) {
+            return EDIParser.parseMappingModel(mappingModel);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-benchmarks
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.smooks.edi.edisax.EDIConfigurationException;
+import org.smooks.edi.edisax.registry.DefaultMappingsRegistry;
+import org.smooks.edi.edisax.unedifact.UNEdifactInterchangeParser;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link UNEdifactInterchangeParser} with and without the
+ * {@link org.smooks.edi.edisax.EDIParser#FEATURE_OMIT_INDENTATION omit-indentation} feature.
+ * <p/>
+ * The {@code events} benchmark counts the SAX events the parser fires, reporting the element and
+ * characters events as secondary results. The {@code serialize} benchmark writes the events out as
+ * XML through an identity {@link TransformerHandler}, giving the downstream cost of the formatting
+ * whitespace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EdiSaxIndentationBenchmark {
+
+    @Param
+    public MessageShape shape;
+
+    @Param({"false", "true"})
+    public boolean omitIndentation;
+
+    private byte[] interchange;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        interchange = EdiGenerator.interchange(shape).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @State(Scope.Thread)
+    public static class Parsers {
+
+        final SAXTransformerFactory transformerFactory = (SAXTransformerFactory) TransformerFactory.newInstance();
+        UNEdifactInterchangeParser interchangeParser;
+
+        @Setup(Level.Trial)
+        public void setUp(EdiSaxIndentationBenchmark benchmark) throws IOException, SAXException, EDIConfigurationException {
+            interchangeParser = new UNEdifactInterchangeParser();
+            interchangeParser.setMappingsRegistry(new DefaultMappingsRegistry(EdiSaxBenchmark.loadOrdersModel()));
+            interchangeParser.ignoreNewLines(true);
+            interchangeParser.omitIndentation(benchmark.omitIndentation);
+        }
+    }
+
+    /**
+     * Counts the SAX events fired by the parser.
+     * <p/>
+     * JMH reports the counters as rates alongside the primary result.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class EventCounter extends DefaultHandler {
+
+        public long elements;
+        public long characters;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            elements = 0;
+            characters = 0;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            elements++;
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            characters++;
+        }
+    }
+
+    @Benchmark
+    public void events(Parsers parsers, EventCounter counter, ByteCounter byteCounter) throws IOException, SAXException {
+        parsers.interchangeParser.setContentHandler(counter);
+        parsers.interchangeParser.parse(new InputSource(new ByteArrayInputStream(interchange)));
+        byteCounter.bytes += interchange.length;
+    }
+
+    @Benchmark
+    public void serialize(Parsers parsers, ByteCounter byteCounter) throws IOException, SAXException, TransformerConfigurationException {
+        TransformerHandler serializer = parsers.transformerFactory.newTransformerHandler();
+        serializer.setResult(new StreamResult(new NullWriter()));
+        parsers.interchangeParser.setContentHandler(serializer);
+        parsers.interchangeParser.parse(new InputSource(new ByteArrayInputStream(interchange)));
+        byteCounter.bytes += interchange.length;
+    }
+}
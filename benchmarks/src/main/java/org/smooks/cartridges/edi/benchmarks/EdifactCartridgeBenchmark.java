@@ -0,0 +1,122 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-benchmarks
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.smooks.Smooks;
+import org.smooks.io.payload.ByteSource;
+import org.smooks.io.payload.StringResult;
+import org.xml.sax.SAXException;
+
+import javax.xml.transform.stream.StreamResult;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the Daffodil based EDIFACT parser and unparser (<code>edifact:parser</code> and <code>edifact:unparser</code>)
+ * on D.03B ORDERS interchanges.
+ * <p/>
+ * The Daffodil data processors are compiled during the trial setup, so as compilation is excluded
+ * from the measurements. Output is serialised to a discarding writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EdifactCartridgeBenchmark {
+
+    @Param
+    public MessageShape shape;
+
+    private Smooks parserSmooks;
+    private Smooks unparserSmooks;
+    private byte[] edi;
+    private byte[] xml;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SAXException {
+        parserSmooks = new Smooks();
+        parserSmooks.addResourceConfigs("/edifact-parser-config.xml");
+        unparserSmooks = new Smooks();
+        unparserSmooks.addResourceConfigs("/edifact-unparser-config.xml");
+
+        edi = EdiGenerator.interchange(shape).getBytes(StandardCharsets.UTF_8);
+
+        StringResult result = new StringResult();
+        parserSmooks.filterSource(parserSmooks.createExecutionContext(), new ByteSource(edi), result);
+        xml = result.getResult().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        parserSmooks.close();
+        unparserSmooks.close();
+    }
+
+    @Benchmark
+    public void parse(ByteCounter counter) {
+        parserSmooks.filterSource(parserSmooks.createExecutionContext(), new ByteSource(edi), new StreamResult(new NullWriter()));
+        counter.bytes += edi.length;
+    }
+
+    @Benchmark
+    public void unparse(ByteCounter counter) {
+        unparserSmooks.filterSource(unparserSmooks.createExecutionContext(), new ByteSource(xml), new StreamResult(new NullWriter()));
+        counter.bytes += xml.length;
+    }
+}
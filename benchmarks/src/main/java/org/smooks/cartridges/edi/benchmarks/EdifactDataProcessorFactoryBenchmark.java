@@ -0,0 +1,155 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-benchmarks
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi.benchmarks;
+
+import org.apache.daffodil.japi.DataProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.smooks.Smooks;
+import org.smooks.cartridges.edifact.EdifactDataProcessorFactory;
+import org.smooks.engine.resource.config.DefaultResourceConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link EdifactDataProcessorFactory#createDataProcessor()}.
+ * <p/>
+ * <code>warm</code> measures repeated calls against an application context which already holds the
+ * compiled data processor, i.e. the per-reader overhead of resolving the schema version and
+ * materialising the entry schema. <code>cold</code> measures a full schema compilation against a
+ * fresh application context.
+ */
+@State(Scope.Thread)
+@Fork(1)
+public class EdifactDataProcessorFactoryBenchmark {
+
+    public static final String SCHEMA_URI = "/d03b/EDIFACT-Messages.dfdl.xsd";
+
+    /**
+     * Comma separated message types, or empty for the whole directory.
+     */
+    @Param({"ORDERS", "ORDERS,INVOIC"})
+    public String messageTypes;
+
+    @Param({"Limited"})
+    public String validationMode;
+
+    private Smooks smooks;
+    private EdifactDataProcessorFactory dataProcessorFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        smooks = new Smooks();
+        dataProcessorFactory = newDataProcessorFactory(smooks, messageTypes, validationMode);
+        dataProcessorFactory.createDataProcessor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        smooks.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public DataProcessor warm() {
+        return dataProcessorFactory.createDataProcessor();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public DataProcessor cold(ColdFactory coldFactory) {
+        return coldFactory.dataProcessorFactory.createDataProcessor();
+    }
+
+    @State(Scope.Thread)
+    public static class ColdFactory {
+
+        EdifactDataProcessorFactory dataProcessorFactory;
+        private Smooks smooks;
+
+        @Setup(Level.Invocation)
+        public void setUp(EdifactDataProcessorFactoryBenchmark benchmark) {
+            smooks = new Smooks();
+            dataProcessorFactory = newDataProcessorFactory(smooks, benchmark.messageTypes, benchmark.validationMode);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            smooks.close();
+        }
+    }
+
+    static EdifactDataProcessorFactory newDataProcessorFactory(Smooks smooks, String messageTypes, String validationMode) {
+        DefaultResourceConfig resourceConfig = new DefaultResourceConfig();
+        resourceConfig.setParameter("schemaUri", SCHEMA_URI);
+        resourceConfig.setParameter("validationMode", validationMode);
+        for (String messageType : messageTypes.split(",")) {
+            if (!messageType.trim().isEmpty()) {
+                resourceConfig.setParameter("messageType", messageType.trim());
+            }
+        }
+
+        EdifactDataProcessorFactory dataProcessorFactory = new EdifactDataProcessorFactory();
+        dataProcessorFactory.setApplicationContext(smooks.getApplicationContext());
+        dataProcessorFactory.setResourceConfig(resourceConfig);
+
+        return dataProcessorFactory;
+    }
+}
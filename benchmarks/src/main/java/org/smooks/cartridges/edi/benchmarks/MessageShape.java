@@ -0,0 +1,95 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-benchmarks
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi.benchmarks;
+
+/**
+ * Shapes of synthetic EDI input exercised by the benchmarks.
+ * <p/>
+ * Each shape describes the number of messages in the interchange, the number of line items in
+ * each message and the length of the free text carried by each line item.
+ */
+public enum MessageShape {
+
+    /**
+     * A single message with a handful of line items, i.e. a typical purchase order.
+     */
+    SMALL(1, 4, 32),
+    /**
+     * A single message with a few hundred line items.
+     */
+    MEDIUM(1, 200, 32),
+    /**
+     * A single message with tens of thousands of line items (multi-megabyte input).
+     */
+    HUGE(1, 20000, 32),
+    /**
+     * An interchange carrying many small messages.
+     */
+    MANY_MESSAGES(1000, 4, 32),
+    /**
+     * A single message made up of wide segments, each carrying the maximum amount of free text.
+     */
+    WIDE_SEGMENTS(1, 100, 5 * 512);
+
+    private final int messageCount;
+    private final int lineItemCount;
+    private final int freeTextLength;
+
+    MessageShape(int messageCount, int lineItemCount, int freeTextLength) {
+        this.messageCount = messageCount;
+        this.lineItemCount = lineItemCount;
+        this.freeTextLength = freeTextLength;
+    }
+
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public int getLineItemCount() {
+        return lineItemCount;
+    }
+
+    public int getFreeTextLength() {
+        return freeTextLength;
+    }
+}
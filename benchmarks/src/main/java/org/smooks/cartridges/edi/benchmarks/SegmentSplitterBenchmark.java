@@ -0,0 +1,130 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-benchmarks
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.smooks.edi.edisax.model.internal.Delimiters;
+import org.smooks.edi.edisax.unedifact.UNEdifactInterchangeParser;
+import org.smooks.edi.edisax.util.CharSlices;
+import org.smooks.edi.edisax.util.EDIUtils;
+import org.smooks.edi.edisax.util.SegmentSplitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks splitting the segments of an ORDERS message into their fields and components:
+ * {@link EDIUtils#split(String, String, String)} on each level, {@link CharSlices} on each level, and
+ * a {@link SegmentSplitter} splitting each segment in a single pass.  The first two split each level
+ * on a single delimiter through a {@link SegmentSplitter} too.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SegmentSplitterBenchmark {
+
+    private static final Delimiters DELIMITERS = UNEdifactInterchangeParser.defaultUNEdifactDelimiters;
+
+    @Param({"SMALL", "MEDIUM", "WIDE_SEGMENTS"})
+    public MessageShape shape;
+
+    private String[] segments;
+    private int messageLength;
+    private final CharSlices fields = new CharSlices();
+    private final CharSlices components = new CharSlices();
+    private final SegmentSplitter segmentSplitter = new SegmentSplitter(DELIMITERS);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String message = EdiGenerator.orderMessage(shape);
+        segments = message.split("'");
+        messageLength = message.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Benchmark
+    public void ediUtilsSplit(Blackhole blackhole, ByteCounter counter) {
+        for (String segment : segments) {
+            for (String field : EDIUtils.split(segment, DELIMITERS.getField(), DELIMITERS.getEscape())) {
+                blackhole.consume(EDIUtils.split(field, DELIMITERS.getComponent(), DELIMITERS.getEscape()));
+            }
+        }
+        counter.bytes += messageLength;
+    }
+
+    @Benchmark
+    public void charSlicesSplit(Blackhole blackhole, ByteCounter counter) {
+        for (String segment : segments) {
+            fields.split(segment, DELIMITERS.getField(), DELIMITERS.getEscape());
+            for (int i = 0; i < fields.size(); i++) {
+                blackhole.consume(components.split(fields, i, DELIMITERS.getComponent(), DELIMITERS.getEscape()).size());
+            }
+        }
+        counter.bytes += messageLength;
+    }
+
+    @Benchmark
+    public void segmentSplitter(Blackhole blackhole, ByteCounter counter) {
+        for (String segment : segments) {
+            segmentSplitter.splitFields(segment, false, fields);
+            for (int i = 0; i < fields.size(); i++) {
+                blackhole.consume(components.split(fields, i, SegmentSplitter.COMPONENT, DELIMITERS.getComponent(), DELIMITERS.getEscape()).size());
+            }
+        }
+        counter.bytes += messageLength;
+    }
+}
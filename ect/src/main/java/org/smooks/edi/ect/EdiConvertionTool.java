@@ -51,12 +51,19 @@ import org.smooks.edi.ect.ecore.ECoreGenerator;
 import org.smooks.edi.ect.ecore.SchemaConverter;
 import org.smooks.edi.ect.formats.unedifact.parser.UnEdifactDirectoryParser;
 import org.smooks.edi.ect.formats.unedifact.UnEdifactDefinitionReader;
+import org.smooks.edi.edisax.EDIParser;
 import org.smooks.edi.edisax.archive.Archive;
+import org.smooks.edi.edisax.archive.ArchiveClassLoader;
 import org.smooks.edi.edisax.interchange.EdiDirectory;
+import org.smooks.edi.edisax.model.EdifactModel;
 import org.smooks.edi.edisax.model.internal.*;
 import org.smooks.edi.edisax.util.EDIUtils;
+import org.smooks.edi.edisax.util.EdimapBinaryWriter;
+import org.xml.sax.SAXException;
 
 import java.io.*;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Properties;
@@ -191,6 +198,7 @@ public class EdiConvertionTool {
     private static Archive createArchive(DirectoryParser directoryParser, String urn, String... messages) throws IOException {
         Archive archive = new Archive();
         StringBuilder modelListBuilder = new StringBuilder();
+        Properties modelIndex = new Properties();
         StringWriter messageEntryWriter = new StringWriter();
         String pathPrefix = urn.replace(".", "_").replace(":", "/");
 
@@ -198,13 +206,16 @@ public class EdiConvertionTool {
         EdiDirectory ediDirectory = directoryParser.getEdiDirectory(edimap, messages);
 
         // Add the common model...
-        addModel(ediDirectory.getCommonModel(), pathPrefix, modelListBuilder, messageEntryWriter, archive);
+        addModel(ediDirectory.getCommonModel(), pathPrefix, modelListBuilder, modelIndex, messageEntryWriter, archive);
 
         // Add each of the messages...
         for (Edimap messageModel : ediDirectory.getMessageModels()) {
-            addModel(messageModel, pathPrefix, modelListBuilder, messageEntryWriter, archive);
+            addModel(messageModel, pathPrefix, modelListBuilder, modelIndex, messageEntryWriter, archive);
         }
 
+        // Add the binary form of each of the mapping models, so as they can be loaded without digesting the XML...
+        addBinaryModels(modelListBuilder.toString(), archive);
+
         // Now create XML Schemas
         Set<EPackage> packages = new ECoreGenerator().generatePackages(ediDirectory);
         String pluginID = "org.smooks.edi.unedifact.unknown";
@@ -217,6 +228,16 @@ public class EdiConvertionTool {
         // Add the generated mapping model to the archive...
         archive.addEntry(EDIUtils.EDI_MAPPING_MODEL_ZIP_LIST_FILE, modelListBuilder.toString());
 
+        // Add the mapping model index, so as single models can be loaded without loading the whole list...
+        ByteArrayOutputStream indexOutStream = new ByteArrayOutputStream();
+        try {
+            modelIndex.store(indexOutStream, "EDI Mapping Model Index");
+            indexOutStream.flush();
+            archive.addEntry(EDIUtils.EDI_MAPPING_MODEL_INDEX_FILE, indexOutStream.toByteArray());
+        } finally {
+            indexOutStream.close();
+        }
+
         // Add the model set URN to the archive...
         archive.addEntry(EDIUtils.EDI_MAPPING_MODEL_URN, urn);
 
@@ -234,7 +255,7 @@ public class EdiConvertionTool {
         return archive;
     }
 
-    private static void addModel(Edimap model, String pathPrefix, StringBuilder modelListBuilder, StringWriter messageEntryWriter, Archive archive) throws IOException {
+    private static void addModel(Edimap model, String pathPrefix, StringBuilder modelListBuilder, Properties modelIndex, StringWriter messageEntryWriter, Archive archive) throws IOException {
         Description modelDesc = model.getDescription();
         String messageEntryPath = pathPrefix + "/" + modelDesc.getName() + ".xml";
 
@@ -246,11 +267,44 @@ public class EdiConvertionTool {
         archive.addEntry(messageEntryPath, messageEntryWriter.toString());
 
         // Add this messages archive entry to the mapping model list file...
-        modelListBuilder.append("/" + messageEntryPath);
-        modelListBuilder.append("!" + modelDesc.getName());
-        modelListBuilder.append("!" + modelDesc.getVersion());
-        modelListBuilder.append("!" + modelDesc.getNamespace());
+        String modelListEntry = "/" + messageEntryPath
+                + "!" + modelDesc.getName()
+                + "!" + modelDesc.getVersion()
+                + "!" + modelDesc.getNamespace();
+        modelListBuilder.append(modelListEntry);
         modelListBuilder.append("\n");
+
+        // ... and to the mapping model index...
+        modelIndex.setProperty(EDIUtils.toLookupName(modelDesc), modelListEntry);
+    }
+
+    private static void addBinaryModels(String modelList, Archive archive) throws IOException {
+        List<String> rootMappingModels = EDIUtils.getMappingModelList(new ByteArrayInputStream(modelList.getBytes("UTF-8")));
+        List<EdifactModel> mappingModels = new ArrayList<EdifactModel>();
+        ClassLoader threadCCL = Thread.currentThread().getContextClassLoader();
+
+        try {
+            // Load the XML models out of the archive, the same as they are loaded at runtime, so as their imports
+            // are applied before they are written...
+            Thread.currentThread().setContextClassLoader(new ArchiveClassLoader(threadCCL, archive));
+
+            for (String rootMappingModel : rootMappingModels) {
+                EdifactModel mappingModel = EDIParser.parseMappingModel(rootMappingModel, URI.create("/"));
+                String xmlEntryPath = rootMappingModel.split("!")[0].substring(1);
+                String binaryEntryPath = xmlEntryPath.substring(0, xmlEntryPath.length() - ".xml".length()) + EdimapBinaryWriter.FILE_EXTENSION;
+                ByteArrayOutputStream binaryOutStream = new ByteArrayOutputStream();
+
+                mappingModel.setAssociateModels(mappingModels);
+                mappingModels.add(mappingModel);
+
+                EdimapBinaryWriter.write(mappingModel.getEdimap(), binaryOutStream);
+                archive.addEntry(binaryEntryPath, binaryOutStream.toByteArray());
+            }
+        } catch (SAXException e) {
+            throw new IOException("Error parsing generated EDI Mapping Model.", e);
+        } finally {
+            Thread.currentThread().setContextClassLoader(threadCCL);
+        }
     }
 
     public static void removeDuplicateSegments(SegmentGroup segmentGroup) {
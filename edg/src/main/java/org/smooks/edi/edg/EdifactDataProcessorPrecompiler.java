@@ -0,0 +1,153 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edg
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edg;
+
+import com.github.mustachejava.DefaultMustacheFactory;
+import com.github.mustachejava.Mustache;
+import org.apache.daffodil.io.processors.charset.CharsetUtils;
+import org.apache.daffodil.japi.ValidationMode;
+import org.apache.daffodil.lib.util.Misc;
+import org.smooks.cartridges.edi.DataProcessorCache;
+import org.smooks.cartridges.edi.DfdlSchemaTrimmer;
+import org.smooks.cartridges.edi.EdiDataProcessorFactory.CachedDfdlSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles the EDIFACT interchange schema of every directory, and of a subset of its message types, into prebuilt
+ * {@link DataProcessorCache} entries. The arguments are the directory holding the generated schemas (each directory
+ * with an <code>EDIFACT-Interchange.dfdl.xsd</code> is compiled), the comma-separated message types of the subset
+ * (e.g. <code>DESADV,INVOIC,ORDERS</code>) and the output directory, under which all entries are written to
+ * <code>{@value DataProcessorCache#PRECOMPILED_LOCATION}</code>. Entries are named after their content hash so as the
+ * entries of all directories can share one location.
+ * <p/>
+ * The entry schema of a subset is trimmed and rendered in the same way, and from the same template, as the one
+ * materialised by the EDIFACT cartridge at runtime for a <code>schemaUri</code> of
+ * <code>/&lt;directory&gt;/EDIFACT-Messages.dfdl.xsd</code>, so as both hash to the same cache key.
+ */
+public final class EdifactDataProcessorPrecompiler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EdifactDataProcessorPrecompiler.class);
+    private static final String ENTRY_SCHEMA_TEMPLATE = "EDIFACT-Common/EDIFACT-Interchange.dfdl.xsd.mustache";
+
+    private EdifactDataProcessorPrecompiler() {
+
+    }
+
+    public static void main(final String[] args) throws IOException {
+        //FIXME: https://issues.apache.org/jira/browse/DAFFODIL-2827
+        CharsetUtils.supportedEncodingsString();
+        final Mustache mustache = new DefaultMustacheFactory().compile(ENTRY_SCHEMA_TEMPLATE);
+        final List<String> messageTypes = Arrays.stream(args[1].split(",")).distinct().sorted().collect(Collectors.toList());
+        final DataProcessorCache dataProcessorCache = new DataProcessorCache(Paths.get(args[2], DataProcessorCache.PRECOMPILED_LOCATION), Long.MAX_VALUE, Duration.ofDays(Integer.MAX_VALUE));
+
+        final List<String> directories;
+        try (Stream<Path> paths = Files.list(Paths.get(args[0]))) {
+            directories = paths.filter(path -> Files.isRegularFile(path.resolve("EDIFACT-Interchange.dfdl.xsd"))).map(path -> path.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+
+        // Compiled one at a time: compiling an EDIFACT interchange schema is memory hungry...
+        for (String directory : directories) {
+            try {
+                LOGGER.info("Precompiling {} interchange...", directory);
+                final URI interchangeSchemaUri = new URI("/" + directory + "/EDIFACT-Interchange.dfdl.xsd");
+                final Path interchangeEntry = dataProcessorCache.precompile(interchangeSchemaUri, null, () -> newDfdlSchema(interchangeSchemaUri, dataProcessorCache).compileSource());
+                LOGGER.info("Saved precompiled {} interchange to {}", directory, interchangeEntry);
+
+                LOGGER.info("Precompiling {} {}...", directory, messageTypes);
+                final URI entrySchemaUri = renderEntrySchema(mustache, "/" + directory + "/EDIFACT-Messages.dfdl.xsd", messageTypes);
+                final Path entry = dataProcessorCache.precompile(entrySchemaUri, null, () -> newDfdlSchema(entrySchemaUri, dataProcessorCache).compileSource());
+                LOGGER.info("Saved precompiled {} {} to {}", directory, messageTypes, entry);
+            } catch (Throwable t) {
+                throw new EdifactDfdlSchemaGeneratorException(t);
+            }
+        }
+    }
+
+    private static CachedDfdlSchema newDfdlSchema(final URI uri, final DataProcessorCache dataProcessorCache) {
+        // Not cached on disk: the entry is saved by DataProcessorCache#precompile...
+        return new CachedDfdlSchema(uri, ValidationMode.Off, false, false, null, null, false, null, dataProcessorCache);
+    }
+
+    private static URI renderEntrySchema(final Mustache mustache, final String schemaLocation, final List<String> messageTypes) throws Exception {
+        final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(Misc.getRequiredResource(schemaLocation).toString());
+        final String version = (String) XPathFactory.newInstance().newXPath().compile("/schema/annotation/appinfo[@source='http://www.ibm.com/dfdl/edi/un/edifact']/text()").evaluate(document, XPathConstants.STRING);
+
+        final Path entrySchemaDir = Files.createTempDirectory(null);
+        final List<String> roots = new ArrayList<>(messageTypes);
+        roots.add("BadMessage");
+        final URI trimmedSchemaUri = new DfdlSchemaTrimmer(schemaLocation).trim(roots, entrySchemaDir);
+
+        final File entrySchema = entrySchemaDir.resolve("EDIFACT-Interchange.dfdl.xsd").toFile();
+        try (Writer fileWriter = new OutputStreamWriter(Files.newOutputStream(entrySchema.toPath()), StandardCharsets.UTF_8)) {
+            mustache.execute(fileWriter, new HashMap<String, Object>() {{
+                this.put("schemaLocation", new File(trimmedSchemaUri).getName());
+                this.put("messageTypes", messageTypes);
+                this.put("version", version);
+            }});
+        }
+
+        return entrySchema.toURI();
+    }
+}
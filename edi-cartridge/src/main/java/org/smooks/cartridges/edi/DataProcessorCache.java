@@ -0,0 +1,446 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi;
+
+import org.apache.daffodil.japi.Daffodil;
+import org.apache.daffodil.japi.DataProcessor;
+import org.apache.daffodil.japi.InvalidParserException;
+import org.apache.daffodil.lib.util.Misc;
+import org.smooks.cartridges.dfdl.DfdlSchema;
+import org.smooks.support.StreamUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Persistent, on-disk cache of compiled (serialized) Daffodil {@link DataProcessor}s.
+ * <p/>
+ * Entries are content-hashed: the cache key is a SHA-256 digest of the Daffodil version, the compile options
+ * and the content of the schema together with every schema it imports or includes, so as a changed schema pack or
+ * a Daffodil upgrade never picks up a stale processor. Each entry carries a header recording the Daffodil
+ * version and cache key, which is validated on load. Entries are written to a temporary file and atomically
+ * moved into place, so as concurrent JVMs sharing the directory never read a partially written entry.
+ * Entries not used within the maximum age are evicted, as are the least recently used entries once the
+ * directory grows beyond the maximum size.
+ * <p/>
+ * Before compiling, the cache also looks for a prebuilt entry on the classpath under
+ * <code>{@value #PRECOMPILED_LOCATION}</code>, such as those shipped in the precompiled EDIFACT schema artifacts.
+ * Prebuilt entries are in the same format, and are named after the same key, as entries on disk.
+ * <p/>
+ * The default cache is configured through system properties:
+ * <ul>
+ *     <li><code>{@value #DIRECTORY_PROPERTY}</code>: cache directory (default {@link DfdlSchema#WORKING_DIRECTORY}).</li>
+ *     <li><code>{@value #MAX_SIZE_PROPERTY}</code>: maximum size of the cache directory in bytes (default 1 GiB).</li>
+ *     <li><code>{@value #MAX_AGE_PROPERTY}</code>: maximum time since an entry was last used, as an ISO-8601 duration (default <code>P30D</code>).</li>
+ * </ul>
+ */
+public class DataProcessorCache {
+
+    public static final String DIRECTORY_PROPERTY = "smooks.edi.dataProcessorCache.directory";
+    public static final String MAX_SIZE_PROPERTY = "smooks.edi.dataProcessorCache.maxSize";
+    public static final String MAX_AGE_PROPERTY = "smooks.edi.dataProcessorCache.maxAge";
+    public static final String PRECOMPILED_LOCATION = "META-INF/smooks/dfdl-processors/";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataProcessorCache.class);
+    private static final int MAGIC = 0x534D4450;
+    private static final String ENTRY_SUFFIX = ".dat";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long STALE_TEMP_FILE_AGE = Duration.ofHours(1).toMillis();
+    private static final Pattern SCHEMA_LOCATION = Pattern.compile("schemaLocation\\s*=\\s*[\"']([^\"']+)[\"']");
+    private static final Pattern XML_COMMENT = Pattern.compile("<!--.*?-->", Pattern.DOTALL);
+
+    private static volatile DataProcessorCache defaultCache;
+
+    private final Path directory;
+    private final long maxSize;
+    private final Duration maxAge;
+
+    public DataProcessorCache(Path directory, long maxSize, Duration maxAge) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+    }
+
+    public static DataProcessorCache getDefault() {
+        if (defaultCache == null) {
+            synchronized (DataProcessorCache.class) {
+                if (defaultCache == null) {
+                    defaultCache = new DataProcessorCache(Paths.get(System.getProperty(DIRECTORY_PROPERTY, DfdlSchema.WORKING_DIRECTORY)),
+                            Long.parseLong(System.getProperty(MAX_SIZE_PROPERTY, Long.toString(1024L * 1024 * 1024))),
+                            Duration.parse(System.getProperty(MAX_AGE_PROPERTY, "P30D")));
+                }
+            }
+        }
+
+        return defaultCache;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Get the compiled data processor for a schema from the cache, compiling and caching it on a miss.
+     *
+     * @param schemaUri The schema URI, either absolute or a classpath resource path.
+     * @param compileOptions Options that change the compiled processor (e.g. the root node), for inclusion in the cache key.
+     * @param compilation Compiles the schema on a cache miss.
+     * @return The data processor.
+     * @throws Throwable Error compiling the schema.
+     */
+    public DataProcessor getOrCompile(URI schemaUri, String compileOptions, Compilation compilation) throws Throwable {
+        return getOrCompile(schemaUri, compileOptions, true, compilation);
+    }
+
+    /**
+     * Get the compiled data processor for a schema from the classpath or, if <code>persist</code> is enabled, from
+     * the cache directory. The schema is compiled on a miss. The schema is only read and hashed into a cache key if
+     * <code>persist</code> is enabled or a {@value #PRECOMPILED_LOCATION} directory is on the classpath.
+     *
+     * @param schemaUri The schema URI, either absolute or a classpath resource path.
+     * @param compileOptions Options that change the compiled processor (e.g. the root node), for inclusion in the cache key.
+     * @param persist Whether to look up, and save, the compiled processor in the cache directory.
+     * @param compilation Compiles the schema on a cache miss.
+     * @return The data processor.
+     * @throws Throwable Error compiling the schema.
+     */
+    public DataProcessor getOrCompile(URI schemaUri, String compileOptions, boolean persist, Compilation compilation) throws Throwable {
+        final boolean hasPrecompiled = hasPrecompiled();
+        if (!persist && !hasPrecompiled) {
+            // Nothing to look up: spare reading and hashing the schema closure...
+            return compilation.compile();
+        }
+
+        final String daffodilVersion = Misc.getDaffodilVersion();
+        final String key = toKey(schemaUri, daffodilVersion, compileOptions);
+
+        if (hasPrecompiled) {
+            final DataProcessor precompiledDataProcessor = loadPrecompiled(key, daffodilVersion);
+            if (precompiledDataProcessor != null) {
+                return precompiledDataProcessor;
+            }
+        }
+
+        if (!persist) {
+            return compilation.compile();
+        }
+
+        final Path entry = directory.resolve(key + ENTRY_SUFFIX);
+        final DataProcessor cachedDataProcessor = load(entry, key, daffodilVersion);
+        if (cachedDataProcessor != null) {
+            return cachedDataProcessor;
+        }
+
+        final DataProcessor dataProcessor = compilation.compile();
+        try {
+            store(entry, key, daffodilVersion, dataProcessor);
+            evict(entry);
+        } catch (IOException e) {
+            // The cache is an optimisation. Failing to write to it must not fail the compilation...
+            LOGGER.warn("Failed to cache compiled DFDL schema '{}' in {}", schemaUri, entry, e);
+        }
+
+        return dataProcessor;
+    }
+
+    /**
+     * Compile a schema and save it in the cache directory unconditionally, without evicting other entries. Used at
+     * build time to produce the prebuilt entries looked up under {@value #PRECOMPILED_LOCATION}.
+     *
+     * @param schemaUri The schema URI, either absolute or a classpath resource path.
+     * @param compileOptions Options that change the compiled processor (e.g. the root node), for inclusion in the cache key.
+     * @param compilation Compiles the schema.
+     * @return The saved entry.
+     * @throws Throwable Error compiling or saving the schema.
+     */
+    public Path precompile(URI schemaUri, String compileOptions, Compilation compilation) throws Throwable {
+        final String daffodilVersion = Misc.getDaffodilVersion();
+        final String key = toKey(schemaUri, daffodilVersion, compileOptions);
+        final Path entry = directory.resolve(key + ENTRY_SUFFIX);
+
+        store(entry, key, daffodilVersion, compilation.compile());
+
+        return entry;
+    }
+
+    /**
+     * Is there a {@value #PRECOMPILED_LOCATION} directory on the classpath, i.e. can there be prebuilt entries to load.
+     *
+     * @return True if the directory is on the classpath, otherwise false.
+     */
+    protected boolean hasPrecompiled() {
+        return getClassLoader().getResource(PRECOMPILED_LOCATION) != null;
+    }
+
+    protected DataProcessor loadPrecompiled(String key, String daffodilVersion) {
+        final URL precompiledEntry = getClassLoader().getResource(PRECOMPILED_LOCATION + key + ENTRY_SUFFIX);
+        if (precompiledEntry == null) {
+            return null;
+        }
+
+        try (InputStream inputStream = precompiledEntry.openStream()) {
+            return reload(Channels.newChannel(inputStream), key, daffodilVersion, precompiledEntry);
+        } catch (IOException | InvalidParserException e) {
+            LOGGER.warn("Ignoring unreadable precompiled DFDL schema {}", precompiledEntry, e);
+            return null;
+        }
+    }
+
+    protected DataProcessor load(Path entry, String key, String daffodilVersion) {
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            final DataProcessor dataProcessor = reload(channel, key, daffodilVersion, entry);
+            if (dataProcessor != null) {
+                touch(entry);
+            }
+
+            return dataProcessor;
+        } catch (IOException | InvalidParserException e) {
+            LOGGER.warn("Ignoring unreadable cached DFDL schema {}", entry, e);
+            return null;
+        }
+    }
+
+    private DataProcessor reload(ReadableByteChannel channel, String key, String daffodilVersion, Object source) throws IOException, InvalidParserException {
+        final DataInputStream header = new DataInputStream(Channels.newInputStream(channel));
+        if (header.readInt() != MAGIC || !header.readUTF().equals(daffodilVersion) || !header.readUTF().equals(key)) {
+            LOGGER.debug("Ignoring compiled DFDL schema {}: header does not match", source);
+            return null;
+        }
+
+        LOGGER.info("Loading compiled DFDL schema from {}", source);
+        return Daffodil.compiler().reload(channel);
+    }
+
+    protected void store(Path entry, String key, String daffodilVersion, DataProcessor dataProcessor) throws IOException {
+        Files.createDirectories(directory);
+
+        final Path tempEntry = Files.createTempFile(directory, key, TEMP_SUFFIX);
+        try {
+            try (FileChannel channel = FileChannel.open(tempEntry, StandardOpenOption.WRITE)) {
+                final DataOutputStream header = new DataOutputStream(Channels.newOutputStream(channel));
+                header.writeInt(MAGIC);
+                header.writeUTF(daffodilVersion);
+                header.writeUTF(key);
+                header.flush();
+                dataProcessor.save(channel);
+            }
+
+            LOGGER.info("Saving compiled DFDL schema to {}", entry);
+            try {
+                Files.move(tempEntry, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempEntry, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempEntry);
+        }
+    }
+
+    /**
+     * Evict expired entries, and then the least recently used entries until the cache fits within its maximum size.
+     *
+     * @param retain Entry that must not be evicted (i.e. the entry just written).
+     */
+    protected void evict(Path retain) {
+        final File[] files = directory.toFile().listFiles();
+        if (files == null) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        final List<File> entries = new ArrayList<>();
+        long size = 0;
+
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                // Left behind by a writer that died mid-write...
+                if (now - file.lastModified() > STALE_TEMP_FILE_AGE) {
+                    delete(file);
+                }
+            } else if (file.getName().endsWith(ENTRY_SUFFIX) && !file.toPath().equals(retain)) {
+                if (now - file.lastModified() > maxAge.toMillis()) {
+                    delete(file);
+                } else {
+                    entries.add(file);
+                    size += file.length();
+                }
+            } else if (file.toPath().equals(retain)) {
+                size += file.length();
+            }
+        }
+
+        entries.sort(Comparator.comparingLong(File::lastModified));
+        for (File file : entries) {
+            if (size <= maxSize) {
+                break;
+            }
+            size -= file.length();
+            delete(file);
+        }
+    }
+
+    protected String toKey(URI schemaUri, String daffodilVersion, String compileOptions) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        digest.update(daffodilVersion.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(String.valueOf(compileOptions).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+
+        final URI resolvedSchemaUri = resolve(schemaUri.toString(), null);
+        if (resolvedSchemaUri == null) {
+            throw new FileNotFoundException("DFDL schema '" + schemaUri + "' not found");
+        }
+        digestSchema(resolvedSchemaUri, digest, new HashSet<>());
+
+        final StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return key.toString();
+    }
+
+    private void digestSchema(URI schemaUri, MessageDigest digest, Set<URI> digested) throws IOException {
+        final byte[] schema;
+        try (InputStream schemaStream = schemaUri.toURL().openStream()) {
+            schema = StreamUtils.readStream(schemaStream);
+        }
+        digest.update(schema);
+
+        final String schemaWithoutComments = XML_COMMENT.matcher(new String(schema, StandardCharsets.UTF_8)).replaceAll("");
+        final Matcher schemaLocationMatcher = SCHEMA_LOCATION.matcher(schemaWithoutComments);
+        while (schemaLocationMatcher.find()) {
+            final String schemaLocation = schemaLocationMatcher.group(1);
+            final URI importedSchemaUri = resolve(schemaLocation, schemaUri);
+
+            if (importedSchemaUri == null) {
+                digest.update(schemaLocation.getBytes(StandardCharsets.UTF_8));
+            } else if (digested.add(importedSchemaUri)) {
+                try {
+                    digestSchema(importedSchemaUri, digest, digested);
+                } catch (IOException e) {
+                    // Leave it to the compiler to report on imports it cannot resolve...
+                    digest.update(schemaLocation.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    private URI resolve(String schemaLocation, URI baseUri) {
+        try {
+            final URI schemaLocationUri = new URI(schemaLocation);
+            if (schemaLocationUri.isAbsolute()) {
+                return schemaLocationUri;
+            } else if (baseUri != null && !schemaLocation.startsWith("/")) {
+                return new URL(baseUri.toURL(), schemaLocation).toURI();
+            } else {
+                // Daffodil resolves absolute paths against the classpath...
+                return Misc.getRequiredResource(schemaLocation);
+            }
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private ClassLoader getClassLoader() {
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return classLoader != null ? classLoader : DataProcessorCache.class.getClassLoader();
+    }
+
+    private void touch(Path entry) {
+        if (!entry.toFile().setLastModified(System.currentTimeMillis())) {
+            LOGGER.debug("Failed to update last used time of {}", entry);
+        }
+    }
+
+    private void delete(File file) {
+        if (file.delete()) {
+            LOGGER.debug("Evicted {} from DFDL schema cache", file);
+        }
+    }
+
+    /**
+     * Compiles a schema on a cache miss.
+     */
+    public interface Compilation {
+        DataProcessor compile() throws Throwable;
+    }
+}
@@ -0,0 +1,251 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi;
+
+import org.apache.daffodil.lib.util.Misc;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tree-shakes a DFDL schema, together with the schemas it includes, down to the global components reachable from
+ * a set of root components. Components are followed through the <code>type</code>, <code>ref</code>,
+ * <code>base</code>, <code>itemType</code> and <code>memberTypes</code> references in the target namespace.
+ * Everything else (imports, annotations, format definitions, etc...) is kept as is. Imported schemas, being in a
+ * different namespace, are left untouched.
+ * <p/>
+ * A large schema, such as an EDIFACT directory, can then be compiled in time and memory proportional to the
+ * messages actually processed. The trimmed schemas are serialized deterministically, so as a trimmed schema hashes
+ * to the same {@link DataProcessorCache} key from one run to the next.
+ */
+public class DfdlSchemaTrimmer {
+
+    private static final Set<String> COMPONENTS = new HashSet<>(Arrays.asList("element", "complexType", "simpleType", "group", "attributeGroup"));
+    private static final Set<String> REFERENCES = new HashSet<>(Arrays.asList("type", "ref", "base", "itemType", "memberTypes"));
+
+    private final URL schemaUrl;
+
+    /**
+     * @param schemaUri The schema URI, either absolute or a classpath resource path.
+     */
+    public DfdlSchemaTrimmer(final String schemaUri) throws IOException {
+        this.schemaUrl = resolve(schemaUri, null);
+    }
+
+    /**
+     * Write the trimmed schema, and the trimmed schemas it includes, to a directory.
+     *
+     * @param roots Names of the global components to keep, along with everything reachable from them.
+     * @param outputDirectory Directory to write the trimmed schemas to.
+     * @return URI of the trimmed schema.
+     */
+    public URI trim(final Collection<String> roots, final Path outputDirectory) throws IOException, SAXException, ParserConfigurationException, TransformerException, URISyntaxException {
+        final Map<URL, Document> schemas = new LinkedHashMap<>();
+        load(schemaUrl, schemas);
+
+        final Map<String, List<Element>> components = new HashMap<>();
+        for (Document schema : schemas.values()) {
+            final String targetNamespace = schema.getDocumentElement().getAttribute("targetNamespace");
+            for (Element component : getGlobalComponents(schema)) {
+                components.computeIfAbsent(targetNamespace + "#" + component.getAttribute("name"), k -> new ArrayList<>()).add(component);
+            }
+        }
+
+        final String rootTargetNamespace = schemas.get(schemaUrl).getDocumentElement().getAttribute("targetNamespace");
+        final Set<String> reachable = new HashSet<>();
+        final Deque<String> pending = new ArrayDeque<>();
+        for (String root : roots) {
+            pending.add(rootTargetNamespace + "#" + root);
+        }
+        while (!pending.isEmpty()) {
+            final String name = pending.pop();
+            if (reachable.add(name)) {
+                for (Element component : components.getOrDefault(name, Collections.emptyList())) {
+                    collectReferences(component, pending);
+                }
+            }
+        }
+
+        final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+        Path trimmedSchema = null;
+        for (Map.Entry<URL, Document> schema : schemas.entrySet()) {
+            final String targetNamespace = schema.getValue().getDocumentElement().getAttribute("targetNamespace");
+            for (Element component : getGlobalComponents(schema.getValue())) {
+                if (!reachable.contains(targetNamespace + "#" + component.getAttribute("name"))) {
+                    component.getParentNode().removeChild(component);
+                }
+            }
+            for (Element include : getChildren(schema.getValue().getDocumentElement(), "include")) {
+                include.setAttribute("schemaLocation", getFileName(resolve(include.getAttribute("schemaLocation"), schema.getKey())));
+            }
+            for (Element anImport : getChildren(schema.getValue().getDocumentElement(), "import")) {
+                // The trimmed schema is written elsewhere, so relative imports no longer resolve...
+                final String schemaLocation = anImport.getAttribute("schemaLocation");
+                if (!schemaLocation.isEmpty() && !schemaLocation.startsWith("/") && !new URI(schemaLocation).isAbsolute()) {
+                    anImport.setAttribute("schemaLocation", resolve(schemaLocation, schema.getKey()).toString());
+                }
+            }
+
+            final Path outputFile = outputDirectory.resolve(getFileName(schema.getKey()));
+            transformerFactory.newTransformer().transform(new DOMSource(schema.getValue()), new StreamResult(outputFile.toFile()));
+            if (trimmedSchema == null) {
+                trimmedSchema = outputFile;
+            }
+        }
+
+        return trimmedSchema.toUri();
+    }
+
+    private void load(final URL url, final Map<URL, Document> schemas) throws IOException, SAXException, ParserConfigurationException {
+        if (schemas.containsKey(url)) {
+            return;
+        }
+
+        final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(true);
+        final Document schema;
+        try (InputStream inputStream = url.openStream()) {
+            schema = documentBuilderFactory.newDocumentBuilder().parse(inputStream, url.toString());
+        }
+        schemas.put(url, schema);
+
+        for (Element include : getChildren(schema.getDocumentElement(), "include")) {
+            load(resolve(include.getAttribute("schemaLocation"), url), schemas);
+        }
+    }
+
+    private void collectReferences(final Element element, final Deque<String> pending) {
+        final NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            final Attr attribute = (Attr) attributes.item(i);
+            if (attribute.getNamespaceURI() == null && REFERENCES.contains(attribute.getLocalName())) {
+                for (String qName : attribute.getValue().trim().split("\\s+")) {
+                    final int colon = qName.indexOf(':');
+                    final String namespace = element.lookupNamespaceURI(colon < 0 ? null : qName.substring(0, colon));
+                    pending.add((namespace == null ? "" : namespace) + "#" + qName.substring(colon + 1));
+                }
+            }
+        }
+
+        final NodeList children = element.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            if (children.item(i).getNodeType() == Node.ELEMENT_NODE) {
+                collectReferences((Element) children.item(i), pending);
+            }
+        }
+    }
+
+    private List<Element> getGlobalComponents(final Document schema) {
+        final List<Element> components = new ArrayList<>();
+        for (Element child : getChildren(schema.getDocumentElement(), null)) {
+            if (COMPONENTS.contains(child.getLocalName())) {
+                components.add(child);
+            }
+        }
+
+        return components;
+    }
+
+    private List<Element> getChildren(final Element parent, final String localName) {
+        final List<Element> children = new ArrayList<>();
+        final NodeList childNodes = parent.getChildNodes();
+        for (int i = 0; i < childNodes.getLength(); i++) {
+            final Node child = childNodes.item(i);
+            if (child.getNodeType() == Node.ELEMENT_NODE && XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(child.getNamespaceURI()) && (localName == null || localName.equals(child.getLocalName()))) {
+                children.add((Element) child);
+            }
+        }
+
+        return children;
+    }
+
+    private String getFileName(final URL url) {
+        return url.getPath().substring(url.getPath().lastIndexOf('/') + 1);
+    }
+
+    private URL resolve(final String schemaLocation, final URL baseUrl) throws IOException {
+        try {
+            final URI schemaLocationUri = new URI(schemaLocation);
+            if (schemaLocationUri.isAbsolute()) {
+                return schemaLocationUri.toURL();
+            } else if (baseUrl != null && !schemaLocation.startsWith("/")) {
+                return new URL(baseUrl, schemaLocation);
+            } else {
+                // Daffodil resolves absolute paths against the classpath...
+                return Misc.getRequiredResource(schemaLocation).toURL();
+            }
+        } catch (Exception e) {
+            throw new IOException("Unable to resolve schema '" + schemaLocation + "'", e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi;
+
+import org.apache.daffodil.japi.DataProcessor;
+import org.apache.daffodil.japi.ValidationMode;
+import org.smooks.cartridges.dfdl.DataProcessorFactory;
+import org.smooks.cartridges.dfdl.DfdlSchema;
+import org.smooks.cartridges.dfdl.DfdlSmooksException;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * {@link DataProcessorFactory} which loads prebuilt processors from the classpath when available and, when
+ * <code>cacheOnDisk</code> is enabled, caches compiled processors in the managed {@link DataProcessorCache}
+ * rather than by schema file name.
+ */
+public class EdiDataProcessorFactory extends DataProcessorFactory {
+
+    @Override
+    public DataProcessor createDataProcessor() {
+        try {
+            final DfdlSchema dfdlSchema = newDfdlSchema(new URI(schemaUri), ValidationMode.valueOf(resourceConfig.getParameterValue("validationMode", String.class, "Off")),
+                    Boolean.parseBoolean(resourceConfig.getParameterValue("cacheOnDisk", String.class, "false")),
+                    Boolean.parseBoolean(resourceConfig.getParameterValue("debugging", String.class, "false")), resourceConfig.getParameterValue("distinguishedRootNode", String.class),
+                    resourceConfig.getParameterValue("schematronUrl", String.class),
+                    Boolean.parseBoolean(resourceConfig.getParameterValue("schematronValidation", String.class)), null);
+
+            return compileOrGet(dfdlSchema);
+        } catch (URISyntaxException e) {
+            throw new DfdlSmooksException(e);
+        }
+    }
+
+    /**
+     * Create the {@link DfdlSchema} to compile.
+     *
+     * @param name The name the schema is cached under in the application context, or <code>null</code> for the default name.
+     */
+    protected DfdlSchema newDfdlSchema(final URI uri, final ValidationMode validationMode, final boolean cacheOnDisk, final boolean debugging,
+                                       final String distinguishedRootNode, final String schematronUrl, final boolean schematronValidation, final String name) {
+        return new CachedDfdlSchema(uri, validationMode, cacheOnDisk, debugging, distinguishedRootNode, schematronUrl, schematronValidation, name, DataProcessorCache.getDefault());
+    }
+
+    /**
+     * {@link DfdlSchema} compiled through a {@link DataProcessorCache}. {@link #compileSource()} is public so as build
+     * tools, such as the EDIFACT precompiler, can compile a schema in the same way as at runtime.
+     */
+    public static class CachedDfdlSchema extends DfdlSchema {
+
+        private final boolean persist;
+        private final String name;
+        private final DataProcessorCache dataProcessorCache;
+
+        public CachedDfdlSchema(final URI uri, final ValidationMode validationMode, final boolean cacheOnDisk, final boolean debugging, final String distinguishedRootNode,
+                                 final String schematronUrl, final boolean schematronValidation, final String name, final DataProcessorCache dataProcessorCache) {
+            // Disk caching is done here, in compileSource(), so as it's switched off in DfdlSchema...
+            super(uri, validationMode, false, debugging, distinguishedRootNode, schematronUrl, schematronValidation);
+            this.persist = cacheOnDisk;
+            this.name = name;
+            this.dataProcessorCache = dataProcessorCache;
+        }
+
+        @Override
+        public boolean isCacheOnDisk() {
+            return persist;
+        }
+
+        @Override
+        public String getName() {
+            return name != null ? name : uri + ":" + validationMode + ":" + isCacheOnDisk() + ":" + debugging;
+        }
+
+        @Override
+        public DataProcessor compileSource() throws Throwable {
+            // Prebuilt processors on the classpath are looked up whether or not cacheOnDisk is enabled...
+            return dataProcessorCache.getOrCompile(uri, distinguishedRootNode, persist, super::compileSource);
+        }
+    }
+}
@@ -105,6 +105,11 @@ public class EdiReaderConfigurator extends DfdlReaderConfigurator {
         return this;
     }
 
+    @Override
+    protected String getDataProcessorFactory() {
+        return "org.smooks.cartridges.edi.EdiDataProcessorFactory";
+    }
+
     @Override
     public List<ResourceConfig> toConfig() {
         final List<ResourceConfig> resourceConfigs = super.toConfig();
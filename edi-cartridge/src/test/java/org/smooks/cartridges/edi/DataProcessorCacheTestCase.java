@@ -0,0 +1,191 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi;
+
+import org.apache.daffodil.japi.DataProcessor;
+import org.apache.daffodil.japi.ValidationMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.smooks.cartridges.dfdl.DfdlSchema;
+import org.smooks.support.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DataProcessorCacheTestCase {
+
+    private Path cacheDir;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        cacheDir = Files.createTempDirectory("dataProcessorCache");
+    }
+
+    @AfterEach
+    public void afterEach() {
+        FileUtils.deleteDir(cacheDir.toFile());
+    }
+
+    @Test
+    public void testGetOrCompileIsCacheHitGivenCompiledSchemaInDirectory() throws Throwable {
+        AtomicInteger compilations = new AtomicInteger();
+
+        assertNotNull(getOrCompile(new DataProcessorCache(cacheDir, Long.MAX_VALUE, Duration.ofDays(1)), compilations));
+        assertEquals(1, compilations.get());
+        assertEquals(1, cacheDir.toFile().listFiles().length);
+
+        assertNotNull(getOrCompile(new DataProcessorCache(cacheDir, Long.MAX_VALUE, Duration.ofDays(1)), compilations));
+        assertEquals(1, compilations.get());
+        assertEquals(1, cacheDir.toFile().listFiles().length);
+    }
+
+    @Test
+    public void testGetOrCompileIsCacheMissGivenCorruptEntry() throws Throwable {
+        AtomicInteger compilations = new AtomicInteger();
+        DataProcessorCache dataProcessorCache = new DataProcessorCache(cacheDir, Long.MAX_VALUE, Duration.ofDays(1));
+
+        getOrCompile(dataProcessorCache, compilations);
+        File entry = cacheDir.toFile().listFiles()[0];
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(entry, "rw")) {
+            randomAccessFile.writeInt(0);
+        }
+
+        assertNotNull(getOrCompile(dataProcessorCache, compilations));
+        assertEquals(2, compilations.get());
+        assertEquals(1, cacheDir.toFile().listFiles().length);
+
+        assertNotNull(getOrCompile(dataProcessorCache, compilations));
+        assertEquals(2, compilations.get());
+    }
+
+    @Test
+    public void testGetOrCompileEvictsLeastRecentlyUsedEntryGivenMaxSizeExceeded() throws Throwable {
+        File staleEntry = cacheDir.resolve("stale.dat").toFile();
+        Files.write(staleEntry.toPath(), new byte[1024]);
+        assertTrue(staleEntry.setLastModified(System.currentTimeMillis() - 60000));
+
+        getOrCompile(new DataProcessorCache(cacheDir, 1024, Duration.ofDays(1)), new AtomicInteger());
+
+        assertEquals(1, cacheDir.toFile().listFiles().length);
+        assertTrue(!staleEntry.exists());
+    }
+
+    @Test
+    public void testGetOrCompileEvictsExpiredEntry() throws Throwable {
+        File expiredEntry = cacheDir.resolve("expired.dat").toFile();
+        Files.write(expiredEntry.toPath(), new byte[1]);
+        assertTrue(expiredEntry.setLastModified(System.currentTimeMillis() - Duration.ofDays(2).toMillis()));
+
+        getOrCompile(new DataProcessorCache(cacheDir, Long.MAX_VALUE, Duration.ofDays(1)), new AtomicInteger());
+
+        assertEquals(1, cacheDir.toFile().listFiles().length);
+        assertTrue(!expiredEntry.exists());
+    }
+
+    @Test
+    public void testGetOrCompileLoadsPrecompiledEntryGivenEntryOnClasspath() throws Throwable {
+        Path precompiledDir = Files.createTempDirectory("precompiled");
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            URI schemaUri = new URI("/edi-to-xml-mapping.dfdl.xsd");
+            AtomicInteger compilations = new AtomicInteger();
+            new DataProcessorCache(precompiledDir.resolve(DataProcessorCache.PRECOMPILED_LOCATION), Long.MAX_VALUE, Duration.ofDays(1)).precompile(schemaUri, null, () -> compile(schemaUri, compilations));
+            assertEquals(1, compilations.get());
+
+            Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[]{precompiledDir.toUri().toURL()}, contextClassLoader));
+            assertNotNull(new DataProcessorCache(cacheDir, Long.MAX_VALUE, Duration.ofDays(1)).getOrCompile(schemaUri, null, false, () -> compile(schemaUri, compilations)));
+            assertEquals(1, compilations.get());
+            assertEquals(0, cacheDir.toFile().listFiles().length);
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+            FileUtils.deleteDir(precompiledDir.toFile());
+        }
+    }
+
+    @Test
+    public void testGetOrCompileDoesNotHashSchemaGivenNoPersistAndNoPrecompiledEntries() throws Throwable {
+        URI schemaUri = new URI("/edi-to-xml-mapping.dfdl.xsd");
+        AtomicInteger compilations = new AtomicInteger();
+        AtomicInteger keys = new AtomicInteger();
+        DataProcessorCache dataProcessorCache = new DataProcessorCache(cacheDir, Long.MAX_VALUE, Duration.ofDays(1)) {
+            @Override
+            protected String toKey(URI schemaUri, String daffodilVersion, String compileOptions) throws IOException {
+                keys.incrementAndGet();
+                return super.toKey(schemaUri, daffodilVersion, compileOptions);
+            }
+        };
+
+        assertNotNull(dataProcessorCache.getOrCompile(schemaUri, null, false, () -> compile(schemaUri, compilations)));
+        assertEquals(1, compilations.get());
+        assertEquals(0, keys.get());
+        assertEquals(0, cacheDir.toFile().listFiles().length);
+    }
+
+    private DataProcessor getOrCompile(DataProcessorCache dataProcessorCache, AtomicInteger compilations) throws Throwable {
+        URI schemaUri = new URI("/edi-to-xml-mapping.dfdl.xsd");
+        return dataProcessorCache.getOrCompile(schemaUri, null, () -> compile(schemaUri, compilations));
+    }
+
+    private DataProcessor compile(URI schemaUri, AtomicInteger compilations) throws Throwable {
+        compilations.incrementAndGet();
+        return new DfdlSchema(schemaUri, ValidationMode.Off, false, false, null, null, false) {
+            @Override
+            public DataProcessor compileSource() throws Throwable {
+                return super.compileSource();
+            }
+        }.compileSource();
+    }
+}
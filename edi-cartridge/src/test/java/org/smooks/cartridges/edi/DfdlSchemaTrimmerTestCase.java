@@ -0,0 +1,113 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi;
+
+import org.apache.daffodil.japi.DataProcessor;
+import org.apache.daffodil.japi.ValidationMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.smooks.cartridges.dfdl.DfdlSchema;
+import org.smooks.support.FileUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DfdlSchemaTrimmerTestCase {
+
+    private Path outputDir;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        outputDir = Files.createTempDirectory("dfdlSchemaTrimmer");
+    }
+
+    @AfterEach
+    public void afterEach() {
+        FileUtils.deleteDir(outputDir.toFile());
+    }
+
+    @Test
+    public void testTrimRemovesUnreachableComponents() throws Exception {
+        URI trimmedSchemaUri = new DfdlSchemaTrimmer("/trim/messages.dfdl.xsd").trim(Collections.singletonList("MSGA"), outputDir);
+
+        assertEquals(outputDir.resolve("messages.dfdl.xsd").toUri(), trimmedSchemaUri);
+        String messages = new String(Files.readAllBytes(outputDir.resolve("messages.dfdl.xsd")), StandardCharsets.UTF_8);
+        String segments = new String(Files.readAllBytes(outputDir.resolve("segments.dfdl.xsd")), StandardCharsets.UTF_8);
+
+        assertTrue(messages.contains("name=\"MSGA\""));
+        assertFalse(messages.contains("name=\"MSGB\""));
+        assertTrue(messages.contains("schemaLocation=\"segments.dfdl.xsd\""));
+        assertTrue(messages.contains("schemaLocation=\"/EDIFACT-Common/IBM_EDI_Format.dfdl.xsd\""));
+
+        for (String name : new String[]{"AAA", "CCC", "C001", "E1000", "E1001", "an..3", "an..35"}) {
+            assertTrue(segments.contains("name=\"" + name + "\""), name);
+        }
+        for (String name : new String[]{"BBB", "E2000", "an..70"}) {
+            assertFalse(segments.contains("name=\"" + name + "\""), name);
+        }
+    }
+
+    @Test
+    public void testTrimmedSchemaCompiles() throws Throwable {
+        URI trimmedSchemaUri = new DfdlSchemaTrimmer("/trim/messages.dfdl.xsd").trim(Collections.singletonList("MSGA"), outputDir);
+
+        DataProcessor dataProcessor = new DfdlSchema(trimmedSchemaUri, ValidationMode.Off, false, false, "{urn:smooks:edi:test}MSGA", null, false) {
+            @Override
+            public DataProcessor compileSource() throws Throwable {
+                return super.compileSource();
+            }
+        }.compileSource();
+
+        assertNotNull(dataProcessor);
+    }
+}
@@ -43,7 +43,8 @@
 package org.smooks.edi.edisax;
 
 import org.smooks.edi.edisax.model.internal.Delimiters;
-import org.smooks.edi.edisax.util.EDIUtils;
+import org.smooks.edi.edisax.util.CharSlices;
+import org.smooks.edi.edisax.util.SegmentSplitter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.InputSource;
@@ -52,35 +53,74 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Stack;
 
 /**
  * Buffered EDI Stream Segment reader.
+ * <br><br>
+ * A reader instance is not thread-safe.  It can be {@link #reset(InputSource, Delimiters) reset} and reused
+ * for reading another EDI stream, retaining its (already allocated) buffers.
+ * <br><br>
+ * EDI byte streams, and {@link ByteBuffer byte buffers} (e.g. a memory mapped EDI file), are decoded by the
+ * reader itself, so as the read {@link #changeEncoding(Charset) encoding can be changed} at any point in the
+ * stream, without needing to mark and reset the stream.  Single byte encodings (ASCII and ISO-8859-1 i.e. the
+ * UN/EDIFACT UNOA, UNOB and UNOC repertoires) are read without a {@link CharsetDecoder}.
  *
  * @author tfennelly
  */
 public class BufferedSegmentReader {
 
-    private static final int MAX_MARK_READ = 512;
+    private static final int READ_BLOCK_SIZE = 4096;
+    private static final int SEGMENT_BUFFER_SIZE = 512;
+    private static final int MAX_RETAINED_SEGMENT_BUFFER_SIZE = 64 * 1024;
+    // The character stream reads ahead of the chars read, by up to its own buffer size...
+    private static final int MAX_MARK_READ = 64 * 1024;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(BufferedSegmentReader.class);
 
     public static String IGNORE_CR_LF = "!$";
 
-    private InputStream underlyingByteStream;
-    private boolean marked = false;
     private Charset readEncoding;
     private Reader reader;
-    private StringBuffer segmentBuffer = new StringBuffer(512);
+    private StringBuilder segmentBuffer = new StringBuilder(SEGMENT_BUFFER_SIZE);
+    private StringBuffer legacySegmentBuffer;
     private String[] currentSegmentFields = null;
+    private final CharSlices currentSegmentFieldSlices = new CharSlices();
+    private boolean currentSegmentFieldSlicesLoaded = false;
+    private SegmentSplitter segmentSplitter;
     private int currentSegmentNumber = 0;
-    private Stack<Delimiters> delimitersStack = new Stack<Delimiters>();
+    private final Deque<Delimiters> delimitersStack = new ArrayDeque<Delimiters>();
     private Delimiters currentDelimiters;
     private BufferedSegmentListener segmentListener;
     private boolean ignoreNewLines;
-    private int charReadCount = 0;
-
+    private long charReadCount = 0;
+    private final char[] readBlock = new char[READ_BLOCK_SIZE];
+    private int readBlockPosition = 0;
+    private int readBlockLimit = 0;
+    private ByteBuffer byteSource;
+    private InputStream byteStream;
+    private InputStream underlyingByteStream;
+    private boolean marked;
+    private boolean byteStreamEnded;
+    private ByteBuffer byteStreamBlock;
+    private CharsetDecoder byteSourceDecoder;
+    private boolean byteSourceAscii;
+    private CharBuffer readBlockChars;
+    private int readBlockByteStart;
+    private boolean readBlockFirstDecoded;
+    private boolean byteSourceDecoderUsed;
+    private List<String> segmentSource;
+    private int segmentSourceIndex;
 
     /**
      * Construct the stream reader.
@@ -89,19 +129,162 @@ public class BufferedSegmentReader {
      * @param rootDelimiters Root currentDelimiters.  New currentDelimiters can be pushed and popped.
      */
     public BufferedSegmentReader(InputSource ediInputSource, Delimiters rootDelimiters) {
-        underlyingByteStream = ediInputSource.getByteStream();
-        reader = ediInputSource.getCharacterStream();
-        if (reader == null) {
-            readEncoding = Charset.defaultCharset();
-            reader = new InputStreamReader(underlyingByteStream, readEncoding);
-        } else if (reader instanceof InputStreamReader) {
-            readEncoding = Charset.forName(((InputStreamReader) reader).getEncoding());
+        reset(ediInputSource, rootDelimiters);
+    }
+
+    /**
+     * Construct the reader for reading EDI data from a byte stream.
+     *
+     * @param ediStream      EDI byte stream.
+     * @param encoding       The read encoding.
+     * @param rootDelimiters Root currentDelimiters.  New currentDelimiters can be pushed and popped.
+     */
+    public BufferedSegmentReader(InputStream ediStream, Charset encoding, Delimiters rootDelimiters) {
+        reset(ediStream, encoding, rootDelimiters);
+    }
+
+    /**
+     * Construct the reader for reading EDI data from a byte buffer e.g. a memory mapped EDI file.
+     *
+     * @param ediBytes       EDI data, from the buffer position to its limit.
+     * @param encoding       The read encoding.
+     * @param rootDelimiters Root currentDelimiters.  New currentDelimiters can be pushed and popped.
+     */
+    public BufferedSegmentReader(ByteBuffer ediBytes, Charset encoding, Delimiters rootDelimiters) {
+        reset(ediBytes, encoding, rootDelimiters);
+    }
+
+    /**
+     * Construct the reader for reading EDI segments already read off another reader e.g. a message block to be
+     * parsed on another thread.
+     *
+     * @param segments           The segments, as read into the {@link #getSegmentBuilder() segment buffer} of the
+     *                           other reader i.e. without their segment delimiters, and with escaped segment
+     *                           delimiters unescaped.
+     * @param firstSegmentNumber The {@link #getCurrentSegmentNumber() segment number} of the first segment.
+     * @param rootDelimiters     Root currentDelimiters.  New currentDelimiters can be pushed and popped.
+     */
+    public BufferedSegmentReader(List<String> segments, int firstSegmentNumber, Delimiters rootDelimiters) {
+        reader = null;
+        byteSource = null;
+        byteStream = null;
+        readEncoding = null;
+        resetState(rootDelimiters);
+        segmentSource = segments;
+        currentSegmentNumber = firstSegmentNumber - 1;
+    }
+
+    /**
+     * Reset the reader for reading a new EDI stream.
+     * <br><br>
+     * All reader state (segment buffer, delimiters stack, segment count, segment listener etc) is
+     * cleared.  The reader's buffers are retained and reused.
+     * <br><br>
+     * The input source character stream is read if it has one.  The byte stream is then only used for changing
+     * the read encoding (see {@link #mark()}).  Otherwise, the byte stream is read using the platform default
+     * encoding.
+     *
+     * @param ediInputSource EDI Stream input source.
+     * @param rootDelimiters Root currentDelimiters.  New currentDelimiters can be pushed and popped.
+     */
+    public void reset(InputSource ediInputSource, Delimiters rootDelimiters) {
+        Reader characterStream = ediInputSource.getCharacterStream();
+
+        if (characterStream == null) {
+            reset(ediInputSource.getByteStream(), Charset.defaultCharset(), rootDelimiters);
+        } else {
+            reader = characterStream;
+            byteSource = null;
+            byteStream = null;
+            if (characterStream instanceof InputStreamReader) {
+                readEncoding = Charset.forName(((InputStreamReader) characterStream).getEncoding());
+            } else {
+                readEncoding = null;
+            }
+            resetState(rootDelimiters);
+            underlyingByteStream = ediInputSource.getByteStream();
         }
+    }
+
+    /**
+     * Reset the reader for reading EDI data from a byte stream.
+     * <br><br>
+     * As with {@link #reset(InputSource, Delimiters)}, all reader state is cleared and the reader's buffers
+     * are retained and reused.
+     *
+     * @param ediStream      EDI byte stream.
+     * @param encoding       The read encoding.
+     * @param rootDelimiters Root currentDelimiters.  New currentDelimiters can be pushed and popped.
+     */
+    public void reset(InputStream ediStream, Charset encoding, Delimiters rootDelimiters) {
+        setByteStream(ediStream);
+        readEncoding = encoding;
+        setByteSourceEncoding(encoding);
+        resetState(rootDelimiters);
+    }
+
+    private void setByteStream(InputStream ediStream) {
+        if (byteStreamBlock == null) {
+            byteStreamBlock = ByteBuffer.allocate(READ_BLOCK_SIZE);
+        }
+        byteStreamBlock.clear().limit(0);
+        reader = null;
+        byteSource = byteStreamBlock;
+        byteStream = ediStream;
+        byteStreamEnded = false;
+    }
+
+    /**
+     * Reset the reader for reading EDI data from a byte buffer e.g. a memory mapped EDI file.
+     * <br><br>
+     * As with {@link #reset(InputSource, Delimiters)}, all reader state is cleared and the reader's buffers
+     * are retained and reused.
+     *
+     * @param ediBytes       EDI data, from the buffer position to its limit.
+     * @param encoding       The read encoding.
+     * @param rootDelimiters Root currentDelimiters.  New currentDelimiters can be pushed and popped.
+     */
+    public void reset(ByteBuffer ediBytes, Charset encoding, Delimiters rootDelimiters) {
+        reader = null;
+        byteSource = ediBytes;
+        byteStream = null;
+        byteStreamEnded = true;
+        readEncoding = encoding;
+        setByteSourceEncoding(encoding);
+        resetState(rootDelimiters);
+    }
+
+    private void resetState(Delimiters rootDelimiters) {
         this.currentDelimiters = rootDelimiters;
+
+        // Don't hang onto an unusually large segment buffer...
+        if (segmentBuffer.capacity() > MAX_RETAINED_SEGMENT_BUFFER_SIZE) {
+            segmentBuffer = new StringBuilder(SEGMENT_BUFFER_SIZE);
+        } else {
+            segmentBuffer.setLength(0);
+        }
+        legacySegmentBuffer = null;
+        delimitersStack.clear();
+        currentSegmentFields = null;
+        currentSegmentFieldSlicesLoaded = false;
+        currentSegmentNumber = 0;
+        segmentListener = null;
+        ignoreNewLines = false;
+        charReadCount = 0;
+        readBlockPosition = 0;
+        readBlockLimit = 0;
+        segmentSource = null;
+        segmentSourceIndex = 0;
+        underlyingByteStream = null;
+        marked = false;
     }
 
     /**
      * Try mark the stream so we can support changing of the reader encoding.
+     * <br><br>
+     * Only needed when reading the character stream of an input source which also has a byte stream.  Byte
+     * streams and byte buffers are decoded by the reader itself, so as their read encoding can be changed at any
+     * point without marking.
      *
      * @see #changeEncoding(Charset)
      */
@@ -114,48 +297,94 @@ public class BufferedSegmentReader {
             } else {
                 LOGGER.debug("Unable to mark EDI Reader for rest (to change reader encoding).  Underlying InputStream type '" + underlyingByteStream.getClass().getName() + "' does not support mark.");
             }
-        } else {
-            LOGGER.debug("Unable to mark EDI Reader for rest (to change reader encoding).  BufferedSegmentReader instance does not have access to the underlying InputStream.");
         }
     }
 
     /**
      * Change the encoding used to read the underlying EDI data stream.
      * <br><br>
-     * {@link #mark()} should have been called first.
+     * The chars following the last char read are decoded using the new encoding.  The underlying byte stream is
+     * not reset or re-read.  The first unread byte is located by decoding the bytes of the read block again, up to
+     * the last char read.  This is exact, unless the old encoding is a stateful encoding (e.g. ISO-2022) which
+     * shifted state within the read block.
      *
      * @param encoding The new encoding.
      * @return The old/replaced encoding if known, otherwise null.
-     * @throws IOException Failed to skip already read characters.
+     * @throws IOException           Failed to locate the first unread byte.
+     * @throws IllegalStateException The reader is reading a character stream and so does not have access to the
+     *                               underlying byte stream.
      */
     public Charset changeEncoding(Charset encoding) throws IOException {
-        if (underlyingByteStream == null) {
-            throw new IllegalStateException("Unable to change stream read encoding to '" + encoding + "'.  BufferedSegmentReader does not have access to the underlying stream.");
-        }
         if (readEncoding != null && encoding.equals(readEncoding)) {
             return readEncoding;
         }
-        if (!underlyingByteStream.markSupported()) {
-            LOGGER.debug("Unable to to change stream read encoding on a stream that does not support 'mark'.");
+        if (byteSource == null && underlyingByteStream == null) {
+            throw new IllegalStateException("Unable to change stream read encoding to '" + encoding + "'.  BufferedSegmentReader does not have access to the underlying stream.");
+        }
+        if (byteSource == null) {
+            return changeCharacterStreamEncoding(encoding);
+        }
+
+        // Move back to the first unread byte.  The bytes of the chars left in the read block are still
+        // in the byte source (it's only refilled once the read block is exhausted)...
+        int unreadChars = readBlockLimit - readBlockPosition;
+        if (unreadChars > 0) {
+            if (byteSourceDecoder != null) {
+                byteSource.position(decodedByteEnd(readBlockPosition));
+            } else {
+                byteSource.position(byteSource.position() - unreadChars);
+            }
+        }
+        LOGGER.debug("Changing EDI stream read encoding from '" + readEncoding + "' to '" + encoding + "' after " + charReadCount + " chars.");
+
+        // Anything left in the read block was decoded using the old encoding, so drop it...
+        setByteSourceEncoding(encoding);
+        readBlockPosition = 0;
+        readBlockLimit = 0;
+        try {
             return readEncoding;
+        } finally {
+            readEncoding = encoding;
         }
+    }
+
+    /**
+     * Switch from reading the character stream to decoding the {@link #mark() marked} byte stream underneath it.
+     * The character stream reads ahead, so the byte stream is reset and the chars read so far are skipped,
+     * assuming one byte per char (as the chars read before an encoding change are e.g. the UNA and UNB segments).
+     */
+    private Charset changeCharacterStreamEncoding(Charset encoding) throws IOException {
         if (!marked) {
             LOGGER.debug("Unable to to change stream read encoding on a stream.  'mark' was not called, or was called and failed.");
             return readEncoding;
         }
 
-        // reset the stream...
+        InputStream ediStream = underlyingByteStream;
         try {
-            underlyingByteStream.reset();
-            marked = false;
+            ediStream.reset();
         } catch (IOException e) {
             LOGGER.debug("Unable to to change stream read encoding on stream because reset failed.  Probably because the mark has been invalidated after reading more than " + MAX_MARK_READ + " bytes from the stream.", e);
             return readEncoding;
         }
+        for (long toSkip = charReadCount; toSkip > 0; ) {
+            long skipped = ediStream.skip(toSkip);
+            if (skipped <= 0) {
+                if (ediStream.read() == -1) {
+                    break;
+                }
+                skipped = 1;
+            }
+            toSkip -= skipped;
+        }
+        LOGGER.debug("Changing EDI stream read encoding from '" + readEncoding + "' to '" + encoding + "' after " + charReadCount + " chars.");
 
-        // Create a new reader and skip passed the already read characters...
-        reader = new InputStreamReader(underlyingByteStream, encoding);
-        underlyingByteStream.skip(charReadCount);
+        // Anything left in the read block was read off the character stream, so drop it...
+        setByteStream(ediStream);
+        setByteSourceEncoding(encoding);
+        underlyingByteStream = null;
+        marked = false;
+        readBlockPosition = 0;
+        readBlockLimit = 0;
         try {
             return readEncoding;
         } finally {
@@ -163,6 +392,45 @@ public class BufferedSegmentReader {
         }
     }
 
+    /**
+     * Decode the bytes of the read block again, using the (old) byte source decoder, to find where the bytes
+     * of the first chars of the read block end.  The read block chars are overwritten.
+     *
+     * @param numChars The number of chars.
+     * @return The byte source position of the byte following the bytes of the chars.
+     */
+    private int decodedByteEnd(int numChars) {
+        int byteLimit = byteSource.limit();
+        int byteEnd;
+
+        if (readBlockFirstDecoded) {
+            // Back to the decoder state the block was decoded from e.g. before a byte order mark...
+            byteSourceDecoder.reset();
+        }
+        byteSource.limit(byteSource.position()).position(readBlockByteStart);
+        readBlockChars.clear().limit(numChars);
+        // The decoder stops once the chars are decoded, leaving the bytes of the next char in the byte source...
+        byteSourceDecoder.decode(byteSource, readBlockChars, true);
+        byteEnd = byteSource.position();
+        byteSource.limit(byteLimit);
+
+        return byteEnd;
+    }
+
+    private void setByteSourceEncoding(Charset encoding) {
+        if (encoding.equals(StandardCharsets.ISO_8859_1) || encoding.equals(StandardCharsets.US_ASCII)) {
+            // Every byte maps to the char with the same value...
+            byteSourceDecoder = null;
+            byteSourceAscii = encoding.equals(StandardCharsets.US_ASCII);
+        } else {
+            byteSourceDecoder = encoding.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+            byteSourceDecoderUsed = false;
+            if (readBlockChars == null) {
+                readBlockChars = CharBuffer.wrap(readBlock);
+            }
+        }
+    }
+
     /**
      * Get the current delimiter set.
      *
@@ -185,7 +453,7 @@ public class BufferedSegmentReader {
     /**
      * Restore the parent delimiters set.
      * <br><br>
-     * Be sure to {@link #getDelimitersStack() get the delimiters stack} and check
+     * Be sure to {@link #getDelimitersDeque() get the delimiters stack} and check
      * that it is not empty before popping.
      */
     public void popDelimiters() {
@@ -196,8 +464,25 @@ public class BufferedSegmentReader {
      * Get the
      *
      * @return the delimitersStack
+     * @deprecated Use {@link #getDelimitersDeque()}.  This returns a copy of the delimiters stack, so changes
+     * to it are not reflected in the reader.  Use {@link #pushDelimiters(Delimiters)} and {@link #popDelimiters()}
+     * to change the delimiters.
      */
+    @Deprecated
     public Stack<Delimiters> getDelimitersStack() {
+        Stack<Delimiters> delimitersStackCopy = new Stack<Delimiters>();
+        for (Iterator<Delimiters> delimiters = delimitersStack.descendingIterator(); delimiters.hasNext(); ) {
+            delimitersStackCopy.push(delimiters.next());
+        }
+        return delimitersStackCopy;
+    }
+
+    /**
+     * Get the parent delimiters sets, innermost first.
+     *
+     * @return The delimiters stack.
+     */
+    public Deque<Delimiters> getDelimitersDeque() {
         return delimitersStack;
     }
 
@@ -213,6 +498,10 @@ public class BufferedSegmentReader {
         this.ignoreNewLines = ignoreNewLines;
     }
 
+    public boolean isIgnoreNewLines() {
+        return ignoreNewLines;
+    }
+
     /**
      * Read a fixed number of characters from the input source.
      *
@@ -223,6 +512,7 @@ public class BufferedSegmentReader {
      * @throws IOException Error reading from input source.
      */
     public String read(int numChars) throws IOException {
+        syncLegacySegmentBuffer();
         segmentBuffer.setLength(0);
         try {
             return peek(numChars);
@@ -263,6 +553,8 @@ public class BufferedSegmentReader {
     public String peek(int numChars, boolean ignoreLeadingWhitespace) throws IOException {
         boolean ignoreCRLF;
 
+        syncLegacySegmentBuffer();
+
         // Ignoring of new lines can be set as part of the segment delimiter, or
         // as a feature on the parser (the later is the preferred method)...
         ignoreCRLF = (currentDelimiters.ignoreCRLF() || ignoreNewLines);
@@ -328,10 +620,13 @@ public class BufferedSegmentReader {
      * @throws IOException Error reading from EDI stream.
      */
     public boolean moveToNextSegment(boolean clearBuffer) throws IOException {
+        syncLegacySegmentBuffer();
+        if (segmentSource != null) {
+            return moveToNextSourceSegment(clearBuffer);
+        }
+
         char[] segmentDelimiter = currentDelimiters.getSegmentDelimiter();
-        int delimiterLen = segmentDelimiter.length;
         String escape = currentDelimiters.getEscape();
-        int escapeLen = escape != null ? escape.length() : 0;
         boolean ignoreCRLF;
 
         int c = readChar();
@@ -344,6 +639,7 @@ public class BufferedSegmentReader {
             segmentBuffer.setLength(0);
         }
         currentSegmentFields = null;
+        currentSegmentFieldSlicesLoaded = false;
 
         // We reached the end of the stream the last time this method was
         // called - see the while loop below...
@@ -354,9 +650,123 @@ public class BufferedSegmentReader {
         // Ignore leading whitespace on a segment...
         c = forwardPastWhitespace(c);
 
+        // Read the next segment...
+        if (c != -1) {
+            if (segmentDelimiter.length == 1) {
+                // Push the char back into the read block and scan the block directly...
+                unreadChar();
+                scanToSegmentEnd(segmentDelimiter[0], (escape != null && escape.length() == 1 ? escape.charAt(0) : -1), ignoreCRLF);
+            } else {
+                readToSegmentEnd(c, segmentDelimiter, escape, ignoreCRLF);
+            }
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(segmentBuffer.toString());
+        }
+
+        currentSegmentNumber++;
+
+        if (segmentListener != null) {
+            return segmentListener.onSegment(this);
+        } else {
+            return true;
+        }
+    }
+
+    /**
+     * Move to the next of the segments the reader was {@link #BufferedSegmentReader(List, int, Delimiters) constructed with}.
+     *
+     * @param clearBuffer Clear the segment buffer before reading.
+     * @return True if a "next" segment exists, otherwise false.
+     */
+    private boolean moveToNextSourceSegment(boolean clearBuffer) {
+        if (clearBuffer) {
+            segmentBuffer.setLength(0);
+        }
+        currentSegmentFields = null;
+        currentSegmentFieldSlicesLoaded = false;
+
+        if (segmentSourceIndex == segmentSource.size()) {
+            return false;
+        }
+
+        String segment = segmentSource.get(segmentSourceIndex++);
+        segmentBuffer.append(segment);
+        charReadCount += segment.length();
+        currentSegmentNumber++;
+
+        if (segmentListener != null) {
+            return segmentListener.onSegment(this);
+        } else {
+            return true;
+        }
+    }
+
+    /**
+     * Scan the read block for a single character segment delimiter, copying the segment
+     * content into the segment buffer in slices.
+     *
+     * @param segmentDelimiter The segment delimiter char.
+     * @param escape           The escape char, or -1 if there is no (single char) escape.
+     * @param ignoreCRLF       Drop CR and LF characters from the segment.
+     * @throws IOException Error reading from EDI stream.
+     */
+    private void scanToSegmentEnd(char segmentDelimiter, int escape, boolean ignoreCRLF) throws IOException {
+        boolean escapingMode = false;
+
+        while (readBlockPosition < readBlockLimit || fillReadBlock()) {
+            char[] block = readBlock;
+            int limit = readBlockLimit;
+            int sliceStart = readBlockPosition;
+            int i = sliceStart;
+
+            while (i < limit) {
+                char theChar = block[i];
+
+                if (ignoreCRLF && (theChar == '\n' || theChar == '\r')) {
+                    segmentBuffer.append(block, sliceStart, i - sliceStart);
+                    sliceStart = i + 1;
+                } else if (escapingMode) {
+                    escapingMode = false;
+                    if (theChar == segmentDelimiter) {
+                        // An escaped segment delimiter.  Drop the escape char (already the last char
+                        // in the segment, possibly copied from the previous block) and keep the delimiter...
+                        segmentBuffer.append(block, sliceStart, i - sliceStart);
+                        segmentBuffer.setLength(segmentBuffer.length() - 1);
+                        sliceStart = i;
+                    }
+                } else if (theChar == segmentDelimiter) {
+                    // We've reached the end of a segment.  Copy up to, but not including, the delimiter...
+                    segmentBuffer.append(block, sliceStart, i - sliceStart);
+                    charReadCount += (i + 1 - readBlockPosition);
+                    readBlockPosition = i + 1;
+                    return;
+                } else if (theChar == escape) {
+                    escapingMode = true;
+                }
+                i++;
+            }
+
+            segmentBuffer.append(block, sliceStart, limit - sliceStart);
+            charReadCount += (limit - readBlockPosition);
+            readBlockPosition = limit;
+        }
+    }
+
+    /**
+     * Read to the end of the current segment, char by char, for a multi-character segment delimiter.
+     *
+     * @param c                The first char of the segment.
+     * @param segmentDelimiter The segment delimiter chars.
+     * @param escape           The escape sequence.
+     * @param ignoreCRLF       Drop CR and LF characters from the segment.
+     * @throws IOException Error reading from EDI stream.
+     */
+    private void readToSegmentEnd(int c, char[] segmentDelimiter, String escape, boolean ignoreCRLF) throws IOException {
+        int delimiterLen = segmentDelimiter.length;
         boolean escapingMode = false;
 
-        // Read the next segment...
         while (c != -1) {
             char theChar = (char) c;
 
@@ -404,18 +814,6 @@ public class BufferedSegmentReader {
 
             c = readChar();
         }
-
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug(segmentBuffer.toString());
-        }
-
-        currentSegmentNumber++;
-
-        if (segmentListener != null) {
-            return segmentListener.onSegment(this);
-        } else {
-            return true;
-        }
     }
 
     /**
@@ -424,6 +822,7 @@ public class BufferedSegmentReader {
      * @return True if a current segment exists, otherwise false.
      */
     public boolean hasCurrentSegment() {
+        syncLegacySegmentBuffer();
         if (segmentListener != null) {
             return segmentListener.onSegment(this);
         } else {
@@ -435,11 +834,42 @@ public class BufferedSegmentReader {
      * Get the segment buffer.
      *
      * @return The segment buffer.
+     * @deprecated Use {@link #getSegmentBuilder()}.  This returns a copy of the segment buffer.  Changes to the
+     * copy are written back into the segment buffer the next time the reader uses it, but the copy is not
+     * updated by the reader.
      */
+    @Deprecated
     public StringBuffer getSegmentBuffer() {
+        syncLegacySegmentBuffer();
+        legacySegmentBuffer = new StringBuffer(segmentBuffer);
+        return legacySegmentBuffer;
+    }
+
+    /**
+     * Get the segment buffer.
+     *
+     * @return The segment buffer.
+     */
+    public StringBuilder getSegmentBuilder() {
+        syncLegacySegmentBuffer();
         return segmentBuffer;
     }
 
+    /**
+     * Write back the changes made to the copy of the segment buffer returned by {@link #getSegmentBuffer()}.
+     */
+    private void syncLegacySegmentBuffer() {
+        if (legacySegmentBuffer != null) {
+            if (!legacySegmentBuffer.toString().contentEquals(segmentBuffer)) {
+                segmentBuffer.setLength(0);
+                segmentBuffer.append(legacySegmentBuffer);
+                currentSegmentFields = null;
+                currentSegmentFieldSlicesLoaded = false;
+            }
+            legacySegmentBuffer = null;
+        }
+    }
+
     /**
      * Get the current EDI segment fields.
      *
@@ -447,24 +877,68 @@ public class BufferedSegmentReader {
      * @throws IllegalStateException No current Segment.
      */
     public String[] getCurrentSegmentFields() throws IllegalStateException {
+        syncLegacySegmentBuffer();
         assertCurrentSegmentExists();
 
         if (currentSegmentFields == null) {
-            currentSegmentFields = EDIUtils.split(segmentBuffer.toString(), currentDelimiters.getField(), currentDelimiters.getEscape());
-
-            // If the segment delimiter is a LF, strip off any preceding CR characters...
-            if (currentDelimiters.getSegment().equals("\n")) {
-                int endIndex = currentSegmentFields.length - 1;
-                if (currentSegmentFields[endIndex].endsWith("\r")) {
-                    int stringLen = currentSegmentFields[endIndex].length();
-                    currentSegmentFields[endIndex] = currentSegmentFields[endIndex].substring(0, stringLen - 1);
-                }
+            // Splitting the field slices further never modifies them, so they can be copied at any time...
+            CharSlices fieldSlices = getCurrentSegmentFieldSlices();
+            currentSegmentFields = new String[fieldSlices.size()];
+            for (int i = 0; i < currentSegmentFields.length; i++) {
+                currentSegmentFields[i] = fieldSlices.toString(i);
             }
         }
 
         return currentSegmentFields;
     }
 
+    /**
+     * Get the current EDI segment fields as a set of {@link CharSlices}.
+     * <br><br>
+     * Unlike {@link #getCurrentSegmentFields()}, this does not allocate a {@link String} per field.
+     * The returned instance is reused (and its content overwritten) for every segment, so it's only
+     * valid until the next call to {@link #moveToNextSegment()}.
+     *
+     * @return The current EDI segment field slices.
+     * @throws IllegalStateException No current Segment.
+     */
+    public CharSlices getCurrentSegmentFieldSlices() throws IllegalStateException {
+        syncLegacySegmentBuffer();
+        assertCurrentSegmentExists();
+
+        if (!currentSegmentFieldSlicesLoaded) {
+            // If the segment delimiter is a LF, strip off any preceding CR characters...
+            getSegmentSplitter().splitFields(segmentBuffer, currentDelimiters.getSegment().equals("\n"), currentSegmentFieldSlices);
+            currentSegmentFieldSlicesLoaded = true;
+        }
+
+        return currentSegmentFieldSlices;
+    }
+
+    /**
+     * Is the code of the current segment (its first field) equal to the supplied segment code.
+     * <br><br>
+     * Unlike comparing the first of the {@link #getCurrentSegmentFields()}, this does not allocate a
+     * {@link String} per field.
+     *
+     * @param segmentCode The segment code.
+     * @return True if the current segment has the supplied segment code, otherwise false.
+     * @throws IllegalStateException No current Segment.
+     */
+    public boolean segmentCodeEquals(String segmentCode) throws IllegalStateException {
+        CharSlices fieldSlices = getCurrentSegmentFieldSlices();
+        return fieldSlices.size() != 0 && fieldSlices.equals(0, segmentCode);
+    }
+
+    private SegmentSplitter getSegmentSplitter() {
+        if (segmentSplitter == null) {
+            segmentSplitter = new SegmentSplitter(currentDelimiters);
+        } else if (segmentSplitter.getDelimiters() != currentDelimiters) {
+            segmentSplitter.setDelimiters(currentDelimiters);
+        }
+        return segmentSplitter;
+    }
+
     /**
      * Get the current segment "number".
      * <br><br>
@@ -476,6 +950,15 @@ public class BufferedSegmentReader {
         return currentSegmentNumber;
     }
 
+    /**
+     * Get the number of characters read from the EDI stream.
+     *
+     * @return The number of characters read.
+     */
+    public long getCharReadCount() {
+        return charReadCount;
+    }
+
     private int forwardPastWhitespace() throws IOException {
         return forwardPastWhitespace(readChar());
     }
@@ -494,11 +977,118 @@ public class BufferedSegmentReader {
     }
 
     private int readChar() throws IOException {
-        try {
-            return reader.read();
-        } finally {
-            charReadCount++;
+        if (readBlockPosition == readBlockLimit && !fillReadBlock()) {
+            return -1;
+        }
+        charReadCount++;
+        return readBlock[readBlockPosition++];
+    }
+
+    /**
+     * Push the last char returned by {@link #readChar()} back into the read block.
+     */
+    private void unreadChar() {
+        readBlockPosition--;
+        charReadCount--;
+    }
+
+    /**
+     * Fill the read block from the underlying reader.
+     *
+     * @return True if chars were read into the block, false if the end of the stream was reached.
+     * @throws IOException Error reading from EDI stream.
+     */
+    private boolean fillReadBlock() throws IOException {
+        int numRead;
+
+        if (segmentSource != null) {
+            // The segments are only read whole, through moveToNextSegment()...
+            numRead = -1;
+        } else if (byteSource != null) {
+            numRead = fillReadBlockFromBytes();
+        } else {
+            do {
+                numRead = reader.read(readBlock, 0, readBlock.length);
+            } while (numRead == 0);
+        }
+
+        if (numRead == -1) {
+            readBlockPosition = 0;
+            readBlockLimit = 0;
+            return false;
+        }
+        readBlockPosition = 0;
+        readBlockLimit = numRead;
+
+        return true;
+    }
+
+    /**
+     * Fill the read block from the byte source, reading more bytes from the byte stream (if any) as needed.
+     *
+     * @return The number of chars read into the block, or -1 if the end of the stream was reached.
+     * @throws IOException Error reading from EDI stream.
+     */
+    private int fillReadBlockFromBytes() throws IOException {
+        while (true) {
+            if (byteSourceDecoder == null) {
+                if (byteSource.hasRemaining()) {
+                    int position = byteSource.position();
+                    int numRead = Math.min(readBlock.length, byteSource.remaining());
+
+                    for (int i = 0; i < numRead; i++) {
+                        int b = byteSource.get(position + i) & 0xFF;
+                        // Non ASCII bytes are malformed ASCII.  Replace them, as a decoder would...
+                        readBlock[i] = (byteSourceAscii && b > 0x7F ? '\uFFFD' : (char) b);
+                    }
+                    byteSource.position(position + numRead);
+
+                    return numRead;
+                } else if (byteStreamEnded) {
+                    return -1;
+                }
+            } else {
+                int byteStart = byteSource.position();
+
+                readBlockChars.clear();
+                byteSourceDecoder.decode(byteSource, readBlockChars, byteStreamEnded);
+                if (readBlockChars.position() > 0) {
+                    // Remember where the block was decoded from, for changing the encoding part way through it...
+                    readBlockByteStart = byteStart;
+                    readBlockFirstDecoded = !byteSourceDecoderUsed;
+                    byteSourceDecoderUsed = true;
+                    return readBlockChars.position();
+                } else if (byteStreamEnded) {
+                    return -1;
+                }
+                if (byteSource.position() != byteStart) {
+                    byteSourceDecoderUsed = true;
+                }
+                // Need more bytes to decode the next char...
+            }
+            readByteStream();
+        }
+    }
+
+    /**
+     * Read the next block of bytes from the byte stream, keeping any bytes not yet decoded.
+     *
+     * @throws IOException Error reading from EDI stream.
+     */
+    private void readByteStream() throws IOException {
+        int numRead;
+
+        byteSource.compact();
+        do {
+            numRead = byteStream.read(byteSource.array(), byteSource.arrayOffset() + byteSource.position(), byteSource.remaining());
+        } while (numRead == 0);
+
+        if (numRead == -1) {
+            byteStreamEnded = true;
+        } else {
+            byteSource.position(byteSource.position() + numRead);
         }
+        byteSource.flip();
     }
 
     /**
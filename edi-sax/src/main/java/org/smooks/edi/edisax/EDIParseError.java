@@ -0,0 +1,107 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax;
+
+import org.smooks.edi.edisax.model.internal.MappingNode;
+
+/**
+ * An EDI message error recorded by an {@link EDIParseErrorCollector}, in place of the {@link EDIParseException}
+ * that would otherwise have stopped the parse.
+ */
+public class EDIParseError {
+
+    private final int segmentNumber;
+    private final MappingNode node;
+    private final int field;
+    private final int component;
+    private final String value;
+    private final String message;
+
+    /**
+     * Public constructor.
+     *
+     * @param segmentNumber The number of the segment on which the error occurred.
+     * @param node          The Segment, Field, Component or Sub-Component where the error occurred.
+     * @param field         The field number (base 1) within the segment, or 0 if the error is not on a field.
+     * @param component     The component number (base 1) within the field, or 0 if the error is not on a component.
+     * @param value         The offending value, or <code>null</code> if the error is not on a value.
+     * @param message       The error message.
+     */
+    public EDIParseError(int segmentNumber, MappingNode node, int field, int component, String value, String message) {
+        this.segmentNumber = segmentNumber;
+        this.node = node;
+        this.field = field;
+        this.component = component;
+        this.value = value;
+        this.message = message;
+    }
+
+    public int getSegmentNumber() {
+        return segmentNumber;
+    }
+
+    public MappingNode getNode() {
+        return node;
+    }
+
+    public int getField() {
+        return field;
+    }
+
+    public int getComponent() {
+        return component;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return message;
+    }
+}
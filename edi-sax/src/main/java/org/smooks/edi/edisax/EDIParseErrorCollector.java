@@ -0,0 +1,115 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the errors in an EDI message, so as the parse carries on past them instead of failing on the first one.
+ * <br><br>
+ * When set on an {@link EDIParser} (or a {@link org.smooks.edi.edisax.unedifact.UNEdifactInterchangeParser}):
+ * <ul>
+ *  <li>Value errors (type and length validation, missing required values) are recorded and the value is mapped as usual.</li>
+ *  <li>Field, component and sub-component count errors are recorded and the offending field or component is not mapped.</li>
+ *  <li>Segment errors (missing required segments, unexpected segments) are recorded and parsing resumes at the next segment.</li>
+ *  <li>A UN/EDIFACT message block with no mapping model is recorded and skipped, resuming at the next UNH segment.</li>
+ * </ul>
+ * The collector holds at most <code>maxErrors</code> errors.  Once it is full, the next error fails the parse with
+ * its {@link EDIParseException}, as it would without a collector.
+ * <br><br>
+ * A collector can be shared by concurrently parsed message blocks, in which case the errors are recorded in the
+ * order they occur, not necessarily in interchange order.
+ */
+public class EDIParseErrorCollector {
+
+    private final int maxErrors;
+    private final List<EDIParseError> errors = new ArrayList<EDIParseError>();
+
+    /**
+     * Public constructor.
+     *
+     * @param maxErrors The maximum number of errors collected before the parse fails.
+     */
+    public EDIParseErrorCollector(int maxErrors) {
+        if (maxErrors < 1) {
+            throw new IllegalArgumentException("'maxErrors' must be at least 1.");
+        }
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Add an error.
+     *
+     * @param error The error.
+     * @return True if the error was added, or false if the collector is full.
+     */
+    public synchronized boolean add(EDIParseError error) {
+        if (errors.size() >= maxErrors) {
+            return false;
+        }
+        errors.add(error);
+        return true;
+    }
+
+    public synchronized List<EDIParseError> getErrors() {
+        return Collections.unmodifiableList(new ArrayList<EDIParseError>(errors));
+    }
+
+    public synchronized boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    public synchronized boolean isFull() {
+        return errors.size() >= maxErrors;
+    }
+
+    public int getMaxErrors() {
+        return maxErrors;
+    }
+
+    public synchronized void clear() {
+        errors.clear();
+    }
+}
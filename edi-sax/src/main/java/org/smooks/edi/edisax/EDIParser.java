@@ -43,8 +43,12 @@
 package org.smooks.edi.edisax;
 
 import org.smooks.assertion.AssertArgument;
+import org.smooks.edi.edisax.metrics.EDIMetrics;
+import org.smooks.edi.edisax.metrics.NoOpEDIMetrics;
 import org.smooks.edi.edisax.model.EdifactModel;
 import org.smooks.edi.edisax.model.internal.*;
+import org.smooks.edi.edisax.util.CharSlices;
+import org.smooks.edi.edisax.util.SegmentSplitter;
 import org.smooks.edi.edisax.util.EDIUtils;
 import org.smooks.namespace.NamespaceDeclarationStack;
 import org.smooks.resource.URIResourceLocator;
@@ -55,10 +59,15 @@ import javax.xml.XMLConstants;
 import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -148,6 +157,11 @@ public class EDIParser implements XMLReader {
     public static final String FEATURE_VALIDATE = "http://xml.org/sax/features/validation";
     public static final String FEATURE_IGNORE_NEWLINES = "http://xml.org/sax/features/ignore-newlines";
     public static final String FEATURE_IGNORE_EMPTY_NODES = "http://smooks.org/edi/sax/features/ignore-empty-nodes";
+    /**
+     * Don't fire the formatting whitespace (new line and tab indentation) {@link ContentHandler#characters(char[], int, int) characters}
+     * events before and after elements.  Off by default.
+     */
+    public static final String FEATURE_OMIT_INDENTATION = "http://smooks.org/edi/sax/features/omit-indentation";
     private static final Attributes EMPTY_ATTRIBS = new AttributesImpl();
 
     private Map<String, Boolean> features;
@@ -160,7 +174,23 @@ public class EDIParser implements XMLReader {
 
     private EdifactModel edifactModel;
     private BufferedSegmentReader segmentReader;
+    private BufferedSegmentReader ownSegmentReader; // Reused across parse(InputSource) calls
     private Boolean ignoreEmptyNodes;
+    private Boolean omitIndentation;
+    private Boolean validate;
+    private EDIParseErrorCollector errorCollector;
+    private EDIMetrics metrics = NoOpEDIMetrics.INSTANCE;
+
+    // Reusable slice tables for the field repeat, component and sub-component levels of the segment being mapped...
+    private final CharSlices fieldRepeatSlices = new CharSlices();
+    private final CharSlices componentSlices = new CharSlices();
+    private final CharSlices subComponentSlices = new CharSlices();
+    private CharSlices loadedFieldSlices;
+    private char[] unescapeBuffer;
+
+    // Namespace prefixes in scope, by namespace, and the depths of the elements declaring namespaces...
+    private final Map<String, String> namespacePrefixes = new HashMap<String, String>();
+    private final Deque<Integer> namespaceScopeDepths = new ArrayDeque<Integer>();
 
     /**
      * Set the {@link NamespaceDeclarationStack} to be used by the reader instance.
@@ -169,6 +199,7 @@ public class EDIParser implements XMLReader {
      */
     public void setNamespaceDeclarationStack(NamespaceDeclarationStack nsStack) {
         this.nsStack = nsStack;
+        namespacePrefixes.clear();
     }
 
     /**
@@ -375,6 +406,66 @@ public class EDIParser implements XMLReader {
      * Parse an EDI InputSource.
      */
     public void parse(InputSource ediInputSource) throws IOException, SAXException {
+        assertParseable();
+
+        try {
+            // Create (or reset) a reader for reading the EDI segments...
+            if (ownSegmentReader == null) {
+                ownSegmentReader = new BufferedSegmentReader(ediInputSource, edifactModel.getDelimiters());
+            } else {
+                ownSegmentReader.reset(ediInputSource, edifactModel.getDelimiters());
+            }
+            parseOwnSegmentReader();
+        } finally {
+            contentHandler = null;
+        }
+    }
+
+    /**
+     * Parse an EDI file, read using the platform default encoding.
+     *
+     * @see #parse(Path, Charset)
+     */
+    public void parse(Path ediFile) throws IOException, SAXException {
+        parse(ediFile, Charset.defaultCharset());
+    }
+
+    /**
+     * Parse an EDI file.
+     * <br><br>
+     * The file is memory mapped and read directly from the mapping. For the single byte encodings (ASCII and
+     * ISO-8859-1), the file bytes are read without going through a {@link java.nio.charset.CharsetDecoder}.
+     *
+     * @param ediFile  The EDI file.
+     * @param encoding The file encoding.
+     */
+    public void parse(Path ediFile, Charset encoding) throws IOException, SAXException {
+        AssertArgument.isNotNull(ediFile, "ediFile");
+        AssertArgument.isNotNull(encoding, "encoding");
+        assertParseable();
+
+        ByteBuffer ediBytes = EDIUtils.mapFile(ediFile);
+        if (ediBytes == null) {
+            // Too large to map, so read it as a stream...
+            try (Reader ediReader = new InputStreamReader(Files.newInputStream(ediFile), encoding)) {
+                parse(new InputSource(ediReader));
+            }
+            return;
+        }
+
+        try {
+            if (ownSegmentReader == null) {
+                ownSegmentReader = new BufferedSegmentReader(ediBytes, encoding, edifactModel.getDelimiters());
+            } else {
+                ownSegmentReader.reset(ediBytes, encoding, edifactModel.getDelimiters());
+            }
+            parseOwnSegmentReader();
+        } finally {
+            contentHandler = null;
+        }
+    }
+
+    private void assertParseable() {
         if (contentHandler == null) {
             throw new IllegalStateException("'contentHandler' not set.  Cannot parse EDI stream.");
         }
@@ -382,22 +473,23 @@ public class EDIParser implements XMLReader {
         if (edifactModel == null || edifactModel.getEdimap() == null) {
             throw new IllegalStateException("'mappingModel' not set.  Cannot parse EDI stream.");
         }
+    }
 
-        try {
-            // Create a reader for reading the EDI segments...
-            segmentReader = new BufferedSegmentReader(ediInputSource, edifactModel.getDelimiters());
-            segmentReader.setIgnoreNewLines(getFeature(FEATURE_IGNORE_NEWLINES));
+    private void parseOwnSegmentReader() throws IOException, SAXException {
+        segmentReader = ownSegmentReader;
+        segmentReader.setIgnoreNewLines(getFeature(FEATURE_IGNORE_NEWLINES));
 
-            // Initialize the indent counter...
-            indentDepth = 0;
+        // Initialize the indent counter...
+        indentDepth = 0;
 
-            // Fire the startDocument event, as well as the startElement event...
-            contentHandler.startDocument();
+        // Fire the startDocument event, as well as the startElement event...
+        contentHandler.startDocument();
+        try {
             parse(false);
-            contentHandler.endDocument();
         } finally {
-            contentHandler = null;
+            metrics.streamRead(segmentReader.getCurrentSegmentNumber(), segmentReader.getCharReadCount());
         }
+        contentHandler.endDocument();
     }
 
     /**
@@ -428,20 +520,54 @@ public class EDIParser implements XMLReader {
         return this;
     }
 
+    /**
+     * Collect the message errors, parsing on past them, instead of failing on the first one.
+     * See {@link EDIParseErrorCollector}.
+     *
+     * @param errorCollector The error collector, or <code>null</code> to fail on the first error (the default).
+     */
+    public void setErrorCollector(EDIParseErrorCollector errorCollector) {
+        this.errorCollector = errorCollector;
+    }
+
+    public EDIParseErrorCollector getErrorCollector() {
+        return errorCollector;
+    }
+
+    /**
+     * Set the {@link EDIMetrics} to which the parser reports.
+     *
+     * @param metrics The metrics, or <code>null</code> to report nothing (the default).
+     */
+    public void setMetrics(EDIMetrics metrics) {
+        this.metrics = (metrics != null ? metrics : NoOpEDIMetrics.INSTANCE);
+    }
+
+    public EDIMetrics getMetrics() {
+        return metrics;
+    }
+
     private void parse(boolean indent) throws SAXException, IOException, EDIParseException {
+        long startTime = (metrics.isEnabled() ? System.nanoTime() : 0);
         boolean ignoreUnmappedSegment = edifactModel.getEdimap().isIgnoreUnmappedSegments();
 
+        // The namespace declarations in scope may have changed since the last parse...
+        namespacePrefixes.clear();
+        namespaceScopeDepths.clear();
+
         startElement(edifactModel.getEdimap().getSegments(), indent);
 
         // Work through all the segments in the model.  Move to the first segment before starting...
         if (segmentReader.moveToNextSegment()) {
-            mapSegments(edifactModel.getEdimap().getSegments().getSegments());
+            mapSegments(edifactModel.getEdimap().getSegments());
 
             // If we reach the end of the mapping model and we still have more EDI segments in the message....
             while (segmentReader.hasCurrentSegment()) {
-                if (!EMPTY_LINE.matcher(segmentReader.getSegmentBuffer().toString()).matches()
+                if (!EMPTY_LINE.matcher(segmentReader.getSegmentBuilder().toString()).matches()
                         && !ignoreUnmappedSegment) {
-                    throw new EDIParseException(edifactModel.getEdimap(), "Reached end of mapping model but there are more EDI segments in the incoming message.  Read " + segmentReader.getCurrentSegmentNumber() + " segment(s). Current EDI segment is [" + segmentReader.getSegmentBuffer() + "]");
+                    // Once collected, the rest of the segments are skipped...
+                    collectError(currentSegmentCode(), new EDIParseException(edifactModel.getEdimap(), "Reached end of mapping model but there are more EDI segments in the incoming message.  Read " + segmentReader.getCurrentSegmentNumber() + " segment(s). Current EDI segment is [" + segmentReader.getSegmentBuilder() + "]"), null, 0, 0, null);
+                    ignoreUnmappedSegment = true;
                 }
                 segmentReader.moveToNextSegment();
             }
@@ -449,6 +575,10 @@ public class EDIParser implements XMLReader {
 
         // Fire the endDocument event, as well as the endElement event...
         endElement(edifactModel.getEdimap().getSegments(), true);
+
+        if (metrics.isEnabled()) {
+            metrics.messageParsed(System.nanoTime() - startTime);
+        }
     }
 
     /**
@@ -456,12 +586,12 @@ public class EDIParser implements XMLReader {
      * <br><br>
      * Reads the segments from the input stream and maps them based on the supplied list of expected segments.
      *
-     * @param expectedSegments The list of expected segments.
+     * @param parentSegmentGroup The segment group containing the list of expected segments.
      * @throws IOException  Error reading an EDI segment from the input stream.
      * @throws SAXException EDI processing exception.
      */
-    private void mapSegments(List<SegmentGroup> expectedSegments) throws IOException, SAXException {
-        mapSegments(expectedSegments, null);
+    private void mapSegments(SegmentGroup parentSegmentGroup) throws IOException, SAXException {
+        mapSegments(parentSegmentGroup, null);
     }
 
     /**
@@ -469,21 +599,24 @@ public class EDIParser implements XMLReader {
      * <br><br>
      * Reads the segments from the input stream and maps them based on the supplied list of expected segments.
      *
-     * @param expectedSegments       The list of expected segments.
+     * @param parentSegmentGroup     The segment group containing the list of expected segments.
      * @param preLoadedSegmentFields Preloaded segment.  This can happen in the case of a segmentGroup.
      * @throws IOException  Error reading an EDI segment from the input stream.
      * @throws SAXException EDI processing exception.
      */
-    private void mapSegments(List<SegmentGroup> expectedSegments, String[] preLoadedSegmentFields) throws IOException, SAXException {
+    private void mapSegments(SegmentGroup parentSegmentGroup, CharSlices preLoadedSegmentFields) throws IOException, SAXException {
+        List<SegmentGroup> expectedSegments = parentSegmentGroup.getSegments();
         int segmentMappingIndex = 0; // The current index within the supplied segment list.
         int segmentProcessingCount = 0; // The number of times the current segment definition from the supplied segment list has been applied to message segments on the incomming EDI message.
-        String[] currentSegmentFields = preLoadedSegmentFields;
+        CharSlices currentSegmentFields = preLoadedSegmentFields;
         boolean ignoreUnmappedSegment = edifactModel.getEdimap().isIgnoreUnmappedSegments(); // Used to relax parsing compared to the mapping model
 
         if (expectedSegments.size() == 0) {
             return;
         }
 
+        SegcodeDispatchTable dispatchTable = parentSegmentGroup.getDispatchTable();
+
         while (segmentMappingIndex < expectedSegments.size() && segmentReader.hasCurrentSegment()) {
             SegmentGroup expectedSegmentGroup = expectedSegments.get(segmentMappingIndex);
             int minOccurs = expectedSegmentGroup.getMinOccurs();
@@ -501,35 +634,35 @@ public class EDIParser implements XMLReader {
             // Only load the next segment if currentSegmentFields == null i.e. we don't have a set of
             // preLoadedSegmentFields (see method args) that need to be processed first...
             if (currentSegmentFields == null) {
-                currentSegmentFields = segmentReader.getCurrentSegmentFields();
+                currentSegmentFields = segmentReader.getCurrentSegmentFieldSlices();
             }
 
             // If the current segment being read from the incoming message doesn't match the expected
             // segment code....
-            if (!currentSegmentFields[0].equals(expectedSegmentGroup.getSegcode())) {
-                Matcher matcher = expectedSegmentGroup.getSegcodePattern().matcher(segmentReader.getSegmentBuffer());
-                if (!matcher.matches()) {
+            if (currentSegmentFields.size() == 0 || !currentSegmentFields.equals(0, expectedSegmentGroup.getSegcode())) {
+                if (!segcodeMatches(dispatchTable, segmentMappingIndex, expectedSegmentGroup)) {
                     if (segmentProcessingCount < minOccurs) {
                         // check if strict segment matching is inforced
                         if (!ignoreUnmappedSegment) {
-                            // If we haven't read the minimum number of instances of the current "expected" segment, raise an error...
-                            throw new EDIParseException(edifactModel.getEdimap(), "Must be a minimum of " + minOccurs + " instances of segment [" + expectedSegmentGroup.getSegcode() + "].  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedSegmentGroup, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                            // If we haven't read the minimum number of instances of the current "expected" segment, raise an error.
+                            // Once collected, carry on as though the minimum had been read...
+                            collectError(currentSegmentCode(), new EDIParseException(edifactModel.getEdimap(), "Must be a minimum of " + minOccurs + " instances of segment [" + expectedSegmentGroup.getSegcode() + "].  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedSegmentGroup, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields()), expectedSegmentGroup, 0, 0, null);
                         } else {
                             // skip unmapped current segment
                             segmentReader.moveToNextSegment();
                             currentSegmentFields = null;
                             // check that there still are messages in the EDI message stream for the required segments in the model
                             if (!segmentReader.hasCurrentSegment()) {
-                                throw new EDIParseException(edifactModel.getEdimap(), "Reached end of EDI message stream but there must be a minimum of " + minOccurs + " instances of segment [" + expectedSegmentGroup.getSegcode() + "].  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedSegmentGroup, segmentReader.getCurrentSegmentNumber(), null);
+                                collectError(null, new EDIParseException(edifactModel.getEdimap(), "Reached end of EDI message stream but there must be a minimum of " + minOccurs + " instances of segment [" + expectedSegmentGroup.getSegcode() + "].  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedSegmentGroup, segmentReader.getCurrentSegmentNumber(), null), expectedSegmentGroup, 0, 0, null);
                             }
                             continue;
                         }
-                    } else {
-                        // Otherwise, move to the next "expected" segment and start the loop again...
-                        segmentMappingIndex++;
-                        segmentProcessingCount = 0;
-                        continue;
                     }
+
+                    // Otherwise, move to the next "expected" segment that might match and start the loop again...
+                    segmentMappingIndex = nextCandidateSegment(dispatchTable, segmentMappingIndex + 1, currentSegmentFields);
+                    segmentProcessingCount = 0;
+                    continue;
                 }
             }
 
@@ -547,7 +680,7 @@ public class EDIParser implements XMLReader {
                 mapSegment(currentSegmentFields, (Segment) expectedSegmentGroup);
             } else {
                 startElement(expectedSegmentGroup, true);
-                mapSegments(expectedSegmentGroup.getSegments(), currentSegmentFields);
+                mapSegments(expectedSegmentGroup, currentSegmentFields);
                 endElement(expectedSegmentGroup, true);
             }
 
@@ -556,11 +689,39 @@ public class EDIParser implements XMLReader {
             currentSegmentFields = null;
 
             if (segmentProcessingCount < minOccurs && !segmentReader.hasCurrentSegment()) {
-                throw new EDIParseException(edifactModel.getEdimap(), "Reached end of EDI message stream but there must be a minimum of " + minOccurs + " instances of segment [" + expectedSegmentGroup.getSegcode() + "].  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedSegmentGroup, segmentReader.getCurrentSegmentNumber(), null);
+                collectError(null, new EDIParseException(edifactModel.getEdimap(), "Reached end of EDI message stream but there must be a minimum of " + minOccurs + " instances of segment [" + expectedSegmentGroup.getSegcode() + "].  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedSegmentGroup, segmentReader.getCurrentSegmentNumber(), null), expectedSegmentGroup, 0, 0, null);
             }
         }
     }
 
+    /**
+     * Does the current segment match the segcode of the expected segment group (where the segment tag
+     * has already been found not to be equal to the segcode).
+     *
+     * @param dispatchTable        The dispatch table for the list containing the expected segment group.
+     * @param segmentMappingIndex  The index of the expected segment group in that list.
+     * @param expectedSegmentGroup The expected segment group.
+     * @return True if the current segment matches, otherwise false.
+     */
+    private boolean segcodeMatches(SegcodeDispatchTable dispatchTable, int segmentMappingIndex, SegmentGroup expectedSegmentGroup) {
+        StringBuilder segmentBuffer = segmentReader.getSegmentBuilder();
+
+        if (dispatchTable.isLiteral(segmentMappingIndex)) {
+            // A plain segcode only "pattern matches" a segment consisting of nothing but the segcode...
+            String segcode = expectedSegmentGroup.getSegcode();
+            return segmentBuffer.length() == segcode.length() && segcode.contentEquals(segmentBuffer);
+        }
+
+        return expectedSegmentGroup.getSegcodePattern().matcher(segmentBuffer).matches();
+    }
+
+    private int nextCandidateSegment(SegcodeDispatchTable dispatchTable, int segmentMappingIndex, CharSlices currentSegmentFields) {
+        if (currentSegmentFields.size() == 0) {
+            return segmentMappingIndex;
+        }
+        return dispatchTable.next(segmentMappingIndex, currentSegmentFields.getChars(), currentSegmentFields.start(0), currentSegmentFields.length(0), segmentReader.getSegmentBuilder().length());
+    }
+
     /**
      * Map a single segment based on the current set of segment fields read from input and the segment mapping
      * config that these fields should map to.
@@ -571,12 +732,12 @@ public class EDIParser implements XMLReader {
      *                      reader tries to move to the next segment after performing this mapping.
      * @throws SAXException EDI processing exception.
      */
-    private void mapSegment(String[] currentSegmentFields, Segment expectedSegment) throws IOException, SAXException {
+    private void mapSegment(CharSlices currentSegmentFields, Segment expectedSegment) throws IOException, SAXException {
         startElement(expectedSegment, true);
 
         mapFields(currentSegmentFields, expectedSegment);
         if (segmentReader.moveToNextSegment()) {
-            mapSegments(expectedSegment.getSegments());
+            mapSegments(expectedSegment);
         }
 
         endElement(expectedSegment, true);
@@ -591,15 +752,33 @@ public class EDIParser implements XMLReader {
      * @throws SAXException EDI processing exception.
      */
     public void mapFields(String[] currentSegmentFields, Segment segment) throws SAXException {
+        if (loadedFieldSlices == null) {
+            loadedFieldSlices = new CharSlices();
+        }
+        mapFields(loadedFieldSlices.load(currentSegmentFields), segment);
+    }
+
+    /**
+     * Map the individual field values based on the supplied expected field configs.
+     *
+     * @param currentSegmentFields Segment field slices from the input message.  See
+     *                             {@link BufferedSegmentReader#getCurrentSegmentFieldSlices()}.
+     * @param segment              List of expected field mapping configurations that the currentSegmentFields
+     *                             are expected to map to.
+     * @throws SAXException EDI processing exception.
+     */
+    public void mapFields(CharSlices currentSegmentFields, Segment segment) throws SAXException {
         String segmentCode = segment.getSegcode();
 
         List<Field> expectedFields = segment.getFields();
 
         // Make sure all required fields are present in the incoming message...
-        assertFieldsOK(currentSegmentFields, segment);
+        if (!assertFieldsOK(currentSegmentFields, segment)) {
+            return;
+        }
 
         // Iterate over the fields and map them...
-        int numFields = currentSegmentFields.length - 1; // It's "currentSegmentFields.length - 1" because we don't want to include the segment code.
+        int numFields = currentSegmentFields.size() - 1; // It's "currentSegmentFields.size() - 1" because we don't want to include the segment code.
         int numFieldsMapped = segment.getFields().size();
         boolean ignoreUnmappedFields = segment.isIgnoreUnmappedFields();
         Delimiters delimiters = segmentReader.getDelimiters();
@@ -608,16 +787,15 @@ public class EDIParser implements XMLReader {
             if (ignoreUnmappedFields && i >= numFieldsMapped) {
                 break;
             }
-            String fieldMessageVal = currentSegmentFields[i + 1]; // +1 to skip the segment code
             Field expectedField = expectedFields.get(i);
 
             if (fieldRepeat != null) {
-                String[] repeatedFields = EDIUtils.split(fieldMessageVal, fieldRepeat, delimiters.getEscape());
-                for (String repeatedField : repeatedFields) {
-                    mapField(repeatedField, expectedField, i, segmentCode);
+                fieldRepeatSlices.split(currentSegmentFields, i + 1, SegmentSplitter.FIELD_REPEAT, fieldRepeat, delimiters.getEscape()); // +1 to skip the segment code
+                for (int j = 0; j < fieldRepeatSlices.size(); j++) {
+                    mapField(fieldRepeatSlices, j, expectedField, i, segmentCode);
                 }
             } else {
-                mapField(fieldMessageVal, expectedField, i, segmentCode);
+                mapField(currentSegmentFields, i + 1, expectedField, i, segmentCode); // +1 to skip the segment code
             }
         }
     }
@@ -625,41 +803,43 @@ public class EDIParser implements XMLReader {
     /**
      * Map an individual segment field.
      *
-     * @param fieldMessageVal The field message value.
+     * @param fieldSlices     The slices containing the field message value.
+     * @param fieldSlice      The index of the field message value within fieldSlices.
      * @param expectedField   The mapping config to which the field value is expected to map.
      * @param fieldIndex      The field index within its segment (base 0).
      * @param segmentCode     The segment code within which the field exists.
      * @throws SAXException EDI processing exception.
      */
-    private void mapField(String fieldMessageVal, Field expectedField, int fieldIndex, String segmentCode) throws SAXException {
+    private void mapField(CharSlices fieldSlices, int fieldSlice, Field expectedField, int fieldIndex, String segmentCode) throws SAXException {
         List<Component> expectedComponents = expectedField.getComponents();
 
         // If there are components defined on this field...
         if (expectedComponents.size() != 0) {
             Delimiters delimiters = segmentReader.getDelimiters();
-            String[] currentFieldComponents = EDIUtils.split(fieldMessageVal, delimiters.getComponent(), delimiters.getEscape());
+            CharSlices currentFieldComponents = componentSlices.split(fieldSlices, fieldSlice, SegmentSplitter.COMPONENT, delimiters.getComponent(), delimiters.getEscape());
 
-            assertComponentsOK(expectedField, fieldIndex, segmentCode, expectedComponents, currentFieldComponents);
+            if (!assertComponentsOK(expectedField, fieldIndex, segmentCode, expectedComponents, currentFieldComponents)) {
+                return;
+            }
 
-            if (currentFieldComponents.length > 0 || !ignoreEmptyNodes()) {
+            if (currentFieldComponents.size() > 0 || !ignoreEmptyNodes()) {
                 startElement(expectedField, true);
                 // Iterate over the field components and map them...
-                for (int i = 0; i < currentFieldComponents.length; i++) {
-                    String componentMessageVal = currentFieldComponents[i];
+                for (int i = 0; i < currentFieldComponents.size(); i++) {
                     Component expectedComponent = expectedComponents.get(i);
 
-                    mapComponent(componentMessageVal, expectedComponent, fieldIndex, i, segmentCode, expectedField.getXmltag());
+                    mapComponent(currentFieldComponents, i, expectedComponent, fieldIndex, segmentCode, expectedField.getXmltag());
                 }
                 endElement(expectedField, true);
             }
         } else {
-            if (expectedField.isRequired() && fieldMessageVal.length() == 0) {
-                throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + expectedField.getXmltag() + ") expected to contain a value.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedField, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+            if (expectedField.isRequired() && fieldSlices.length(fieldSlice) == 0) {
+                collectError(segmentCode, new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + expectedField.getXmltag() + ") expected to contain a value.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedField, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields()), expectedField, fieldIndex + 1, 0, "");
             }
 
-            if (fieldMessageVal.length() > 0 || !ignoreEmptyNodes()) {
+            if (fieldSlices.length(fieldSlice) > 0 || !ignoreEmptyNodes()) {
                 startElement(expectedField, true);
-                writeToContentHandler(fieldMessageVal);
+                writeToContentHandler(fieldSlices, fieldSlice);
                 endElement(expectedField, false);
             }
         }
@@ -668,63 +848,68 @@ public class EDIParser implements XMLReader {
     /**
      * Map an individual component.
      *
-     * @param componentMessageVal Component message value read from EDI input.
-     * @param expectedComponent   The mapping config to which the component value is expected to map.
-     * @param fieldIndex          The field index within its segment (base 0) in which the component exists.
-     * @param componentIndex      The component index within its field (base 0).
-     * @param segmentCode         The segment code within which the component exists.
-     * @param field               Field within which the component exists.
+     * @param componentSlices   The component message values read from EDI input.
+     * @param componentIndex    The component index within its field (base 0).
+     * @param expectedComponent The mapping config to which the component value is expected to map.
+     * @param fieldIndex        The field index within its segment (base 0) in which the component exists.
+     * @param segmentCode       The segment code within which the component exists.
+     * @param field             Field within which the component exists.
      * @throws SAXException EDI processing exception.
      */
-    private void mapComponent(String componentMessageVal, Component expectedComponent, int fieldIndex, int componentIndex, String segmentCode, String field) throws SAXException {
+    private void mapComponent(CharSlices componentSlices, int componentIndex, Component expectedComponent, int fieldIndex, String segmentCode, String field) throws SAXException {
         List<SubComponent> expectedSubComponents = expectedComponent.getSubComponents();
 
         if (expectedSubComponents.size() != 0) {
             Delimiters delimiters = segmentReader.getDelimiters();
-            String[] currentComponentSubComponents = EDIUtils.split(componentMessageVal, delimiters.getSubComponent(), delimiters.getEscape());
+            CharSlices currentComponentSubComponents = subComponentSlices.split(componentSlices, componentIndex, SegmentSplitter.SUB_COMPONENT, delimiters.getSubComponent(), delimiters.getEscape());
 
-            assertSubComponentsOK(expectedComponent, fieldIndex, componentIndex, segmentCode, field, expectedSubComponents, currentComponentSubComponents);
+            if (!assertSubComponentsOK(expectedComponent, fieldIndex, componentIndex, segmentCode, field, expectedSubComponents, currentComponentSubComponents)) {
+                return;
+            }
 
-            if (currentComponentSubComponents.length > 0 || !ignoreEmptyNodes()) {
+            if (currentComponentSubComponents.size() > 0 || !ignoreEmptyNodes()) {
                 startElement(expectedComponent, true);
-                for (int i = 0; i < currentComponentSubComponents.length; i++) {
-                    if (expectedSubComponents.get(i).isRequired() && currentComponentSubComponents[i].length() == 0) {
-                        throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + field + "), component " + (componentIndex + 1) + " (" + expectedComponent.getXmltag() + "), sub-component " + (i + 1) + " (" + expectedSubComponents.get(i).getXmltag() + ") expected to contain a value.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedSubComponents.get(i), segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                for (int i = 0; i < currentComponentSubComponents.size(); i++) {
+                    if (expectedSubComponents.get(i).isRequired() && currentComponentSubComponents.length(i) == 0) {
+                        collectError(segmentCode, new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + field + "), component " + (componentIndex + 1) + " (" + expectedComponent.getXmltag() + "), sub-component " + (i + 1) + " (" + expectedSubComponents.get(i).getXmltag() + ") expected to contain a value.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedSubComponents.get(i), segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields()), expectedSubComponents.get(i), fieldIndex + 1, componentIndex + 1, "");
                     }
 
                     startElement(expectedSubComponents.get(i), true);
-                    writeToContentHandler(currentComponentSubComponents[i]);
+                    writeToContentHandler(currentComponentSubComponents, i);
                     endElement(expectedSubComponents.get(i), false);
                 }
                 endElement(expectedComponent, true);
             }
         } else {
-            if (expectedComponent.isRequired() && componentMessageVal.length() == 0) {
-                throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + field + "), component " + (componentIndex + 1) + " (" + expectedComponent.getXmltag() + ") expected to contain a value.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedComponent, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+            if (expectedComponent.isRequired() && componentSlices.length(componentIndex) == 0) {
+                collectError(segmentCode, new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + field + "), component " + (componentIndex + 1) + " (" + expectedComponent.getXmltag() + ") expected to contain a value.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedComponent, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields()), expectedComponent, fieldIndex + 1, componentIndex + 1, "");
             }
 
-            if (componentMessageVal.length() > 0 || !ignoreEmptyNodes()) {
+            if (componentSlices.length(componentIndex) > 0 || !ignoreEmptyNodes()) {
                 startElement(expectedComponent, true);
-                writeToContentHandler(componentMessageVal);
+                writeToContentHandler(componentSlices, componentIndex);
                 endElement(expectedComponent, false);
             }
         }
     }
 
-    private void assertFieldsOK(String[] currentSegmentFields, Segment segment) throws EDIParseException {
+    /**
+     * @return True if the segment fields can be mapped, or false if a field count error was collected.
+     */
+    private boolean assertFieldsOK(CharSlices currentSegmentFields, Segment segment) throws EDIParseException {
 
         List<Field> expectedFields = segment.getFields();
 
         int numFieldsExpected = expectedFields.size() + 1; // It's "expectedFields.length + 1" because the segment code is included.
         int numberOfFieldsToValidate = 0;
 
-        if (currentSegmentFields.length < numFieldsExpected) {
+        if (currentSegmentFields.size() < numFieldsExpected) {
             boolean throwException = false;
 
             // If we don't have all the fields we're expecting, check is the Segment truncatable
             // and are the missing fields required or not...
             if (segment.isTruncatable()) {
-                int numFieldsMissing = numFieldsExpected - currentSegmentFields.length;
+                int numFieldsMissing = numFieldsExpected - currentSegmentFields.size();
                 for (int i = expectedFields.size() - 1; i > (expectedFields.size() - numFieldsMissing - 1); i--) {
                     if (expectedFields.get(i).isRequired()) {
                         throwException = true;
@@ -736,33 +921,40 @@ public class EDIParser implements XMLReader {
             }
 
             if (throwException) {
-                throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segment.getSegcode() + "] expected to contain " + (numFieldsExpected - 1) + " fields.  Actually contains " + (currentSegmentFields.length - 1) + " fields (not including segment code).  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", segment, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                collectError(segment.getSegcode(), new EDIParseException(edifactModel.getEdimap(), "Segment [" + segment.getSegcode() + "] expected to contain " + (numFieldsExpected - 1) + " fields.  Actually contains " + (currentSegmentFields.size() - 1) + " fields (not including segment code).  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", segment, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields()), segment, 0, 0, null);
+                return false;
             }
 
-            numberOfFieldsToValidate = currentSegmentFields.length;
+            numberOfFieldsToValidate = currentSegmentFields.size();
 
-        } else if (currentSegmentFields.length > numFieldsExpected) {
+        } else if (currentSegmentFields.size() > numFieldsExpected) {
             // we have more fields than we are expecting.
             if (segment.isIgnoreUnmappedFields()) {
                 numberOfFieldsToValidate = numFieldsExpected;
             } else {
-                throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segment.getSegcode() + "] expected to contain " + (numFieldsExpected - 1) + " fields.  Actually contains " + (currentSegmentFields.length - 1) + " fields (not including segment code).  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", segment, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                collectError(segment.getSegcode(), new EDIParseException(edifactModel.getEdimap(), "Segment [" + segment.getSegcode() + "] expected to contain " + (numFieldsExpected - 1) + " fields.  Actually contains " + (currentSegmentFields.size() - 1) + " fields (not including segment code).  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", segment, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields()), segment, 0, 0, null);
+                return false;
             }
         } else {
             // number of fields matches the expected number of fields.
-            numberOfFieldsToValidate = currentSegmentFields.length;
+            numberOfFieldsToValidate = currentSegmentFields.size();
         }
 
         for (int i = 1; i < numberOfFieldsToValidate; i++) {
             Field field = expectedFields.get(i - 1);
-            if (field.getComponents().size() == 0 && (!currentSegmentFields[i].equals(""))) {
-                validateValueNode(field, currentSegmentFields[i]);
+            if (field.getComponents().size() == 0 && currentSegmentFields.length(i) != 0) {
+                validateValueNode(field, currentSegmentFields, i, i, 0);
             }
         }
+
+        return true;
     }
 
-    private void assertComponentsOK(Field expectedField, int fieldIndex, String segmentCode, List<Component> expectedComponents, String[] currentFieldComponents) throws EDIParseException {
-        if (currentFieldComponents.length != expectedComponents.size()) {
+    /**
+     * @return True if the field components can be mapped, or false if a component count error was collected.
+     */
+    private boolean assertComponentsOK(Field expectedField, int fieldIndex, String segmentCode, List<Component> expectedComponents, CharSlices currentFieldComponents) throws EDIParseException {
+        if (currentFieldComponents.size() != expectedComponents.size()) {
             boolean throwException = false;
 
             if (expectedField.isTruncatable()) {
@@ -770,11 +962,11 @@ public class EDIParser implements XMLReader {
                 //When there are no Components in Field it should not throw exception, since
                 //the Field is just created (with Field-separator) for satisfying requirement for Fields
                 //that are required later in Segment.
-                if (currentFieldComponents.length == 0) {
-                    return;
+                if (currentFieldComponents.size() == 0) {
+                    return true;
                 }
 
-                int numComponentsMissing = expectedComponents.size() - currentFieldComponents.length;
+                int numComponentsMissing = expectedComponents.size() - currentFieldComponents.size();
                 for (int i = expectedComponents.size() - 1; i > (expectedComponents.size() - numComponentsMissing - 1); i--) {
                     if (expectedComponents.get(i).isRequired()) {
                         throwException = true;
@@ -786,20 +978,26 @@ public class EDIParser implements XMLReader {
             }
 
             if (throwException) {
-                throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + expectedField.getXmltag() + ") expected to contain " + expectedComponents.size() + " components.  Actually contains " + currentFieldComponents.length + " components.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedField, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                collectError(segmentCode, new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + expectedField.getXmltag() + ") expected to contain " + expectedComponents.size() + " components.  Actually contains " + currentFieldComponents.size() + " components.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedField, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields()), expectedField, fieldIndex + 1, 0, null);
+                return false;
             }
         }
 
-        for (int i = 0; i < currentFieldComponents.length; i++) {
+        for (int i = 0; i < currentFieldComponents.size(); i++) {
             Component component = expectedComponents.get(i);
-            if (component.getSubComponents().size() == 0 && (!currentFieldComponents[i].equals(""))) {
-                validateValueNode(component, currentFieldComponents[i]);
+            if (component.getSubComponents().size() == 0 && currentFieldComponents.length(i) != 0) {
+                validateValueNode(component, currentFieldComponents, i, fieldIndex + 1, i + 1);
             }
         }
+
+        return true;
     }
 
-    private void assertSubComponentsOK(Component expectedComponent, int fieldIndex, int componentIndex, String segmentCode, String field, List<SubComponent> expectedSubComponents, String[] currentComponentSubComponents) throws EDIParseException {
-        if (currentComponentSubComponents.length != expectedSubComponents.size()) {
+    /**
+     * @return True if the component sub-components can be mapped, or false if a sub-component count error was collected.
+     */
+    private boolean assertSubComponentsOK(Component expectedComponent, int fieldIndex, int componentIndex, String segmentCode, String field, List<SubComponent> expectedSubComponents, CharSlices currentComponentSubComponents) throws EDIParseException {
+        if (currentComponentSubComponents.size() != expectedSubComponents.size()) {
             boolean throwException = false;
 
             if (expectedComponent.isTruncatable()) {
@@ -807,11 +1005,11 @@ public class EDIParser implements XMLReader {
                 //When there are no SubComponents in field it should not throw exception, since
                 //the Component is just created (with Component-separator) for satisfying requirement
                 //for Components that are required later in Field.
-                if (currentComponentSubComponents.length == 0) {
-                    return;
+                if (currentComponentSubComponents.size() == 0) {
+                    return true;
                 }
 
-                int numSubComponentsMissing = expectedSubComponents.size() - currentComponentSubComponents.length;
+                int numSubComponentsMissing = expectedSubComponents.size() - currentComponentSubComponents.size();
                 for (int i = expectedSubComponents.size() - 1; i > (expectedSubComponents.size() - numSubComponentsMissing - 1); i--) {
                     if (expectedSubComponents.get(i).isRequired()) {
                         throwException = true;
@@ -823,43 +1021,86 @@ public class EDIParser implements XMLReader {
             }
 
             if (throwException) {
-                throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + field + "), component " + (componentIndex + 1) + " (" + expectedComponent.getXmltag() + ") expected to contain " + expectedSubComponents.size() + " sub-components.  Actually contains " + currentComponentSubComponents.length + " sub-components.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedComponent, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                collectError(segmentCode, new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + field + "), component " + (componentIndex + 1) + " (" + expectedComponent.getXmltag() + ") expected to contain " + expectedSubComponents.size() + " sub-components.  Actually contains " + currentComponentSubComponents.size() + " sub-components.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedComponent, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields()), expectedComponent, fieldIndex + 1, componentIndex + 1, null);
+                return false;
             }
         }
 
-        for (int i = 0; i < currentComponentSubComponents.length; i++) {
+        for (int i = 0; i < currentComponentSubComponents.size(); i++) {
             SubComponent subComponent = expectedSubComponents.get(i);
-            if (!currentComponentSubComponents[i].equals("")) {
-                validateValueNode(subComponent, currentComponentSubComponents[i]);
+            if (currentComponentSubComponents.length(i) != 0) {
+                validateValueNode(subComponent, currentComponentSubComponents, i, fieldIndex + 1, componentIndex + 1);
             }
         }
+
+        return true;
     }
 
-    private void validateValueNode(ValueNode valueNode, String value) throws EDIParseException {
+    private void validateValueNode(ValueNode valueNode, CharSlices values, int valueIndex, int field, int component) throws EDIParseException {
 
         // Return when validation is turned off.
-        if (!getFeature(FEATURE_VALIDATE)) {
+        if (!validate()) {
             return;
         }
 
-        //Test minLength.
-        if (valueNode.getMinLength() != null) {
-            if (value.length() < valueNode.getMinLength()) {
-                throw new EDIParseException(edifactModel.getEdimap(), "Value [" + value + "] should have a length greater than [" + valueNode.getMinLength() + "]. Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", valueNode, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
-            }
+        ValueValidator validator = valueNode.getValidator();
+        int error = validator.validate(values.getChars(), values.start(valueIndex), values.length(valueIndex), decimalSeparator());
+        if (error != ValueValidator.VALID) {
+            String value = values.toString(valueIndex);
+            collectError(currentSegmentCode(), new EDIParseException(edifactModel.getEdimap(), validator.getErrorMessage(error, value) + " Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", valueNode, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields()), valueNode, field, component, value);
         }
+    }
 
-        //Test maxLength.
-        if (valueNode.getMaxLength() != null) {
-            if (value.length() > valueNode.getMaxLength()) {
-                throw new EDIParseException(edifactModel.getEdimap(), "Value [" + value + "] exceeds allowed maximum length of [" + valueNode.getMaxLength() + "]. Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", valueNode, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
-            }
+    /**
+     * Record an error with the {@link #setErrorCollector(EDIParseErrorCollector) error collector}, or throw it if
+     * there's no collector, or the collector is full.
+     *
+     * @param segmentCode The code of the segment on which the error occurred, or <code>null</code> if not on a segment.
+     * @param exception   The error.
+     * @param node        The Segment, Field, Component or Sub-Component where the error occurred.
+     * @param field       The field number (base 1), or 0 if the error is not on a field.
+     * @param component   The component number (base 1), or 0 if the error is not on a component.
+     * @param value       The offending value, or <code>null</code> if the error is not on a value.
+     * @throws EDIParseException The error, if not collected.
+     */
+    private void collectError(String segmentCode, EDIParseException exception, MappingNode node, int field, int component, String value) throws EDIParseException {
+        if (metrics.isEnabled()) {
+            metrics.validationError(segmentCode);
+        }
+        if (errorCollector == null || !errorCollector.add(new EDIParseError(segmentReader.getCurrentSegmentNumber(), node, field, component, value, exception.getMessage()))) {
+            throw exception;
         }
     }
 
+    /**
+     * Get the code of the current segment off its (already split) field slices.  Unlike
+     * {@link BufferedSegmentReader#hasCurrentSegment()}, this does not notify the segment listener.
+     */
+    private String currentSegmentCode() {
+        if (segmentReader.getSegmentBuilder().length() == 0) {
+            return null;
+        }
+        CharSlices currentSegmentFields = segmentReader.getCurrentSegmentFieldSlices();
+        return (currentSegmentFields.size() != 0 ? currentSegmentFields.toString(0) : null);
+    }
+
+    private char decimalSeparator() {
+        String decimalSeparator = segmentReader.getDelimiters().getDecimalSeparator();
+        return (decimalSeparator != null && decimalSeparator.length() == 1 ? decimalSeparator.charAt(0) : '.');
+    }
+
     public void startElement(MappingNode node, boolean indent) throws SAXException {
-        if (node.getXmltag() != null) {
-            startElement(node.getXmltag(), node.getNamespace(), indent);
+        String elementName = node.getXmltag();
+
+        if (elementName != null) {
+            if (indent) {
+                indent();
+            }
+            String namespace = node.getNamespace();
+            assertNamespace(elementName, namespace);
+
+            contentHandler.startElement(namespace, elementName, node.getQualifiedXmltag(getNamespacePrefix(namespace)), EMPTY_ATTRIBS);
+            indentDepth++;
         }
     }
 
@@ -871,7 +1112,7 @@ public class EDIParser implements XMLReader {
         if (indent) {
             indent();
         }
-        AssertArgument.isNotNull(namespace, "Empty namespace detected for elemnet " + elementName);
+        assertNamespace(elementName, namespace);
 
         String nsPrefix = getNamespacePrefix(namespace);
         if (nsPrefix != null) {
@@ -880,12 +1121,25 @@ public class EDIParser implements XMLReader {
             contentHandler.startElement(namespace, elementName, elementName, attributes);
         }
 
+        if (attributes.getLength() > 0) {
+            // The attributes may declare namespaces, scoped to this element...
+            namespacePrefixes.clear();
+            namespaceScopeDepths.push(indentDepth);
+        }
         indentDepth++;
     }
 
     public void endElement(MappingNode node, boolean indent) throws SAXException {
-        if (node.getXmltag() != null) {
-            endElement(node.getXmltag(), node.getNamespace(), indent);
+        String elementName = node.getXmltag();
+
+        if (elementName != null) {
+            indentDepth--;
+            if (indent) {
+                indent();
+            }
+
+            String namespace = node.getNamespace();
+            contentHandler.endElement(namespace, elementName, node.getQualifiedXmltag(getNamespacePrefix(namespace)));
         }
     }
 
@@ -901,11 +1155,26 @@ public class EDIParser implements XMLReader {
         } else {
             contentHandler.endElement(namespace, elementName, elementName);
         }
+
+        if (!namespaceScopeDepths.isEmpty() && namespaceScopeDepths.peek().intValue() == indentDepth) {
+            // Namespaces declared on this element are no longer in scope...
+            namespaceScopeDepths.pop();
+            namespacePrefixes.clear();
+        }
+    }
+
+    private static void assertNamespace(String elementName, String namespace) {
+        if (namespace == null) {
+            AssertArgument.isNotNull(namespace, "Empty namespace detected for elemnet " + elementName);
+        }
     }
 
     /**
      * This method returns a namespace prefix associated with
      * given namespace.
+     * <br><br>
+     * Prefixes are cached.  The namespace declarations in scope only change when an element carrying
+     * attributes starts or ends (or when a new parse starts), at which point the cache is cleared.
      *
      * @param namespace The namespace.
      * @return The namespace prefix.
@@ -918,7 +1187,13 @@ public class EDIParser implements XMLReader {
             return null;
         }
 
-        return nsStack.getPrefix(namespace);
+        String prefix = namespacePrefixes.get(namespace);
+        if (prefix == null && !namespacePrefixes.containsKey(namespace)) {
+            prefix = nsStack.getPrefix(namespace);
+            namespacePrefixes.put(namespace, prefix);
+        }
+
+        return prefix;
     }
 
     // HACK :-) it's hardly going to be deeper than this!!
@@ -929,7 +1204,9 @@ public class EDIParser implements XMLReader {
         if (indentDepth == null) {
             throw new IllegalStateException("'indentDepth' property not set on parser instance.  Cannot indent.");
         }
-        contentHandler.characters(indentChars, 0, indentDepth + 1);
+        if (!omitIndentation()) {
+            contentHandler.characters(indentChars, 0, indentDepth + 1);
+        }
     }
 
     public void setContentHandler(ContentHandler contentHandler) {
@@ -940,12 +1217,43 @@ public class EDIParser implements XMLReader {
         return contentHandler;
     }
 
-    private void writeToContentHandler(String messageVal) throws SAXException {
-        if (edifactModel.getDelimiters() != null && edifactModel.getDelimiters().getEscape() != null) {
+    private void writeToContentHandler(CharSlices values, int valueIndex) throws SAXException {
+        char[] chars = values.getChars();
+        int start = values.start(valueIndex);
+        int length = values.length(valueIndex);
+
+        if (edifactModel.getDelimiters() != null && edifactModel.getDelimiters().getEscape() != null && edifactModel.getDelimiters().getEscape().length() > 0) {
             String escapeDelimiter = edifactModel.getDelimiters().getEscape();
-            messageVal = messageVal.replace(escapeDelimiter + escapeDelimiter, escapeDelimiter);
+            int escapeLength = escapeDelimiter.length();
+            int end = start + length;
+            int copyFrom = start;
+            int unescapedLength = 0;
+
+            // Escaped escape sequences are written as a single escape sequence.  The value is only copied
+            // if it actually contains an escaped escape...
+            for (int i = start; i <= end - (escapeLength * 2); ) {
+                if (CharSlices.regionMatches(chars, i, escapeDelimiter) && CharSlices.regionMatches(chars, i + escapeLength, escapeDelimiter)) {
+                    if (unescapeBuffer == null || unescapeBuffer.length < length) {
+                        unescapeBuffer = new char[Math.max(length, 64)];
+                    }
+                    System.arraycopy(chars, copyFrom, unescapeBuffer, unescapedLength, i + escapeLength - copyFrom);
+                    unescapedLength += i + escapeLength - copyFrom;
+                    i += escapeLength * 2;
+                    copyFrom = i;
+                } else {
+                    i++;
+                }
+            }
+
+            if (copyFrom != start) {
+                System.arraycopy(chars, copyFrom, unescapeBuffer, unescapedLength, end - copyFrom);
+                unescapedLength += end - copyFrom;
+                contentHandler.characters(unescapeBuffer, 0, unescapedLength);
+                return;
+            }
         }
-        contentHandler.characters(messageVal.toCharArray(), 0, messageVal.length());
+
+        contentHandler.characters(chars, start, length);
     }
 
     public Map<String, Boolean> getFeatures() {
@@ -960,6 +1268,7 @@ public class EDIParser implements XMLReader {
         features.put(FEATURE_VALIDATE, false);
         features.put(FEATURE_IGNORE_NEWLINES, false);
         features.put(FEATURE_IGNORE_EMPTY_NODES, true);
+        features.put(FEATURE_OMIT_INDENTATION, false);
     }
 
     private boolean ignoreEmptyNodes() {
@@ -970,6 +1279,22 @@ public class EDIParser implements XMLReader {
         return ignoreEmptyNodes;
     }
 
+    private boolean validate() {
+        if (validate == null) {
+            validate = getFeature(FEATURE_VALIDATE);
+        }
+
+        return validate;
+    }
+
+    private boolean omitIndentation() {
+        if (omitIndentation == null) {
+            omitIndentation = getFeature(FEATURE_OMIT_INDENTATION);
+        }
+
+        return omitIndentation;
+    }
+
     /****************************************************************************
      *
      * The following methods are currently unimplemnted...
@@ -986,6 +1311,9 @@ public class EDIParser implements XMLReader {
 
     public void setFeature(String name, boolean value) {
         getFeatures().put(name, value);
+        ignoreEmptyNodes = null;
+        omitIndentation = null;
+        validate = null;
     }
 
     public DTDHandler getDTDHandler() {
@@ -52,12 +52,19 @@ import org.smooks.support.StreamUtils;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
-import java.util.Collections;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -66,12 +73,20 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.jar.JarFile;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 /**
  * Java Archive.
+ * <br><br>
+ * By default, the archive entries are stored as files in a temp directory (deleted on JVM shutdown).  They can
+ * instead be stored in memory, on or off the heap (see {@link Storage}), or read straight out of the bytes of
+ * a zip file (see {@link #Archive(ByteBuffer)}).  The {@link File} based accessors ({@link #getEntries()} values
+ * and {@link #getEntry(String)}) only return files for {@link Storage#TEMP_FILES} entries.
  *
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
@@ -79,16 +94,41 @@ public class Archive {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Archive.class);
 
+    private static final int ZIP_LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int ZIP_CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP_END_SIGNATURE = 0x06054b50;
+    private static final int ZIP_END_LENGTH = 22;
+
+    /**
+     * Archive entry storage.
+     */
+    public enum Storage {
+        /**
+         * Files in a temp directory, deleted on JVM shutdown.
+         */
+        TEMP_FILES,
+        /**
+         * Byte arrays on the heap.
+         */
+        HEAP,
+        /**
+         * Direct (off heap) byte buffers.
+         */
+        OFF_HEAP
+    }
+
     private final String archiveName;
+    private final Storage storage;
     private File tmpDir;
-    private final LinkedHashMap<String, File> entries = new LinkedHashMap<String, File>();
+    private final LinkedHashMap<String, EntryData> entries = new LinkedHashMap<String, EntryData>();
+    private final Map<String, File> entryFiles = new EntryFiles();
+    private URLStreamHandler entryURLStreamHandler;
 
     /**
      * Public constructor.
      */
     public Archive() {
-        this.archiveName = "Unknown";
-        createTempDir();
+        this("Unknown", Storage.TEMP_FILES, false);
     }
 
     /**
@@ -99,9 +139,20 @@ public class Archive {
     public Archive(String archiveName) {
         AssertArgument.isNotNull(archiveName, "archiveName");
         this.archiveName = archiveName;
+        this.storage = Storage.TEMP_FILES;
         createTempDir();
     }
 
+    /**
+     * Public constructor.
+     *
+     * @param archiveName The archive name of the deployment.
+     * @param storage     The archive entry storage.
+     */
+    public Archive(String archiveName, Storage storage) {
+        this(archiveName, storage, true);
+    }
+
     /**
      * Public constructor.
      *
@@ -109,8 +160,7 @@ public class Archive {
      * @throws IOException Error reading from zip stream.
      */
     public Archive(ZipInputStream archiveStream) throws IOException {
-        this.archiveName = "Unknown";
-        createTempDir();
+        this("Unknown", Storage.TEMP_FILES, false);
         addEntries(archiveStream);
     }
 
@@ -122,12 +172,66 @@ public class Archive {
      * @throws IOException Error reading from zip stream.
      */
     public Archive(String archiveName, ZipInputStream archiveStream) throws IOException {
-        AssertArgument.isNotNullAndNotEmpty(archiveName, "archiveName");
-        this.archiveName = archiveName;
-        createTempDir();
+        this(archiveName, Storage.TEMP_FILES, archiveStream);
+    }
+
+    /**
+     * Public constructor.
+     *
+     * @param archiveName   The archive name of the deployment.
+     * @param storage       The archive entry storage.
+     * @param archiveStream Archive stream containing initial archive entries.
+     * @throws IOException Error reading from zip stream.
+     */
+    public Archive(String archiveName, Storage storage, ZipInputStream archiveStream) throws IOException {
+        this(archiveName, storage, true);
         addEntries(archiveStream);
     }
 
+    /**
+     * Public constructor.
+     * <br><br>
+     * The initial archive entries are located through the zip central directory, and are only inflated as
+     * they are read.  The zip bytes are held by the archive (not copied), so must not be modified.  Entries
+     * added later are stored on the {@link Storage#HEAP heap}.
+     *
+     * @param zip The zip file bytes, from the buffer position to its limit.
+     * @throws ZipException Not a zip file, or a zip file not supported for direct reading (e.g. a ZIP64 zip file).
+     */
+    public Archive(ByteBuffer zip) throws ZipException {
+        this("Unknown", zip);
+    }
+
+    /**
+     * Public constructor.
+     *
+     * @param archiveName The archive name of the deployment.
+     * @param zip         The zip file bytes, from the buffer position to its limit.
+     * @throws ZipException Not a zip file, or a zip file not supported for direct reading (e.g. a ZIP64 zip file).
+     * @see #Archive(ByteBuffer)
+     */
+    public Archive(String archiveName, ByteBuffer zip) throws ZipException {
+        this(archiveName, Storage.HEAP, true);
+        AssertArgument.isNotNull(zip, "zip");
+        try {
+            addZipEntries(zip.slice().order(ByteOrder.LITTLE_ENDIAN));
+        } catch (IndexOutOfBoundsException e) {
+            throw new ZipException("Invalid zip file.  Entry or central directory offsets are out of bounds.");
+        }
+    }
+
+    private Archive(String archiveName, Storage storage, boolean assertName) {
+        if (assertName) {
+            AssertArgument.isNotNullAndNotEmpty(archiveName, "archiveName");
+        }
+        AssertArgument.isNotNull(storage, "storage");
+        this.archiveName = archiveName;
+        this.storage = storage;
+        if (storage == Storage.TEMP_FILES) {
+            createTempDir();
+        }
+    }
+
     /**
      * Get the name of the deployment associated with this archive.
      *
@@ -137,6 +241,15 @@ public class Archive {
         return archiveName;
     }
 
+    /**
+     * Get the archive entry storage.
+     *
+     * @return The archive entry storage.
+     */
+    public Storage getStorage() {
+        return storage;
+    }
+
     /**
      * Add the supplied data as an entry in the deployment.
      *
@@ -190,6 +303,25 @@ public class Archive {
     public Archive addEntry(String path, byte[] data) {
         AssertArgument.isNotNullAndNotEmpty(path, "path");
 
+        EntryData entryData;
+        switch (storage) {
+            case TEMP_FILES:
+                entryData = new FileEntryData(writeEntryFile(path, data));
+                break;
+            case OFF_HEAP:
+                entryData = (data != null ? new BufferEntryData((ByteBuffer) ByteBuffer.allocateDirect(data.length).put(data).flip()) : null);
+                break;
+            default:
+                entryData = (data != null ? new BufferEntryData(ByteBuffer.wrap(data.clone())) : null);
+                break;
+        }
+
+        entries.put(trimLeadingSlash(path.trim()), entryData);
+
+        return this;
+    }
+
+    private File writeEntryFile(String path, byte[] data) {
         File entryFile = new File(tmpDir, path);
 
         if (entryFile.exists()) {
@@ -207,9 +339,7 @@ public class Archive {
             }
         }
 
-        entries.put(trimLeadingSlash(path.trim()), entryFile);
-
-        return this;
+        return entryFile;
     }
 
     /**
@@ -310,6 +440,65 @@ public class Archive {
         return this;
     }
 
+    /**
+     * Add the entries listed in the central directory of the supplied zip, without inflating them.
+     */
+    private void addZipEntries(ByteBuffer zip) throws ZipException {
+        int end = zip.limit() - ZIP_END_LENGTH;
+        int minEnd = Math.max(0, end - 0xFFFF); // The end record is followed by a comment of up to 64K
+        while (end >= minEnd && zip.getInt(end) != ZIP_END_SIGNATURE) {
+            end--;
+        }
+        if (end < minEnd) {
+            throw new ZipException("Not a zip file.  No end of central directory record.");
+        }
+
+        int entryCount = zip.getShort(end + 10) & 0xFFFF;
+        long centralDirectoryOffset = zip.getInt(end + 16) & 0xFFFFFFFFL;
+        if (entryCount == 0xFFFF || centralDirectoryOffset == 0xFFFFFFFFL) {
+            throw new ZipException("ZIP64 zip files are not supported.");
+        }
+
+        int header = (int) centralDirectoryOffset;
+        for (int i = 0; i < entryCount; i++) {
+            if (zip.getInt(header) != ZIP_CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid zip central directory entry at offset " + header + ".");
+            }
+            int method = zip.getShort(header + 10) & 0xFFFF;
+            long compressedSize = zip.getInt(header + 20) & 0xFFFFFFFFL;
+            long size = zip.getInt(header + 24) & 0xFFFFFFFFL;
+            int nameLength = zip.getShort(header + 28) & 0xFFFF;
+            int extraLength = zip.getShort(header + 30) & 0xFFFF;
+            int commentLength = zip.getShort(header + 32) & 0xFFFF;
+            int localHeader = zip.getInt(header + 42);
+            byte[] nameBytes = new byte[nameLength];
+            ((ByteBuffer) zip.duplicate().position(header + 46)).get(nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            if (name.endsWith("/")) {
+                addEntry(name);
+            } else {
+                if (method != ZipEntry.STORED && method != ZipEntry.DEFLATED) {
+                    throw new ZipException("Unsupported compression method " + method + " for zip entry '" + name + "'.");
+                }
+                if (compressedSize > Integer.MAX_VALUE || size > Integer.MAX_VALUE || localHeader < 0) {
+                    throw new ZipException("ZIP64 zip files are not supported.");
+                }
+                if (zip.getInt(localHeader) != ZIP_LOCAL_HEADER_SIGNATURE) {
+                    throw new ZipException("Invalid zip local header for entry '" + name + "'.");
+                }
+                int dataOffset = localHeader + 30 + (zip.getShort(localHeader + 26) & 0xFFFF) + (zip.getShort(localHeader + 28) & 0xFFFF);
+                if (dataOffset + compressedSize > zip.limit()) {
+                    throw new ZipException("Zip entry '" + name + "' data is out of bounds.");
+                }
+                ByteBuffer data = ((ByteBuffer) zip.duplicate().position(dataOffset).limit(dataOffset + (int) compressedSize)).slice();
+                entries.put(trimLeadingSlash(name), new ZipEntryData(data, method == ZipEntry.DEFLATED, (int) size));
+            }
+
+            header += 46 + nameLength + extraLength + commentLength;
+        }
+    }
+
     /**
      * Remove the archive entry at the specified path.
      *
@@ -325,12 +514,13 @@ public class Archive {
      * Get the archive entries.
      * <br><br>
      * The returned map entries are ordered in line with the order in which they were added
-     * to the archive.
+     * to the archive.  The entry files are null for directories and for entries not stored as
+     * {@link Storage#TEMP_FILES temp files}.  See {@link #getEntryBytes(String)}.
      *
      * @return An unmodifiable {@link Map} of the archive entries.
      */
     public Map<String, File> getEntries() {
-        return Collections.unmodifiableMap(entries);
+        return entryFiles;
     }
 
     /**
@@ -340,10 +530,10 @@ public class Archive {
      * @return The entry name at that index.
      */
     public String getEntryName(int index) {
-        Set<Entry<String, File>> entrySet = entries.entrySet();
+        Set<Entry<String, EntryData>> entrySet = entries.entrySet();
         int i = 0;
 
-        for (Entry<String, File> entry : entrySet) {
+        for (Entry<String, EntryData> entry : entrySet) {
             if (i == index) {
                 return entry.getKey();
             }
@@ -361,19 +551,15 @@ public class Archive {
      * @return The entry value at that index.
      */
     public byte[] getEntryValue(int index) {
-        Set<Entry<String, File>> entrySet = entries.entrySet();
+        Set<Entry<String, EntryData>> entrySet = entries.entrySet();
         int i = 0;
 
-        for (Entry<String, File> entry : entrySet) {
+        for (Entry<String, EntryData> entry : entrySet) {
             if (i == index) {
-                File entryFile = entry.getValue();
+                EntryData entryData = entry.getValue();
 
-                if (entryFile != null) {
-                    try {
-                        return FileUtils.readFile(entryFile);
-                    } catch (IOException e) {
-                        throw new IllegalStateException("Unexpected error reading Archive file '" + entryFile.getAbsolutePath() + "'.", e);
-                    }
+                if (entryData != null) {
+                    return entryData.getBytes();
                 } else {
                     return null;
                 }
@@ -392,14 +578,11 @@ public class Archive {
      * @return The bytes, or null if the entry is not in the Archive.
      */
     public byte[] getEntryBytes(String resName) {
-        File entryFile = getEntry(resName);
+        AssertArgument.isNotNullAndNotEmpty(resName, "resName");
+        EntryData entryData = entries.get(resName);
 
-        if (entryFile != null) {
-            try {
-                return FileUtils.readFile(entryFile);
-            } catch (IOException e) {
-                throw new IllegalStateException("Unexpected error reading Archive file '" + entryFile.getAbsolutePath() + "'.", e);
-            }
+        if (entryData != null) {
+            return entryData.getBytes();
         } else {
             return null;
         }
@@ -409,31 +592,71 @@ public class Archive {
      * Get an Archive entry file.
      *
      * @param resName Entry resource name.
-     * @return The entry File, or null if the entry is not in the Archive.
+     * @return The entry File, or null if the entry is not in the Archive, or is not stored as a
+     * {@link Storage#TEMP_FILES temp file}.
      */
     public File getEntry(String resName) {
         AssertArgument.isNotNullAndNotEmpty(resName, "resName");
-        return entries.get(resName);
+        EntryData entryData = entries.get(resName);
+        return (entryData != null ? entryData.getFile() : null);
     }
 
     /**
      * Get an Archive entry resource URL.
+     * <br><br>
+     * Entries not stored as {@link Storage#TEMP_FILES temp files} get an "archive:" URL, which reads the entry
+     * from this archive instance.
      *
      * @param resName Entry resource name.
      * @return The entry resource URL, or null if the entry is not in the Archive.
      */
     public URL getEntryURL(String resName) {
-        File entry = getEntry(resName);
+        AssertArgument.isNotNullAndNotEmpty(resName, "resName");
+        EntryData entryData = entries.get(resName);
+
+        if (entryData == null) {
+            return null;
+        }
 
+        File entry = entryData.getFile();
         if (entry != null) {
             try {
                 return entry.toURI().toURL();
             } catch (MalformedURLException e) {
                 throw new IllegalStateException("Unexpected error getting URL for Archive file '" + entry.getAbsolutePath() + "'.", e);
             }
-        } else {
-            return null;
         }
+
+        try {
+            return new URL("archive", null, -1, "/" + resName, getEntryURLStreamHandler());
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException("Unexpected error getting URL for Archive entry '" + resName + "'.", e);
+        }
+    }
+
+    private synchronized URLStreamHandler getEntryURLStreamHandler() {
+        if (entryURLStreamHandler == null) {
+            entryURLStreamHandler = new URLStreamHandler() {
+                @Override
+                protected URLConnection openConnection(URL url) {
+                    return new URLConnection(url) {
+                        @Override
+                        public void connect() {
+                        }
+
+                        @Override
+                        public InputStream getInputStream() throws IOException {
+                            byte[] bytes = getEntryBytes(getURL().getPath().substring(1));
+                            if (bytes == null) {
+                                throw new FileNotFoundException("Archive '" + archiveName + "' has no entry '" + getURL().getPath().substring(1) + "'.");
+                            }
+                            return new ByteArrayInputStream(bytes);
+                        }
+                    };
+                }
+            };
+        }
+        return entryURLStreamHandler;
     }
 
     /**
@@ -479,16 +702,14 @@ public class Archive {
             outputFolder.mkdirs();
         }
 
-        Set<Entry<String, File>> entrySet = entries.entrySet();
-        for (Entry<String, File> entry : entrySet) {
-            File archEntryFile = entry.getValue();
-            byte[] fileBytes;
+        Set<Entry<String, EntryData>> entrySet = entries.entrySet();
+        for (Entry<String, EntryData> entry : entrySet) {
+            EntryData entryData = entry.getValue();
             File entryFile = new File(outputFolder, entry.getKey());
 
-            if (archEntryFile != null) {
-                fileBytes = FileUtils.readFile(archEntryFile);
+            if (entryData != null && !entryData.isDirectory()) {
                 entryFile.getParentFile().mkdirs();
-                FileUtils.writeFile(fileBytes, entryFile);
+                FileUtils.writeFile(entryData.getBytes(), entryFile);
             } else {
                 entryFile.mkdirs();
             }
@@ -511,21 +732,20 @@ public class Archive {
     }
 
     private void writeEntriesToArchive(ZipOutputStream archiveStream) throws IOException {
-        File manifestFile = entries.get(JarFile.MANIFEST_NAME);
+        EntryData manifest = entries.get(JarFile.MANIFEST_NAME);
 
         // Always write the jar manifest as the first entry, if it exists...
-        if (manifestFile != null) {
-            byte[] manifest = FileUtils.readFile(manifestFile);
-            writeEntry(JarFile.MANIFEST_NAME, manifest, archiveStream);
+        if (manifest != null) {
+            writeEntry(JarFile.MANIFEST_NAME, manifest.getBytes(), archiveStream);
         }
 
-        Set<Entry<String, File>> entrySet = entries.entrySet();
-        for (Entry<String, File> entry : entrySet) {
+        Set<Entry<String, EntryData>> entrySet = entries.entrySet();
+        for (Entry<String, EntryData> entry : entrySet) {
             if (!entry.getKey().equals(JarFile.MANIFEST_NAME)) {
-                File file = entry.getValue();
+                EntryData entryData = entry.getValue();
 
-                if (file != null && !file.isDirectory()) {
-                    writeEntry(entry.getKey(), FileUtils.readFile(file), archiveStream);
+                if (entryData != null && !entryData.isDirectory()) {
+                    writeEntry(entry.getKey(), entryData.getBytes(), archiveStream);
                 } else {
                     writeEntry(entry.getKey(), null, archiveStream);
                 }
@@ -558,16 +778,11 @@ public class Archive {
     }
 
     public Archive merge(Archive archive) {
-        Map<String, File> entriesToMerge = archive.getEntries();
-        for (Entry<String, File> entry : entriesToMerge.entrySet()) {
-            File file = entry.getValue();
+        for (Entry<String, EntryData> entry : archive.entries.entrySet()) {
+            EntryData entryData = entry.getValue();
 
-            if (file != null && !file.isDirectory()) {
-                try {
-                    addEntry(entry.getKey(), FileUtils.readFile(file));
-                } catch (IOException e) {
-                    throw new IllegalStateException("Unexpected error reading Archive file '" + file.getAbsolutePath() + "'.", e);
-                }
+            if (entryData != null && !entryData.isDirectory()) {
+                addEntry(entry.getKey(), entryData.getBytes());
             } else {
                 addEntry(entry.getKey(), (byte[]) null);
             }
@@ -594,6 +809,168 @@ public class Archive {
         }
     }
 
+    /**
+     * Archive entry data.
+     */
+    private abstract static class EntryData {
+
+        abstract byte[] getBytes();
+
+        File getFile() {
+            return null;
+        }
+
+        boolean isDirectory() {
+            return false;
+        }
+    }
+
+    private static class FileEntryData extends EntryData {
+
+        private final File file;
+
+        private FileEntryData(File file) {
+            this.file = file;
+        }
+
+        byte[] getBytes() {
+            try {
+                return FileUtils.readFile(file);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unexpected error reading Archive file '" + file.getAbsolutePath() + "'.", e);
+            }
+        }
+
+        File getFile() {
+            return file;
+        }
+
+        boolean isDirectory() {
+            return file.isDirectory();
+        }
+    }
+
+    private static class BufferEntryData extends EntryData {
+
+        private final ByteBuffer buffer;
+
+        private BufferEntryData(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        byte[] getBytes() {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+            return bytes;
+        }
+    }
+
+    /**
+     * An entry read straight out of a zip file, inflated each time it's read.
+     */
+    private static class ZipEntryData extends EntryData {
+
+        private final ByteBuffer data;
+        private final boolean deflated;
+        private final int size;
+
+        private ZipEntryData(ByteBuffer data, boolean deflated, int size) {
+            this.data = data;
+            this.deflated = deflated;
+            this.size = size;
+        }
+
+        byte[] getBytes() {
+            byte[] bytes = new byte[size];
+
+            if (!deflated) {
+                data.duplicate().get(bytes);
+                return bytes;
+            }
+
+            byte[] input;
+            int inputOffset;
+            if (data.hasArray()) {
+                input = data.array();
+                inputOffset = data.arrayOffset() + data.position();
+            } else {
+                input = new byte[data.remaining()];
+                data.duplicate().get(input);
+                inputOffset = 0;
+            }
+
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(input, inputOffset, data.remaining());
+                int inflated = 0;
+                while (inflated < size) {
+                    int count = inflater.inflate(bytes, inflated, size - inflated);
+                    if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflated += count;
+                }
+                if (inflated != size) {
+                    throw new IllegalStateException("Unexpected error inflating Archive entry.  Expected " + size + " bytes.  Inflated " + inflated + " bytes.");
+                }
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Unexpected error inflating Archive entry.", e);
+            } finally {
+                inflater.end();
+            }
+
+            return bytes;
+        }
+    }
+
+    /**
+     * Unmodifiable {@link #getEntries()} view of the entries.
+     */
+    private class EntryFiles extends AbstractMap<String, File> {
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return entries.containsKey(key);
+        }
+
+        @Override
+        public File get(Object key) {
+            EntryData entryData = entries.get(key);
+            return (entryData != null ? entryData.getFile() : null);
+        }
+
+        @Override
+        public Set<Entry<String, File>> entrySet() {
+            return new AbstractSet<Entry<String, File>>() {
+                @Override
+                public int size() {
+                    return entries.size();
+                }
+
+                @Override
+                public Iterator<Entry<String, File>> iterator() {
+                    final Iterator<Entry<String, EntryData>> entryIterator = entries.entrySet().iterator();
+                    return new Iterator<Entry<String, File>>() {
+                        public boolean hasNext() {
+                            return entryIterator.hasNext();
+                        }
+
+                        public Entry<String, File> next() {
+                            Entry<String, EntryData> entry = entryIterator.next();
+                            EntryData entryData = entry.getValue();
+                            return new SimpleImmutableEntry<String, File>(entry.getKey(), (entryData != null ? entryData.getFile() : null));
+                        }
+                    };
+                }
+            };
+        }
+    }
+
     private static class DeleteOnExitHook {
 
         static {
@@ -44,7 +44,10 @@ package org.smooks.edi.edisax.interchange;
 
 import org.smooks.assertion.AssertArgument;
 import org.smooks.edi.edisax.BufferedSegmentReader;
+import org.smooks.edi.edisax.EDIParseErrorCollector;
 import org.smooks.edi.edisax.EDIParser;
+import org.smooks.edi.edisax.metrics.EDIMetrics;
+import org.smooks.edi.edisax.metrics.NoOpEDIMetrics;
 import org.smooks.edi.edisax.model.EdifactModel;
 import org.smooks.edi.edisax.model.internal.Delimiters;
 import org.smooks.edi.edisax.model.internal.Description;
@@ -54,8 +57,11 @@ import org.smooks.edi.edisax.registry.MappingsRegistry;
 import org.smooks.namespace.NamespaceDeclarationStack;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
 
+import javax.xml.XMLConstants;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * EDI message interchange context object.
@@ -76,6 +82,13 @@ public class InterchangeContext {
     private final MappingsRegistry registry;
     private NamespaceDeclarationStack namespaceDeclarationStack;
     private boolean containerManagedNamespaceStack = false;
+    private Executor messageExecutor;
+    private MessageListener messageListener;
+    private EDIParseErrorCollector errorCollector;
+    private EDIMetrics metrics = NoOpEDIMetrics.INSTANCE;
+    private int messageCount;
+    private String[] interchangeHeader;
+    private String[] groupHeader;
 
     /**
      * Public constructor.
@@ -104,6 +117,9 @@ public class InterchangeContext {
         controlSegmentParser.setBufferedSegmentReader(segmentReader);
         controlSegmentParser.setContentHandler(contentHandler);
         controlSegmentParser.setIndentDepth(indentDepth);
+        if (parserFeatures != null && Boolean.TRUE.equals(parserFeatures.get(EDIParser.FEATURE_OMIT_INDENTATION))) {
+            controlSegmentParser.setFeature(EDIParser.FEATURE_OMIT_INDENTATION, true);
+        }
 
         if (this.namespaceDeclarationStack == null) {
             this.namespaceDeclarationStack = new NamespaceDeclarationStack();
@@ -153,22 +169,175 @@ public class InterchangeContext {
         parser.getFeatures().putAll(features);
         parser.setFeature(EDIParser.FEATURE_VALIDATE, validate);
         parser.setNamespaceDeclarationStack(namespaceDeclarationStack);
+        parser.setErrorCollector(errorCollector);
+        parser.setMetrics(metrics);
 
         return parser;
     }
 
+    /**
+     * Create a context for parsing a single message block, read from its own segment reader, independently (and
+     * possibly concurrently) of this interchange context. The message context starts from this context's current
+     * indentation and namespace declarations.
+     * <br><br>
+     * If this context's namespace stack is container managed, the message context's namespace stack is managed as
+     * the container would, pushing the namespaces declared by the message block's elements as they are passed to
+     * the message content handler.
+     *
+     * @param messageSegmentReader  The message block {@link BufferedSegmentReader} instance.
+     * @param messageContentHandler The {@link ContentHandler content handler} instance to receive the message block events.
+     * @return The message context.
+     * @throws SAXException Error copying the namespace declarations.
+     */
+    public InterchangeContext newMessageContext(BufferedSegmentReader messageSegmentReader, ContentHandler messageContentHandler) throws SAXException {
+        return newMessageContext(messageSegmentReader, messageContentHandler, containerManagedNamespaceStack);
+    }
+
+    private InterchangeContext newMessageContext(BufferedSegmentReader messageSegmentReader, ContentHandler messageContentHandler, boolean containerManagedNamespaceStack) throws SAXException {
+        NamespaceDeclarationStack messageNamespaceDeclarationStack = new NamespaceDeclarationStack();
+        AttributesImpl namespaceDeclarations = new AttributesImpl();
+        for (Map.Entry<String, String> namespace : namespaceDeclarationStack.getActiveNamespaces().entrySet()) {
+            String prefix = namespace.getKey();
+            if (prefix == null || prefix.isEmpty()) {
+                namespaceDeclarations.addAttribute(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, XMLConstants.XMLNS_ATTRIBUTE, XMLConstants.XMLNS_ATTRIBUTE, "CDATA", namespace.getValue());
+            } else {
+                namespaceDeclarations.addAttribute(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, prefix, XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix, "CDATA", namespace.getValue());
+            }
+        }
+        // No reader is pushed yet, so as the copied declarations are not reported as prefix mappings...
+        messageNamespaceDeclarationStack.pushNamespaces(XMLConstants.DEFAULT_NS_PREFIX, XMLConstants.NULL_NS_URI, namespaceDeclarations);
+
+        if (containerManagedNamespaceStack) {
+            messageContentHandler = new NamespaceDeclaringContentHandler(messageContentHandler, messageNamespaceDeclarationStack);
+        }
+
+        InterchangeContext messageContext = new InterchangeContext(messageSegmentReader, registry, messageContentHandler, features, controlBlockHandlerFactory, messageNamespaceDeclarationStack, validate);
+        messageContext.containerManagedNamespaceStack = containerManagedNamespaceStack;
+        messageContext.indentDepth = indentDepth;
+        messageContext.controlSegmentParser.setIndentDepth(controlSegmentParser.getIndentDepth());
+        messageContext.interchangeHeader = interchangeHeader;
+        messageContext.groupHeader = groupHeader;
+        messageContext.setErrorCollector(errorCollector);
+        messageContext.setMetrics(metrics);
+
+        return messageContext;
+    }
+
+    /**
+     * Create a context for parsing a single message block off this context's segment reader, as a self-contained
+     * document. Indentation restarts at the message block and all namespace prefix mappings made by the message
+     * block are reported to the message content handler.
+     *
+     * @param messageContentHandler The {@link ContentHandler content handler} instance to receive the message block events.
+     * @return The message context.
+     * @throws SAXException Error copying the namespace declarations.
+     */
+    public InterchangeContext newMessageDocumentContext(ContentHandler messageContentHandler) throws SAXException {
+        InterchangeContext messageContext = newMessageContext(segmentReader, messageContentHandler, false);
+
+        messageContext.indentDepth = 1;
+        messageContext.controlSegmentParser.setIndentDepth(0);
+
+        return messageContext;
+    }
+
+    /**
+     * The {@link Executor} on which message blocks are parsed concurrently, or <code>null</code> if message blocks
+     * are parsed on the interchange parsing thread.
+     */
+    public Executor getMessageExecutor() {
+        return messageExecutor;
+    }
+
+    public void setMessageExecutor(Executor messageExecutor) {
+        this.messageExecutor = messageExecutor;
+    }
+
+    /**
+     * The {@link MessageListener} to which message blocks are delivered, one at a time, instead of to the
+     * interchange content handler, or <code>null</code> if message blocks are delivered to the interchange
+     * content handler.
+     */
+    public MessageListener getMessageListener() {
+        return messageListener;
+    }
+
+    public void setMessageListener(MessageListener messageListener) {
+        this.messageListener = messageListener;
+    }
+
+    /**
+     * The {@link EDIParseErrorCollector} to which the message errors are collected, or <code>null</code> if
+     * parsing fails on the first error.
+     */
+    public EDIParseErrorCollector getErrorCollector() {
+        return errorCollector;
+    }
+
+    public void setErrorCollector(EDIParseErrorCollector errorCollector) {
+        this.errorCollector = errorCollector;
+        controlSegmentParser.setErrorCollector(errorCollector);
+    }
+
+    /**
+     * The {@link EDIMetrics} to which the parsers report.  Never <code>null</code>.
+     */
+    public EDIMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(EDIMetrics metrics) {
+        this.metrics = (metrics != null ? metrics : NoOpEDIMetrics.INSTANCE);
+        controlSegmentParser.setMetrics(this.metrics);
+    }
+
+    /**
+     * The number of message blocks (UNH to UNT) read so far off this context's segment reader.
+     */
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public void incrementMessageCount() {
+        messageCount++;
+    }
+
+    /**
+     * The fields of the header segment of the interchange currently being parsed, or <code>null</code> if not
+     * inside an interchange.
+     */
+    public String[] getInterchangeHeader() {
+        return interchangeHeader;
+    }
+
+    public void setInterchangeHeader(String[] interchangeHeader) {
+        this.interchangeHeader = interchangeHeader;
+    }
+
+    /**
+     * The fields of the header segment of the group currently being parsed, or <code>null</code> if not
+     * inside a group.
+     */
+    public String[] getGroupHeader() {
+        return groupHeader;
+    }
+
+    public void setGroupHeader(String[] groupHeader) {
+        this.groupHeader = groupHeader;
+    }
+
     public EDIParser getControlSegmentParser() {
         return controlSegmentParser;
     }
 
     public void mapControlSegment(Segment controlSegment, boolean clearSegmentBuffer) throws SAXException {
         controlSegmentParser.startElement(controlSegment, true);
-        controlSegmentParser.mapFields(segmentReader.getCurrentSegmentFields(), controlSegment);
+        controlSegmentParser.mapFields(segmentReader.getCurrentSegmentFieldSlices(), controlSegment);
         controlSegmentParser.endElement(controlSegment, true);
 
         // And clear the buffer... we're finished with this data...
         if (clearSegmentBuffer) {
-            segmentReader.getSegmentBuffer().setLength(0);
+            segmentReader.getSegmentBuilder().setLength(0);
         }
     }
 
@@ -0,0 +1,160 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.interchange;
+
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import javax.xml.XMLConstants;
+
+/**
+ * A single interchange message block, along with the header segments of the interchange (and group) enclosing it.
+ * <p/>
+ * The message block events are {@link #replay(ContentHandler) replayed} as a self-contained SAX document, rooted
+ * at the message block element and declaring all the namespaces it uses.
+ */
+public class InterchangeMessage {
+
+    private final String[] interchangeHeader;
+    private final String[] groupHeader;
+    private final String[] messageHeader;
+    private final Map<String, String> namespaces;
+    private final RecordingContentHandler events;
+
+    /**
+     * Public constructor.
+     *
+     * @param interchangeHeader The fields of the interchange header segment.
+     * @param groupHeader       The fields of the group header segment, or <code>null</code> if the message is not in a group.
+     * @param messageHeader     The fields of the message header segment.
+     * @param namespaces        The namespace declarations (prefix to URI) in scope at the message block.
+     * @param events            The message block events.
+     */
+    public InterchangeMessage(String[] interchangeHeader, String[] groupHeader, String[] messageHeader, Map<String, String> namespaces, RecordingContentHandler events) {
+        this.interchangeHeader = interchangeHeader;
+        this.groupHeader = groupHeader;
+        this.messageHeader = messageHeader;
+        this.namespaces = namespaces;
+        this.events = events;
+    }
+
+    public String[] getInterchangeHeader() {
+        return interchangeHeader;
+    }
+
+    public String[] getGroupHeader() {
+        return groupHeader;
+    }
+
+    public String[] getMessageHeader() {
+        return messageHeader;
+    }
+
+    /**
+     * Replay the message block as a SAX document.
+     *
+     * @param contentHandler The content handler to receive the document events.
+     * @throws SAXException Error thrown by the content handler.
+     */
+    public void replay(ContentHandler contentHandler) throws SAXException {
+        contentHandler.startDocument();
+        for (Map.Entry<String, String> namespace : namespaces.entrySet()) {
+            contentHandler.startPrefixMapping(prefix(namespace.getKey()), namespace.getValue());
+        }
+        events.replay(new DocumentFilter(contentHandler));
+        for (Map.Entry<String, String> namespace : namespaces.entrySet()) {
+            contentHandler.endPrefixMapping(prefix(namespace.getKey()));
+        }
+        contentHandler.endDocument();
+    }
+
+    private static String prefix(String prefix) {
+        return (prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix);
+    }
+
+    /**
+     * Drops the indentation outside the message block element and declares the inherited namespaces on it.
+     */
+    private class DocumentFilter extends XMLFilterImpl {
+
+        private int depth;
+
+        private DocumentFilter(ContentHandler contentHandler) {
+            setContentHandler(contentHandler);
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            if (depth++ == 0) {
+                AttributesImpl rootAttributes = new AttributesImpl(atts);
+                for (Map.Entry<String, String> namespace : namespaces.entrySet()) {
+                    String prefix = prefix(namespace.getKey());
+                    String qualifiedName = (prefix.isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix);
+                    if (rootAttributes.getIndex(qualifiedName) == -1) {
+                        rootAttributes.addAttribute(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, (prefix.isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE : prefix), qualifiedName, "CDATA", namespace.getValue());
+                    }
+                }
+                atts = rootAttributes;
+            }
+            super.startElement(uri, localName, qName, atts);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            depth--;
+            super.endElement(uri, localName, qName);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (depth > 0) {
+                super.characters(ch, start, length);
+            }
+        }
+    }
+}
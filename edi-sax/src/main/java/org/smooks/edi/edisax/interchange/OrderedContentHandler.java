@@ -0,0 +1,237 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.interchange;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.smooks.assertion.AssertArgument;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * {@link ContentHandler} which keeps the SAX events of message blocks parsed concurrently in the order the
+ * message blocks appear in the interchange.
+ * <p/>
+ * Message blocks are {@link #submit(Callable) submitted} for parsing on an {@link Executor}, each recording its
+ * events in its own {@link RecordingContentHandler}. Events received directly (i.e. from the interchange control
+ * segments) while message blocks are pending are recorded behind them. Everything is replayed on the delegate
+ * handler, on the parsing thread, as soon as the blocks ahead of it have completed. At most
+ * <code>maxPendingMessages</code> message blocks are held at any one time, bounding memory use.
+
+ */
+public class OrderedContentHandler implements ContentHandler {
+
+    private final ContentHandler delegate;
+    private final Executor executor;
+    private final int maxPendingMessages;
+    private final Deque<Object> pending = new ArrayDeque<Object>();
+    private int pendingMessages;
+
+    public OrderedContentHandler(ContentHandler delegate, Executor executor, int maxPendingMessages) {
+        AssertArgument.isNotNull(delegate, "delegate");
+        AssertArgument.isNotNull(executor, "executor");
+        if (maxPendingMessages < 1) {
+            throw new IllegalArgumentException("'maxPendingMessages' must be at least 1.");
+        }
+        this.delegate = delegate;
+        this.executor = executor;
+        this.maxPendingMessages = maxPendingMessages;
+    }
+
+    public ContentHandler getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Submit a message block for parsing.
+     *
+     * @param messageBlock Parses the message block, returning its recorded events.
+     * @throws SAXException Error parsing or replaying an earlier message block.
+     */
+    public void submit(Callable<RecordingContentHandler> messageBlock) throws SAXException {
+        while (pendingMessages >= maxPendingMessages) {
+            replayHead(true);
+        }
+
+        FutureTask<RecordingContentHandler> task = new FutureTask<RecordingContentHandler>(messageBlock);
+        pending.add(task);
+        pendingMessages++;
+        executor.execute(task);
+
+        replay(false);
+    }
+
+    /**
+     * Replay all pending events, waiting for the pending message blocks to complete.
+     *
+     * @throws SAXException Error parsing or replaying a message block.
+     */
+    public void flush() throws SAXException {
+        replay(true);
+    }
+
+    /**
+     * Cancel all pending message blocks, discarding their events.
+     */
+    public void cancel() {
+        for (Object block : pending) {
+            if (block instanceof Future) {
+                ((Future<?>) block).cancel(true);
+            }
+        }
+        pending.clear();
+        pendingMessages = 0;
+    }
+
+    private void replay(boolean wait) throws SAXException {
+        while (!pending.isEmpty()) {
+            if (!replayHead(wait)) {
+                return;
+            }
+        }
+    }
+
+    private boolean replayHead(boolean wait) throws SAXException {
+        Object head = pending.peek();
+        RecordingContentHandler events;
+
+        if (head instanceof Future) {
+            Future<?> message = (Future<?>) head;
+            if (!wait && !message.isDone()) {
+                return false;
+            }
+            events = getMessageEvents(message);
+            pendingMessages--;
+        } else {
+            events = (RecordingContentHandler) head;
+        }
+
+        pending.poll();
+        events.replay(delegate);
+
+        return true;
+    }
+
+    private RecordingContentHandler getMessageEvents(Future<?> message) throws SAXException {
+        try {
+            return (RecordingContentHandler) message.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new SAXException("Interrupted while waiting for an interchange message to be parsed.", e);
+        } catch (ExecutionException e) {
+            cancel();
+            Throwable cause = e.getCause();
+            if (cause instanceof SAXException) {
+                throw (SAXException) cause;
+            } else if (cause instanceof IOException || cause instanceof RuntimeException) {
+                throw new SAXException(cause.getMessage(), (Exception) cause);
+            } else {
+                throw (Error) cause;
+            }
+        }
+    }
+
+    private ContentHandler getHandler() {
+        if (pending.isEmpty()) {
+            return delegate;
+        }
+        if (!(pending.peekLast() instanceof RecordingContentHandler)) {
+            pending.add(new RecordingContentHandler());
+        }
+        return (ContentHandler) pending.peekLast();
+    }
+
+    public void setDocumentLocator(Locator locator) {
+        delegate.setDocumentLocator(locator);
+    }
+
+    public void startDocument() throws SAXException {
+        getHandler().startDocument();
+    }
+
+    public void endDocument() throws SAXException {
+        getHandler().endDocument();
+    }
+
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        getHandler().startPrefixMapping(prefix, uri);
+    }
+
+    public void endPrefixMapping(String prefix) throws SAXException {
+        getHandler().endPrefixMapping(prefix);
+    }
+
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+        getHandler().startElement(uri, localName, qName, atts);
+    }
+
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        getHandler().endElement(uri, localName, qName);
+    }
+
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        getHandler().characters(ch, start, length);
+    }
+
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        getHandler().ignorableWhitespace(ch, start, length);
+    }
+
+    public void processingInstruction(String target, String data) throws SAXException {
+        getHandler().processingInstruction(target, data);
+    }
+
+    public void skippedEntity(String name) throws SAXException {
+        getHandler().skippedEntity(name);
+    }
+}
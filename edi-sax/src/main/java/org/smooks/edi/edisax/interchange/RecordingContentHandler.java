@@ -0,0 +1,175 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.interchange;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * {@link ContentHandler} which records the SAX events it receives, for replaying later (and possibly on
+ * another thread) to another {@link ContentHandler}.
+ */
+public class RecordingContentHandler implements ContentHandler {
+
+    private final List<Event> events = new ArrayList<Event>();
+
+    /**
+     * Replay the recorded events, in the order they were received.
+     *
+     * @param contentHandler The content handler to receive the events.
+     * @throws SAXException Error thrown by the content handler.
+     */
+    public void replay(ContentHandler contentHandler) throws SAXException {
+        for (Event event : events) {
+            event.replay(contentHandler);
+        }
+    }
+
+    public boolean isEmpty() {
+        return events.isEmpty();
+    }
+
+    public void setDocumentLocator(Locator locator) {
+    }
+
+    public void startDocument() {
+        events.add(new Event() {
+            public void replay(ContentHandler contentHandler) throws SAXException {
+                contentHandler.startDocument();
+            }
+        });
+    }
+
+    public void endDocument() {
+        events.add(new Event() {
+            public void replay(ContentHandler contentHandler) throws SAXException {
+                contentHandler.endDocument();
+            }
+        });
+    }
+
+    public void startPrefixMapping(final String prefix, final String uri) {
+        events.add(new Event() {
+            public void replay(ContentHandler contentHandler) throws SAXException {
+                contentHandler.startPrefixMapping(prefix, uri);
+            }
+        });
+    }
+
+    public void endPrefixMapping(final String prefix) {
+        events.add(new Event() {
+            public void replay(ContentHandler contentHandler) throws SAXException {
+                contentHandler.endPrefixMapping(prefix);
+            }
+        });
+    }
+
+    public void startElement(final String uri, final String localName, final String qName, Attributes atts) {
+        final Attributes attributes = (atts == null || atts.getLength() == 0 ? EMPTY_ATTRIBUTES : new AttributesImpl(atts));
+        events.add(new Event() {
+            public void replay(ContentHandler contentHandler) throws SAXException {
+                contentHandler.startElement(uri, localName, qName, attributes);
+            }
+        });
+    }
+
+    public void endElement(final String uri, final String localName, final String qName) {
+        events.add(new Event() {
+            public void replay(ContentHandler contentHandler) throws SAXException {
+                contentHandler.endElement(uri, localName, qName);
+            }
+        });
+    }
+
+    public void characters(char[] ch, int start, int length) {
+        final char[] characters = copy(ch, start, length);
+        events.add(new Event() {
+            public void replay(ContentHandler contentHandler) throws SAXException {
+                contentHandler.characters(characters, 0, characters.length);
+            }
+        });
+    }
+
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+        final char[] whitespace = copy(ch, start, length);
+        events.add(new Event() {
+            public void replay(ContentHandler contentHandler) throws SAXException {
+                contentHandler.ignorableWhitespace(whitespace, 0, whitespace.length);
+            }
+        });
+    }
+
+    public void processingInstruction(final String target, final String data) {
+        events.add(new Event() {
+            public void replay(ContentHandler contentHandler) throws SAXException {
+                contentHandler.processingInstruction(target, data);
+            }
+        });
+    }
+
+    public void skippedEntity(final String name) {
+        events.add(new Event() {
+            public void replay(ContentHandler contentHandler) throws SAXException {
+                contentHandler.skippedEntity(name);
+            }
+        });
+    }
+
+    private static char[] copy(char[] ch, int start, int length) {
+        char[] copy = new char[length];
+        System.arraycopy(ch, start, copy, 0, length);
+        return copy;
+    }
+
+    private static final Attributes EMPTY_ATTRIBUTES = new AttributesImpl();
+
+    private interface Event {
+        void replay(ContentHandler contentHandler) throws SAXException;
+    }
+}
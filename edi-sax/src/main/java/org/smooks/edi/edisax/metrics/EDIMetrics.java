@@ -0,0 +1,103 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.metrics;
+
+/**
+ * EDI parsing metrics SPI.
+ * <br><br>
+ * Set on an {@link org.smooks.edi.edisax.EDIParser} or a
+ * {@link org.smooks.edi.edisax.unedifact.UNEdifactInterchangeParser} to have the parser report what it does.
+ * The parsers default to {@link NoOpEDIMetrics}.  {@link InMemoryEDIMetrics} keeps counters and histograms
+ * in memory, for a host to export.
+ * <br><br>
+ * Segment and character counts are reported once per parse, not per segment, and the parsers only time
+ * messages and mapping model lookups when {@link #isEnabled() enabled}.  Implementations may be called
+ * concurrently when message blocks are parsed concurrently.
+ */
+public interface EDIMetrics {
+
+    /**
+     * Are the metrics being recorded.  If not, the parsers skip taking the measurements.
+     *
+     * @return True if the metrics are being recorded, otherwise false.
+     */
+    boolean isEnabled();
+
+    /**
+     * EDI stream read.
+     *
+     * @param segments   The number of segments read.
+     * @param characters The number of characters read.
+     */
+    void streamRead(long segments, long characters);
+
+    /**
+     * EDI message parsed.
+     *
+     * @param nanos The time taken to parse the message, in nanoseconds.
+     */
+    void messageParsed(long nanos);
+
+    /**
+     * EDI interchange parsed.
+     *
+     * @param messages The number of messages in the interchange.
+     */
+    void interchangeParsed(int messages);
+
+    /**
+     * Mapping model looked up in a {@link org.smooks.edi.edisax.registry.MappingsRegistry}, including the time
+     * taken loading the model if it was not already loaded.
+     *
+     * @param nanos The time taken to look up the model, in nanoseconds.
+     */
+    void mappingModelLookup(long nanos);
+
+    /**
+     * EDI message error, whether it failed the parse or was collected by an
+     * {@link org.smooks.edi.edisax.EDIParseErrorCollector}.
+     *
+     * @param segmentCode The code of the segment on which the error occurred, or <code>null</code> if not on a segment.
+     */
+    void validationError(String segmentCode);
+}
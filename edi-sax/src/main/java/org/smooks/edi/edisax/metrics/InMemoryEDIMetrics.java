@@ -0,0 +1,160 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link EDIMetrics} kept in memory, as counters and {@link Histogram histograms}, for a host to read and export.
+ * <br><br>
+ * Safe for use by concurrent parsers.  Times are in nanoseconds.
+ */
+public class InMemoryEDIMetrics implements EDIMetrics {
+
+    private static final String NO_SEGMENT = "";
+
+    private final LongAdder segmentsRead = new LongAdder();
+    private final LongAdder charactersRead = new LongAdder();
+    private final Histogram messageTime = new Histogram();
+    private final Histogram interchangeMessages = new Histogram();
+    private final Histogram mappingModelLookupTime = new Histogram();
+    private final ConcurrentMap<String, LongAdder> validationErrors = new ConcurrentHashMap<String, LongAdder>();
+
+    public boolean isEnabled() {
+        return true;
+    }
+
+    public void streamRead(long segments, long characters) {
+        segmentsRead.add(segments);
+        charactersRead.add(characters);
+    }
+
+    public void messageParsed(long nanos) {
+        messageTime.record(nanos);
+    }
+
+    public void interchangeParsed(int messages) {
+        interchangeMessages.record(messages);
+    }
+
+    public void mappingModelLookup(long nanos) {
+        mappingModelLookupTime.record(nanos);
+    }
+
+    public void validationError(String segmentCode) {
+        String key = (segmentCode != null ? segmentCode : NO_SEGMENT);
+        LongAdder count = validationErrors.get(key);
+        if (count == null) {
+            LongAdder newCount = new LongAdder();
+            count = validationErrors.putIfAbsent(key, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.increment();
+    }
+
+    public long getSegmentsRead() {
+        return segmentsRead.sum();
+    }
+
+    public long getCharactersRead() {
+        return charactersRead.sum();
+    }
+
+    /**
+     * The time taken to parse each message.  The histogram count is the number of messages parsed.
+     */
+    public Histogram getMessageTime() {
+        return messageTime;
+    }
+
+    /**
+     * The number of messages in each interchange.  The histogram count is the number of interchanges parsed.
+     */
+    public Histogram getInterchangeMessages() {
+        return interchangeMessages;
+    }
+
+    /**
+     * The time taken to look up each mapping model.  The histogram count is the number of lookups.
+     */
+    public Histogram getMappingModelLookupTime() {
+        return mappingModelLookupTime;
+    }
+
+    /**
+     * The number of message errors, by segment code.  Errors not on a segment are counted against the empty
+     * segment code.
+     *
+     * @return A snapshot of the error counts, sorted by segment code.
+     */
+    public Map<String, Long> getValidationErrors() {
+        Map<String, Long> snapshot = new TreeMap<String, Long>();
+        for (Map.Entry<String, LongAdder> count : validationErrors.entrySet()) {
+            snapshot.put(count.getKey(), count.getValue().sum());
+        }
+        return snapshot;
+    }
+
+    public long getValidationErrorCount() {
+        long total = 0;
+        for (LongAdder count : validationErrors.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    public void reset() {
+        segmentsRead.reset();
+        charactersRead.reset();
+        messageTime.reset();
+        interchangeMessages.reset();
+        mappingModelLookupTime.reset();
+        validationErrors.clear();
+    }
+}
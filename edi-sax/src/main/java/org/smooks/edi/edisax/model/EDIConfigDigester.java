@@ -502,6 +502,12 @@ public class EDIConfigDigester {
         } else {
             valueNode.setDataType(getAttributeValue(node, "type"));
         }
+        String typeParameters = getAttributeValue(node, "dataTypeParameters");
+        if (typeParameters != null) {
+            valueNode.setDataTypeParametersString(typeParameters);
+        } else {
+            valueNode.setDataTypeParametersString(getAttributeValue(node, "typeParameters"));
+        }
         valueNode.setMinLength(getNodeValueAsInteger(node, "minLength"));
         valueNode.setMaxLength(getNodeValueAsInteger(node, "maxLength"));
     }
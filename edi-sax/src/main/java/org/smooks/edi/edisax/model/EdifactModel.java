@@ -60,6 +60,8 @@ import org.smooks.edi.edisax.model.internal.Component;
 import org.smooks.edi.edisax.model.internal.Field;
 import org.smooks.edi.edisax.model.internal.Segment;
 import org.smooks.edi.edisax.model.internal.SegmentGroup;
+import org.smooks.edi.edisax.model.internal.SubComponent;
+import org.smooks.edi.edisax.model.internal.ValueNode;
 import org.smooks.edi.edisax.model.internal.Delimiters;
 import org.smooks.edi.edisax.model.internal.Description;
 import org.smooks.edi.edisax.model.internal.Edimap;
@@ -82,6 +84,8 @@ public class EdifactModel {
 
     private volatile Edimap edimap;
     private Collection<EdifactModel> associateModels;
+    private SegmentDefinitionInterner segmentDefinitionInterner;
+    private ImportCache importCache;
 
     /**
      * Public Constructor.
@@ -95,6 +99,26 @@ public class EdifactModel {
         importBaseURI = URIResourceLocator.getSystemBaseURI();
     }
 
+    /**
+     * Public Constructor.
+     *
+     * @param modelURI The model resource URI.
+     * @param edimap   Mapping Model, with its imports already applied (e.g. as read by
+     *                 {@link org.smooks.edi.edisax.util.EdimapBinaryReader}).
+     */
+    public EdifactModel(URI modelURI, Edimap edimap) {
+        AssertArgument.isNotNull(modelURI, "modelURI");
+        AssertArgument.isNotNull(edimap, "edimap");
+        this.modelURI = modelURI;
+        this.importBaseURI = URIResourceLocator.extractBaseURI(modelURI);
+        this.edimap = edimap;
+        description = edimap.getDescription();
+        if (edimap.getSegments() != null) {
+            compileDispatchTables(edimap.getSegments());
+            compileValueValidators(edimap.getSegments());
+        }
+    }
+
     /**
      * Public Constructor.
      */
@@ -207,6 +231,31 @@ public class EdifactModel {
         this.associateModels = associateModels;
     }
 
+    /**
+     * Set the interner with which to share the segment definitions of this model with other models.
+     * <p/>
+     * The segment definitions are interned once the imports have been applied, or straight away if the model
+     * has already been parsed.
+     *
+     * @param segmentDefinitionInterner The segment definition interner.
+     */
+    public synchronized void setSegmentDefinitionInterner(SegmentDefinitionInterner segmentDefinitionInterner) {
+        this.segmentDefinitionInterner = segmentDefinitionInterner;
+        if (edimap != null && segmentDefinitionInterner != null) {
+            segmentDefinitionInterner.intern(edimap);
+        }
+    }
+
+    /**
+     * Set the cache of the imported mapping models shared with other models.  Must be set before the model is
+     * parsed.
+     *
+     * @param importCache The import cache.
+     */
+    public synchronized void setImportCache(ImportCache importCache) {
+        this.importCache = importCache;
+    }
+
     /**
      * Set the edifact edimap from the mapping model InputStream.
      *
@@ -228,6 +277,48 @@ public class EdifactModel {
         edimap = digester.digestEDIConfig(new StringReader(mappingConfig));
         description = edimap.getDescription();
         importFiles(tree.getRoot(), edimap, tree);
+        if (segmentDefinitionInterner != null) {
+            segmentDefinitionInterner.intern(edimap);
+        }
+        compileDispatchTables(edimap.getSegments());
+        compileValueValidators(edimap.getSegments());
+    }
+
+    /**
+     * Compile the {@link SegmentGroup#getDispatchTable() segcode dispatch tables} for the supplied segment
+     * group and all its descendant groups.  Must be done after the imports have been applied.
+     *
+     * @param segmentGroup The segment group.
+     */
+    private void compileDispatchTables(SegmentGroup segmentGroup) {
+        segmentGroup.getDispatchTable();
+        for (SegmentGroup childGroup : segmentGroup.getSegments()) {
+            compileDispatchTables(childGroup);
+        }
+    }
+
+    /**
+     * Compile the {@link org.smooks.edi.edisax.model.internal.ValueNode#getValidator() value validators} for the
+     * fields, components and sub-components of the supplied segment group and all its descendant groups.  Must
+     * be done after the imports have been applied.
+     *
+     * @param segmentGroup The segment group.
+     */
+    private void compileValueValidators(SegmentGroup segmentGroup) {
+        if (segmentGroup instanceof Segment) {
+            for (Field field : ((Segment) segmentGroup).getFields()) {
+                field.getValidator();
+                for (Component component : field.getComponents()) {
+                    component.getValidator();
+                    for (SubComponent subComponent : component.getSubComponents()) {
+                        subComponent.getValidator();
+                    }
+                }
+            }
+        }
+        for (SegmentGroup childGroup : segmentGroup.getSegments()) {
+            compileValueValidators(childGroup);
+        }
     }
 
     /**
@@ -255,13 +346,21 @@ public class EdifactModel {
                 throw new EDIParseException(edimap, "Circular dependency encountered in edi-message-mapping with imported files [" + importUri + "] and [" + conflictNode.getValue() + "]");
             }
 
-            importedSegments = getImportedSegments(importUri);
+            if (importCache != null) {
+                importedSegments = importCache.getSegments(importUri);
+            }
+            if (importedSegments == null) {
+                importedSegments = getImportedSegments(importUri);
+            }
             if (importedSegments == null) {
                 EDIConfigDigester digester = new EDIConfigDigester(importUri, URIResourceLocator.extractBaseURI(importUri));
 
                 importedEdimap = digester.digestEDIConfig(new URIResourceLocator().getResource(importUri.toString()));
                 importFiles(child, importedEdimap, tree);
                 importedSegments = createImportMap(importedEdimap);
+                if (importCache != null) {
+                    importedSegments = importCache.putIfAbsent(importUri, importedEdimap, importedSegments);
+                }
             }
 
             applyImportOnSegments(edimap.getSegments().getSegments(), imp, importedSegments);
@@ -343,18 +442,90 @@ public class EdifactModel {
             segment.setTruncatable(truncatableSegments);
         }
 
+        //The imported fields and components may be shared with other importing models (see ImportCache), so
+        //they are copied rather than modified.
         if (truncatableFields != null || truncatableComponents != null) {
-            for (Field field : segment.getFields()) {
-                field.setTruncatable(isTruncatable(truncatableFields, field.isTruncatable()));
-                if (truncatableComponents != null) {
-                    for (Component component : field.getComponents()) {
-                        component.setTruncatable(isTruncatable(truncatableComponents, component.isTruncatable()));
+            List<Field> fields = segment.getFields();
+            for (int i = 0; i < fields.size(); i++) {
+                Field field = fields.get(i);
+                boolean fieldTruncatable = isTruncatable(truncatableFields, field.isTruncatable());
+
+                if (fieldTruncatable != field.isTruncatable() || !isTruncatable(field.getComponents(), truncatableComponents)) {
+                    field = copyField(field);
+                    field.setTruncatable(fieldTruncatable);
+                    if (truncatableComponents != null) {
+                        List<Component> components = field.getComponents();
+                        for (int j = 0; j < components.size(); j++) {
+                            Component component = components.get(j);
+                            if (component.isTruncatable() != truncatableComponents) {
+                                component = copyComponent(component);
+                                component.setTruncatable(truncatableComponents);
+                                components.set(j, component);
+                            }
+                        }
                     }
+                    fields.set(i, field);
                 }
             }
         }
     }
 
+    /**
+     * Are the supplied components all set as per the truncatable attribute specified in the import element.
+     *
+     * @param components           the components.
+     * @param truncatableImporting truncatable value found in import element in importing edi-message-mapping.
+     * @return true if the truncatable attribute of the components need not be overridden, otherwise false.
+     */
+    private boolean isTruncatable(List<Component> components, Boolean truncatableImporting) {
+        if (truncatableImporting != null) {
+            for (Component component : components) {
+                if (component.isTruncatable() != truncatableImporting) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Field copyField(Field field) {
+        Field copy = new Field();
+
+        copyValueNode(field, copy);
+        copy.setRequired(field.isRequired());
+        copy.setTruncatable(field.isTruncatable());
+        copy.setCardinality(field.getCardinality());
+        copy.setCodeList(field.getCodeList());
+        copy.getComponents().addAll(field.getComponents());
+
+        return copy;
+    }
+
+    private Component copyComponent(Component component) {
+        Component copy = new Component();
+
+        copyValueNode(component, copy);
+        copy.setRequired(component.isRequired());
+        copy.setTruncatable(component.isTruncatable());
+        copy.setCodeList(component.getCodeList());
+        copy.getSubComponents().addAll(component.getSubComponents());
+
+        return copy;
+    }
+
+    private void copyValueNode(ValueNode valueNode, ValueNode copy) {
+        copy.setName(valueNode.getName());
+        copy.setNamespace(valueNode.getNamespace());
+        copy.setDocumentation(valueNode.getDocumentation());
+        copy.setXmltag(valueNode.getXmltag());
+        copy.setNodeTypeRef(valueNode.getNodeTypeRef());
+        copy.setParent(valueNode.getParent());
+        copy.setDataType(valueNode.getDataType());
+        copy.setDataTypeParametersString(valueNode.getDataTypeParametersString());
+        copy.setMinLength(valueNode.getMinLength());
+        copy.setMaxLength(valueNode.getMaxLength());
+    }
+
     /**
      * Creates a Map given an Edimap. All segments in edimap are stored as values in the Map
      * with the corresponding segcode as key.
@@ -0,0 +1,128 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.model;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.smooks.edi.edisax.model.internal.Edimap;
+import org.smooks.edi.edisax.model.internal.Segment;
+
+/**
+ * Cache of the mapping models imported by {@link EdifactModel EdifactModels}, by resolved import URI.
+ * <p/>
+ * Models sharing an import cache digest each imported mapping model once, rather than once per importing model.
+ * A cached import is the digested {@link Edimap} (with its own imports applied) and its segments by segcode.
+ * Cached imports are shared, so they must not be modified by the importing models.
+ * <p/>
+ * Safe for concurrent use.  Concurrent first imports of the same URI may digest it more than once, but all
+ * the importing models then share the first one cached.
+ */
+public class ImportCache {
+
+    private final ConcurrentMap<URI, CachedImport> imports = new ConcurrentHashMap<URI, CachedImport>();
+
+    /**
+     * Get the digested Edimap imported from the supplied URI.
+     *
+     * @param importURI The resolved import URI.
+     * @return The Edimap, or null if not cached.
+     */
+    public Edimap getEdimap(URI importURI) {
+        CachedImport cachedImport = imports.get(importURI);
+        return cachedImport != null ? cachedImport.edimap : null;
+    }
+
+    /**
+     * Get the segments, by segcode, imported from the supplied URI.
+     *
+     * @param importURI The resolved import URI.
+     * @return The segments, or null if not cached.
+     */
+    public Map<String, Segment> getSegments(URI importURI) {
+        CachedImport cachedImport = imports.get(importURI);
+        return cachedImport != null ? cachedImport.segments : null;
+    }
+
+    /**
+     * @return The number of cached imports.
+     */
+    public int size() {
+        return imports.size();
+    }
+
+    /**
+     * Clear the cache.
+     */
+    public void clear() {
+        imports.clear();
+    }
+
+    /**
+     * Cache an import, unless already cached.
+     *
+     * @param importURI The resolved import URI.
+     * @param edimap    The digested Edimap, with its own imports applied.
+     * @param segments  The segments of the Edimap, by segcode.
+     * @return The cached segments: the supplied segments, or those cached concurrently.
+     */
+    Map<String, Segment> putIfAbsent(URI importURI, Edimap edimap, Map<String, Segment> segments) {
+        CachedImport cachedImport = new CachedImport(edimap, Collections.unmodifiableMap(segments));
+        CachedImport existingImport = imports.putIfAbsent(importURI, cachedImport);
+
+        return existingImport != null ? existingImport.segments : cachedImport.segments;
+    }
+
+    private static final class CachedImport {
+        private final Edimap edimap;
+        private final Map<String, Segment> segments;
+
+        private CachedImport(Edimap edimap, Map<String, Segment> segments) {
+            this.edimap = edimap;
+            this.segments = segments;
+        }
+    }
+}
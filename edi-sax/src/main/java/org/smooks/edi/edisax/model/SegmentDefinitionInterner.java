@@ -0,0 +1,180 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.smooks.assertion.AssertArgument;
+import org.smooks.edi.edisax.model.internal.CodeList;
+import org.smooks.edi.edisax.model.internal.Component;
+import org.smooks.edi.edisax.model.internal.Edimap;
+import org.smooks.edi.edisax.model.internal.Field;
+import org.smooks.edi.edisax.model.internal.Segment;
+import org.smooks.edi.edisax.model.internal.SegmentGroup;
+import org.smooks.edi.edisax.model.internal.SubComponent;
+import org.smooks.edi.edisax.model.internal.ValueNode;
+
+/**
+ * Shares identical segment definitions between {@link Edimap Edimaps}.
+ * <p/>
+ * Applying the imports of a message model (see {@link EdifactModel}) puts the fields of the imported segment
+ * definitions into each of the importing segments, so as every message model of a directory holds its own copy
+ * of the common segment definitions.  Interning an Edimap replaces each {@link Field}, {@link Component} and
+ * {@link SubComponent} of its segments with the equal instance already interned, if any.  Only the segment
+ * occurrence data (min/max occurs, xmltag etc.) held by the {@link Segment Segments} themselves remains per message.
+ * <p/>
+ * Interned nodes are shared, so they must not be modified once interned.  The parent of an interned node is the
+ * parent it was first interned with.
+ */
+public class SegmentDefinitionInterner {
+
+    private final ConcurrentMap<List<Object>, ValueNode> definitions = new ConcurrentHashMap<List<Object>, ValueNode>();
+
+    /**
+     * Intern the segment definitions of the supplied Edimap.  The Edimap must have its imports applied.
+     *
+     * @param edimap The Edimap.
+     */
+    public void intern(Edimap edimap) {
+        AssertArgument.isNotNull(edimap, "edimap");
+
+        if (edimap.getSegments() != null) {
+            intern(edimap.getSegments());
+        }
+        if (edimap.getSimpleDataElements() != null) {
+            internComponents(edimap.getSimpleDataElements());
+        }
+        if (edimap.getCompositeDataElements() != null) {
+            internFields(edimap.getCompositeDataElements());
+        }
+    }
+
+    /**
+     * @return The number of distinct fields, components and sub components interned.
+     */
+    public int size() {
+        return definitions.size();
+    }
+
+    private void intern(SegmentGroup segmentGroup) {
+        if (segmentGroup instanceof Segment) {
+            internFields(((Segment) segmentGroup).getFields());
+        }
+        for (SegmentGroup childGroup : segmentGroup.getSegments()) {
+            intern(childGroup);
+        }
+    }
+
+    private void internFields(List<Field> fields) {
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+
+            internComponents(field.getComponents());
+
+            List<Object> key = valueNodeKey(field, Field.class);
+            key.addAll(Arrays.asList(field.isRequired(), field.isTruncatable(), field.getCardinality(), codeListKey(field.getCodeList()), new ArrayList<Object>(field.getComponents())));
+
+            Field internedField = intern(key, field);
+            if (internedField != field) {
+                fields.set(i, internedField);
+            }
+        }
+    }
+
+    private void internComponents(List<Component> components) {
+        for (int i = 0; i < components.size(); i++) {
+            Component component = components.get(i);
+
+            internSubComponents(component.getSubComponents());
+
+            List<Object> key = valueNodeKey(component, Component.class);
+            key.addAll(Arrays.asList(component.isRequired(), component.isTruncatable(), codeListKey(component.getCodeList()), new ArrayList<Object>(component.getSubComponents())));
+
+            Component internedComponent = intern(key, component);
+            if (internedComponent != component) {
+                components.set(i, internedComponent);
+            }
+        }
+    }
+
+    private void internSubComponents(List<SubComponent> subComponents) {
+        for (int i = 0; i < subComponents.size(); i++) {
+            SubComponent subComponent = subComponents.get(i);
+
+            List<Object> key = valueNodeKey(subComponent, SubComponent.class);
+            key.add(subComponent.isRequired());
+
+            SubComponent internedSubComponent = intern(key, subComponent);
+            if (internedSubComponent != subComponent) {
+                subComponents.set(i, internedSubComponent);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends ValueNode> T intern(List<Object> key, T valueNode) {
+        ValueNode internedNode = definitions.putIfAbsent(key, valueNode);
+        return internedNode != null ? (T) internedNode : valueNode;
+    }
+
+    /**
+     * The key of the properties common to all value nodes.  The child nodes are part of the keys of their parents,
+     * so as they must be interned first: interned nodes are then equal if identical.
+     */
+    private static List<Object> valueNodeKey(ValueNode valueNode, Class<? extends ValueNode> type) {
+        return new ArrayList<Object>(Arrays.asList(type, valueNode.getXmltag(), valueNode.getName(), valueNode.getNamespace(),
+                valueNode.getDocumentation(), valueNode.getNodeTypeRef(), valueNode.getDataType(), valueNode.getDataTypeParametersString(),
+                valueNode.getTypeClass(), valueNode.getMinLength(), valueNode.getMaxLength()));
+    }
+
+    private static List<Object> codeListKey(CodeList codeList) {
+        if (codeList == null) {
+            return null;
+        }
+        return Arrays.asList(codeList.getDocumentation(), new ArrayList<Object>(codeList.getCodes()));
+    }
+}
@@ -56,6 +56,7 @@ public class MappingNode {
     private String xmltag;
     private String nodeTypeRef;
     private MappingNode parent;
+    private QualifiedXmltag qualifiedXmltag;
 
     public MappingNode() {
     }
@@ -71,6 +72,32 @@ public class MappingNode {
 
     public void setXmltag(String value) {
         this.xmltag = value;
+        this.qualifiedXmltag = null;
+    }
+
+    /**
+     * Get the qualified XML element name of this node i.e. the {@link #getXmltag() xmltag}, prefixed with
+     * the namespace prefix in scope for the node {@link #getNamespace() namespace}.
+     * <br><br>
+     * The qualified name is cached for the last prefix asked for, so as it's not rebuilt for every element
+     * emitted for the node.
+     *
+     * @param prefix The namespace prefix, or null if the namespace has no prefix.
+     * @return The qualified XML element name.
+     */
+    public String getQualifiedXmltag(String prefix) {
+        if (prefix == null) {
+            return xmltag;
+        }
+
+        QualifiedXmltag qualified = qualifiedXmltag;
+        if (qualified == null || !qualified.prefix.equals(prefix)) {
+            // Immutable, so as it can be safely shared by parsers on different threads...
+            qualified = new QualifiedXmltag(prefix, prefix + ":" + xmltag);
+            qualifiedXmltag = qualified;
+        }
+
+        return qualified.name;
     }
 
     public String getNodeTypeRef() {
@@ -129,4 +156,15 @@ public class MappingNode {
     public void setNamespace(String namespace) {
         this.namespace = namespace;
     }
+
+    private static final class QualifiedXmltag {
+
+        private final String prefix;
+        private final String name;
+
+        private QualifiedXmltag(String prefix, String name) {
+            this.prefix = prefix;
+            this.name = name;
+        }
+    }
 }
@@ -0,0 +1,244 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.model.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Precompiled segment code dispatch table for the list of child {@link SegmentGroup SegmentGroups}
+ * of a {@link SegmentGroup}.
+ * <br><br>
+ * Segment codes that are plain tags (e.g. "UNH", "DTM") are matched using a hash lookup on the
+ * segment tag.  Only segment codes that are actually regex patterns (e.g. "1A\*a.*") need to be
+ * matched against the full segment using {@link SegmentGroup#getSegcodePattern()}.
+ * <br><br>
+ * The table allows the parser to jump over runs of optional segments that cannot match the
+ * current segment, instead of testing each of them in turn.
+ */
+public class SegcodeDispatchTable {
+
+    private final int size;
+    private final boolean[] literal;
+    // nextStop[i] is the index of the first segment group at, or after, i that is either required or
+    // has a regex segcode i.e. a segment group that cannot be jumped over...
+    private final int[] nextStop;
+    private final int maxLiteralLength;
+    private final String[] tags;
+    private final int[][] tagPositions;
+    private final int tagMask;
+
+    public SegcodeDispatchTable(List<SegmentGroup> segmentGroups) {
+        size = segmentGroups.size();
+        literal = new boolean[size];
+        nextStop = new int[size + 1];
+
+        List<String> distinctTags = new ArrayList<String>();
+        List<List<Integer>> distinctTagPositions = new ArrayList<List<Integer>>();
+        int maxLength = 0;
+
+        for (int i = 0; i < size; i++) {
+            SegmentGroup segmentGroup = segmentGroups.get(i);
+            String segcode = getSegcode(segmentGroup);
+
+            if (segcode != null && isLiteral(segcode)) {
+                int tagIndex = distinctTags.indexOf(segcode);
+
+                literal[i] = true;
+                if (tagIndex == -1) {
+                    distinctTags.add(segcode);
+                    distinctTagPositions.add(new ArrayList<Integer>());
+                    tagIndex = distinctTags.size() - 1;
+                }
+                distinctTagPositions.get(tagIndex).add(i);
+                maxLength = Math.max(maxLength, segcode.length());
+            }
+        }
+        maxLiteralLength = maxLength;
+
+        nextStop[size] = size;
+        for (int i = size - 1; i >= 0; i--) {
+            if (!literal[i] || segmentGroups.get(i).getMinOccurs() > 0) {
+                nextStop[i] = i;
+            } else {
+                nextStop[i] = nextStop[i + 1];
+            }
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(distinctTags.size(), 1) * 4);
+        tags = new String[capacity];
+        tagPositions = new int[capacity][];
+        tagMask = capacity - 1;
+        for (int i = 0; i < distinctTags.size(); i++) {
+            String tag = distinctTags.get(i);
+            List<Integer> positions = distinctTagPositions.get(i);
+            int slot = hash(tag.hashCode()) & tagMask;
+
+            while (tags[slot] != null) {
+                slot = (slot + 1) & tagMask;
+            }
+            tags[slot] = tag;
+            tagPositions[slot] = new int[positions.size()];
+            for (int j = 0; j < positions.size(); j++) {
+                tagPositions[slot][j] = positions.get(j);
+            }
+        }
+    }
+
+    /**
+     * Get the number of segment groups in the table.
+     *
+     * @return The number of segment groups in the table.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Is the segcode of the segment group at the specified position a plain tag i.e. not a regex pattern.
+     *
+     * @param position The segment group position.
+     * @return True if the segcode is a plain tag, otherwise false.
+     */
+    public boolean isLiteral(int position) {
+        return literal[position];
+    }
+
+    /**
+     * Get the position of the next segment group (at, or after, the specified position) that needs to be
+     * tested against the current segment.
+     * <br><br>
+     * All segment groups between the specified position and the returned position are optional and
+     * cannot match the current segment.
+     *
+     * @param from          The position from which to start.
+     * @param tagChars      Char array containing the segment tag of the current segment.
+     * @param tagStart      Start offset of the segment tag.
+     * @param tagLength     Length of the segment tag.
+     * @param segmentLength Length of the current segment.
+     * @return The position of the next segment group to be tested, or {@link #size()} if there are no
+     * segment groups left to be tested.
+     */
+    public int next(int from, char[] tagChars, int tagStart, int tagLength, int segmentLength) {
+        if (from >= size) {
+            return size;
+        }
+        if (segmentLength <= maxLiteralLength) {
+            // The whole segment might equal one of the segcodes.  Don't jump...
+            return from;
+        }
+
+        int stop = nextStop[from];
+        int[] positions = lookup(tagChars, tagStart, tagLength);
+        if (positions != null) {
+            int index = Arrays.binarySearch(positions, from);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            if (index < positions.length && positions[index] < stop) {
+                return positions[index];
+            }
+        }
+
+        return stop;
+    }
+
+    boolean isCompiledFor(List<SegmentGroup> segmentGroups) {
+        return segmentGroups.size() == size;
+    }
+
+    private int[] lookup(char[] chars, int start, int length) {
+        int hashCode = 0;
+        for (int i = start; i < start + length; i++) {
+            hashCode = 31 * hashCode + chars[i];
+        }
+
+        int slot = hash(hashCode) & tagMask;
+        while (tags[slot] != null) {
+            String tag = tags[slot];
+            if (tag.length() == length && tagEquals(tag, chars, start)) {
+                return tagPositions[slot];
+            }
+            slot = (slot + 1) & tagMask;
+        }
+
+        return null;
+    }
+
+    private static boolean tagEquals(String tag, char[] chars, int start) {
+        for (int i = 0; i < tag.length(); i++) {
+            if (tag.charAt(i) != chars[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(int hashCode) {
+        return hashCode ^ (hashCode >>> 16);
+    }
+
+    private static String getSegcode(SegmentGroup segmentGroup) {
+        // A group's segcode is that of its first segment...
+        while (!(segmentGroup instanceof Segment)) {
+            if (segmentGroup.getSegments().isEmpty()) {
+                return null;
+            }
+            segmentGroup = segmentGroup.getSegments().get(0);
+        }
+        return segmentGroup.getSegcode();
+    }
+
+    private static boolean isLiteral(String segcode) {
+        if (segcode.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < segcode.length(); i++) {
+            if ("\\^$.|?*+()[]{}".indexOf(segcode.charAt(i)) != -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -56,6 +56,7 @@ public class SegmentGroup extends MappingNode {
     private List<SegmentGroup> segments;
     private Integer minOccurs;
     private Integer maxOccurs;
+    private volatile SegcodeDispatchTable dispatchTable;
 
     public List<SegmentGroup> getSegments() {
         if (segments == null) {
@@ -64,6 +65,25 @@ public class SegmentGroup extends MappingNode {
         return this.segments;
     }
 
+    /**
+     * Get the {@link SegcodeDispatchTable} for the child segments of this group.
+     * <br><br>
+     * The table is normally compiled when the {@link org.smooks.edi.edisax.model.EdifactModel} is built.
+     * It is (re)compiled here if that didn't happen, or if the child segments list has since changed size.
+     *
+     * @return The dispatch table.
+     */
+    public SegcodeDispatchTable getDispatchTable() {
+        SegcodeDispatchTable table = dispatchTable;
+
+        if (table == null || !table.isCompiledFor(getSegments())) {
+            table = new SegcodeDispatchTable(getSegments());
+            dispatchTable = table;
+        }
+
+        return table;
+    }
+
     public String getSegcode() {
         return segments.get(0).getSegcode();
     }
@@ -50,9 +50,11 @@ package org.smooks.edi.edisax.model.internal;
 public class ValueNode extends MappingNode {
 
     private String dataType;
+    private String dataTypeParametersString;
     private Integer minLength;
     private Integer maxLength;
     private Class<?> typeClass;
+    private volatile ValueValidator validator;
 
     public ValueNode() {
     }
@@ -70,6 +72,21 @@ public class ValueNode extends MappingNode {
     public void setDataType(String dataType) {
         this.dataType = dataType;
         typeClass = String.class;
+        validator = null;
+    }
+
+    /**
+     * Get the data type parameters, in the form "param1=value1;param2=value2".
+     *
+     * @return The data type parameters, or null if none are set.
+     */
+    public String getDataTypeParametersString() {
+        return dataTypeParametersString;
+    }
+
+    public void setDataTypeParametersString(String dataTypeParametersString) {
+        this.dataTypeParametersString = dataTypeParametersString;
+        validator = null;
     }
 
     public Class<?> getTypeClass() {
@@ -82,6 +99,7 @@ public class ValueNode extends MappingNode {
 
     public void setMinLength(Integer minLength) {
         this.minLength = minLength;
+        validator = null;
     }
 
     public Integer getMaxLength() {
@@ -90,5 +108,25 @@ public class ValueNode extends MappingNode {
 
     public void setMaxLength(Integer maxLength) {
         this.maxLength = maxLength;
+        validator = null;
+    }
+
+    /**
+     * Get the {@link ValueValidator} for the values of this node.
+     * <br><br>
+     * The validator is normally compiled when the {@link org.smooks.edi.edisax.model.EdifactModel} is built.
+     * It is (re)compiled here if that didn't happen, or if the node has since changed.
+     *
+     * @return The validator.
+     */
+    public ValueValidator getValidator() {
+        ValueValidator compiled = validator;
+
+        if (compiled == null) {
+            compiled = new ValueValidator(this);
+            validator = compiled;
+        }
+
+        return compiled;
     }
 }
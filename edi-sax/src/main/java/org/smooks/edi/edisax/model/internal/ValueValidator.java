@@ -0,0 +1,330 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.model.internal;
+
+import org.smooks.edi.edisax.EDITypeEnum;
+
+import java.nio.CharBuffer;
+import java.text.ParsePosition;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Precompiled validator for the values of a {@link ValueNode}.
+ * <br><br>
+ * Compiled from the node's min/max length, {@link ValueNode#getDataType() data type} and
+ * {@link ValueNode#getDataTypeParametersString() data type parameters} into primitive fields, so as
+ * validating a value allocates nothing.  Error messages are only built for invalid values.
+ * <br><br>
+ * The data types checked are:
+ * <ul>
+ *     <li>{@link EDITypeEnum#Numeric Numeric} and {@link EDITypeEnum#Decimal Decimal}, and the Double,
+ *     Float, BigDecimal and DABigDecimal decoder types: an optionally signed number, with an optional
+ *     decimal separator.</li>
+ *     <li>The Integer, Long, Short, Byte and BigInteger decoder types: an optionally signed whole number.</li>
+ *     <li>{@link EDITypeEnum#Date Date} and {@link EDITypeEnum#Time Time}: a date/time in the "format" data type
+ *     parameter, defaulting to "yyyyMMdd" and "HHmm" respectively.  Numeric formats (the y, u, M, d, D, H, h,
+ *     m, s and S pattern letters) are checked char by char, including the range of each part (e.g. month 01
+ *     to 12).  Other formats are checked using a {@link DateTimeFormatter}.</li>
+ * </ul>
+ * Values of all other data types are only checked for length.
+ */
+public class ValueValidator {
+
+    public static final int VALID = 0;
+    public static final int TOO_SHORT = 1;
+    public static final int TOO_LONG = 2;
+    public static final int INVALID_TYPE = 3;
+
+    private static final int ANY_TYPE = 0;
+    private static final int INTEGER_TYPE = 1;
+    private static final int DECIMAL_TYPE = 2;
+    private static final int DATE_TIME_TYPE = 3;
+    private static final char LITERAL = 0;
+
+    private final boolean checkMinLength;
+    private final int minLength;
+    private final boolean checkMaxLength;
+    private final int maxLength;
+    private final int type;
+    private final String typeName;
+    private final String format;
+    // Compiled numeric date/time format.  One entry per format char...
+    private final char[] formatLetters;
+    private final char[] formatLiterals;
+    private final int[] partWidths; // Width of the part starting at the index, otherwise 0
+    private final DateTimeFormatter formatter;
+
+    public ValueValidator(ValueNode valueNode) {
+        Integer min = valueNode.getMinLength();
+        Integer max = valueNode.getMaxLength();
+        String dataType = valueNode.getDataType();
+
+        checkMinLength = (min != null);
+        minLength = (min != null ? min : 0);
+        checkMaxLength = (max != null);
+        maxLength = (max != null ? max : Integer.MAX_VALUE);
+
+        String dateTimeFormat = null;
+        if (EDITypeEnum.Numeric.name().equals(dataType) || EDITypeEnum.Decimal.name().equals(dataType) || "Double".equals(dataType) || "Float".equals(dataType) || "BigDecimal".equals(dataType) || "DABigDecimal".equals(dataType)) {
+            type = DECIMAL_TYPE;
+        } else if ("Integer".equals(dataType) || "Long".equals(dataType) || "Short".equals(dataType) || "Byte".equals(dataType) || "BigInteger".equals(dataType)) {
+            type = INTEGER_TYPE;
+        } else if (EDITypeEnum.Date.name().equals(dataType) || EDITypeEnum.Time.name().equals(dataType)) {
+            dateTimeFormat = getParameter(valueNode.getDataTypeParametersString(), "format");
+            if (dateTimeFormat == null) {
+                dateTimeFormat = (EDITypeEnum.Date.name().equals(dataType) ? "yyyyMMdd" : "HHmm");
+            }
+            type = DATE_TIME_TYPE;
+        } else {
+            type = ANY_TYPE;
+        }
+        typeName = dataType;
+        format = dateTimeFormat;
+
+        if (dateTimeFormat != null && isNumericFormat(dateTimeFormat)) {
+            int length = dateTimeFormat.length();
+            formatLetters = new char[length];
+            formatLiterals = new char[length];
+            partWidths = new int[length];
+            for (int i = 0; i < length; ) {
+                char c = dateTimeFormat.charAt(i);
+                if (Character.isLetter(c)) {
+                    int partStart = i;
+                    while (i < length && dateTimeFormat.charAt(i) == c) {
+                        formatLetters[i++] = c;
+                    }
+                    partWidths[partStart] = i - partStart;
+                } else {
+                    formatLetters[i] = LITERAL;
+                    formatLiterals[i++] = c;
+                }
+            }
+            formatter = null;
+        } else {
+            formatLetters = null;
+            formatLiterals = null;
+            partWidths = null;
+            formatter = (dateTimeFormat != null ? toFormatter(dateTimeFormat) : null);
+        }
+    }
+
+    /**
+     * Validate a value.
+     *
+     * @param chars            The char array containing the value.
+     * @param start            The start of the value.
+     * @param length           The length of the value.
+     * @param decimalSeparator The decimal separator of decimal values.
+     * @return {@link #VALID}, or the error code of the first check failed by the value.
+     */
+    public int validate(char[] chars, int start, int length, char decimalSeparator) {
+        if (checkMinLength && length < minLength) {
+            return TOO_SHORT;
+        }
+        if (checkMaxLength && length > maxLength) {
+            return TOO_LONG;
+        }
+
+        switch (type) {
+            case INTEGER_TYPE:
+                return (isNumber(chars, start, length, decimalSeparator, false) ? VALID : INVALID_TYPE);
+            case DECIMAL_TYPE:
+                return (isNumber(chars, start, length, decimalSeparator, true) ? VALID : INVALID_TYPE);
+            case DATE_TIME_TYPE:
+                return (isDateTime(chars, start, length) ? VALID : INVALID_TYPE);
+            default:
+                return VALID;
+        }
+    }
+
+    /**
+     * Get the error message for a value that failed validation.
+     *
+     * @param error The error code returned by {@link #validate(char[], int, int, char)}.
+     * @param value The value.
+     * @return The error message.
+     */
+    public String getErrorMessage(int error, String value) {
+        switch (error) {
+            case TOO_SHORT:
+                return "Value [" + value + "] should have a length greater than [" + minLength + "].";
+            case TOO_LONG:
+                return "Value [" + value + "] exceeds allowed maximum length of [" + maxLength + "].";
+            case INVALID_TYPE:
+                if (format != null) {
+                    return "Value [" + value + "] is not a valid [" + typeName + "] of format [" + format + "].";
+                }
+                return "Value [" + value + "] is not a valid [" + typeName + "].";
+            default:
+                throw new IllegalArgumentException("Unknown validation error [" + error + "].");
+        }
+    }
+
+    private static boolean isNumber(char[] chars, int start, int length, char decimalSeparator, boolean decimal) {
+        int end = start + length;
+        int i = start;
+        int digits = 0;
+        boolean separator = false;
+
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            i++;
+        }
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (decimal && c == decimalSeparator && !separator) {
+                separator = true;
+            } else {
+                return false;
+            }
+        }
+
+        return digits > 0;
+    }
+
+    private boolean isDateTime(char[] chars, int start, int length) {
+        if (formatLetters == null) {
+            return formatter == null || isFormatted(chars, start, length);
+        }
+        if (length != formatLetters.length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; ) {
+            char letter = formatLetters[i];
+            if (letter == LITERAL) {
+                if (chars[start + i] != formatLiterals[i]) {
+                    return false;
+                }
+                i++;
+                continue;
+            }
+
+            int width = partWidths[i];
+            int value = 0;
+            for (int j = 0; j < width; j++) {
+                char c = chars[start + i + j];
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+                if (j < 9) {
+                    value = value * 10 + (c - '0');
+                }
+            }
+            if (!inRange(letter, value)) {
+                return false;
+            }
+            i += width;
+        }
+
+        return true;
+    }
+
+    private boolean isFormatted(char[] chars, int start, int length) {
+        ParsePosition position = new ParsePosition(0);
+        formatter.parseUnresolved(CharBuffer.wrap(chars, start, length), position);
+        return position.getErrorIndex() < 0 && position.getIndex() == length;
+    }
+
+    private static boolean inRange(char letter, int value) {
+        switch (letter) {
+            case 'M':
+                return value >= 1 && value <= 12;
+            case 'd':
+                return value >= 1 && value <= 31;
+            case 'D':
+                return value >= 1 && value <= 366;
+            case 'H':
+                return value <= 23;
+            case 'h':
+                return value >= 1 && value <= 12;
+            case 'm':
+            case 's':
+                return value <= 59;
+            default:
+                return true;
+        }
+    }
+
+    private static boolean isNumericFormat(String format) {
+        for (int i = 0; i < format.length(); i++) {
+            char c = format.charAt(i);
+            if (c == '\'') {
+                return false;
+            }
+            if (Character.isLetter(c)) {
+                if ("yuMdDHhmsS".indexOf(c) == -1) {
+                    return false;
+                }
+                if (c == 'M' && i + 2 < format.length() && format.charAt(i + 1) == 'M' && format.charAt(i + 2) == 'M') {
+                    // Month name...
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static DateTimeFormatter toFormatter(String format) {
+        try {
+            return DateTimeFormatter.ofPattern(format);
+        } catch (IllegalArgumentException e) {
+            // Not a usable pattern... the value is only checked for length...
+            return null;
+        }
+    }
+
+    private static String getParameter(String parameters, String name) {
+        if (parameters == null) {
+            return null;
+        }
+        for (String parameter : parameters.split(";")) {
+            int separator = parameter.indexOf('=');
+            if (separator != -1 && parameter.substring(0, separator).trim().equals(name)) {
+                return parameter.substring(separator + 1).trim();
+            }
+        }
+        return null;
+    }
+}
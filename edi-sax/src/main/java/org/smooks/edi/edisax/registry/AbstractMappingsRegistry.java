@@ -43,11 +43,19 @@
 package org.smooks.edi.edisax.registry;
 
 import java.io.IOException;
-import java.util.LinkedHashMap;
+import java.io.InterruptedIOException;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.smooks.edi.edisax.EDIConfigurationException;
 import org.smooks.edi.edisax.model.EdifactModel;
+import org.smooks.edi.edisax.model.ImportCache;
+import org.smooks.edi.edisax.model.SegmentDefinitionInterner;
 import org.smooks.edi.edisax.util.EDIUtils;
 import org.smooks.edi.edisax.model.internal.Delimiters;
 import org.xml.sax.SAXException;
@@ -55,6 +63,14 @@ import org.xml.sax.SAXException;
 
 /**
  * Base implementation of {@link MappingsRegistry} interface
+ * <p/>
+ * Lookups of loaded models never block, and are answered by message name, without splitting the name again, once
+ * the model for the name has been looked up. On a miss, the models are demand loaded per load key (see
+ * {@link #getLoadKey(String[])}): concurrent misses on the same key wait for the one load in progress, while
+ * misses on different keys load in parallel. A later miss on the same key loads again.
+ * <p/>
+ * The mapping models imported by the loaded models are digested once, through an {@link ImportCache}, and the segment
+ * definitions of the loaded models are shared through a {@link SegmentDefinitionInterner}.
  *
  * @author zubairov
  */
@@ -63,15 +79,75 @@ public abstract class AbstractMappingsRegistry implements MappingsRegistry {
     /**
      * Internal storage
      */
-    protected final Map<String, EdifactModel> content = new LinkedHashMap<String, EdifactModel>();
+    protected final ConcurrentMap<String, EdifactModel> content = new ConcurrentHashMap<String, EdifactModel>();
+
+    /**
+     * Demand loads in progress, by load key. Loads are removed once done, so as the next miss loads again.
+     */
+    private final ConcurrentMap<String, CompletableFuture<Void>> loads = new ConcurrentHashMap<String, CompletableFuture<Void>>();
+
+    /**
+     * The models looked up so far, by message name. Cleared whenever the {@link #content} is loaded into.
+     */
+    private final ConcurrentMap<String, MessageLookup> lookups = new ConcurrentHashMap<String, MessageLookup>();
+
+    private static final int MAX_LOOKUPS = 1024;
+
+    /**
+     * Shares the segment definitions of the loaded models.
+     */
+    private final SegmentDefinitionInterner segmentDefinitionInterner = new SegmentDefinitionInterner();
+
+    /**
+     * Shares the mapping models imported by the loaded models.
+     */
+    private final ImportCache importCache = new ImportCache();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
 
     /**
      * {@inheritDoc}
      */
     public EdifactModel getMappingModel(String messageName,
                                         Delimiters delimiters) throws EDIConfigurationException, SAXException, IOException {
+        MessageLookup lookup = lookups.get(messageName);
+        if (lookup != null && lookup.isFor(delimiters)) {
+            hitCount.increment();
+            return lookup.model;
+        }
+
         String[] nameComponents = EDIUtils.split(messageName,
                 delimiters.getComponent(), delimiters.getEscape());
+        String lookupName = toLookupName(nameComponents);
+        EdifactModel result = content.get(lookupName);
+        if (result != null) {
+            hitCount.increment();
+            addLookup(messageName, delimiters, result);
+            return result;
+        }
+
+        missCount.increment();
+        load(getLoadKey(nameComponents), lookupName, nameComponents);
+        // Try again
+        result = content.get(lookupName);
+        if (result != null) {
+            addLookup(messageName, delimiters, result);
+            return result;
+        }
+        throw new EDIConfigurationException("Mapping Model '" + messageName
+                + "' not found in supplied set of Mapping model.");
+    }
+
+    /**
+     * The name under which the model for a message is stored in, and looked up from, the {@link #content}.
+     *
+     * @param nameComponents The message name components.
+     * @return The lookup name.
+     */
+    protected static String toLookupName(String[] nameComponents) {
         StringBuilder lookupNameBuilder = new StringBuilder();
         // First 4 components are mandatory...we use those as the lookup...
         for (int i = 0; i < 4; i++) {
@@ -80,31 +156,94 @@ public abstract class AbstractMappingsRegistry implements MappingsRegistry {
             }
             lookupNameBuilder.append(nameComponents[i]);
         }
-        String lookupName = lookupNameBuilder.toString().trim();
-        EdifactModel result = content.get(lookupName);
-        if (result == null) {
-            synchronized (content) {
-                result = content.get(lookupName);
-                if (result == null) {
-                    content.putAll(demandLoading(nameComponents));
-                }
+        return lookupNameBuilder.toString().trim();
+    }
+
+    private void addLookup(String messageName, Delimiters delimiters, EdifactModel model) {
+        if (lookups.size() < MAX_LOOKUPS) {
+            lookups.put(messageName, new MessageLookup(delimiters, model));
+        }
+    }
+
+    private void load(String loadKey, String lookupName, String[] nameComponents) throws EDIConfigurationException, SAXException, IOException {
+        CompletableFuture<Void> load = new CompletableFuture<Void>();
+        CompletableFuture<Void> existingLoad = loads.putIfAbsent(loadKey, load);
+        if (existingLoad == null) {
+            if (content.containsKey(lookupName)) {
+                // Loaded by a load which was done by the time this one started...
+                loads.remove(loadKey, load);
+                load.complete(null);
+                return;
             }
-            // Try again
-            result = content.get(lookupName);
-            if (result != null) {
-                return result;
+            long startTime = System.nanoTime();
+            try {
+                Map<String, EdifactModel> loadedModels = demandLoading(nameComponents);
+                // In case the demand loading did not share the caches with the models it loaded...
+                for (EdifactModel loadedModel : loadedModels.values()) {
+                    loadedModel.setImportCache(importCache);
+                    loadedModel.setSegmentDefinitionInterner(segmentDefinitionInterner);
+                }
+                content.putAll(loadedModels);
+                lookups.clear();
+                loads.remove(loadKey, load);
+                load.complete(null);
+            } catch (SAXException | IOException | RuntimeException | Error e) {
+                loads.remove(loadKey, load);
+                load.completeExceptionally(e);
+                throw e;
+            } finally {
+                loadCount.increment();
+                totalLoadTime.add(System.nanoTime() - startTime);
             }
         } else {
-            return result;
+            try {
+                existingLoad.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for mapping models to load");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SAXException) {
+                    throw (SAXException) cause;
+                } else if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                } else {
+                    throw (RuntimeException) cause;
+                }
+            }
         }
-        throw new EDIConfigurationException("Mapping Model '" + messageName
-                + "' not found in supplied set of Mapping model.");
     }
 
+    /**
+     * Forget about the demand loads in progress, and the models looked up so far, so as the next lookup of a
+     * message demand loads again if its model is not already loaded (e.g. because the set of models to load
+     * from has changed).
+     */
+    protected void resetLoads() {
+        loads.clear();
+        lookups.clear();
+    }
+
+    /**
+     * The key identifying the set of models {@link #demandLoading(String[])} loads for a message. Misses on the same
+     * key share a single load.
+     *
+     * @param nameComponents
+     * @return The load key.
+     */
+    protected abstract String getLoadKey(String[] nameComponents);
+
     /**
      * Loading mapping models on demand.
      * This method should return either one or many mapping models
-     * loaded on-demand or just eagerly.
+     * loaded on-demand or just eagerly. It may be called concurrently for different load keys.
+     * <p/>
+     * The {@link #getImportCache() import cache} and {@link #getSegmentDefinitionInterner() segment definition
+     * interner} should be set on the models before they are parsed (see e.g.
+     * {@link EDIUtils#loadMappingModels(String, Map, java.net.URI, ImportCache, SegmentDefinitionInterner)}), as the imports of
+     * a model parsed without them are not shared.
      *
      * @param nameComponents
      * @return
@@ -114,5 +253,65 @@ public abstract class AbstractMappingsRegistry implements MappingsRegistry {
      */
     protected abstract Map<String, EdifactModel> demandLoading(String[] nameComponents) throws EDIConfigurationException, IOException, SAXException;
 
+    /**
+     * @return The interner sharing the segment definitions of the loaded models.
+     */
+    public SegmentDefinitionInterner getSegmentDefinitionInterner() {
+        return segmentDefinitionInterner;
+    }
+
+    /**
+     * @return The cache of the mapping models imported by the loaded models.
+     */
+    public ImportCache getImportCache() {
+        return importCache;
+    }
+
+    /**
+     * @return The number of lookups answered from the loaded models.
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
 
+    /**
+     * @return The number of lookups which triggered, or waited on, a demand load.
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return The number of demand loads.
+     */
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    /**
+     * @return The total time spent demand loading, in nanoseconds.
+     */
+    public long getTotalLoadTime() {
+        return totalLoadTime.sum();
+    }
+
+    /**
+     * A model looked up by message name, with the delimiters the message name was split on.
+     */
+    private static final class MessageLookup {
+
+        private final String component;
+        private final String escape;
+        private final EdifactModel model;
+
+        private MessageLookup(Delimiters delimiters, EdifactModel model) {
+            this.component = delimiters.getComponent();
+            this.escape = delimiters.getEscape();
+            this.model = model;
+        }
+
+        private boolean isFor(Delimiters delimiters) {
+            return Objects.equals(component, delimiters.getComponent()) && Objects.equals(escape, delimiters.getEscape());
+        }
+    }
 }
@@ -44,11 +44,11 @@ package org.smooks.edi.edisax.registry;
 
 import java.io.IOException;
 import java.net.URI;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.smooks.edi.edisax.EDIConfigurationException;
 import org.smooks.edi.edisax.model.EdifactModel;
@@ -65,7 +65,7 @@ import org.xml.sax.SAXException;
  */
 public class DefaultMappingsRegistry extends AbstractMappingsRegistry {
 
-    private final Map<String, URI> modelReferences = new HashMap<String, URI>();
+    private final Map<String, URI> modelReferences = new ConcurrentHashMap<String, URI>();
 
     /**
      * Constructor mostly used for tests
@@ -101,6 +101,18 @@ public class DefaultMappingsRegistry extends AbstractMappingsRegistry {
         for (String modelRef : mappingModelFileTokens) {
             modelReferences.put(modelRef, baseURI);
         }
+        resetLoads();
+    }
+
+    /**
+     * All models are loaded together, whatever the message.
+     *
+     * @param nameComponents
+     * @return The load key.
+     */
+    @Override
+    protected String getLoadKey(String[] nameComponents) {
+        return "*";
     }
 
     /**
@@ -115,11 +127,11 @@ public class DefaultMappingsRegistry extends AbstractMappingsRegistry {
      * @throws IOException
      * @throws EDIConfigurationException
      */
-    protected synchronized Map<String, EdifactModel> demandLoading(String[] nameComponents) throws EDIConfigurationException, IOException, SAXException {
+    protected Map<String, EdifactModel> demandLoading(String[] nameComponents) throws EDIConfigurationException, IOException, SAXException {
         Map<String, EdifactModel> result = new LinkedHashMap<String, EdifactModel>();
         Set<Entry<String, URI>> set = modelReferences.entrySet();
         for (Entry<String, URI> entry : set) {
-            EDIUtils.loadMappingModels(entry.getKey(), result, entry.getValue());
+            EDIUtils.loadMappingModels(entry.getKey(), result, entry.getValue(), getImportCache(), getSegmentDefinitionInterner());
         }
         return result;
     }
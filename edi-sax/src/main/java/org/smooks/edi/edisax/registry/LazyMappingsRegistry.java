@@ -46,6 +46,9 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.smooks.edi.edisax.EDIConfigurationException;
 import org.smooks.edi.edisax.model.EdifactModel;
@@ -55,18 +58,83 @@ import org.xml.sax.SAXException;
 /**
  * Mappings registry that lazily loading UN/EDIFACT mappings
  * out of the classpath.
+ * <p/>
+ * If the mapping model jar has an {@link EDIUtils#EDI_MAPPING_MODEL_INDEX_FILE index}, only the requested model
+ * (and the model set definitions it imports) is loaded.  Otherwise, all the models in the jar are loaded on the
+ * first lookup.
  *
  * @author zubairov
  */
 public class LazyMappingsRegistry extends AbstractMappingsRegistry {
 
+    /**
+     * Models loaded out of indexed mapping model jars, by URN.  Each model is associated with the other models
+     * of its URN, so as the model set definitions are parsed only once per URN.
+     */
+    private final ConcurrentMap<String, Map<String, EdifactModel>> indexedModels = new ConcurrentHashMap<String, Map<String, EdifactModel>>();
+
+    /**
+     * Mapping model jar indexes, by URN, so as the index is read once per URN rather than on every miss.  URNs
+     * whose mapping model jar has no index map to {@link #NO_INDEX}.
+     */
+    private final ConcurrentMap<String, Properties> indexes = new ConcurrentHashMap<String, Properties>();
+
+    private static final Properties NO_INDEX = new Properties();
+
     @Override
-    protected synchronized Map<String, EdifactModel> demandLoading(String[] nameComponents)
+    protected String getLoadKey(String[] nameComponents) {
+        return toUrn(nameComponents) + "!" + toLookupName(nameComponents);
+    }
+
+    @Override
+    protected Map<String, EdifactModel> demandLoading(String[] nameComponents)
             throws EDIConfigurationException, IOException, SAXException {
-        String urn = "urn:org.smooks.edi.unedifact:" + nameComponents[1] + nameComponents[2] + "-mapping:*";
+        String urn = toUrn(nameComponents);
+        String lookupName = toLookupName(nameComponents);
+        Map<String, EdifactModel> urnModels = new ConcurrentHashMap<String, EdifactModel>();
+        Map<String, EdifactModel> existingUrnModels = indexedModels.putIfAbsent(urn, urnModels);
+        if (existingUrnModels != null) {
+            urnModels = existingUrnModels;
+        }
         Map<String, EdifactModel> result = new LinkedHashMap<String, EdifactModel>();
-        EDIUtils.loadMappingModels(urn.toLowerCase(), result, URI.create("/"));
+
+        Properties index = getIndex(urn);
+        if (index != NO_INDEX) {
+            EDIUtils.loadMappingModel(index, lookupName, urnModels, URI.create("/"), getImportCache(), getSegmentDefinitionInterner());
+            EdifactModel model = urnModels.get(lookupName);
+            if (model != null) {
+                result.put(lookupName, model);
+            }
+        } else {
+            indexedModels.remove(urn, urnModels);
+            EDIUtils.loadMappingModels(urn, result, URI.create("/"), getImportCache(), getSegmentDefinitionInterner());
+        }
         return result;
     }
 
+    private Properties getIndex(String urn) throws IOException {
+        Properties index = indexes.get(urn);
+        if (index == null) {
+            index = EDIUtils.loadMappingModelIndex(urn);
+            if (index == null) {
+                index = NO_INDEX;
+            }
+            indexes.putIfAbsent(urn, index);
+        }
+        return index;
+    }
+
+    /**
+     * Also forget about the mapping model jar indexes read so far.
+     */
+    @Override
+    protected void resetLoads() {
+        super.resetLoads();
+        indexes.clear();
+    }
+
+    private String toUrn(String[] nameComponents) {
+        return ("urn:org.smooks.edi.unedifact:" + nameComponents[1] + nameComponents[2] + "-mapping:*").toLowerCase();
+    }
+
 }
@@ -43,21 +43,34 @@
 package org.smooks.edi.edisax.unedifact;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import javax.xml.XMLConstants;
 
 import org.smooks.assertion.AssertArgument;
 import org.smooks.edi.edisax.BufferedSegmentReader;
+import org.smooks.edi.edisax.EDIParseErrorCollector;
 import org.smooks.edi.edisax.EDIParser;
 import org.smooks.edi.edisax.interchange.ControlBlockHandler;
 import org.smooks.edi.edisax.interchange.ControlBlockHandlerFactory;
 import org.smooks.edi.edisax.interchange.InterchangeContext;
+import org.smooks.edi.edisax.interchange.MessageListener;
+import org.smooks.edi.edisax.interchange.OrderedContentHandler;
+import org.smooks.edi.edisax.metrics.EDIMetrics;
+import org.smooks.edi.edisax.metrics.NoOpEDIMetrics;
 import org.smooks.edi.edisax.model.internal.Delimiters;
 import org.smooks.edi.edisax.registry.LazyMappingsRegistry;
 import org.smooks.edi.edisax.registry.MappingsRegistry;
 import org.smooks.edi.edisax.unedifact.handlers.r41.UNEdifact41ControlBlockHandlerFactory;
+import org.smooks.edi.edisax.util.EDIUtils;
 import org.smooks.namespace.NamespaceDeclarationStack;
 import org.smooks.namespace.NamespaceDeclarationStackAware;
 import org.smooks.xml.hierarchy.HierarchyChangeListener;
@@ -84,6 +97,12 @@ public class UNEdifactInterchangeParser implements XMLReader, NamespaceDeclarati
 
     public static final Delimiters defaultUNEdifactDelimiters = new Delimiters().setSegment("'").setField("+").setComponent(":").setEscape("?").setDecimalSeparator(".");
 
+    /**
+     * Encoding used to read the interchange bytes up to the UNB segment, which then declares the interchange encoding.
+     * A single byte encoding, so as the switch to the declared encoding happens at an exact byte offset.
+     */
+    private static final Charset PREFIX_ENCODING = StandardCharsets.ISO_8859_1;
+
     /**
      * By default we are using {@link LazyMappingsRegistry} instance
      */
@@ -91,11 +110,70 @@ public class UNEdifactInterchangeParser implements XMLReader, NamespaceDeclarati
     private ContentHandler contentHandler;
     private HierarchyChangeListener hierarchyChangeListener;
     private InterchangeContext interchangeContext;
+    private BufferedSegmentReader segmentReader; // Reused across parse calls
     private NamespaceDeclarationStack namespaceDeclarationStack;
+    private Executor messageExecutor;
+    private MessageListener messageListener;
+    private EDIParseErrorCollector errorCollector;
+    private EDIMetrics metrics = NoOpEDIMetrics.INSTANCE;
+    private int maxPendingMessages = DEFAULT_MAX_PENDING_MESSAGES;
+
+    /**
+     * Default maximum number of message blocks parsed ahead of the SAX events delivered to the content handler.
+     */
+    public static final int DEFAULT_MAX_PENDING_MESSAGES = 64;
 
     public void parse(InputSource unedifactInterchange) throws IOException, SAXException {
         AssertArgument.isNotNull(unedifactInterchange, "unedifactInterchange");
+        assertParseable();
+
+        // Create (or reset) a reader for reading the EDI segments.  A supplied character stream is read as is...
+        InputStream interchangeStream = (unedifactInterchange.getCharacterStream() == null ? unedifactInterchange.getByteStream() : null);
+        if (segmentReader == null) {
+            segmentReader = (interchangeStream != null ? new BufferedSegmentReader(interchangeStream, PREFIX_ENCODING, defaultUNEdifactDelimiters) : new BufferedSegmentReader(unedifactInterchange, defaultUNEdifactDelimiters));
+        } else if (interchangeStream != null) {
+            segmentReader.reset(interchangeStream, PREFIX_ENCODING, defaultUNEdifactDelimiters);
+        } else {
+            segmentReader.reset(unedifactInterchange, defaultUNEdifactDelimiters);
+        }
+        if (interchangeStream == null) {
+            // ... and its byte stream (if any) marked, so as the UNB segment can change the read encoding...
+            segmentReader.mark();
+        }
+        parseInterchange();
+    }
+
+    /**
+     * Parse a UN/EDIFACT interchange file.
+     * <br><br>
+     * The file is memory mapped and read directly from the mapping.  For the single byte
+     * repertoires (UNOA, UNOB and UNOC), the file bytes are read without going through a
+     * {@link java.nio.charset.CharsetDecoder}.
+     *
+     * @param unedifactInterchange The interchange file.
+     */
+    public void parse(Path unedifactInterchange) throws IOException, SAXException {
+        AssertArgument.isNotNull(unedifactInterchange, "unedifactInterchange");
+        assertParseable();
+
+        ByteBuffer interchangeBytes = EDIUtils.mapFile(unedifactInterchange);
+        if (interchangeBytes == null) {
+            // Too large to map, so read it as a stream...
+            try (InputStream interchangeStream = Files.newInputStream(unedifactInterchange)) {
+                parse(new InputSource(interchangeStream));
+            }
+            return;
+        }
 
+        if (segmentReader == null) {
+            segmentReader = new BufferedSegmentReader(interchangeBytes, PREFIX_ENCODING, defaultUNEdifactDelimiters);
+        } else {
+            segmentReader.reset(interchangeBytes, PREFIX_ENCODING, defaultUNEdifactDelimiters);
+        }
+        parseInterchange();
+    }
+
+    private void assertParseable() {
         if (contentHandler == null) {
             throw new IllegalStateException("'contentHandler' not set.  Cannot parse EDI stream.");
         }
@@ -103,15 +181,22 @@ public class UNEdifactInterchangeParser implements XMLReader, NamespaceDeclarati
         if (registry == null) {
             throw new IllegalStateException("'mappingsRegistry' not set.  Cannot parse EDI stream.");
         }
+    }
 
+    private void parseInterchange() throws IOException, SAXException {
         boolean endDocument = false;
+        OrderedContentHandler orderedContentHandler = null;
         try {
+            if (messageExecutor != null && messageListener == null && hierarchyChangeListener == null) {
+                // Message blocks are parsed concurrently, and their events put back in interchange order...
+                orderedContentHandler = new OrderedContentHandler(contentHandler, messageExecutor, maxPendingMessages);
+                contentHandler = orderedContentHandler;
+            }
+
             ControlBlockHandlerFactory handlerFactory = new UNEdifact41ControlBlockHandlerFactory(hierarchyChangeListener);
-            BufferedSegmentReader segmentReader = new BufferedSegmentReader(unedifactInterchange, defaultUNEdifactDelimiters);
             boolean validate = getFeature(EDIParser.FEATURE_VALIDATE);
             String segCode;
 
-            segmentReader.mark();
             segmentReader.setIgnoreNewLines(getFeature(EDIParser.FEATURE_IGNORE_NEWLINES));
 
             contentHandler.startDocument();
@@ -124,6 +209,12 @@ public class UNEdifactInterchangeParser implements XMLReader, NamespaceDeclarati
                 segCode = segmentReader.peek(3, true);
                 if (segCode.length() == 3) {
                     interchangeContext = createInterchangeContext(segmentReader, validate, handlerFactory, namespaceDeclarationStack);
+                    if (orderedContentHandler != null) {
+                        interchangeContext.setMessageExecutor(messageExecutor);
+                    }
+                    interchangeContext.setMessageListener(messageListener);
+                    interchangeContext.setErrorCollector(errorCollector);
+                    interchangeContext.setMetrics(metrics);
                     namespaceDeclarationStack = interchangeContext.getNamespaceDeclarationStack();
 
                     if (hierarchyChangeListener != null) {
@@ -140,15 +231,26 @@ public class UNEdifactInterchangeParser implements XMLReader, NamespaceDeclarati
                     interchangeContext.indentDepth++;
                     handler.process(interchangeContext);
                     interchangeContext.indentDepth--;
+                    if (segCode.equals("UNB")) {
+                        metrics.interchangeParsed(interchangeContext.getMessageCount());
+                    }
                 } else {
                     break;
                 }
             }
 
-            contentHandler.characters(new char[]{'\n'}, 0, 1);
+            if (!getFeature(EDIParser.FEATURE_OMIT_INDENTATION)) {
+                contentHandler.characters(new char[]{'\n'}, 0, 1);
+            }
             contentHandler.endElement(handlerFactory.getNamespace(), "unEdifact", envElementQName);
+            if (orderedContentHandler != null) {
+                orderedContentHandler.flush();
+            }
             endDocument = true;
         } finally {
+            if (orderedContentHandler != null && !endDocument) {
+                orderedContentHandler.cancel();
+            }
             if (namespaceDeclarationStack != null) {
                 namespaceDeclarationStack.popNamespaces();
                 if (hierarchyChangeListener != null) {
@@ -157,6 +259,7 @@ public class UNEdifactInterchangeParser implements XMLReader, NamespaceDeclarati
                     interchangeContext.getNamespaceDeclarationStack().popReader();
                 }
             }
+            metrics.streamRead(segmentReader.getCurrentSegmentNumber(), segmentReader.getCharReadCount());
             if (endDocument) {
                 contentHandler.endDocument();
             }
@@ -186,6 +289,79 @@ public class UNEdifactInterchangeParser implements XMLReader, NamespaceDeclarati
         return this;
     }
 
+    /**
+     * Parse the message blocks (UNH to UNT) of the interchange concurrently on the supplied {@link Executor}, each
+     * with its own {@link EDIParser} and the shared {@link MappingsRegistry}. The SAX events are delivered to the
+     * content handler in interchange order, on the parsing thread.
+     * <br><br>
+     * Concurrent parsing is not applied when a {@link HierarchyChangeListener} or a {@link MessageListener} is set.
+     *
+     * @param messageExecutor The executor, or <code>null</code> to parse the message blocks on the parsing thread (the default).
+     * @return This parser instance.
+     */
+    public UNEdifactInterchangeParser setMessageExecutor(Executor messageExecutor) {
+        this.messageExecutor = messageExecutor;
+        return this;
+    }
+
+    /**
+     * Deliver the message blocks (UNH to UNT) of the interchange to the supplied {@link MessageListener}, one at a
+     * time and as soon as each UNT segment is read, each as a self-contained document along with the UNB (and UNG)
+     * segment fields enclosing it. Only one message block is held in memory at a time.
+     * <br><br>
+     * The content handler then only receives the interchange envelope i.e. the UNB, UNG, UNE and UNZ segments.
+     *
+     * @param messageListener The listener, or <code>null</code> to deliver the message blocks to the content handler (the default).
+     * @return This parser instance.
+     */
+    public UNEdifactInterchangeParser setMessageListener(MessageListener messageListener) {
+        this.messageListener = messageListener;
+        return this;
+    }
+
+    /**
+     * Collect the message errors, parsing on past them, instead of failing on the first one.  A message block
+     * for which there is no mapping model is skipped, and parsing resumes at the next UNH segment.
+     * See {@link EDIParseErrorCollector}.
+     *
+     * @param errorCollector The error collector, or <code>null</code> to fail on the first error (the default).
+     * @return This parser instance.
+     */
+    public UNEdifactInterchangeParser setErrorCollector(EDIParseErrorCollector errorCollector) {
+        this.errorCollector = errorCollector;
+        return this;
+    }
+
+    /**
+     * Set the {@link EDIMetrics} to which the interchange and message parsers report.
+     *
+     * @param metrics The metrics, or <code>null</code> to report nothing (the default).
+     * @return This parser instance.
+     */
+    public UNEdifactInterchangeParser setMetrics(EDIMetrics metrics) {
+        this.metrics = (metrics != null ? metrics : NoOpEDIMetrics.INSTANCE);
+        return this;
+    }
+
+    public EDIMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Set the maximum number of message blocks read ahead of the SAX events delivered to the content handler,
+     * when parsing message blocks concurrently.
+     *
+     * @param maxPendingMessages The maximum number of pending message blocks.
+     * @return This parser instance.
+     */
+    public UNEdifactInterchangeParser setMaxPendingMessages(int maxPendingMessages) {
+        if (maxPendingMessages < 1) {
+            throw new IllegalArgumentException("'maxPendingMessages' must be at least 1.");
+        }
+        this.maxPendingMessages = maxPendingMessages;
+        return this;
+    }
+
     public ContentHandler getContentHandler() {
         return contentHandler;
     }
@@ -202,6 +378,10 @@ public class UNEdifactInterchangeParser implements XMLReader, NamespaceDeclarati
         setFeature(EDIParser.FEATURE_IGNORE_EMPTY_NODES, ignoreEmptyNodes);
     }
 
+    public void omitIndentation(boolean omitIndentation) {
+        setFeature(EDIParser.FEATURE_OMIT_INDENTATION, omitIndentation);
+    }
+
     public void validate(boolean validate) {
         setFeature(EDIParser.FEATURE_VALIDATE, validate);
     }
@@ -62,7 +62,7 @@ public class GenericHandler implements ControlBlockHandler {
         segmentReader.moveToNextSegment(false);
 
         String[] fields = segmentReader.getCurrentSegmentFields();
-        StringBuffer segBuffer = segmentReader.getSegmentBuffer();
+        StringBuilder segBuffer = segmentReader.getSegmentBuilder();
         char[] segChars = new char[segBuffer.length()];
 
         segBuffer.getChars(0, segBuffer.length(), segChars, 0);
@@ -72,6 +72,6 @@ public class GenericHandler implements ControlBlockHandler {
         interchangeContext.getControlSegmentParser().endElement(fields[0], interchangeContext.getNamespace(), false);
 
         // And clear out the buffer...
-        segmentReader.getSegmentBuffer().setLength(0);
+        segmentReader.getSegmentBuilder().setLength(0);
     }
 }
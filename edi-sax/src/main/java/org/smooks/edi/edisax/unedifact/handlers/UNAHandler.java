@@ -63,7 +63,7 @@ public class UNAHandler implements ControlBlockHandler {
 
         // The UNA segment code is still in the segment buffer... clear it before
         // reading the segment delimiters...
-        segmentReader.getSegmentBuffer().setLength(0);
+        segmentReader.getSegmentBuilder().setLength(0);
 
         // Read the delimiter chars one-by-one and set in the Delimiters instance...
 
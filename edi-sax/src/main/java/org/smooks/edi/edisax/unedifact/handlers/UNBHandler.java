@@ -79,6 +79,7 @@ public class UNBHandler implements ControlBlockHandler {
 
         String[] fields = segmentReader.getCurrentSegmentFields();
 
+        interchangeContext.setInterchangeHeader(fields);
         interchangeContext.mapControlSegment(unbSegment, true);
 
         String[] syntaxIdComponents = EDIUtils.split(fields[1], segmentReader.getDelimiters().getComponent(), segmentReader.getDelimiters().getEscape());
@@ -97,6 +98,7 @@ public class UNBHandler implements ControlBlockHandler {
             if (segCode.equals("UNZ")) {
                 segmentReader.moveToNextSegment(false);
                 interchangeContext.mapControlSegment(unzSegment, true);
+                interchangeContext.setInterchangeHeader(null);
                 break;
             } else if (segCode.length() > 0) {
                 ControlBlockHandler handler = interchangeContext.getControlBlockHandler(segCode);
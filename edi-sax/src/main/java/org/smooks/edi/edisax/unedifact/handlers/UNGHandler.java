@@ -72,6 +72,7 @@ public class UNGHandler implements ControlBlockHandler {
         interchangeContext.getControlSegmentParser().startElement("group", ungSegment.getNamespace(), true);
 
         segmentReader.moveToNextSegment(false);
+        interchangeContext.setGroupHeader(segmentReader.getCurrentSegmentFields());
         interchangeContext.mapControlSegment(ungSegment, true);
 
         while (true) {
@@ -80,6 +81,7 @@ public class UNGHandler implements ControlBlockHandler {
             if (segCode.equals("UNE")) {
                 segmentReader.moveToNextSegment(false);
                 interchangeContext.mapControlSegment(uneSegment, true);
+                interchangeContext.setGroupHeader(null);
                 break;
             } else if (segCode.length() > 0) {
                 ControlBlockHandler handler = interchangeContext.getControlBlockHandler(segCode);
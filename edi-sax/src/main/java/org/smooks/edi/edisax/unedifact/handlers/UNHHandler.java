@@ -43,13 +43,27 @@
 package org.smooks.edi.edisax.unedifact.handlers;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 import org.smooks.edi.edisax.BufferedSegmentListener;
 import org.smooks.edi.edisax.BufferedSegmentReader;
+import org.smooks.edi.edisax.EDIConfigurationException;
+import org.smooks.edi.edisax.EDIParseError;
+import org.smooks.edi.edisax.EDIParseErrorCollector;
 import org.smooks.edi.edisax.EDIParser;
 import org.smooks.edi.edisax.interchange.ControlBlockHandler;
 import org.smooks.edi.edisax.interchange.InterchangeContext;
+import org.smooks.edi.edisax.interchange.InterchangeMessage;
+import org.smooks.edi.edisax.interchange.MessageListener;
+import org.smooks.edi.edisax.interchange.OrderedContentHandler;
+import org.smooks.edi.edisax.interchange.RecordingContentHandler;
+import org.smooks.edi.edisax.metrics.EDIMetrics;
 import org.smooks.edi.edisax.model.EdifactModel;
+import org.smooks.edi.edisax.model.internal.Delimiters;
 import org.smooks.edi.edisax.model.internal.Description;
 import org.smooks.edi.edisax.model.internal.Edimap;
 import org.smooks.edi.edisax.model.internal.Segment;
@@ -80,16 +94,66 @@ public class UNHHandler implements ControlBlockHandler {
     }
 
     public void process(InterchangeContext interchangeContext) throws IOException, SAXException {
+        interchangeContext.incrementMessageCount();
+        if (interchangeContext.getMessageExecutor() != null && hierarchyChangeListener == null && interchangeContext.getContentHandler() instanceof OrderedContentHandler) {
+            submit(interchangeContext);
+            return;
+        }
+
         BufferedSegmentReader segmentReader = interchangeContext.getSegmentReader();
-        MappingsRegistry registry = interchangeContext.getRegistry();
 
         // Move to the end of the UNH segment and map it's fields..
         segmentReader.moveToNextSegment(false);
 
+        MessageListener messageListener = interchangeContext.getMessageListener();
+        if (messageListener != null) {
+            notify(messageListener, interchangeContext, segmentReader.getCurrentSegmentFields());
+        } else {
+            mapMessageBlock(interchangeContext, segmentReader.getCurrentSegmentFieldSlices().toString(2), hierarchyChangeListener);
+        }
+    }
+
+    /**
+     * Map the message block (UNH to UNT) into its own document and deliver it to the message listener, leaving
+     * the interchange content handler untouched.
+     */
+    private void notify(MessageListener messageListener, InterchangeContext interchangeContext, String[] unhFields) throws IOException, SAXException {
+        Map<String, String> namespaces = new LinkedHashMap<String, String>(interchangeContext.getNamespaceDeclarationStack().getActiveNamespaces());
+        RecordingContentHandler messageEvents = new RecordingContentHandler();
+        InterchangeContext messageContext = interchangeContext.newMessageDocumentContext(messageEvents);
+
+        if (!mapMessageBlock(messageContext, unhFields[2], null)) {
+            return;
+        }
+        messageListener.onMessage(new InterchangeMessage(interchangeContext.getInterchangeHeader(), interchangeContext.getGroupHeader(), unhFields, namespaces, messageEvents));
+    }
+
+    /**
+     * @return True if the message block was mapped, or false if it was skipped, having collected the error.
+     */
+    private boolean mapMessageBlock(InterchangeContext interchangeContext, String messageName, HierarchyChangeListener hierarchyChangeListener) throws IOException, SAXException {
+        BufferedSegmentReader segmentReader = interchangeContext.getSegmentReader();
+        MappingsRegistry registry = interchangeContext.getRegistry();
+
         // Select the mapping model to use for this message...
-        String[] fields = segmentReader.getCurrentSegmentFields();
-        String messageName = fields[2];
-        EdifactModel mappingModel = registry.getMappingModel(messageName, segmentReader.getDelimiters());
+        EdifactModel mappingModel;
+        EDIMetrics metrics = interchangeContext.getMetrics();
+        long startTime = (metrics.isEnabled() ? System.nanoTime() : 0);
+        try {
+            mappingModel = registry.getMappingModel(messageName, segmentReader.getDelimiters());
+        } catch (EDIConfigurationException e) {
+            EDIParseErrorCollector errorCollector = interchangeContext.getErrorCollector();
+            if (errorCollector == null || !errorCollector.add(new EDIParseError(segmentReader.getCurrentSegmentNumber(), unhSegment, 2, 0, messageName, e.getMessage()))) {
+                throw e;
+            }
+            // Nothing has been mapped for the message block yet, so skip it and carry on at the next UNH...
+            skipMessageBlock(segmentReader);
+            return false;
+        } finally {
+            if (metrics.isEnabled()) {
+                metrics.mappingModelLookup(System.nanoTime() - startTime);
+            }
+        }
         Edimap ediMap = mappingModel.getEdimap();
 
         Description description = ediMap.getDescription();
@@ -136,19 +200,82 @@ public class UNHHandler implements ControlBlockHandler {
 
         // Map the UNT segment...
         interchangeContext.mapControlSegment(untSegment, true);
-        segmentReader.getSegmentBuffer().setLength(0);
+        segmentReader.getSegmentBuilder().setLength(0);
 
         interchangeContext.getControlSegmentParser().endElement(InterchangeContext.INTERCHANGE_MESSAGE_BLOCK_ELEMENT_NAME, unhSegment.getNamespace(), true);
+
+        return true;
+    }
+
+    private void skipMessageBlock(BufferedSegmentReader segmentReader) throws IOException, SAXException {
+        while (!segmentReader.segmentCodeEquals("UNT")) {
+            if (!segmentReader.moveToNextSegment()) {
+                throw new SAXException("Unexpected end of UN/EDIFACT interchange. Message block is missing its UNT segment.");
+            }
+        }
+        segmentReader.getSegmentBuilder().setLength(0);
+    }
+
+    /**
+     * Read the message block (UNH to UNT) off the interchange and submit it for parsing, with its own segment
+     * reader and context, on the message executor.  The message segment reader reads the segments as already
+     * read off the interchange segment reader.
+     */
+    private void submit(InterchangeContext interchangeContext) throws IOException, SAXException {
+        BufferedSegmentReader segmentReader = interchangeContext.getSegmentReader();
+        Delimiters delimiters = (Delimiters) segmentReader.getDelimiters().clone();
+        int unhSegmentNumber = segmentReader.getCurrentSegmentNumber() + 1;
+        List<String> messageBlock = readMessageBlock(segmentReader, delimiters);
+
+        BufferedSegmentReader messageSegmentReader = new BufferedSegmentReader(messageBlock, unhSegmentNumber, delimiters);
+        final RecordingContentHandler messageEvents = new RecordingContentHandler();
+        final InterchangeContext messageContext = interchangeContext.newMessageContext(messageSegmentReader, messageEvents);
+
+        ((OrderedContentHandler) interchangeContext.getContentHandler()).submit(new Callable<RecordingContentHandler>() {
+            public RecordingContentHandler call() throws Exception {
+                new UNHHandler(unhSegment, untSegment, null).process(messageContext);
+                return messageEvents;
+            }
+        });
+    }
+
+    private List<String> readMessageBlock(BufferedSegmentReader segmentReader, Delimiters delimiters) throws IOException, SAXException {
+        List<String> messageBlock = new ArrayList<String>();
+
+        // Move to the end of the UNH segment...
+        segmentReader.moveToNextSegment(false);
+        while (true) {
+            StringBuilder segment = segmentReader.getSegmentBuilder();
+            messageBlock.add(segment.toString());
+
+            if (isUNTSegment(segment, delimiters)) {
+                break;
+            }
+            if (!segmentReader.moveToNextSegment()) {
+                throw new SAXException("Unexpected end of UN/EDIFACT interchange. Message block is missing its UNT segment.");
+            }
+        }
+        segmentReader.getSegmentBuilder().setLength(0);
+
+        return messageBlock;
+    }
+
+    /**
+     * Is the segment a UNT segment, without splitting it into its fields.
+     */
+    private static boolean isUNTSegment(StringBuilder segment, Delimiters delimiters) {
+        if (segment.length() < 3 || segment.charAt(0) != 'U' || segment.charAt(1) != 'N' || segment.charAt(2) != 'T') {
+            return false;
+        }
+        return (segment.length() == 3 || segment.indexOf(delimiters.getField(), 3) == 3);
     }
 
     private static class UNTSegmentListener implements BufferedSegmentListener {
 
         public boolean onSegment(BufferedSegmentReader bufferedSegmentReader) {
-            String[] fields = bufferedSegmentReader.getCurrentSegmentFields();
-
             // Stop the current segment consumer if we have reached the UNT segment i.e.
             // only return true if it's not UNT...
-            return !fields[0].equals("UNT");
+            return !bufferedSegmentReader.segmentCodeEquals("UNT");
         }
     }
 }
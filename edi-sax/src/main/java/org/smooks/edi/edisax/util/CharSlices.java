@@ -0,0 +1,319 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.util;
+
+/**
+ * Reusable offset/length table of slices over a shared <code>char[]</code>.
+ * <br><br>
+ * Used to split an EDI segment into its fields, field repeats, components and sub-components
+ * without allocating a {@link String} (or array) per value.  The values are split by a
+ * {@link SegmentSplitter}, i.e. an escape sequence immediately preceding the delimiter is removed
+ * and the delimiter is kept as part of the value.  All other escape sequences are left in place.
+ * <br><br>
+ * Splitting a slice of another {@link CharSlices} instance does not modify the characters of that
+ * (parent) slice.  Slices loaded by a {@link SegmentSplitter} compiled for single pass splitting are
+ * split without rescanning their characters.
+ */
+public class CharSlices {
+
+    private static final char[] NO_CHARS = new char[0];
+
+    private char[] buffer = NO_CHARS;
+    private char[] chars = NO_CHARS;
+    private int[] starts = new int[16];
+    private int[] lengths = new int[16];
+    private int size;
+    private SegmentSplitter splitter; // Set if loaded by a SegmentSplitter
+    private int splitLevels;
+    private int[] firstTokens;
+    private int[] lastTokens;
+    private SegmentSplitter valueSplitter; // Splits values on a single delimiter, into this instance
+
+    /**
+     * Copy the supplied value into this instance's char buffer and split it.
+     *
+     * @param value     The value to split.
+     * @param delimiter The delimiter sequence.  A null delimiter splits on whitespace.
+     * @param escape    The escape sequence.  May be null.
+     * @return This instance.
+     */
+    public CharSlices split(CharSequence value, String delimiter, String escape) {
+        return getValueSplitter(delimiter, escape).splitFields(value, false, this);
+    }
+
+    /**
+     * Split a slice of another {@link CharSlices} instance.
+     *
+     * @param parent    The parent slices.
+     * @param index     The index of the slice (in the parent) to be split.
+     * @param delimiter The delimiter sequence.  A null delimiter splits on whitespace.
+     * @param escape    The escape sequence.  May be null.
+     * @return This instance.
+     */
+    public CharSlices split(CharSlices parent, int index, String delimiter, String escape) {
+        return split(parent.chars, parent.start(index), parent.length(index), delimiter, escape);
+    }
+
+    /**
+     * Split a slice of another {@link CharSlices} instance into the values of the supplied level.
+     * <br><br>
+     * If the parent slices were loaded by a {@link SegmentSplitter} compiled for single pass splitting, the
+     * values are taken from its token table.  Otherwise, the slice is split on the supplied delimiter.
+     *
+     * @param parent    The parent slices.
+     * @param index     The index of the slice (in the parent) to be split.
+     * @param level     The {@link SegmentSplitter} level of the values e.g. {@link SegmentSplitter#COMPONENT}.
+     * @param delimiter The delimiter sequence of the level.  A null delimiter splits on whitespace.
+     * @param escape    The escape sequence.  May be null.
+     * @return This instance.
+     */
+    public CharSlices split(CharSlices parent, int index, int level, String delimiter, String escape) {
+        if (parent.splitter != null && parent.splitter.isCompiled()) {
+            return parent.splitter.split(parent, index, level, this);
+        }
+        return split(parent, index, delimiter, escape);
+    }
+
+    /**
+     * Load an already split set of values.
+     *
+     * @param values The values.
+     * @return This instance.
+     */
+    public CharSlices load(String[] values) {
+        int totalLength = 0;
+
+        for (String value : values) {
+            totalLength += value.length();
+        }
+        ensureBufferCapacity(totalLength);
+
+        chars = buffer;
+        size = 0;
+        splitter = null;
+        int offset = 0;
+        for (String value : values) {
+            value.getChars(0, value.length(), buffer, offset);
+            add(offset, value.length());
+            offset += value.length();
+        }
+
+        return this;
+    }
+
+    /**
+     * Split a range of a char array.
+     *
+     * @param chars     The char array.
+     * @param start     The start index of the range.
+     * @param length    The length of the range.
+     * @param delimiter The delimiter sequence.  A null delimiter splits on whitespace.
+     * @param escape    The escape sequence.  May be null.
+     * @return This instance.
+     */
+    public CharSlices split(char[] chars, int start, int length, String delimiter, String escape) {
+        return getValueSplitter(delimiter, escape).split(chars, start, length, this);
+    }
+
+    /**
+     * Get the char array into which the slices index.
+     *
+     * @return The char array.
+     */
+    public char[] getChars() {
+        return chars;
+    }
+
+    /**
+     * Get the number of slices.
+     *
+     * @return The number of slices.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the start offset of a slice within {@link #getChars()}.
+     *
+     * @param index The slice index.
+     * @return The slice start offset.
+     */
+    public int start(int index) {
+        return starts[index];
+    }
+
+    /**
+     * Get the length of a slice.
+     *
+     * @param index The slice index.
+     * @return The slice length.
+     */
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    /**
+     * Does a slice equal the supplied string.
+     *
+     * @param index The slice index.
+     * @param value The string value.
+     * @return True if the slice is equal to the value, otherwise false.
+     */
+    public boolean equals(int index, String value) {
+        return lengths[index] == value.length() && regionMatches(chars, starts[index], value);
+    }
+
+    /**
+     * Drop a trailing char from the last slice, if present.
+     *
+     * @param c The char.
+     */
+    public void trimLast(char c) {
+        if (size > 0) {
+            int last = size - 1;
+            if (lengths[last] > 0 && chars[starts[last] + lengths[last] - 1] == c) {
+                lengths[last]--;
+            }
+        }
+    }
+
+    /**
+     * Get a slice as a {@link String}.
+     *
+     * @param index The slice index.
+     * @return The slice value.
+     */
+    public String toString(int index) {
+        return new String(chars, starts[index], lengths[index]);
+    }
+
+    void load(SegmentSplitter splitter, char[] chars, int splitLevels) {
+        this.chars = chars;
+        this.splitter = splitter;
+        this.splitLevels = splitLevels;
+        size = 0;
+    }
+
+    char[] load(SegmentSplitter splitter, int splitLevels, int capacity) {
+        ensureBufferCapacity(capacity);
+        load(splitter, buffer, splitLevels);
+        return buffer;
+    }
+
+    int getSplitLevels() {
+        return splitLevels;
+    }
+
+    void add(int start, int length, int firstToken, int lastToken) {
+        add(start, length);
+        if (firstTokens == null || firstTokens.length < starts.length) {
+            int[] newFirstTokens = new int[starts.length];
+            int[] newLastTokens = new int[starts.length];
+            if (firstTokens != null) {
+                System.arraycopy(firstTokens, 0, newFirstTokens, 0, firstTokens.length);
+                System.arraycopy(lastTokens, 0, newLastTokens, 0, lastTokens.length);
+            }
+            firstTokens = newFirstTokens;
+            lastTokens = newLastTokens;
+        }
+        firstTokens[size - 1] = firstToken;
+        lastTokens[size - 1] = lastToken;
+    }
+
+    int firstToken(int index) {
+        return firstTokens[index];
+    }
+
+    int lastToken(int index) {
+        return lastTokens[index];
+    }
+
+    private SegmentSplitter getValueSplitter(String delimiter, String escape) {
+        if (valueSplitter == null) {
+            valueSplitter = new SegmentSplitter(delimiter, escape);
+        } else if (!valueSplitter.isFor(delimiter, escape)) {
+            valueSplitter.setDelimiter(delimiter, escape);
+        }
+        return valueSplitter;
+    }
+
+    /**
+     * Does the char array region starting at the supplied offset match the supplied value.
+     *
+     * @param chars  The char array.
+     * @param offset The region offset.  There must be at least <code>value.length()</code> chars
+     *               available from this offset.
+     * @param value  The value.
+     * @return True if the region matches the value, otherwise false.
+     */
+    public static boolean regionMatches(char[] chars, int offset, String value) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (chars[offset + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(int start, int length) {
+        if (size == starts.length) {
+            int[] newStarts = new int[size * 2];
+            int[] newLengths = new int[size * 2];
+            System.arraycopy(starts, 0, newStarts, 0, size);
+            System.arraycopy(lengths, 0, newLengths, 0, size);
+            starts = newStarts;
+            lengths = newLengths;
+        }
+        starts[size] = start;
+        lengths[size] = length;
+        size++;
+    }
+
+    private void ensureBufferCapacity(int capacity) {
+        if (buffer.length < capacity) {
+            buffer = new char[Math.max(capacity, buffer.length * 2)];
+        }
+    }
+}
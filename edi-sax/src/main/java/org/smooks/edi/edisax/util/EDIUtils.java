@@ -48,6 +48,8 @@ import org.smooks.edi.edisax.EDIParser;
 import org.smooks.edi.edisax.archive.Archive;
 import org.smooks.edi.edisax.archive.ArchiveClassLoader;
 import org.smooks.edi.edisax.model.EdifactModel;
+import org.smooks.edi.edisax.model.ImportCache;
+import org.smooks.edi.edisax.model.SegmentDefinitionInterner;
 import org.smooks.edi.edisax.model.internal.DelimiterType;
 import org.smooks.edi.edisax.model.internal.Delimiters;
 import org.smooks.edi.edisax.model.internal.Description;
@@ -61,7 +63,12 @@ import org.xml.sax.SAXException;
 import java.io.*;
 import java.net.URI;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
 
 /**
@@ -74,6 +81,11 @@ public class EDIUtils {
     private static final Logger LOGGER = LoggerFactory.getLogger(EDIUtils.class);
 
     public static final String EDI_MAPPING_MODEL_ZIP_LIST_FILE = "META-INF/services/org/smooks/edi/mapping-model.lst";
+    /**
+     * Optional mapping model index, mapping the lookup name of each model in the {@link #EDI_MAPPING_MODEL_ZIP_LIST_FILE}
+     * (see {@link #toLookupName(Description)}) to its entry in that list.  Used to load a single model by URN.
+     */
+    public static final String EDI_MAPPING_MODEL_INDEX_FILE = "META-INF/services/org/smooks/edi/mapping-model.idx";
     public static final String EDI_MAPPING_MODEL_INTERCHANGE_PROPERTIES_FILE = "META-INF/services/org/smooks/edi/interchange.properties";
     public static final String EDI_MAPPING_MODEL_URN = "META-INF/services/org/smooks/edi/urn";
     /**
@@ -87,6 +99,24 @@ public class EDIUtils {
     public static final String MODEL_SET_DEFINITIONS_DESCRIPTION_LOOKUP_NAME = toLookupName(MODEL_SET_DEFINITIONS_DESCRIPTION);
     public static HashSet<String> reservedKeywords = new HashSet<String>();
 
+    /**
+     * Memory map a file for reading.
+     *
+     * @param file The file.
+     * @return The read-only mapped file, or null if the file is too large to be mapped into a single buffer.
+     * @throws IOException Error mapping the file.
+     */
+    public static ByteBuffer mapFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return null;
+            }
+            // The mapping remains valid after the channel is closed...
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
     /**
      * Splits a String by delimiter as long as delimiter does not follow an escape sequence.
      * The split method follows the same behavior as the method splitPreserveAllTokens(String, String)
@@ -104,23 +134,36 @@ public class EDIUtils {
             return null;
         }
 
-        // Empty input string returns empty array
-        if (value.length() == 0) {
-            return new String[0];
-        }
-
-        // Empty delimiter splits on whitespace.
-        if (delimiter == null) {
-            delimiter = " ";
+        CharSlices slices = new CharSlices().split(value, delimiter, escape);
+        String[] result = new String[slices.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = slices.toString(i);
         }
 
-        List<CharSequence> charSequences = new ArrayList<CharSequence>();
-        readSequenceStructure(value, delimiter, escape, charSequences);
-
-        return putCharacterSequenceIntoResult(charSequences);
+        return result;
     }
 
     public static void loadMappingModels(String mappingModelFiles, Map<String, EdifactModel> mappingModels, URI baseURI) throws EDIConfigurationException, IOException, SAXException {
+        loadMappingModels(mappingModelFiles, mappingModels, baseURI, null, null);
+    }
+
+    /**
+     * Load the mapping models referenced by the supplied comma separated list of XML files, zip/jar files and
+     * mapping model URNs.
+     * <p/>
+     * The supplied import cache and segment definition interner are set on each model before it is parsed, so as
+     * the loaded models share their imports and segment definitions.
+     *
+     * @param mappingModelFiles         The mapping model references.
+     * @param mappingModels             The map into which the loaded models are added, by lookup name.
+     * @param baseURI                   The base URI for resolving the models.
+     * @param importCache               The import cache, or null.
+     * @param segmentDefinitionInterner The segment definition interner, or null.
+     * @throws EDIConfigurationException Invalid model reference, or invalid model.
+     * @throws IOException               Error reading a model.
+     * @throws SAXException              Invalid model.
+     */
+    public static void loadMappingModels(String mappingModelFiles, Map<String, EdifactModel> mappingModels, URI baseURI, ImportCache importCache, SegmentDefinitionInterner segmentDefinitionInterner) throws EDIConfigurationException, IOException, SAXException {
         AssertArgument.isNotNullAndNotEmpty(mappingModelFiles, "mappingModelFiles");
         AssertArgument.isNotNull(mappingModels, "mappingModels");
         AssertArgument.isNotNull(baseURI, "baseURI");
@@ -132,12 +175,12 @@ public class EDIUtils {
 
             // First try processing based on the file extension
             if (mappingModelFile.endsWith(".xml")) {
-                if (loadXMLMappingModel(mappingModelFile, mappingModels, baseURI)) {
+                if (loadXMLMappingModel(mappingModelFile, mappingModels, baseURI, importCache, segmentDefinitionInterner)) {
                     // Loaded an XML config... on to next config in list...
                     continue;
                 }
             } else if (mappingModelFile.endsWith(".zip") || mappingModelFile.endsWith(".jar")) {
-                if (loadZippedMappingModels(mappingModelFile, mappingModels, baseURI)) {
+                if (loadZippedMappingModels(mappingModelFile, mappingModels, baseURI, importCache, segmentDefinitionInterner)) {
                     // Loaded an zipped config... on to next config in list...
                     continue;
                 }
@@ -145,24 +188,26 @@ public class EDIUtils {
                 String urn = mappingModelFile.substring(4);
                 List<String> rootMappingModels = getMappingModelList(urn);
 
-                loadMappingModels(mappingModels, baseURI, rootMappingModels);
+                loadMappingModels(mappingModels, baseURI, rootMappingModels, importCache, segmentDefinitionInterner);
 
                 continue;
             }
 
             // The file extension didn't match up with what we expected, so perform a
             // brute force attempt to process the config...
-            if (!loadXMLMappingModel(mappingModelFile, mappingModels, baseURI)) {
-                if (!loadZippedMappingModels(mappingModelFile, mappingModels, baseURI)) {
+            if (!loadXMLMappingModel(mappingModelFile, mappingModels, baseURI, importCache, segmentDefinitionInterner)) {
+                if (!loadZippedMappingModels(mappingModelFile, mappingModels, baseURI, importCache, segmentDefinitionInterner)) {
                     throw new EDIConfigurationException("Failed to process EDI Mapping Model config file '" + mappingModelFile + "'.  Not a valid EDI Mapping Model configuration.");
                 }
             }
         }
     }
 
-    private static boolean loadXMLMappingModel(String mappingModelFile, Map<String, EdifactModel> mappingModels, URI baseURI) throws EDIConfigurationException {
+    private static boolean loadXMLMappingModel(String mappingModelFile, Map<String, EdifactModel> mappingModels, URI baseURI, ImportCache importCache, SegmentDefinitionInterner segmentDefinitionInterner) throws EDIConfigurationException {
         try {
             EdifactModel model = EDIParser.parseMappingModel(mappingModelFile, baseURI);
+            // The model is parsed here, to get at its description, so share the caches first...
+            setCaches(model, importCache, segmentDefinitionInterner);
             mappingModels.put(toLookupName(model.getEdimap().getDescription()), model);
             return true;
         } catch (IOException e) {
@@ -173,7 +218,7 @@ public class EDIUtils {
         }
     }
 
-    private static boolean loadZippedMappingModels(String mappingModelFile, Map<String, EdifactModel> mappingModels, URI baseURI) throws IOException, SAXException, EDIConfigurationException {
+    private static boolean loadZippedMappingModels(String mappingModelFile, Map<String, EdifactModel> mappingModels, URI baseURI, ImportCache importCache, SegmentDefinitionInterner segmentDefinitionInterner) throws IOException, SAXException, EDIConfigurationException {
         URIResourceLocator locator = new URIResourceLocator();
 
         locator.setBaseURI(baseURI);
@@ -196,7 +241,7 @@ public class EDIUtils {
                     ArchiveClassLoader archiveClassLoader = new ArchiveClassLoader(threadCCL, archive);
 
                     Thread.currentThread().setContextClassLoader(archiveClassLoader);
-                    loadMappingModels(mappingModels, baseURI, rootMappingModels);
+                    loadMappingModels(mappingModels, baseURI, rootMappingModels, importCache, segmentDefinitionInterner);
                 } finally {
                     Thread.currentThread().setContextClassLoader(threadCCL);
                 }
@@ -208,11 +253,150 @@ public class EDIUtils {
         return false;
     }
 
+    /**
+     * Load a single mapping model, and the model set definitions it imports, out of the indexed mapping model jar
+     * identified by the supplied URN.
+     * <p/>
+     * The model set definitions are only loaded if not already in the supplied mapping models, so as they are shared
+     * by all the models loaded into the same map.
+     *
+     * @param urn           The mapping model URN e.g. "urn:org.smooks.edi.unedifact:d96a-mapping:*".
+     * @param lookupName    The lookup name of the model to load (see {@link #toLookupName(Description)}).
+     * @param mappingModels The map into which the loaded models are added, by lookup name.
+     * @param baseURI       The base URI for resolving the models.
+     * @return False if the mapping model jar has no {@link #EDI_MAPPING_MODEL_INDEX_FILE index}, in which case
+     * nothing is loaded, otherwise true (even if the index has no such model).
+     * @throws IOException               Error reading the index.
+     * @throws SAXException              Invalid model.
+     * @throws EDIConfigurationException No mapping model jar on the classpath for the URN, or invalid model.
+     */
+    public static boolean loadMappingModel(String urn, String lookupName, Map<String, EdifactModel> mappingModels, URI baseURI) throws IOException, SAXException, EDIConfigurationException {
+        AssertArgument.isNotNullAndNotEmpty(urn, "urn");
+
+        Properties index = loadMappingModelIndex(urn);
+        if (index == null) {
+            return false;
+        }
+
+        loadMappingModel(index, lookupName, mappingModels, baseURI);
+
+        return true;
+    }
+
+    /**
+     * Read the {@link #EDI_MAPPING_MODEL_INDEX_FILE index} of the mapping model jar identified by the supplied URN.
+     *
+     * @param urn The mapping model URN e.g. "urn:org.smooks.edi.unedifact:d96a-mapping:*".
+     * @return The index, mapping lookup names to mapping model list entries, or null if the mapping model jar has
+     * no index.
+     * @throws IOException               Error reading the index.
+     * @throws EDIConfigurationException No mapping model jar on the classpath for the URN.
+     */
+    public static Properties loadMappingModelIndex(String urn) throws IOException, EDIConfigurationException {
+        AssertArgument.isNotNullAndNotEmpty(urn, "urn");
+
+        InputStream indexStream = findMappingModelConfigStream(urn, EDI_MAPPING_MODEL_INDEX_FILE);
+        if (indexStream == null) {
+            return null;
+        }
+
+        Properties index = new Properties();
+        try {
+            index.load(new InputStreamReader(indexStream, "UTF-8"));
+        } finally {
+            indexStream.close();
+        }
+
+        return index;
+    }
+
+    /**
+     * Load a single mapping model, and the model set definitions it imports, through a mapping model jar index
+     * (see {@link #loadMappingModelIndex(String)}).
+     * <p/>
+     * The model set definitions are only loaded if not already in the supplied mapping models, so as they are shared
+     * by all the models loaded into the same map.
+     *
+     * @param index         The mapping model jar index.
+     * @param lookupName    The lookup name of the model to load (see {@link #toLookupName(Description)}).
+     * @param mappingModels The map into which the loaded models are added, by lookup name.
+     * @param baseURI       The base URI for resolving the models.
+     * @return False if the index has no such model, otherwise true.
+     * @throws IOException               Error reading a model.
+     * @throws SAXException              Invalid model.
+     * @throws EDIConfigurationException Invalid model.
+     */
+    public static boolean loadMappingModel(Properties index, String lookupName, Map<String, EdifactModel> mappingModels, URI baseURI) throws IOException, SAXException, EDIConfigurationException {
+        return loadMappingModel(index, lookupName, mappingModels, baseURI, null, null);
+    }
+
+    /**
+     * Load a single mapping model, and the model set definitions it imports, through a mapping model jar index
+     * (see {@link #loadMappingModelIndex(String)}).
+     * <p/>
+     * The supplied import cache and segment definition interner are set on each model before it is parsed.
+     *
+     * @param index                     The mapping model jar index.
+     * @param lookupName                The lookup name of the model to load (see {@link #toLookupName(Description)}).
+     * @param mappingModels             The map into which the loaded models are added, by lookup name.
+     * @param baseURI                   The base URI for resolving the models.
+     * @param importCache               The import cache, or null.
+     * @param segmentDefinitionInterner The segment definition interner, or null.
+     * @return False if the index has no such model, otherwise true.
+     * @throws IOException               Error reading a model.
+     * @throws SAXException              Invalid model.
+     * @throws EDIConfigurationException Invalid model.
+     */
+    public static boolean loadMappingModel(Properties index, String lookupName, Map<String, EdifactModel> mappingModels, URI baseURI, ImportCache importCache, SegmentDefinitionInterner segmentDefinitionInterner) throws IOException, SAXException, EDIConfigurationException {
+        AssertArgument.isNotNull(index, "index");
+        AssertArgument.isNotNullAndNotEmpty(lookupName, "lookupName");
+        AssertArgument.isNotNull(mappingModels, "mappingModels");
+        AssertArgument.isNotNull(baseURI, "baseURI");
+
+        String mappingModel = index.getProperty(lookupName);
+        if (mappingModel == null) {
+            return false;
+        }
+
+        List<String> rootMappingModels = new ArrayList<String>();
+        String definitions = index.getProperty(MODEL_SET_DEFINITIONS_DESCRIPTION_LOOKUP_NAME);
+
+        if (definitions != null && !mappingModels.containsKey(MODEL_SET_DEFINITIONS_DESCRIPTION_LOOKUP_NAME)) {
+            rootMappingModels.add(definitions);
+        }
+        rootMappingModels.add(mappingModel);
+        loadMappingModels(mappingModels, baseURI, rootMappingModels, importCache, segmentDefinitionInterner);
+
+        return true;
+    }
+
     public static void loadMappingModels(Map<String, EdifactModel> mappingModels, URI baseURI, List<String> rootMappingModels) throws IOException, SAXException, EDIConfigurationException {
+        loadMappingModels(mappingModels, baseURI, rootMappingModels, null, null);
+    }
+
+    /**
+     * Load the supplied mapping model list entries, associating each model with the models already loaded.
+     * <p/>
+     * The supplied import cache and segment definition interner are set on each model before it is parsed.
+     *
+     * @param mappingModels             The map into which the loaded models are added, by lookup name.
+     * @param baseURI                   The base URI for resolving the models.
+     * @param rootMappingModels         The mapping model list entries.
+     * @param importCache               The import cache, or null.
+     * @param segmentDefinitionInterner The segment definition interner, or null.
+     * @throws IOException               Error reading a model.
+     * @throws SAXException              Invalid model.
+     * @throws EDIConfigurationException Invalid model.
+     */
+    public static void loadMappingModels(Map<String, EdifactModel> mappingModels, URI baseURI, List<String> rootMappingModels, ImportCache importCache, SegmentDefinitionInterner segmentDefinitionInterner) throws IOException, SAXException, EDIConfigurationException {
         for (String rootMappingModel : rootMappingModels) {
             try {
-                EdifactModel mappingModel = EDIParser.parseMappingModel(rootMappingModel, baseURI);
+                EdifactModel mappingModel = loadBinaryMappingModel(rootMappingModel, baseURI);
 
+                if (mappingModel == null) {
+                    mappingModel = EDIParser.parseMappingModel(rootMappingModel, baseURI);
+                }
+                setCaches(mappingModel, importCache, segmentDefinitionInterner);
                 mappingModel.setAssociateModels(mappingModels.values());
                 mappingModels.put(toLookupName(mappingModel.getDescription()), mappingModel);
             } catch (Exception e) {
@@ -221,6 +405,56 @@ public class EDIUtils {
         }
     }
 
+    private static void setCaches(EdifactModel mappingModel, ImportCache importCache, SegmentDefinitionInterner segmentDefinitionInterner) {
+        if (importCache != null) {
+            mappingModel.setImportCache(importCache);
+        }
+        if (segmentDefinitionInterner != null) {
+            mappingModel.setSegmentDefinitionInterner(segmentDefinitionInterner);
+        }
+    }
+
+    /**
+     * Load the binary form (see {@link EdimapBinaryWriter}) of the supplied XML mapping model, if it has one.  The
+     * binary form is the resource of the same name as the XML resource, but with the
+     * {@link EdimapBinaryWriter#FILE_EXTENSION binary extension}.
+     *
+     * @param mappingModel The mapping model list entry.
+     * @param baseURI      The base URI for resolving the mapping model.
+     * @return The model, or null if the mapping model has no (readable) binary form.
+     */
+    private static EdifactModel loadBinaryMappingModel(String mappingModel, URI baseURI) throws IOException {
+        String xmlResource = mappingModel.split("!")[0];
+        if (!xmlResource.endsWith(".xml")) {
+            return null;
+        }
+
+        String binaryResource = xmlResource.substring(0, xmlResource.length() - ".xml".length()) + EdimapBinaryWriter.FILE_EXTENSION;
+        URIResourceLocator locator = new URIResourceLocator();
+        InputStream binaryStream;
+
+        locator.setBaseURI(baseURI);
+        try {
+            binaryStream = locator.getResource(binaryResource);
+        } catch (IOException e) {
+            // No binary form...
+            return null;
+        }
+        if (binaryStream == null) {
+            return null;
+        }
+
+        try {
+            // Keep the XML resource URI as the model URI, so as models importing the XML resource find this model...
+            return new EdifactModel(locator.resolveURI(xmlResource), EdimapBinaryReader.read(binaryStream));
+        } catch (IOException e) {
+            LOGGER.debug("Unable to read binary EDI Mapping Model '" + binaryResource + "'.  Falling back to the XML mapping model.", e);
+            return null;
+        } finally {
+            binaryStream.close();
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private static List<String> getMappingModelList(Archive archive) throws IOException {
         byte[] zipEntryBytes = archive.getEntryBytes(EDI_MAPPING_MODEL_ZIP_LIST_FILE);
@@ -299,8 +533,19 @@ public class EDIUtils {
     }
 
     private static InputStream getMappingModelConfigStream(String urn, String fileName) throws IOException, EDIConfigurationException {
+        InputStream modelConfigStream = findMappingModelConfigStream(urn, fileName);
+
+        if (modelConfigStream == null) {
+            throw new EDIConfigurationException("Failed to locate jar file for EDI Mapping Model URN '" + urn + "'.  Jar must be available on classpath.");
+        }
+
+        return modelConfigStream;
+    }
+
+    private static InputStream findMappingModelConfigStream(String urn, String fileName) throws IOException, EDIConfigurationException {
         List<URL> urnFiles = ClassUtils.getResources(EDI_MAPPING_MODEL_URN, EDIUtils.class);
         boolean ignoreVersion = false;
+        boolean urnFound = false;
 
         if (urn.startsWith("urn:")) {
             urn = urn.substring(4);
@@ -320,6 +565,7 @@ public class EDIUtils {
                     archiveURN = archiveURN.substring(0, archiveURN.lastIndexOf(':'));
                 }
                 if (archiveURN.equals(urn)) {
+                    urnFound = true;
                     String urnFileString = urnFile.toString();
                     String modelConfigFile = urnFileString.substring(0, urnFileString.length() - EDI_MAPPING_MODEL_URN.length()) + fileName;
 
@@ -336,6 +582,11 @@ public class EDIUtils {
             }
         }
 
+        if (urnFound) {
+            // The jar is there, it just doesn't have the file...
+            return null;
+        }
+
         throw new EDIConfigurationException("Failed to locate jar file for EDI Mapping Model URN '" + urn + "'.  Jar must be available on classpath.");
     }
 
@@ -363,137 +614,23 @@ public class EDIUtils {
 
     private static Archive loadArchive(InputStream rawStream) {
         try {
-            return new Archive(new ZipInputStream(rawStream));
-        } catch (Exception e) {
-            // Assume it's not a Zip file.  Just return null...
-            return null;
-        }
-    }
-
-    /**
-     * Loops through all CharSequences and decides whether to write out value or split.
-     *
-     * @param charSequences a list of CharSequence
-     * @return a String[] containing the split values.
-     */
-    private static String[] putCharacterSequenceIntoResult(List<CharSequence> charSequences) {
-        List<String> result = new ArrayList<String>();
-        StringBuilder stringBuilder = new StringBuilder();
-        boolean escapeNextSequence = false;
-        boolean delimiterLastSequence = false;
-        CharSequence previousSequence = null;
-
-        for (CharSequence sequence : charSequences) {
-            delimiterLastSequence = false;
-
-            if (escapeNextSequence && (sequence.getType() != CharSequenceTypeEnum.DELIMITER)) {
-                stringBuilder.append(previousSequence.getValue());
-            }
-
+            // Read the entries straight out of the zip bytes, rather than extracting them to a temp dir...
+            byte[] zipBytes;
             try {
-                switch (sequence.getType()) {
-                    case PLAIN: {
-                        stringBuilder.append(sequence.getValue());
-                        break;
-                    }
-                    case DELIMITER: {
-                        if (escapeNextSequence) {
-                            stringBuilder.append(sequence.getValue());
-                        } else {
-                            result.add(stringBuilder.toString());
-                            stringBuilder.setLength(0);
-                            delimiterLastSequence = true;
-                        }
-                        break;
-                    }
-                    case ESCAPE: {
-                        if (escapeNextSequence) {
-                            stringBuilder.append(sequence.getValue());
-                        } else {
-                            escapeNextSequence = true;
-                            continue;
-                        }
-                        break;
-                    }
-                }
-
-                escapeNextSequence = false;
+                zipBytes = StreamUtils.readStream(rawStream);
             } finally {
-                previousSequence = sequence;
-            }
-        }
-
-        if (stringBuilder.length() > 0 || delimiterLastSequence) {
-            result.add(stringBuilder.toString());
-        }
-
-        return result.toArray(new String[result.size()]);
-    }
-
-    /**
-     * Reads value and put the different parts into a list of CharSequence for easier handling of escape- and
-     * delimiter-sequences when splitting value.
-     *
-     * @param value     the string to split
-     * @param delimiter the characters defining the delimiter
-     * @param escape    the characters defining the escape
-     * @param result    a lis CharSequence.
-     */
-    private static void readSequenceStructure(String value, String delimiter, String escape, List<CharSequence> result) {
-        StringBuilder stringBuilder = new StringBuilder();
-        int escapeLength = escape == null ? 0 : escape.length();
-        int delimiterLength = delimiter == null ? 0 : delimiter.length();
-
-        for (int j = 0; j < value.length(); j++) {
-            char theChar = value.charAt(j);
-            stringBuilder.append(theChar);
-
-            int curTokenLength = stringBuilder.length();
-            if (builderEndsWith(stringBuilder, delimiter)) {
-                stringBuilder.setLength(curTokenLength - delimiterLength);
-                if (stringBuilder.length() > 0) {
-                    result.add(new CharSequence(stringBuilder.toString(), CharSequenceTypeEnum.PLAIN));
-                    stringBuilder.setLength(0);
-                }
-                result.add(new CharSequence(delimiter, CharSequenceTypeEnum.DELIMITER));
-                continue;
-            } else if (builderEndsWith(stringBuilder, escape)) {
-                stringBuilder.setLength(curTokenLength - escapeLength);
-                if (stringBuilder.length() > 0) {
-                    result.add(new CharSequence(stringBuilder.toString(), CharSequenceTypeEnum.PLAIN));
-                    stringBuilder.setLength(0);
-                }
-                result.add(new CharSequence(escape, CharSequenceTypeEnum.ESCAPE));
-                continue;
+                rawStream.close();
             }
-        }
-
-        if (stringBuilder.length() > 0) {
-            result.add(new CharSequence(stringBuilder.toString(), CharSequenceTypeEnum.PLAIN));
-        }
-    }
-
-    private static boolean builderEndsWith(StringBuilder stringBuilder, String string) {
-        if (string == null) {
-            return false;
-        }
-
-        int builderLen = stringBuilder.length();
-        int stringLen = string.length();
-
-        if (builderLen < stringLen) {
-            return false;
-        }
-
-        int stringIndx = 0;
-        for (int i = (builderLen - stringLen); i < builderLen; i++) {
-            if (stringBuilder.charAt(i) != string.charAt(stringIndx)) {
-                return false;
+            try {
+                return new Archive(ByteBuffer.wrap(zipBytes));
+            } catch (ZipException e) {
+                // Not a zip file that can be read directly (or not a zip file at all)...
+                return new Archive("Unknown", Archive.Storage.HEAP, new ZipInputStream(new ByteArrayInputStream(zipBytes)));
             }
-            stringIndx++;
+        } catch (Exception e) {
+            // Assume it's not a Zip file.  Just return null...
+            return null;
         }
-
-        return true;
     }
 
     /**
@@ -614,24 +751,6 @@ public class EDIUtils {
         }
     }
 
-    private static class CharSequence {
-        String value;
-        CharSequenceTypeEnum type;
-
-        public CharSequence(String value, CharSequenceTypeEnum type) {
-            this.value = value;
-            this.type = type;
-        }
-
-        public String getValue() {
-            return value;
-        }
-
-        public CharSequenceTypeEnum getType() {
-            return type;
-        }
-    }
-
     /**
      * Convert {@link Description} to the string representation
      * that is used for lookup in the hashmaps
@@ -644,12 +763,6 @@ public class EDIUtils {
                 + description.getVersion();
     }
 
-    private enum CharSequenceTypeEnum {
-        PLAIN,
-        ESCAPE,
-        DELIMITER
-    }
-
 
     // Initialize reservedKeywords Set containing all keywords in java.
     static {
@@ -0,0 +1,421 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.smooks.assertion.AssertArgument;
+import org.smooks.edi.edisax.model.internal.CodeList;
+import org.smooks.edi.edisax.model.internal.Component;
+import org.smooks.edi.edisax.model.internal.Delimiters;
+import org.smooks.edi.edisax.model.internal.Description;
+import org.smooks.edi.edisax.model.internal.Edimap;
+import org.smooks.edi.edisax.model.internal.Field;
+import org.smooks.edi.edisax.model.internal.MappingNode;
+import org.smooks.edi.edisax.model.internal.Segment;
+import org.smooks.edi.edisax.model.internal.SegmentGroup;
+import org.smooks.edi.edisax.model.internal.SubComponent;
+import org.smooks.edi.edisax.model.internal.ValueNode;
+
+import static org.smooks.edi.edisax.util.EdimapBinaryWriter.FORMAT_VERSION;
+import static org.smooks.edi.edisax.util.EdimapBinaryWriter.MAGIC;
+import static org.smooks.edi.edisax.util.EdimapBinaryWriter.NEW;
+import static org.smooks.edi.edisax.util.EdimapBinaryWriter.NULL;
+import static org.smooks.edi.edisax.util.EdimapBinaryWriter.REFERENCE_OFFSET;
+import static org.smooks.edi.edisax.util.EdimapBinaryWriter.SEGMENT;
+import static org.smooks.edi.edisax.util.EdimapBinaryWriter.SEGMENT_GROUP;
+
+/**
+ * Reads an {@link Edimap} written by {@link EdimapBinaryWriter}.
+ * <p/>
+ * The mapping node parents are set from the node containment, as the {@link org.smooks.edi.edisax.model.EDIConfigDigester}
+ * does.  A node shared by several containers keeps the first container as its parent.
+ * <p/>
+ * The stream is not trusted: a truncated or corrupted stream fails with an {@link IOException}, so as the caller can
+ * fall back to the XML mapping model.
+ */
+public class EdimapBinaryReader {
+
+    private final DataInputStream in;
+    private final List<String> strings = new ArrayList<String>();
+    private final List<Object> nodes = new ArrayList<Object>();
+    private byte[] stringBuffer = new byte[64];
+
+    private EdimapBinaryReader(InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+    }
+
+    /**
+     * Read an Edimap.
+     *
+     * @param inputStream The stream to read from.  Not closed.
+     * @return The Edimap, with its imports applied.
+     * @throws IOException Error reading the stream, or the stream is not a valid binary EDI Mapping Model of a
+     *                     supported format version.
+     */
+    public static Edimap read(InputStream inputStream) throws IOException {
+        AssertArgument.isNotNull(inputStream, "inputStream");
+        try {
+            return new EdimapBinaryReader(inputStream).readEdimap();
+        } catch (RuntimeException e) {
+            // e.g. a corrupted value rejected by a model setter...
+            throw new IOException("Invalid binary EDI Mapping Model.", e);
+        }
+    }
+
+    private Edimap readEdimap() throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a binary EDI Mapping Model.");
+        }
+        int formatVersion = readVarInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported binary EDI Mapping Model format version '" + formatVersion + "'.  Expected version '" + FORMAT_VERSION + "'.");
+        }
+
+        String src = readString();
+        Edimap edimap = new Edimap(src != null ? URI.create(src) : null);
+
+        edimap.setDescription(readDescription());
+        edimap.setDelimiters(readDelimiters());
+        edimap.setIgnoreUnmappedSegments(in.readBoolean());
+        edimap.setSegments(readSegmentGroup(null));
+        edimap.setSimpleDataElements(readComponents(null));
+        edimap.setCompositeDataElements(readFields(null));
+
+        return edimap;
+    }
+
+    private Description readDescription() throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+
+        Description description = new Description();
+        String name = readString();
+        String version = readString();
+
+        if (name != null) {
+            description.setName(name);
+        }
+        if (version != null) {
+            description.setVersion(version);
+        }
+        description.setNamespace(readString());
+
+        return description;
+    }
+
+    private Delimiters readDelimiters() throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+
+        Delimiters delimiters = new Delimiters();
+        String segment = readString();
+
+        if (segment != null) {
+            delimiters.setSegment(segment);
+        }
+        delimiters.setField(readString());
+        delimiters.setFieldRepeat(readString());
+        delimiters.setComponent(readString());
+        delimiters.setSubComponent(readString());
+        delimiters.setEscape(readString());
+        delimiters.setDecimalSeparator(readString());
+
+        return delimiters;
+    }
+
+    private SegmentGroup readSegmentGroup(MappingNode parent) throws IOException {
+        int tag = readVarInt();
+        if (tag != NEW) {
+            return readNodeReference(tag, SegmentGroup.class);
+        }
+
+        SegmentGroup segmentGroup;
+        int type = readVarInt();
+
+        if (type == SEGMENT) {
+            Segment segment = new Segment();
+
+            nodes.add(segment);
+            readMappingNode(segment, parent);
+            segment.setMinOccurs(in.readInt());
+            segment.setMaxOccurs(in.readInt());
+            segment.setSegcode(readString());
+            segment.setTruncatable(in.readBoolean());
+            segment.setIgnoreUnmappedFields(in.readBoolean());
+            segment.setDescription(readString());
+            segment.setImportXmlTag(readString());
+            List<Field> fields = readFields(segment);
+            if (fields != null) {
+                segment.getFields().addAll(fields);
+            }
+            segmentGroup = segment;
+        } else if (type == SEGMENT_GROUP) {
+            segmentGroup = new SegmentGroup();
+
+            nodes.add(segmentGroup);
+            readMappingNode(segmentGroup, parent);
+            segmentGroup.setMinOccurs(in.readInt());
+            segmentGroup.setMaxOccurs(in.readInt());
+        } else {
+            throw new IOException("Invalid binary EDI Mapping Model.  Unknown segment group type '" + type + "'.");
+        }
+
+        int childCount = readCount();
+        List<SegmentGroup> children = segmentGroup.getSegments();
+        for (int i = 0; i < childCount; i++) {
+            children.add(readSegmentGroup(segmentGroup));
+        }
+
+        return segmentGroup;
+    }
+
+    private List<Field> readFields(MappingNode parent) throws IOException {
+        int count = readCount();
+        if (count == NULL) {
+            return null;
+        }
+
+        List<Field> fields = new ArrayList<Field>();
+        for (int i = 1; i < count; i++) {
+            int tag = readVarInt();
+            if (tag != NEW) {
+                fields.add(readNodeReference(tag, Field.class));
+                continue;
+            }
+
+            Field field = new Field();
+
+            nodes.add(field);
+            readValueNode(field, parent);
+            field.setRequired(in.readBoolean());
+            field.setTruncatable(in.readBoolean());
+            field.setCardinality(readInteger());
+            field.setCodeList(readCodeList());
+            List<Component> components = readComponents(field);
+            if (components != null) {
+                field.getComponents().addAll(components);
+            }
+            fields.add(field);
+        }
+
+        return fields;
+    }
+
+    private List<Component> readComponents(MappingNode parent) throws IOException {
+        int count = readCount();
+        if (count == NULL) {
+            return null;
+        }
+
+        List<Component> components = new ArrayList<Component>();
+        for (int i = 1; i < count; i++) {
+            int tag = readVarInt();
+            if (tag != NEW) {
+                components.add(readNodeReference(tag, Component.class));
+                continue;
+            }
+
+            Component component = new Component();
+
+            nodes.add(component);
+            readValueNode(component, parent);
+            component.setRequired(in.readBoolean());
+            component.setTruncatable(in.readBoolean());
+            component.setCodeList(readCodeList());
+
+            int subComponentCount = readCount();
+            List<SubComponent> subComponents = component.getSubComponents();
+            for (int j = 0; j < subComponentCount; j++) {
+                subComponents.add(readSubComponent(component));
+            }
+            components.add(component);
+        }
+
+        return components;
+    }
+
+    private SubComponent readSubComponent(MappingNode parent) throws IOException {
+        int tag = readVarInt();
+        if (tag != NEW) {
+            return readNodeReference(tag, SubComponent.class);
+        }
+
+        SubComponent subComponent = new SubComponent();
+
+        nodes.add(subComponent);
+        readValueNode(subComponent, parent);
+        subComponent.setRequired(in.readBoolean());
+
+        return subComponent;
+    }
+
+    private void readMappingNode(MappingNode mappingNode, MappingNode parent) throws IOException {
+        mappingNode.setName(readString());
+        mappingNode.setNamespace(readString());
+        mappingNode.setDocumentation(readString());
+        mappingNode.setXmltag(readString());
+        mappingNode.setNodeTypeRef(readString());
+        mappingNode.setParent(parent);
+    }
+
+    private void readValueNode(ValueNode valueNode, MappingNode parent) throws IOException {
+        readMappingNode(valueNode, parent);
+        valueNode.setDataType(readString());
+        valueNode.setDataTypeParametersString(readString());
+        valueNode.setMinLength(readInteger());
+        valueNode.setMaxLength(readInteger());
+    }
+
+    private CodeList readCodeList() throws IOException {
+        int count = readCount();
+        if (count == NULL) {
+            return null;
+        }
+
+        CodeList codeList = new CodeList();
+        List<String> codes = new ArrayList<String>();
+
+        codeList.setDocumentation(readString());
+        for (int i = 1; i < count; i++) {
+            codes.add(readString());
+        }
+        codeList.setCodes(codes);
+
+        return codeList;
+    }
+
+    private <T> T readNodeReference(int tag, Class<T> nodeType) throws IOException {
+        if (tag == NULL) {
+            return null;
+        }
+
+        int nodeId = tag - REFERENCE_OFFSET;
+        if (nodeId < 0 || nodeId >= nodes.size()) {
+            throw new IOException("Invalid binary EDI Mapping Model.  Unknown node reference '" + nodeId + "'.");
+        }
+
+        Object node = nodes.get(nodeId);
+        if (!nodeType.isInstance(node)) {
+            throw new IOException("Invalid binary EDI Mapping Model.  Node reference '" + nodeId + "' is a " + node.getClass().getSimpleName() + ", not a " + nodeType.getSimpleName() + ".");
+        }
+        return nodeType.cast(node);
+    }
+
+    private String readString() throws IOException {
+        int tag = readVarInt();
+
+        if (tag == NULL) {
+            return null;
+        } else if (tag == NEW) {
+            int length = readCount();
+            readStringBytes(length);
+
+            String string = new String(stringBuffer, 0, length, StandardCharsets.UTF_8);
+            strings.add(string);
+            return string;
+        }
+
+        int stringId = tag - REFERENCE_OFFSET;
+        if (stringId < 0 || stringId >= strings.size()) {
+            throw new IOException("Invalid binary EDI Mapping Model.  Unknown string reference '" + stringId + "'.");
+        }
+        return strings.get(stringId);
+    }
+
+    /**
+     * Read the string bytes into the {@link #stringBuffer}.  The buffer only grows as the bytes arrive, so as a
+     * corrupted length does not allocate more than the stream holds.
+     */
+    private void readStringBytes(int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            if (read == stringBuffer.length) {
+                stringBuffer = Arrays.copyOf(stringBuffer, (int) Math.min(length, stringBuffer.length * 2L));
+            }
+            int count = in.read(stringBuffer, read, Math.min(length, stringBuffer.length) - read);
+            if (count < 0) {
+                throw new EOFException("Invalid binary EDI Mapping Model.  Truncated string.");
+            }
+            read += count;
+        }
+    }
+
+    private Integer readInteger() throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return in.readInt();
+    }
+
+    private int readCount() throws IOException {
+        int count = readVarInt();
+        if (count < 0) {
+            throw new IOException("Invalid binary EDI Mapping Model.  Negative count '" + count + "'.");
+        }
+        return count;
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid binary EDI Mapping Model.  Malformed variable length integer.");
+    }
+}
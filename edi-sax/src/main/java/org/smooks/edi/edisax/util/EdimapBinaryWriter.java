@@ -0,0 +1,332 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.smooks.assertion.AssertArgument;
+import org.smooks.edi.edisax.model.internal.CodeList;
+import org.smooks.edi.edisax.model.internal.Component;
+import org.smooks.edi.edisax.model.internal.Delimiters;
+import org.smooks.edi.edisax.model.internal.Description;
+import org.smooks.edi.edisax.model.internal.Edimap;
+import org.smooks.edi.edisax.model.internal.Field;
+import org.smooks.edi.edisax.model.internal.MappingNode;
+import org.smooks.edi.edisax.model.internal.Segment;
+import org.smooks.edi.edisax.model.internal.SegmentGroup;
+import org.smooks.edi.edisax.model.internal.SubComponent;
+import org.smooks.edi.edisax.model.internal.ValueNode;
+
+/**
+ * Writes an {@link Edimap} in the compact binary EDI Mapping Model format read by {@link EdimapBinaryReader}.
+ * <p/>
+ * Reading the binary format skips the DOM parsing, XSD validation and import resolution of the XML format.
+ * The written Edimap must therefore have its imports already applied (i.e. be the Edimap of a parsed
+ * {@link org.smooks.edi.edisax.model.EdifactModel}).
+ * <p/>
+ * The format is versioned by {@link #FORMAT_VERSION}, which must be incremented on any change to the encoding
+ * (or to the model properties encoded).  Strings and mapping nodes are written once and then referenced, so
+ * as nodes shared by the model (e.g. the fields of an imported segment) are shared again once read.
+ *
+ * @see EdimapWriter
+ */
+public class EdimapBinaryWriter {
+
+    /**
+     * The extension of binary EDI Mapping Model resources, used in place of the ".xml" extension of the
+     * equivalent XML resource.
+     */
+    public static final String FILE_EXTENSION = ".edimap.bin";
+
+    static final int MAGIC = 0x45444D42;
+    static final int FORMAT_VERSION = 1;
+
+    static final int NULL = 0;
+    static final int NEW = 1;
+    static final int REFERENCE_OFFSET = 2;
+
+    static final int SEGMENT_GROUP = 0;
+    static final int SEGMENT = 1;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+    private final Map<Object, Integer> nodes = new IdentityHashMap<Object, Integer>();
+
+    private EdimapBinaryWriter(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    /**
+     * Write the supplied Edimap.
+     *
+     * @param edimap       The Edimap.  Its imports must have been applied.
+     * @param outputStream The stream to write to.  Not closed.
+     * @throws IOException Error writing the stream.
+     */
+    public static void write(Edimap edimap, OutputStream outputStream) throws IOException {
+        AssertArgument.isNotNull(edimap, "edimap");
+        AssertArgument.isNotNull(outputStream, "outputStream");
+        if (!edimap.getImports().isEmpty()) {
+            throw new IllegalArgumentException("Cannot write the binary form of an Edimap with unapplied imports.");
+        }
+
+        EdimapBinaryWriter writer = new EdimapBinaryWriter(outputStream);
+
+        writer.writeEdimap(edimap);
+        writer.out.flush();
+    }
+
+    private void writeEdimap(Edimap edimap) throws IOException {
+        out.writeInt(MAGIC);
+        writeVarInt(FORMAT_VERSION);
+
+        writeString(edimap.getSrc() != null ? edimap.getSrc().toString() : null);
+        writeDescription(edimap.getDescription());
+        writeDelimiters(edimap.getDelimiters());
+        out.writeBoolean(edimap.isIgnoreUnmappedSegments());
+        writeSegmentGroup(edimap.getSegments());
+        writeComponents(edimap.getSimpleDataElements());
+        writeFields(edimap.getCompositeDataElements());
+    }
+
+    private void writeDescription(Description description) throws IOException {
+        if (description == null) {
+            out.writeBoolean(false);
+            return;
+        }
+        out.writeBoolean(true);
+        writeString(description.getName());
+        writeString(description.getVersion());
+        writeString(description.getNamespace());
+    }
+
+    private void writeDelimiters(Delimiters delimiters) throws IOException {
+        if (delimiters == null) {
+            out.writeBoolean(false);
+            return;
+        }
+        out.writeBoolean(true);
+        writeString(delimiters.getSegment());
+        writeString(delimiters.getField());
+        writeString(delimiters.getFieldRepeat());
+        writeString(delimiters.getComponent());
+        writeString(delimiters.getSubComponent());
+        writeString(delimiters.getEscape());
+        writeString(delimiters.getDecimalSeparator());
+    }
+
+    private void writeSegmentGroups(List<SegmentGroup> segmentGroups) throws IOException {
+        writeVarInt(segmentGroups.size());
+        for (SegmentGroup segmentGroup : segmentGroups) {
+            writeSegmentGroup(segmentGroup);
+        }
+    }
+
+    private void writeSegmentGroup(SegmentGroup segmentGroup) throws IOException {
+        if (!writeNodeTag(segmentGroup)) {
+            return;
+        }
+
+        if (segmentGroup instanceof Segment) {
+            Segment segment = (Segment) segmentGroup;
+
+            writeVarInt(SEGMENT);
+            writeMappingNode(segment);
+            out.writeInt(segment.getMinOccurs());
+            out.writeInt(segment.getMaxOccurs());
+            writeString(segment.getSegcode());
+            out.writeBoolean(segment.isTruncatable());
+            out.writeBoolean(segment.isIgnoreUnmappedFields());
+            writeString(segment.getDescription());
+            writeString(segment.getImportXmlTag());
+            writeFields(segment.getFields());
+        } else {
+            writeVarInt(SEGMENT_GROUP);
+            writeMappingNode(segmentGroup);
+            out.writeInt(segmentGroup.getMinOccurs());
+            out.writeInt(segmentGroup.getMaxOccurs());
+        }
+        writeSegmentGroups(segmentGroup.getSegments());
+    }
+
+    private void writeFields(List<Field> fields) throws IOException {
+        if (fields == null) {
+            writeVarInt(NULL);
+            return;
+        }
+        writeVarInt(fields.size() + 1);
+        for (Field field : fields) {
+            if (writeNodeTag(field)) {
+                writeValueNode(field);
+                out.writeBoolean(field.isRequired());
+                out.writeBoolean(field.isTruncatable());
+                writeInteger(field.getCardinality());
+                writeCodeList(field.getCodeList());
+                writeComponents(field.getComponents());
+            }
+        }
+    }
+
+    private void writeComponents(List<Component> components) throws IOException {
+        if (components == null) {
+            writeVarInt(NULL);
+            return;
+        }
+        writeVarInt(components.size() + 1);
+        for (Component component : components) {
+            if (writeNodeTag(component)) {
+                writeValueNode(component);
+                out.writeBoolean(component.isRequired());
+                out.writeBoolean(component.isTruncatable());
+                writeCodeList(component.getCodeList());
+                writeSubComponents(component.getSubComponents());
+            }
+        }
+    }
+
+    private void writeSubComponents(List<SubComponent> subComponents) throws IOException {
+        writeVarInt(subComponents.size());
+        for (SubComponent subComponent : subComponents) {
+            if (writeNodeTag(subComponent)) {
+                writeValueNode(subComponent);
+                out.writeBoolean(subComponent.isRequired());
+            }
+        }
+    }
+
+    private void writeMappingNode(MappingNode mappingNode) throws IOException {
+        writeString(mappingNode.getName());
+        writeString(mappingNode.getNamespace());
+        writeString(mappingNode.getDocumentation());
+        writeString(mappingNode.getXmltag());
+        writeString(mappingNode.getNodeTypeRef());
+    }
+
+    private void writeValueNode(ValueNode valueNode) throws IOException {
+        writeMappingNode(valueNode);
+        writeString(valueNode.getDataType());
+        writeString(valueNode.getDataTypeParametersString());
+        writeInteger(valueNode.getMinLength());
+        writeInteger(valueNode.getMaxLength());
+    }
+
+    private void writeCodeList(CodeList codeList) throws IOException {
+        if (codeList == null) {
+            writeVarInt(NULL);
+            return;
+        }
+        writeVarInt(codeList.getCodes().size() + 1);
+        writeString(codeList.getDocumentation());
+        for (String code : codeList.getCodes()) {
+            writeString(code);
+        }
+    }
+
+    /**
+     * Write the tag for the supplied node: {@link #NULL}, {@link #NEW} (in which case the node itself must then
+     * be written), or a reference to the same node written earlier.
+     *
+     * @return True if the node must be written.
+     */
+    private boolean writeNodeTag(Object node) throws IOException {
+        if (node == null) {
+            writeVarInt(NULL);
+            return false;
+        }
+
+        Integer nodeId = nodes.get(node);
+        if (nodeId != null) {
+            writeVarInt(nodeId + REFERENCE_OFFSET);
+            return false;
+        }
+
+        nodes.put(node, nodes.size());
+        writeVarInt(NEW);
+        return true;
+    }
+
+    private void writeString(String string) throws IOException {
+        if (string == null) {
+            writeVarInt(NULL);
+            return;
+        }
+
+        Integer stringId = strings.get(string);
+        if (stringId != null) {
+            writeVarInt(stringId + REFERENCE_OFFSET);
+            return;
+        }
+
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+
+        strings.put(string, strings.size());
+        writeVarInt(NEW);
+        writeVarInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeInteger(Integer integer) throws IOException {
+        if (integer == null) {
+            out.writeBoolean(false);
+            return;
+        }
+        out.writeBoolean(true);
+        out.writeInt(integer);
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
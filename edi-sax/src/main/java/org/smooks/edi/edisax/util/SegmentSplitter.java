@@ -0,0 +1,484 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.util;
+
+import org.smooks.edi.edisax.model.internal.Delimiters;
+
+import java.util.Objects;
+
+/**
+ * Splits EDI segments into their fields, field repeats, components and sub-components, as compiled
+ * for a {@link Delimiters} instance.  This is the one escape aware tokenizer of EDI values: {@link CharSlices}
+ * and {@link EDIUtils#split(String, String, String)} split on a single delimiter through it too.
+ * <br><br>
+ * An escape sequence immediately preceding a delimiter is removed and the delimiter is kept as part of the value.
+ * All other escape sequences are left in place.  A trailing (unpaired) escape is dropped.
+ * <br><br>
+ * Where the field, field repeat, component and sub-component delimiters, and the escape, are all single
+ * (and distinct) chars, the segment is split in a single pass into a flat table of tokens, each ended by a
+ * delimiter or by the end of the segment.  The {@link CharSlices} for each level are then taken from runs
+ * of tokens (see {@link CharSlices#split(CharSlices, int, int, String, String)}), without scanning the
+ * segment again.  Only values containing an escape sequence are copied.  For any other delimiters, the
+ * segment is tokenized on the field delimiter sequence only, and each lower level is tokenized from its
+ * parent value on its own delimiter sequence (see {@link CharSlices#split(CharSlices, int, String, String)}).
+ * <br><br>
+ * An instance holds the token table of the last segment it split, so the slices taken from it are only
+ * valid until the next call to {@link #splitFields(CharSequence, boolean, CharSlices)}.  Instances are
+ * not thread safe.
+ */
+public class SegmentSplitter {
+
+    public static final int FIELD = 1;
+    public static final int FIELD_REPEAT = 2;
+    public static final int COMPONENT = 3;
+    public static final int SUB_COMPONENT = 4;
+
+    private static final byte PLAIN = 0;
+    private static final byte ESCAPE = 5;
+    private static final byte END = 0; // Level of the token ended by the end of the segment
+
+    private Delimiters delimiters; // Null if splitting on a single delimiter
+    private byte[] charClasses; // Indexed by char.  Null if the delimiters are not all single (and distinct) chars.
+    private String delimiter; // The field delimiter sequence, tokenized on if there are no char classes
+    private String escape; // Null if there's no escape
+
+    private char[] chars = new char[0];
+    private int[] tokenStarts = new int[16];
+    private int[] tokenEnds = new int[16];
+    private byte[] tokenLevels = new byte[16];
+    private int[] escapedTokens = new int[17]; // Number of tokens containing an escape sequence, before the indexed token
+    private int tokenCount;
+
+    /**
+     * Construct a splitter for the supplied delimiters.
+     *
+     * @param delimiters The delimiters.
+     */
+    public SegmentSplitter(Delimiters delimiters) {
+        setDelimiters(delimiters);
+    }
+
+    SegmentSplitter(String delimiter, String escape) {
+        setDelimiter(delimiter, escape);
+    }
+
+    /**
+     * Get the delimiters this splitter is compiled for.
+     *
+     * @return The delimiters.
+     */
+    public Delimiters getDelimiters() {
+        return delimiters;
+    }
+
+    /**
+     * Compile this splitter for the supplied delimiters.
+     *
+     * @param delimiters The delimiters.
+     */
+    public void setDelimiters(Delimiters delimiters) {
+        this.delimiters = delimiters;
+        compile(new String[]{null, delimiters.getField(), delimiters.getFieldRepeat(), delimiters.getComponent(), delimiters.getSubComponent()}, delimiters.getEscape());
+    }
+
+    /**
+     * Compile this splitter for splitting values on a single delimiter.
+     *
+     * @param delimiter The delimiter sequence.  A null delimiter splits on whitespace.
+     * @param escape    The escape sequence.  May be null.
+     */
+    void setDelimiter(String delimiter, String escape) {
+        this.delimiters = null;
+        compile(new String[]{null, delimiter}, escape);
+    }
+
+    /**
+     * Is this splitter compiled for splitting values on the supplied single delimiter.
+     */
+    boolean isFor(String delimiter, String escape) {
+        return delimiters == null && toSequence(delimiter).equals(this.delimiter) && Objects.equals(toEscape(escape), this.escape);
+    }
+
+    private void compile(String[] levelDelimiters, String escapeDelimiter) {
+        delimiter = toSequence(levelDelimiters[FIELD]);
+        escape = toEscape(escapeDelimiter);
+
+        int[] levelChars = new int[levelDelimiters.length];
+        int escapeChar = (escape == null ? -1 : toChar(escape, false));
+        int maxChar = escapeChar;
+
+        charClasses = null;
+        if (escapeChar == Integer.MIN_VALUE) {
+            return;
+        }
+        for (int i = FIELD; i < levelDelimiters.length; i++) {
+            levelChars[i] = toChar(levelDelimiters[i], i != FIELD_REPEAT);
+            if (levelChars[i] == Integer.MIN_VALUE) {
+                return;
+            }
+            maxChar = Math.max(maxChar, levelChars[i]);
+        }
+
+        byte[] classes = new byte[maxChar + 1];
+        for (int i = FIELD; i < levelChars.length; i++) {
+            if (levelChars[i] >= 0) {
+                if (classes[levelChars[i]] != PLAIN) {
+                    return;
+                }
+                classes[levelChars[i]] = (byte) i;
+            }
+        }
+        if (escapeChar >= 0) {
+            if (classes[escapeChar] != PLAIN) {
+                return;
+            }
+            classes[escapeChar] = ESCAPE;
+        }
+        charClasses = classes;
+    }
+
+    /**
+     * Is this splitter compiled for single pass splitting.
+     *
+     * @return True if segments are split in a single pass, otherwise false.
+     */
+    public boolean isCompiled() {
+        return delimiters != null && charClasses != null;
+    }
+
+    /**
+     * Split a segment into its fields.
+     *
+     * @param segment        The segment.
+     * @param trimTrailingCR Drop a trailing carriage return from the last field.
+     * @param fields         The slices into which the fields are loaded.
+     * @return The fields.
+     */
+    public CharSlices splitFields(CharSequence segment, boolean trimTrailingCR, CharSlices fields) {
+        int length = segment.length();
+
+        ensureCharsCapacity(length);
+        if (segment instanceof StringBuilder) {
+            ((StringBuilder) segment).getChars(0, length, chars, 0);
+        } else if (segment instanceof StringBuffer) {
+            ((StringBuffer) segment).getChars(0, length, chars, 0);
+        } else {
+            segment.toString().getChars(0, length, chars, 0);
+        }
+        tokenize(length);
+        if (trimTrailingCR && tokenCount > 0) {
+            int last = tokenCount - 1;
+            if (tokenEnds[last] > tokenStarts[last] && chars[tokenEnds[last] - 1] == '\r') {
+                tokenEnds[last]--;
+            }
+        }
+        load(FIELD, 1 << FIELD, 0, tokenCount, fields);
+
+        return fields;
+    }
+
+    /**
+     * Split a range of a char array on the single delimiter this splitter is compiled for.
+     */
+    CharSlices split(char[] value, int start, int length, CharSlices values) {
+        ensureCharsCapacity(length);
+        System.arraycopy(value, start, chars, 0, length);
+        tokenize(length);
+        load(FIELD, 1 << FIELD, 0, tokenCount, values);
+
+        return values;
+    }
+
+    CharSlices split(CharSlices parent, int index, int level, CharSlices values) {
+        if (parent.length(index) == 0) {
+            // Empty input returns no slices...
+            values.load(this, chars, parent.getSplitLevels() | (1 << level));
+            return values;
+        }
+        load(level, parent.getSplitLevels() | (1 << level), parent.firstToken(index), parent.lastToken(index) + 1, values);
+
+        return values;
+    }
+
+    private void ensureCharsCapacity(int length) {
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+    }
+
+    private void tokenize(int length) {
+        tokenCount = 0;
+        if (length == 0) {
+            return;
+        }
+
+        byte[] classes = charClasses;
+        int classCount = (classes != null ? classes.length : 0);
+        char[] chars = this.chars;
+        int end = length;
+        int tokenStart = 0;
+        int sequenceStart = 0; // Start of the chars not yet matched by a delimiter or escape sequence
+        int escapeEnd = -1; // End of the last escape sequence, until the sequence it escapes
+        boolean tokenEscaped = false;
+        boolean trailingEscape = false;
+
+        for (int i = 0; i < end; i++) {
+            byte charClass;
+            if (classes != null) {
+                char c = chars[i];
+                if (c >= classCount || (charClass = classes[c]) == PLAIN) {
+                    continue;
+                }
+            } else if ((charClass = matchSequence(sequenceStart, i)) == PLAIN) {
+                continue;
+            }
+
+            int sequenceEnd = i + 1;
+            int matchStart = sequenceEnd - sequenceLength(charClass);
+            sequenceStart = sequenceEnd;
+            if (matchStart == escapeEnd) {
+                // An escaped delimiter or escape, which is part of the token...
+                escapeEnd = -1;
+            } else if (charClass == ESCAPE) {
+                if (sequenceEnd == end) {
+                    // A trailing (unpaired) escape is dropped...
+                    end = matchStart;
+                    trailingEscape = true;
+                    break;
+                }
+                tokenEscaped = true;
+                escapeEnd = sequenceEnd;
+            } else {
+                addToken(tokenStart, matchStart, charClass, tokenEscaped);
+                tokenStart = sequenceEnd;
+                tokenEscaped = false;
+            }
+        }
+        addToken(tokenStart, end, END, tokenEscaped);
+
+        // ... as is the field it leaves empty, if it's the last one...
+        if (trailingEscape && tokenStart == end && (tokenCount == 1 || tokenLevels[tokenCount - 2] == FIELD)) {
+            tokenCount--;
+        }
+    }
+
+    /**
+     * Get the class of the delimiter or escape sequence ending at the supplied index, if any.  Only used if there
+     * are no char classes, in which case the field delimiter is the only delimiter tokenized on.
+     *
+     * @param sequenceStart The start of the chars not yet matched by a sequence.  A sequence can't start before it.
+     * @param end           The index of the last char of the sequence.
+     * @return The class of the sequence, or {@link #PLAIN} if there's no sequence ending at the index.
+     */
+    private byte matchSequence(int sequenceStart, int end) {
+        int available = end + 1 - sequenceStart;
+
+        if (available >= delimiter.length() && CharSlices.regionMatches(chars, end + 1 - delimiter.length(), delimiter)) {
+            return FIELD;
+        }
+        if (escape != null && available >= escape.length() && CharSlices.regionMatches(chars, end + 1 - escape.length(), escape)) {
+            return ESCAPE;
+        }
+        return PLAIN;
+    }
+
+    private int sequenceLength(byte charClass) {
+        if (charClasses != null) {
+            return 1;
+        }
+        return (charClass == ESCAPE ? escape.length() : delimiter.length());
+    }
+
+    private void addToken(int start, int end, byte level, boolean escaped) {
+        if (tokenCount == tokenStarts.length) {
+            int capacity = tokenCount * 2;
+            int[] newStarts = new int[capacity];
+            int[] newEnds = new int[capacity];
+            byte[] newLevels = new byte[capacity];
+            int[] newEscapedTokens = new int[capacity + 1];
+            System.arraycopy(tokenStarts, 0, newStarts, 0, tokenCount);
+            System.arraycopy(tokenEnds, 0, newEnds, 0, tokenCount);
+            System.arraycopy(tokenLevels, 0, newLevels, 0, tokenCount);
+            System.arraycopy(escapedTokens, 0, newEscapedTokens, 0, tokenCount + 1);
+            tokenStarts = newStarts;
+            tokenEnds = newEnds;
+            tokenLevels = newLevels;
+            escapedTokens = newEscapedTokens;
+        }
+        tokenStarts[tokenCount] = start;
+        tokenEnds[tokenCount] = end;
+        tokenLevels[tokenCount] = level;
+        escapedTokens[tokenCount + 1] = escapedTokens[tokenCount] + (escaped ? 1 : 0);
+        tokenCount++;
+    }
+
+    /**
+     * Load the values of the supplied level from a run of tokens.
+     *
+     * @param level       The level.
+     * @param splitLevels Bit mask of the levels split to get to the values, including the supplied level.
+     *                    The escapes preceding the delimiters of these levels are dropped.
+     * @param from        The first token of the run.
+     * @param to          The token after the last token of the run.
+     * @param values      The slices into which the values are loaded.
+     */
+    private void load(int level, int splitLevels, int from, int to, CharSlices values) {
+        if (escapedTokens[to] != escapedTokens[from]) {
+            loadUnescaped(level, splitLevels, from, to, values);
+            return;
+        }
+
+        // No escape sequences... the values are slices of the segment...
+        values.load(this, chars, splitLevels);
+        int valueFrom = from;
+        for (int token = from; token < to; token++) {
+            if (tokenLevels[token] == level || token == to - 1) {
+                values.add(tokenStarts[valueFrom], tokenEnds[token] - tokenStarts[valueFrom], valueFrom, token);
+                valueFrom = token + 1;
+            }
+        }
+    }
+
+    private void loadUnescaped(int level, int splitLevels, int from, int to, CharSlices values) {
+        char[] buffer = values.load(this, splitLevels, tokenEnds[to - 1] - tokenStarts[from]);
+        int write = 0;
+        int valueStart = 0;
+        int valueFrom = from;
+
+        for (int token = from; token < to; token++) {
+            write = unescape(tokenStarts[token], tokenEnds[token], splitLevels, buffer, write);
+            if (tokenLevels[token] == level || token == to - 1) {
+                if (token == to - 1 && write == valueStart && tokenEnds[token] > tokenStarts[valueFrom] && splitLevels == ((1 << FIELD) | (1 << level))) {
+                    // The last value was nothing but the trailing (unpaired) escape kept on the field, which is dropped...
+                    break;
+                }
+                values.add(valueStart, write - valueStart, valueFrom, token);
+                valueStart = write;
+                valueFrom = token + 1;
+            } else {
+                // The token is ended by a delimiter of another level, which is part of the value...
+                buffer[write++] = chars[tokenEnds[token]];
+            }
+        }
+    }
+
+    /**
+     * Copy a token, dropping the escapes preceding a delimiter of the split levels.  All other escape
+     * sequences are left in place.
+     */
+    private int unescape(int start, int end, int splitLevels, char[] buffer, int write) {
+        byte[] classes = charClasses;
+        int copyStart = start; // Start of the chars not yet copied or matched by a sequence
+        int escapeStart = -1; // Start of the last escape sequence, until the sequence it escapes
+
+        for (int i = start; i < end; i++) {
+            byte charClass;
+            if (classes != null) {
+                char c = chars[i];
+                if (c >= classes.length || (charClass = classes[c]) == PLAIN) {
+                    continue;
+                }
+            } else if ((charClass = matchSequence(copyStart, i)) == PLAIN) {
+                continue;
+            }
+
+            int matchStart = i + 1 - sequenceLength(charClass);
+            if (escapeStart != -1 && matchStart == copyStart) {
+                // An escaped delimiter or escape...
+                if (charClass == ESCAPE || (splitLevels & (1 << charClass)) == 0) {
+                    write = copy(escapeStart, copyStart, buffer, write);
+                }
+                escapeStart = -1;
+                write = copy(matchStart, i + 1, buffer, write);
+            } else {
+                if (escapeStart != -1) {
+                    // The escape did not precede a delimiter or escape... keep it...
+                    write = copy(escapeStart, copyStart, buffer, write);
+                    escapeStart = -1;
+                }
+                write = copy(copyStart, matchStart, buffer, write);
+                if (charClass == ESCAPE) {
+                    escapeStart = matchStart;
+                } else {
+                    write = copy(matchStart, i + 1, buffer, write);
+                }
+            }
+            copyStart = i + 1;
+        }
+
+        if (escapeStart != -1 && (copyStart < end || splitLevels == 1 << FIELD)) {
+            // An unpaired escape left at the end of the segment after dropping a trailing carriage
+            // return is kept by splitting the field only...
+            write = copy(escapeStart, copyStart, buffer, write);
+        }
+        return copy(copyStart, end, buffer, write);
+    }
+
+    private int copy(int from, int to, char[] buffer, int write) {
+        int length = to - from;
+        System.arraycopy(chars, from, buffer, write, length);
+        return write + length;
+    }
+
+    private static String toSequence(String delimiter) {
+        // A null delimiter splits on whitespace...
+        return (delimiter == null ? " " : delimiter);
+    }
+
+    private static String toEscape(String escape) {
+        return (escape == null || escape.isEmpty() ? null : escape);
+    }
+
+    /**
+     * Get the char of a single char delimiter.
+     *
+     * @return The char, -1 if the delimiter is null and not defaulted to whitespace, or
+     * {@link Integer#MIN_VALUE} if it isn't a single char.
+     */
+    private static int toChar(String delimiter, boolean whitespaceDefault) {
+        if (delimiter == null) {
+            return (whitespaceDefault ? ' ' : -1);
+        }
+        return (delimiter.length() == 1 ? delimiter.charAt(0) : Integer.MIN_VALUE);
+    }
+}
@@ -43,7 +43,14 @@
 package org.smooks.edi.edisax;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 import org.junit.jupiter.api.Test;
@@ -51,6 +58,7 @@ import org.smooks.edi.edisax.model.internal.Delimiters;
 import org.xml.sax.InputSource;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -139,12 +147,240 @@ public class BufferedSegmentReaderTest {
 
     }
 
+    @Test
+    public void test_segments_spanning_read_blocks() throws IOException {
+        StringBuilder input = new StringBuilder();
+        String[] segments = new String[2000];
+
+        // Segments of varying length, with escaped segment delimiters, so as segment
+        // boundaries and escape sequences fall on (and either side of) the read block boundaries...
+        for (int i = 0; i < segments.length; i++) {
+            StringBuilder segment = new StringBuilder("SEG" + i + "|");
+            for (int j = 0; j < i % 13; j++) {
+                segment.append("abc");
+            }
+            input.append(segment).append("?'x").append("'");
+            segments[i] = segment.append("'x").toString();
+        }
+
+        test(input.toString(), "'", "|", segments);
+    }
+
+    @Test
+    public void test_escaped_escape_before_delimiter() throws IOException {
+        test("SEG1|a??'SEG2|b?'c'", "'", "|", new String[]{"SEG1|a??", "SEG2|b'c"});
+    }
+
+    @Test
+    public void test_reset() throws IOException {
+        BufferedSegmentReader reader = createSegmentReader("SEG0*1'SEG1*2'", "'", "*");
+        Delimiters delimiters = new Delimiters().setSegment("\n").setField("|");
+
+        assertTrue(reader.moveToNextSegment());
+        reader.pushDelimiters(delimiters);
+        assertEquals(1, reader.getCurrentSegmentNumber());
+
+        reader.reset(new InputSource(new ByteArrayInputStream("SEG2|3\nSEG3|4".getBytes())), delimiters);
+        assertTrue(reader.getDelimitersDeque().isEmpty());
+        assertEquals(0, reader.getCurrentSegmentNumber());
+        assertEquals(0, reader.getSegmentBuilder().length());
+
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("SEG2|3", reader.getSegmentBuilder().toString());
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("SEG3", reader.getCurrentSegmentFields()[0]);
+        assertEquals(2, reader.getCurrentSegmentNumber());
+        assertTrue(!reader.moveToNextSegment());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void test_deprecated_accessors() throws IOException {
+        BufferedSegmentReader reader = createSegmentReader("SEG0*1'SEG1*2'SEG2*3'", "'", "*");
+        Delimiters parentDelimiters = reader.getDelimiters();
+        Delimiters delimiters = new Delimiters().setSegment("'").setField("|");
+
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("SEG0*1", reader.getSegmentBuffer().toString());
+
+        // Changes to the buffer are written back into the reader...
+        reader.getSegmentBuffer().setLength(0);
+        assertTrue(reader.moveToNextSegment(false));
+        assertEquals("SEG1*2", reader.getSegmentBuilder().toString());
+        reader.getSegmentBuffer().append("X");
+        assertEquals("2X", reader.getCurrentSegmentFields()[1]);
+
+        reader.pushDelimiters(delimiters);
+        reader.pushDelimiters(delimiters);
+        assertEquals(Arrays.asList(parentDelimiters, delimiters), reader.getDelimitersStack());
+        assertEquals(delimiters, reader.getDelimitersStack().peek());
+    }
+
+    @Test
+    public void test_byte_buffer() throws IOException {
+        Delimiters delimiters = new Delimiters().setSegment("'").setField("+");
+        delimiters.setEscape("?");
+
+        // Single byte (undecoded) reads, with segments spanning read blocks...
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            input.append("SEG").append(i).append("+\u00e9t\u00e9?'").append(i % 13).append("'");
+        }
+        BufferedSegmentReader reader = new BufferedSegmentReader(ByteBuffer.wrap(input.toString().getBytes(StandardCharsets.ISO_8859_1)), StandardCharsets.ISO_8859_1, delimiters);
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(reader.moveToNextSegment());
+            assertEquals("SEG" + i + "+\u00e9t\u00e9'" + (i % 13), reader.getSegmentBuilder().toString());
+        }
+        assertFalse(reader.moveToNextSegment());
+
+        // Malformed ASCII is replaced, as by a decoder...
+        reader.reset(ByteBuffer.wrap("SEG1+\u00e9'".getBytes(StandardCharsets.ISO_8859_1)), StandardCharsets.US_ASCII, delimiters);
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("SEG1+\ufffd", reader.getSegmentBuilder().toString());
+    }
+
+    @Test
+    public void test_byte_buffer_change_encoding() throws IOException {
+        Delimiters delimiters = new Delimiters().setSegment("'").setField("+");
+        byte[] header = "UNB+UNOY:3'".getBytes(StandardCharsets.US_ASCII);
+        byte[] body = "SEG1+\u00e9t\u00e9'SEG2+\u4e2d\u6587'".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer input = ByteBuffer.allocate(header.length + body.length);
+        input.put(header).put(body).flip();
+
+        BufferedSegmentReader reader = new BufferedSegmentReader(input, StandardCharsets.ISO_8859_1, delimiters);
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("UNB+UNOY:3", reader.getSegmentBuilder().toString());
+
+        // No mark/reset needed on the underlying input...
+        assertEquals(StandardCharsets.ISO_8859_1, reader.changeEncoding(StandardCharsets.UTF_8));
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("SEG1+\u00e9t\u00e9", reader.getSegmentBuilder().toString());
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("SEG2+\u4e2d\u6587", reader.getSegmentBuilder().toString());
+        assertFalse(reader.moveToNextSegment());
+    }
+
+    @Test
+    public void test_character_stream_preferred_over_byte_stream() throws IOException {
+        Delimiters delimiters = new Delimiters().setSegment("'").setField("+");
+        InputSource inputSource = new InputSource(new StringReader("SEG1+\u00e9t\u00e9'SEG2+\u4e2d\u6587'"));
+        inputSource.setByteStream(new ByteArrayInputStream("BYTES+1'".getBytes(StandardCharsets.ISO_8859_1)));
+
+        BufferedSegmentReader reader = new BufferedSegmentReader(inputSource, delimiters);
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("SEG1+\u00e9t\u00e9", reader.getSegmentBuilder().toString());
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("SEG2+\u4e2d\u6587", reader.getSegmentBuilder().toString());
+        assertFalse(reader.moveToNextSegment());
+    }
+
+    @Test
+    public void test_character_stream_change_encoding() throws IOException {
+        Delimiters delimiters = new Delimiters().setSegment("'").setField("+");
+        ByteArrayInputStream byteStream = new ByteArrayInputStream("UNB+UNOY:3'SEG1+\u00e9t\u00e9'".getBytes(StandardCharsets.UTF_8));
+        InputSource inputSource = new InputSource(new InputStreamReader(byteStream, StandardCharsets.ISO_8859_1));
+        inputSource.setByteStream(byteStream);
+
+        BufferedSegmentReader reader = new BufferedSegmentReader(inputSource, delimiters);
+        reader.mark();
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("UNB+UNOY:3", reader.getSegmentBuilder().toString());
+
+        // The byte stream is reset to its mark, and the chars already read skipped...
+        assertEquals(StandardCharsets.ISO_8859_1, reader.changeEncoding(StandardCharsets.UTF_8));
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("SEG1+\u00e9t\u00e9", reader.getSegmentBuilder().toString());
+        assertFalse(reader.moveToNextSegment());
+    }
+
+    @Test
+    public void test_stream_change_encoding() throws IOException {
+        Delimiters delimiters = new Delimiters().setSegment("'").setField("+");
+        StringBuilder utf8Segments = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            utf8Segments.append("SEG").append(i).append("+\u00e9t\u00e9 \u4e2d\u6587'");
+        }
+        ByteArrayOutputStream input = new ByteArrayOutputStream();
+        input.write("UNB+UNOY:3'".getBytes(StandardCharsets.US_ASCII));
+        input.write(utf8Segments.toString().getBytes(StandardCharsets.UTF_8));
+        input.write("UNB+UNOC:3'SEG+\u00e9t\u00e9'".getBytes(StandardCharsets.ISO_8859_1));
+
+        // A stream that doesn't support mark, and returns a few bytes at a time so as multi-byte
+        // chars are split across reads...
+        InputStream stream = new FilterInputStream(new ByteArrayInputStream(input.toByteArray())) {
+            private int readCount;
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1 + (readCount++ % 5)));
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+
+        BufferedSegmentReader reader = new BufferedSegmentReader(new InputSource(stream), delimiters);
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("UNB+UNOY:3", reader.getSegmentBuilder().toString());
+        reader.changeEncoding(StandardCharsets.UTF_8);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(reader.moveToNextSegment());
+            assertEquals("SEG" + i + "+\u00e9t\u00e9 \u4e2d\u6587", reader.getSegmentBuilder().toString());
+        }
+
+        // Switch again, well past the start of the stream and out of a multi-byte encoding...
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("UNB+UNOC:3", reader.getSegmentBuilder().toString());
+        assertEquals(StandardCharsets.UTF_8, reader.changeEncoding(StandardCharsets.ISO_8859_1));
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("SEG+\u00e9t\u00e9", reader.getSegmentBuilder().toString());
+        assertFalse(reader.moveToNextSegment());
+    }
+
+    @Test
+    public void test_change_encoding_multi_byte() throws IOException {
+        Delimiters delimiters = new Delimiters().setSegment("'").setField("+");
+        ByteArrayOutputStream input = new ByteArrayOutputStream();
+        input.write("UNB+UNOY:3'SEG1+\u00e9t\u00e9 \u4e2d\u6587'UNB+UNOC:3'".getBytes(StandardCharsets.UTF_8));
+        // Malformed UTF-8, decoded (and replaced) before the switch...
+        input.write("SEG2+\u00e9t\u00e9'".getBytes(StandardCharsets.ISO_8859_1));
+
+        BufferedSegmentReader reader = new BufferedSegmentReader(new ByteArrayInputStream(input.toByteArray()), StandardCharsets.UTF_8, delimiters);
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("UNB+UNOY:3", reader.getSegmentBuilder().toString());
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("SEG1+\u00e9t\u00e9 \u4e2d\u6587", reader.getSegmentBuilder().toString());
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("UNB+UNOC:3", reader.getSegmentBuilder().toString());
+        assertEquals(StandardCharsets.UTF_8, reader.changeEncoding(StandardCharsets.ISO_8859_1));
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("SEG2+\u00e9t\u00e9", reader.getSegmentBuilder().toString());
+        assertFalse(reader.moveToNextSegment());
+
+        // A byte order mark is only decoded at the start of the stream...
+        input.reset();
+        input.write("UNB+UNOY:3'SEG1+\u00e9t\u00e9'".getBytes(StandardCharsets.UTF_16));
+        input.write("SEG2+\u00e9t\u00e9'".getBytes(StandardCharsets.UTF_8));
+
+        reader.reset(ByteBuffer.wrap(input.toByteArray()), StandardCharsets.UTF_16, delimiters);
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("UNB+UNOY:3", reader.getSegmentBuilder().toString());
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("SEG1+\u00e9t\u00e9", reader.getSegmentBuilder().toString());
+        assertEquals(StandardCharsets.UTF_16, reader.changeEncoding(StandardCharsets.UTF_8));
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("SEG2+\u00e9t\u00e9", reader.getSegmentBuilder().toString());
+        assertFalse(reader.moveToNextSegment());
+    }
+
     private void test(String input, String segmentDelim, String fieldDelim, String[] segments) throws IOException {
         BufferedSegmentReader reader = createSegmentReader(input, segmentDelim, fieldDelim);
         int segIndex = 0;
 
         while (segIndex < segments.length && reader.moveToNextSegment()) {
-            String segment = reader.getSegmentBuffer().toString();
+            String segment = reader.getSegmentBuilder().toString();
             assertEquals(segments[segIndex], segment, "Segment comparison failure.");
             segIndex++;
         }
@@ -152,6 +388,38 @@ public class BufferedSegmentReaderTest {
         assertEquals(segments.length, segIndex, "All segments not read.");
     }
 
+    @Test
+    public void test_segments() throws IOException {
+        Delimiters delimiters = new Delimiters().setSegment("'").setField("+");
+        delimiters.setEscape("?");
+        BufferedSegmentReader reader = new BufferedSegmentReader(Arrays.asList("UNH+1", "SEG+a'b+c", "UNT+3+1"), 5, delimiters);
+
+        assertTrue(reader.moveToNextSegment());
+        assertEquals(5, reader.getCurrentSegmentNumber());
+        assertEquals("UNH", reader.getCurrentSegmentFields()[0]);
+        assertTrue(reader.moveToNextSegment());
+        assertEquals(6, reader.getCurrentSegmentNumber());
+        assertEquals(Arrays.asList("SEG", "a'b", "c"), Arrays.asList(reader.getCurrentSegmentFields()));
+        assertTrue(reader.moveToNextSegment());
+        assertEquals("UNT+3+1", reader.getSegmentBuilder().toString());
+        assertFalse(reader.moveToNextSegment());
+        assertEquals("", reader.peek(3));
+    }
+
+    @Test
+    public void test_segment_code_equals() throws IOException {
+        Delimiters delimiters = new Delimiters().setSegment("'").setField("+");
+        BufferedSegmentReader reader = new BufferedSegmentReader(Arrays.asList("UNT+3+1", "UNTX+1", "UNT"), 1, delimiters);
+
+        assertTrue(reader.moveToNextSegment());
+        assertTrue(reader.segmentCodeEquals("UNT"));
+        assertFalse(reader.segmentCodeEquals("UN"));
+        assertTrue(reader.moveToNextSegment());
+        assertFalse(reader.segmentCodeEquals("UNT"));
+        assertTrue(reader.moveToNextSegment());
+        assertTrue(reader.segmentCodeEquals("UNT"));
+    }
+
     private BufferedSegmentReader createSegmentReader(String input, String segmentDelim, String fieldDelim) {
         InputSource inputSource = new InputSource(new ByteArrayInputStream(input.getBytes()));
         Delimiters delimiters = new Delimiters().setSegment(segmentDelim).setField(fieldDelim);
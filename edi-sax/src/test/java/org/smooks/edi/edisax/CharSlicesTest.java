@@ -0,0 +1,80 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.edi.edisax.util.CharSlices;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CharSlicesTest {
+
+    @Test
+    public void test_nested_split() {
+        CharSlices fields = new CharSlices().split("UNH+1+ORDERS:D?+X:96A?:Y:UN", "+", "?");
+        CharSlices components = new CharSlices().split(fields, 2, ":", "?");
+
+        assertEquals(3, fields.size());
+        assertTrue(fields.equals(0, "UNH"));
+        assertArrayEquals(new String[]{"ORDERS", "D+X", "96A:Y", "UN"}, toArray(components));
+        // Splitting a slice leaves it as it was...
+        assertEquals("ORDERS:D+X:96A?:Y:UN", fields.toString(2));
+    }
+
+    @Test
+    public void test_load() {
+        CharSlices slices = new CharSlices().load(new String[]{"UNB", "", "UNOA:1"});
+
+        assertArrayEquals(new String[]{"UNB", "", "UNOA:1"}, toArray(slices));
+    }
+
+    private String[] toArray(CharSlices slices) {
+        String[] values = new String[slices.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = slices.toString(i);
+        }
+        return values;
+    }
+}
@@ -42,7 +42,9 @@
  */
 package org.smooks.edi.edisax;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.List;
 
 import org.junit.jupiter.api.Assertions;
@@ -51,9 +53,14 @@ import org.smooks.edi.edisax.model.EDIConfigDigester;
 import org.smooks.edi.edisax.model.EdifactModel;
 import org.smooks.edi.edisax.model.internal.Segment;
 import org.smooks.edi.edisax.model.internal.SegmentGroup;
+import org.smooks.support.StreamUtils;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 /**
@@ -258,4 +265,105 @@ public class EDIParserTest extends AbstractEDIParserTestCase {
 
     }
 
+    @Test
+    public void test_omit_indentation() throws IOException, SAXException, EDIConfigurationException {
+        final int[] whitespaceEvents = {0};
+        MockContentHandler contentHandler = new MockContentHandler() {
+            public void characters(char[] ch, int start, int length) throws SAXException {
+                if (new String(ch, start, length).trim().isEmpty()) {
+                    whitespaceEvents[0]++;
+                }
+                super.characters(ch, start, length);
+            }
+        };
+
+        EDIParser parser = new EDIParser();
+        parser.setContentHandler(contentHandler);
+        parser.setMappingModel(EDIParser.parseMappingModel(getClass().getResourceAsStream("test01/edi-to-xml-mapping.xml")));
+        parser.setFeature(EDIParser.FEATURE_OMIT_INDENTATION, true);
+        parser.parse(new InputSource(new ByteArrayInputStream(StreamUtils.readStream(getClass().getResourceAsStream("test01/edi-input.txt")))));
+
+        String expected = new String(StreamUtils.readStream(getClass().getResourceAsStream("test01/expected.xml"))).trim();
+        assertEquals(0, whitespaceEvents[0]);
+        assertEquals(expected.replaceAll(">\\s+<", "><"), contentHandler.xmlMapping.toString());
+
+        // Switching the feature back off restores the indentation...
+        parser.setContentHandler(contentHandler);
+        parser.setFeature(EDIParser.FEATURE_OMIT_INDENTATION, false);
+        parser.parse(new InputSource(new ByteArrayInputStream(StreamUtils.readStream(getClass().getResourceAsStream("test01/edi-input.txt")))));
+        assertFalse(whitespaceEvents[0] == 0);
+    }
+
+    @Test
+    public void test_collect_errors() throws IOException, SAXException, EDIConfigurationException {
+        EdifactModel model = EDIParser.parseMappingModel(new StringReader(""
+                + "<medi:edimap xmlns:medi=\"http://www.milyn.org/schema/edi-message-mapping-1.2.xsd\">"
+                + "<medi:description name=\"test\" version=\"1.0\"/>"
+                + "<medi:delimiters segment=\"'\" field=\"+\" component=\":\" sub-component=\"~\"/>"
+                + "<medi:segments xmltag=\"message\">"
+                + "<medi:segment segcode=\"SEG\" xmltag=\"seg\" maxOccurs=\"-1\">"
+                + "<medi:field xmltag=\"date\" type=\"Date\"/>"
+                + "<medi:field xmltag=\"amount\" type=\"BigDecimal\"/>"
+                + "<medi:field xmltag=\"name\">"
+                + "<medi:component xmltag=\"first\" required=\"true\"/>"
+                + "<medi:component xmltag=\"last\"/>"
+                + "</medi:field>"
+                + "</medi:segment>"
+                + "<medi:segment segcode=\"TRL\" xmltag=\"trailer\" minOccurs=\"1\">"
+                + "<medi:field xmltag=\"count\"/>"
+                + "</medi:segment>"
+                + "</medi:segments>"
+                + "</medi:edimap>"));
+        String edi = "SEG+2009x401+12,5+:Smith'SEG+20090401+1+a:b:c'TRL+1+2'XXX'YYY'";
+
+        MockContentHandler contentHandler = new MockContentHandler();
+        EDIParseErrorCollector errorCollector = new EDIParseErrorCollector(10);
+        EDIParser parser = new EDIParser();
+        parser.setContentHandler(contentHandler);
+        parser.setMappingModel(model);
+        parser.setFeature(EDIParser.FEATURE_VALIDATE, true);
+        parser.setErrorCollector(errorCollector);
+        parser.parse(new InputSource(new StringReader(edi)));
+
+        List<EDIParseError> errors = errorCollector.getErrors();
+        assertEquals(6, errors.size());
+        assertError(errors.get(0), 1, "date", 1, 0, "2009x401");
+        assertError(errors.get(1), 1, "amount", 2, 0, "12,5");
+        assertError(errors.get(2), 1, "first", 3, 1, "");
+        assertError(errors.get(3), 2, "name", 3, 0, null);
+        assertError(errors.get(4), 3, "trailer", 0, 0, null);
+        assertError(errors.get(5), 4, null, 0, 0, null);
+        assertEquals("EDI message processing failed [test][1.0].  Value [12,5] is not a valid [BigDecimal]. Currently at segment number 1.", errors.get(1).getMessage());
+
+        // The invalid values are still mapped, the fields with too many components and the trailer fields are not...
+        String xml = contentHandler.xmlMapping.toString();
+        assertTrue(xml.contains("<amount>12,5</amount>"));
+        assertTrue(xml.contains("<last>Smith</last>"));
+        assertFalse(xml.contains("<c>"));
+        assertFalse(xml.contains("<count>"));
+        assertTrue(xml.trim().endsWith("</message>"));
+
+        // Fails on the first error once the collector is full...
+        contentHandler = new MockContentHandler();
+        parser.setContentHandler(contentHandler);
+        parser.setErrorCollector(new EDIParseErrorCollector(2));
+        EDIParseException e = assertThrows(EDIParseException.class, () -> parser.parse(new InputSource(new StringReader(edi))));
+        assertEquals("EDI message processing failed [test][1.0].  Segment [SEG], field 3 (name), component 1 (first) expected to contain a value.  Currently at segment number 1.", e.getMessage());
+        assertEquals(2, parser.getErrorCollector().getErrors().size());
+
+        // And on the first error without a collector...
+        contentHandler = new MockContentHandler();
+        parser.setContentHandler(contentHandler);
+        parser.setErrorCollector(null);
+        e = assertThrows(EDIParseException.class, () -> parser.parse(new InputSource(new StringReader(edi))));
+        assertEquals("EDI message processing failed [test][1.0].  Value [2009x401] is not a valid [Date] of format [yyyyMMdd]. Currently at segment number 1.", e.getMessage());
+    }
+
+    private void assertError(EDIParseError error, int segmentNumber, String xmltag, int field, int component, String value) {
+        assertEquals(segmentNumber, error.getSegmentNumber(), error.getMessage());
+        assertEquals(xmltag, (error.getNode() != null ? error.getNode().getXmltag() : null), error.getMessage());
+        assertEquals(field, error.getField(), error.getMessage());
+        assertEquals(component, error.getComponent(), error.getMessage());
+        assertEquals(value, error.getValue(), error.getMessage());
+    }
 }
@@ -0,0 +1,202 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.edi.edisax.model.internal.Delimiters;
+import org.smooks.edi.edisax.util.CharSlices;
+import org.smooks.edi.edisax.util.SegmentSplitter;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SegmentSplitterTest {
+
+    private static final Delimiters DELIMITERS = new Delimiters().setSegment("'").setField("+").setFieldRepeat("*").setComponent(":").setSubComponent("^").setEscape("?");
+
+    @Test
+    public void test_compiled() {
+        assertTrue(new SegmentSplitter(DELIMITERS).isCompiled());
+        assertTrue(new SegmentSplitter(new Delimiters().setSegment("'").setField("+").setComponent(":")).isCompiled());
+        assertFalse(new SegmentSplitter(new Delimiters().setSegment("'").setField("+#").setComponent(":").setEscape("?")).isCompiled());
+        assertFalse(new SegmentSplitter(new Delimiters().setSegment("'").setField("+").setComponent("+").setEscape("?")).isCompiled());
+        assertFalse(new SegmentSplitter(new Delimiters().setSegment("'").setField("+").setComponent(":").setEscape("?#")).isCompiled());
+    }
+
+    @Test
+    public void test_split() {
+        SegmentSplitter splitter = new SegmentSplitter(DELIMITERS);
+        CharSlices fields = splitter.splitFields("UNH+1+ORDERS:D?+X:96A?:Y^Z?^:UN+a*b?*c", false, new CharSlices());
+        CharSlices components = new CharSlices().split(fields, 2, SegmentSplitter.COMPONENT, ":", "?");
+        CharSlices subComponents = new CharSlices().split(components, 2, SegmentSplitter.SUB_COMPONENT, "^", "?");
+        CharSlices fieldRepeats = new CharSlices().split(fields, 3, SegmentSplitter.FIELD_REPEAT, "*", "?");
+
+        assertArrayEquals(new String[]{"UNH", "1", "ORDERS:D+X:96A?:Y^Z?^:UN", "a*b?*c"}, toArray(fields));
+        assertArrayEquals(new String[]{"ORDERS", "D+X", "96A:Y^Z?^", "UN"}, toArray(components));
+        assertArrayEquals(new String[]{"96A:Y", "Z^"}, toArray(subComponents));
+        assertArrayEquals(new String[]{"a", "b*c"}, toArray(fieldRepeats));
+    }
+
+    @Test
+    public void test_split_multi_char_delimiters() {
+        Delimiters delimiters = new Delimiters().setSegment("'").setField("+#").setComponent(":").setEscape("?");
+        SegmentSplitter splitter = new SegmentSplitter(delimiters);
+        CharSlices fields = splitter.splitFields("UNH+#1+#ORDERS:D?+#X:96A?:Y+#a+b?", false, new CharSlices());
+        CharSlices components = new CharSlices().split(fields, 2, SegmentSplitter.COMPONENT, ":", "?");
+
+        assertArrayEquals(new String[]{"UNH", "1", "ORDERS:D+#X:96A?:Y", "a+b"}, toArray(fields));
+        assertArrayEquals(new String[]{"ORDERS", "D+#X", "96A:Y"}, toArray(components));
+    }
+
+    @Test
+    public void test_split_same_as_CharSlices_split() {
+        String[] segments = {
+                "", "?", "X+?", "X+a:?", "X+a?", "X+a?\r", "X+a\r?", "X+\r", "X+a:\r", "X??+a", "X???+a",
+                "X+a?:b", "X+a??:b", "X+a???:b", "X+a:b^c*d:e+", "X+:+::+^", "X+a?^b:c?*d"};
+
+        for (String segment : segments) {
+            assertSameSplit(segment, true);
+            assertSameSplit(segment, false);
+        }
+
+        Random random = new Random(7);
+        char[] alphabet = {'a', 'b', '+', '*', ':', '^', '?', '\r'};
+        for (int i = 0; i < 20000; i++) {
+            char[] segment = new char[random.nextInt(16)];
+            for (int j = 0; j < segment.length; j++) {
+                segment[j] = alphabet[random.nextInt(alphabet.length)];
+            }
+            assertSameSplit(new String(segment), random.nextBoolean());
+        }
+    }
+
+    @Test
+    public void test_reuse() {
+        SegmentSplitter splitter = new SegmentSplitter(DELIMITERS);
+        CharSlices fields = new CharSlices();
+        CharSlices components = new CharSlices();
+
+        splitter.splitFields("UNH+1+ORDERS:D:96A:UN", false, fields);
+        assertEquals(4, components.split(fields, 2, SegmentSplitter.COMPONENT, ":", "?").size());
+
+        splitter.splitFields("BGM+220:?:+1", false, fields);
+        assertArrayEquals(new String[]{"BGM", "220:?:", "1"}, toArray(fields));
+        assertArrayEquals(new String[]{"220", ":"}, toArray(components.split(fields, 1, SegmentSplitter.COMPONENT, ":", "?")));
+    }
+
+    private void assertSameSplit(String segment, boolean trimTrailingCR) {
+        assertEquals(nestedSplit(segment, trimTrailingCR), splitterSplit(segment, trimTrailingCR), segment);
+    }
+
+    private String nestedSplit(String segment, boolean trimTrailingCR) {
+        CharSlices fields = new CharSlices().split(segment, "+", "?");
+        if (trimTrailingCR) {
+            fields.trimLast('\r');
+        }
+        StringBuilder splits = new StringBuilder();
+
+        // Split a copy of the fields for each path, as splitting a slice compacts it in place...
+        for (int i = 0; i < fields.size(); i++) {
+            splits.append("field[").append(fields.toString(i)).append("]");
+            CharSlices repeats = new CharSlices().split(copy(fields), i, "*", "?");
+            for (int j = 0; j < repeats.size(); j++) {
+                splits.append("repeat[").append(repeats.toString(j)).append("]");
+                CharSlices components = new CharSlices().split(copy(repeats), j, ":", "?");
+                appendComponents(splits, components);
+            }
+            appendComponents(splits, new CharSlices().split(copy(fields), i, ":", "?"));
+        }
+        return splits.toString();
+    }
+
+    private String splitterSplit(String segment, boolean trimTrailingCR) {
+        CharSlices fields = new SegmentSplitter(DELIMITERS).splitFields(segment, trimTrailingCR, new CharSlices());
+        StringBuilder splits = new StringBuilder();
+
+        for (int i = 0; i < fields.size(); i++) {
+            splits.append("field[").append(fields.toString(i)).append("]");
+            CharSlices repeats = new CharSlices().split(fields, i, SegmentSplitter.FIELD_REPEAT, "*", "?");
+            for (int j = 0; j < repeats.size(); j++) {
+                splits.append("repeat[").append(repeats.toString(j)).append("]");
+                CharSlices components = new CharSlices().split(repeats, j, SegmentSplitter.COMPONENT, ":", "?");
+                for (int k = 0; k < components.size(); k++) {
+                    splits.append("component[").append(components.toString(k)).append("]");
+                    splits.append(toList(new CharSlices().split(components, k, SegmentSplitter.SUB_COMPONENT, "^", "?")));
+                }
+            }
+            CharSlices components = new CharSlices().split(fields, i, SegmentSplitter.COMPONENT, ":", "?");
+            for (int k = 0; k < components.size(); k++) {
+                splits.append("component[").append(components.toString(k)).append("]");
+                splits.append(toList(new CharSlices().split(components, k, SegmentSplitter.SUB_COMPONENT, "^", "?")));
+            }
+        }
+        return splits.toString();
+    }
+
+    private void appendComponents(StringBuilder splits, CharSlices components) {
+        for (int k = 0; k < components.size(); k++) {
+            splits.append("component[").append(components.toString(k)).append("]");
+            splits.append(toList(new CharSlices().split(copy(components), k, "^", "?")));
+        }
+    }
+
+    private CharSlices copy(CharSlices slices) {
+        return new CharSlices().load(toArray(slices));
+    }
+
+    private String toList(CharSlices slices) {
+        return "sub" + java.util.Arrays.toString(toArray(slices));
+    }
+
+    private String[] toArray(CharSlices slices) {
+        String[] values = new String[slices.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = slices.toString(i);
+        }
+        return values;
+    }
+}
@@ -49,13 +49,20 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.jar.JarFile;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -191,4 +198,82 @@ public class ArchiveTestCase {
         archive1.addEntry("archive1/resource.txt", new ByteArrayInputStream("Hi!!".getBytes()));
         assertTrue(archive1.contains("archive1/resource.txt"));
     }
+
+	@Test
+    public void test_in_memory() throws IOException {
+        for (Archive.Storage storage : new Archive.Storage[]{Archive.Storage.HEAP, Archive.Storage.OFF_HEAP}) {
+            Archive archive = new Archive("testarchive", storage);
+
+            archive.addEntry("//my/resource.txt", new ByteArrayInputStream("Hi!!".getBytes()));
+            archive.addEntry("my/folder");
+            archive.addEntry(Archive.class);
+
+            assertEquals(storage, archive.getStorage());
+            assertEquals("my/resource.txt", archive.getEntryName(0));
+            assertEquals("my/folder/", archive.getEntryName(1));
+            assertEquals("Hi!!", new String(archive.getEntryValue(0)));
+            assertEquals("Hi!!", new String(archive.getEntryBytes("my/resource.txt")));
+            assertEquals("Hi!!", new String(StreamUtils.readStream(archive.getEntryURL("my/resource.txt").openStream())));
+            assertNull(archive.getEntryURL("my/other.txt"));
+            assertNull(archive.getEntry("my/resource.txt"));
+            assertEquals(3, archive.getEntries().size());
+            assertTrue(archive.getEntries().containsKey("my/resource.txt"));
+
+            Archive copy = new Archive("testarchive", Archive.Storage.TEMP_FILES, archive.toInputStream());
+            assertEquals(3, copy.getEntries().size());
+            assertTrue(copy.getEntry("my/resource.txt").isFile());
+            assertEquals("Hi!!", new String(copy.getEntryBytes("my/resource.txt")));
+        }
+    }
+
+	@Test
+    public void test_zip_bytes() throws IOException, ClassNotFoundException {
+        byte[] stored = "Stored entry".getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(stored);
+
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        ZipOutputStream zipStream = new ZipOutputStream(outStream);
+        zipStream.setComment("Zip comment");
+        zipStream.putNextEntry(new ZipEntry("my/resource.txt"));
+        zipStream.write("Hi!!".getBytes(StandardCharsets.UTF_8));
+        zipStream.closeEntry();
+        zipStream.putNextEntry(new ZipEntry("my/folder/"));
+        zipStream.closeEntry();
+        ZipEntry storedEntry = new ZipEntry("my/stored.txt");
+        storedEntry.setMethod(ZipEntry.STORED);
+        storedEntry.setSize(stored.length);
+        storedEntry.setCrc(crc.getValue());
+        zipStream.putNextEntry(storedEntry);
+        zipStream.write(stored);
+        zipStream.closeEntry();
+        zipStream.putNextEntry(new ZipEntry("org/smooks/edi/edisax/archive/Archive.class"));
+        zipStream.write(StreamUtils.readStream(getClass().getResourceAsStream("Archive.class")));
+        zipStream.closeEntry();
+        zipStream.close();
+
+        Archive archive = new Archive(ByteBuffer.wrap(outStream.toByteArray()));
+
+        assertEquals(Archive.Storage.HEAP, archive.getStorage());
+        assertEquals(4, archive.getEntries().size());
+        assertEquals("my/resource.txt", archive.getEntryName(0));
+        assertEquals("my/folder/", archive.getEntryName(1));
+        assertNull(archive.getEntryValue(1));
+        assertEquals("Hi!!", new String(archive.getEntryBytes("my/resource.txt"), StandardCharsets.UTF_8));
+        assertEquals("Stored entry", new String(archive.getEntryBytes("my/stored.txt"), StandardCharsets.UTF_8));
+        assertEquals(Archive.class.getName(), new ArchiveClassLoader(new ClassLoader(null) {}, archive).loadClass(Archive.class.getName()).getName());
+
+        // Same entries as reading the zip stream...
+        Archive streamArchive = new Archive(new ZipInputStream(new ByteArrayInputStream(outStream.toByteArray())));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(streamArchive.getEntryName(i), archive.getEntryName(i));
+        }
+        assertArrayEquals(streamArchive.getEntryBytes("org/smooks/edi/edisax/archive/Archive.class"), archive.getEntryBytes("org/smooks/edi/edisax/archive/Archive.class"));
+
+        // Entries added later are kept on the heap...
+        archive.addEntry("my/added.txt", "Added");
+        assertEquals("Added", new String(archive.getEntryBytes("my/added.txt"), StandardCharsets.UTF_8));
+
+        assertThrows(ZipException.class, () -> new Archive(ByteBuffer.wrap("Not a zip file".getBytes(StandardCharsets.UTF_8))));
+    }
 }
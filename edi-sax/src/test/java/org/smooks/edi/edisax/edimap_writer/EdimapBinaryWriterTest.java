@@ -0,0 +1,208 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.edimap_writer;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.edi.edisax.model.EDIConfigDigester;
+import org.smooks.edi.edisax.model.EdifactModel;
+import org.smooks.edi.edisax.model.internal.Edimap;
+import org.smooks.edi.edisax.model.internal.Segment;
+import org.smooks.edi.edisax.util.EDIUtils;
+import org.smooks.edi.edisax.util.EdimapBinaryReader;
+import org.smooks.edi.edisax.util.EdimapBinaryWriter;
+import org.smooks.support.StreamUtils;
+import org.xml.sax.SAXException;
+import org.xmlunit.builder.DiffBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EdimapBinaryWriterTest {
+
+    @Test
+    public void test_round_trip() throws IOException, SAXException {
+        Edimap edimap = EDIConfigDigester.digestConfig(getClass().getResourceAsStream("edimap-01.xml"));
+        Edimap readEdimap = EdimapBinaryReader.read(new ByteArrayInputStream(toBinary(edimap)));
+
+        assertFalse(DiffBuilder.compare(getClass().getResourceAsStream("edimap-01.xml")).ignoreWhitespace().withTest(toXml(readEdimap)).build().hasDifferences());
+    }
+
+    @Test
+    public void test_round_trip_imports_applied() throws IOException, SAXException {
+        String packageName = "/org/smooks/edi/edisax/v1_2/imports";
+        InputStream input = getClass().getResourceAsStream(packageName + "/edi-config-truncatableSegmentsExists-relativepath.xml");
+        EdifactModel model = new EdifactModel(URI.create(packageName + "/edi-config-truncatableSegmentsExists-relativepath.xml"), URI.create(packageName), input);
+        Edimap edimap = model.getEdimap();
+        Edimap readEdimap = EdimapBinaryReader.read(new ByteArrayInputStream(toBinary(edimap)));
+
+        assertTrue(readEdimap.getImports().isEmpty());
+        assertEquals(toXml(edimap), toXml(readEdimap));
+
+        Segment segment = (Segment) readEdimap.getSegments().getSegments().get(0).getSegments().get(0);
+        assertTrue(segment.isTruncatable());
+        assertFalse(segment.getFields().isEmpty());
+        assertSame(segment, segment.getFields().get(0).getParent());
+    }
+
+    @Test
+    public void test_unapplied_imports_rejected() throws IOException, SAXException {
+        Edimap edimap = EDIConfigDigester.digestConfig(getClass().getResourceAsStream("../unedifact/MSG3-model.xml"));
+
+        assertThrows(IllegalArgumentException.class, () -> EdimapBinaryWriter.write(edimap, new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void test_unsupported_format_rejected() throws IOException, SAXException {
+        byte[] binary = toBinary(EDIConfigDigester.digestConfig(getClass().getResourceAsStream("edimap-01.xml")));
+
+        // Bump the format version...
+        binary[4]++;
+        assertThrows(IOException.class, () -> EdimapBinaryReader.read(new ByteArrayInputStream(binary)));
+        assertThrows(IOException.class, () -> EdimapBinaryReader.read(new ByteArrayInputStream("<medi:edimap/>".getBytes())));
+    }
+
+    @Test
+    public void test_corrupted_binary_rejected() throws IOException, SAXException {
+        byte[] binary = toBinary(EDIConfigDigester.digestConfig(getClass().getResourceAsStream("edimap-01.xml")));
+
+        // Whatever the corruption, reading fails with an IOException...
+        for (int i = 4; i < binary.length; i++) {
+            byte[] corrupted = binary.clone();
+            corrupted[i] = (byte) 0xFF;
+            assertReadsOrRejected(corrupted);
+            corrupted[i] = (byte) (binary[i] + 1);
+            assertReadsOrRejected(corrupted);
+        }
+        for (int length = 0; length < binary.length; length++) {
+            byte[] truncated = Arrays.copyOf(binary, length);
+            assertThrows(IOException.class, () -> EdimapBinaryReader.read(new ByteArrayInputStream(truncated)));
+        }
+    }
+
+    @Test
+    public void test_corrupted_binary_model_falls_back_to_xml() throws IOException, SAXException {
+        File modelDir = new File("target/corrupted-binary-models");
+        modelDir.mkdirs();
+
+        byte[] xml = StreamUtils.readStream(getClass().getResourceAsStream("edimap-01.xml"));
+        Edimap binaryEdimap = EDIConfigDigester.digestConfig(new ByteArrayInputStream(xml));
+        binaryEdimap.getDescription().setName("BINARY");
+        byte[] binary = toBinary(binaryEdimap);
+
+        writeFile(new File(modelDir, "edimap-01.xml"), xml);
+        writeFile(new File(modelDir, "edimap-01" + EdimapBinaryWriter.FILE_EXTENSION), Arrays.copyOf(binary, binary.length / 2));
+
+        Map<String, EdifactModel> mappingModels = new LinkedHashMap<String, EdifactModel>();
+        URI baseURI = modelDir.getAbsoluteFile().toURI();
+        EDIUtils.loadMappingModels(mappingModels, baseURI, Arrays.asList("edimap-01.xml"));
+
+        EdifactModel xmlModel = mappingModels.values().iterator().next();
+        assertEquals(1, mappingModels.size());
+        assertFalse(mappingModels.containsKey("BINARY:" + binaryEdimap.getDescription().getVersion()));
+        assertEquals(baseURI.resolve("edimap-01.xml"), xmlModel.getModelURI());
+    }
+
+    @Test
+    public void test_binary_model_preferred() throws IOException, SAXException {
+        File modelDir = new File("target/binary-models");
+        modelDir.mkdirs();
+
+        byte[] xml = StreamUtils.readStream(getClass().getResourceAsStream("edimap-01.xml"));
+        Edimap binaryEdimap = EDIConfigDigester.digestConfig(new ByteArrayInputStream(xml));
+        binaryEdimap.getDescription().setName("BINARY");
+
+        writeFile(new File(modelDir, "edimap-01.xml"), xml);
+        writeFile(new File(modelDir, "edimap-01" + EdimapBinaryWriter.FILE_EXTENSION), toBinary(binaryEdimap));
+        writeFile(new File(modelDir, "edimap-02.xml"), xml);
+
+        Map<String, EdifactModel> mappingModels = new LinkedHashMap<String, EdifactModel>();
+        URI baseURI = modelDir.getAbsoluteFile().toURI();
+        EDIUtils.loadMappingModels(mappingModels, baseURI, Arrays.asList("edimap-01.xml", "edimap-02.xml"));
+
+        EdifactModel binaryModel = mappingModels.get("BINARY:" + binaryEdimap.getDescription().getVersion());
+        assertEquals(baseURI.resolve("edimap-01.xml"), binaryModel.getModelURI());
+        assertEquals(2, mappingModels.size());
+    }
+
+    private void assertReadsOrRejected(byte[] binary) {
+        try {
+            EdimapBinaryReader.read(new ByteArrayInputStream(binary));
+        } catch (IOException e) {
+            // Rejected...
+        }
+    }
+
+    private byte[] toBinary(Edimap edimap) throws IOException {
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        EdimapBinaryWriter.write(edimap, binary);
+        return binary.toByteArray();
+    }
+
+    private String toXml(Edimap edimap) throws IOException {
+        StringWriter xml = new StringWriter();
+        edimap.write(xml);
+        return xml.toString();
+    }
+
+    private void writeFile(File file, byte[] bytes) throws IOException {
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(bytes);
+        }
+    }
+}
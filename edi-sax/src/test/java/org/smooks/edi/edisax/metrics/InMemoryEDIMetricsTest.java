@@ -0,0 +1,143 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.edi.edisax.EDIParseErrorCollector;
+import org.smooks.edi.edisax.EDIParser;
+import org.smooks.edi.edisax.MockContentHandler;
+import org.smooks.edi.edisax.model.EdifactModel;
+import org.smooks.edi.edisax.registry.DefaultMappingsRegistry;
+import org.smooks.edi.edisax.unedifact.UNEdifactInterchangeParser;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InMemoryEDIMetricsTest {
+
+    @Test
+    public void test_interchange() throws IOException, SAXException {
+        String edi = "UNB+UNOA:3+Acme:1+AcmeRecipient:1+20051107:1159+6002'"
+                + "UNH+0001+MSG2:S:93A:UN'BBBB+f1+f2+f3'UNT+25+0001'"
+                + "UNH+0002+MSG2:S:93A:UN'BBBB+f1+f2'UNT+25+0002'"
+                + "UNH+0003+MSG1:S:93A:UN'AAAA+f1+f2'BB+f11'UNT+25+0003'"
+                + "UNZ+3+00000000000001'";
+        InMemoryEDIMetrics metrics = new InMemoryEDIMetrics();
+        UNEdifactInterchangeParser parser = new UNEdifactInterchangeParser();
+        parser.setMappingsRegistry(new DefaultMappingsRegistry(parseMappingModel("MSG1-model.xml"), parseMappingModel("MSG2-model.xml")));
+        parser.setErrorCollector(new EDIParseErrorCollector(10)).setMetrics(metrics);
+        parser.setContentHandler(new MockContentHandler());
+        parser.parse(new InputSource(new ByteArrayInputStream(edi.getBytes(StandardCharsets.US_ASCII))));
+
+        assertEquals(12, metrics.getSegmentsRead());
+        assertEquals(edi.length(), metrics.getCharactersRead());
+        assertEquals(1, metrics.getInterchangeMessages().getCount());
+        assertEquals(3, metrics.getInterchangeMessages().getMax());
+        assertEquals(3, metrics.getMessageTime().getCount());
+        assertEquals(3, metrics.getMappingModelLookupTime().getCount());
+        assertEquals(Collections.singletonMap("BBBB", 1L), metrics.getValidationErrors());
+
+        metrics.reset();
+        assertEquals(0, metrics.getSegmentsRead());
+        assertEquals(0, metrics.getMessageTime().getCount());
+        assertEquals(0, metrics.getValidationErrorCount());
+    }
+
+    @Test
+    public void test_message() throws IOException, SAXException {
+        InMemoryEDIMetrics metrics = new InMemoryEDIMetrics();
+        EDIParser parser = new EDIParser();
+        parser.setMappingModel(parseMappingModel("MSG1-model.xml"));
+        parser.setMetrics(metrics);
+
+        for (int i = 0; i < 2; i++) {
+            parser.setContentHandler(new MockContentHandler());
+            parser.parse(new InputSource(new StringReader("AAAA*f1*f2\nBB*f11\n")));
+        }
+
+        assertEquals(4, metrics.getSegmentsRead());
+        assertEquals(36, metrics.getCharactersRead());
+        assertEquals(2, metrics.getMessageTime().getCount());
+        assertEquals(0, metrics.getInterchangeMessages().getCount());
+        assertEquals(0, metrics.getValidationErrorCount());
+    }
+
+    @Test
+    public void test_no_op() {
+        assertEquals(NoOpEDIMetrics.INSTANCE, new EDIParser().getMetrics());
+        assertEquals(NoOpEDIMetrics.INSTANCE, new UNEdifactInterchangeParser().setMetrics(null).getMetrics());
+    }
+
+    @Test
+    public void test_histogram() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(0, histogram.getMin());
+
+        for (long value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        histogram.record(0);
+
+        assertEquals(101, histogram.getCount());
+        assertEquals(5050, histogram.getSum());
+        assertEquals(0, histogram.getMin());
+        assertEquals(100, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(0));
+        assertEquals(63, histogram.getValueAtPercentile(50));
+        assertEquals(100, histogram.getValueAtPercentile(99));
+        assertTrue(histogram.getMean() > 49 && histogram.getMean() < 51);
+    }
+
+    private EdifactModel parseMappingModel(String model) throws IOException, SAXException {
+        return EDIParser.parseMappingModel(getClass().getResourceAsStream("/org/smooks/edi/edisax/unedifact/" + model));
+    }
+}
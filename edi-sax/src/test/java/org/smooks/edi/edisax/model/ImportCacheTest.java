@@ -0,0 +1,113 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.model;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.edi.edisax.model.internal.Edimap;
+import org.smooks.edi.edisax.model.internal.Field;
+import org.smooks.edi.edisax.model.internal.Segment;
+import org.smooks.support.StreamUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ImportCacheTest {
+
+    private static final String PACKAGE_NAME = "/org/smooks/edi/edisax/v1_2/imports";
+    private static final String MODEL = PACKAGE_NAME + "/edi-config-truncatableSegmentsExists-relativepath.xml";
+
+    @Test
+    public void test_import_digested_once() throws IOException {
+        ImportCache importCache = new ImportCache();
+        Segment segment1 = getFirstSegment(newModel(readModel(), importCache));
+
+        assertEquals(1, importCache.size());
+        URI importURI = URI.create(PACKAGE_NAME + "/edi-definition-segment-un-cefact.xml");
+        Edimap importedEdimap = importCache.getEdimap(importURI);
+        assertNotNull(importedEdimap);
+        Segment importedSegment = importCache.getSegments(importURI).get(segment1.getSegcode());
+
+        Segment segment2 = getFirstSegment(newModel(readModel(), importCache));
+
+        assertEquals(1, importCache.size());
+        assertSame(importedEdimap, importCache.getEdimap(importURI));
+        assertSame(importedSegment, importCache.getSegments(importURI).get(segment2.getSegcode()));
+        assertEquals(importedSegment.getFields().size(), segment2.getFields().size());
+    }
+
+    @Test
+    public void test_truncatable_overrides_not_shared() throws IOException {
+        ImportCache importCache = new ImportCache();
+        Segment segment1 = getFirstSegment(newModel(readModel(), importCache));
+        Segment segment2 = getFirstSegment(newModel(readModel().replace("truncatableFields=\"true\"", "truncatableFields=\"false\""), importCache));
+
+        assertEquals(1, importCache.size());
+        for (Field field : segment1.getFields()) {
+            assertTrue(field.isTruncatable());
+        }
+        for (Field field : segment2.getFields()) {
+            assertFalse(field.isTruncatable());
+        }
+    }
+
+    private String readModel() throws IOException {
+        return StreamUtils.readStreamAsString(getClass().getResourceAsStream(MODEL), "UTF-8");
+    }
+
+    private EdifactModel newModel(String model, ImportCache importCache) throws IOException {
+        EdifactModel edifactModel = new EdifactModel(URI.create(MODEL), URI.create(PACKAGE_NAME), new StringReader(model));
+        edifactModel.setImportCache(importCache);
+        return edifactModel;
+    }
+
+    private Segment getFirstSegment(EdifactModel model) {
+        return (Segment) model.getEdimap().getSegments().getSegments().get(0).getSegments().get(0);
+    }
+}
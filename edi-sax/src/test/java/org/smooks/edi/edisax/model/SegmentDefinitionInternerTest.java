@@ -0,0 +1,122 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.model;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.edi.edisax.model.internal.Field;
+import org.smooks.edi.edisax.model.internal.Segment;
+import org.smooks.edi.edisax.model.internal.SegmentGroup;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SegmentDefinitionInternerTest {
+
+    private static final String PACKAGE_NAME = "/org/smooks/edi/edisax/v1_2/imports";
+
+    @Test
+    public void test_without_interner() throws IOException {
+        Segment segment1 = getFirstSegment(newModel(null));
+        Segment segment2 = getFirstSegment(newModel(null));
+
+        assertNotSame(segment1.getFields().get(0), segment2.getFields().get(0));
+    }
+
+    @Test
+    public void test_interned_on_parse() throws IOException {
+        SegmentDefinitionInterner interner = new SegmentDefinitionInterner();
+        Segment segment1 = getFirstSegment(newModel(interner));
+        Segment segment2 = getFirstSegment(newModel(interner));
+
+        // Occurrence data is not shared...
+        assertNotSame(segment1, segment2);
+        assertEquals(segment1.getFields().size(), segment2.getFields().size());
+        for (int i = 0; i < segment1.getFields().size(); i++) {
+            Field field = segment1.getFields().get(i);
+            assertSame(field, segment2.getFields().get(i));
+            for (int j = 0; j < field.getComponents().size(); j++) {
+                assertSame(field.getComponents().get(j), segment2.getFields().get(i).getComponents().get(j));
+            }
+        }
+        assertTrue(interner.size() > 0);
+    }
+
+    @Test
+    public void test_interned_after_parse() throws IOException {
+        SegmentDefinitionInterner interner = new SegmentDefinitionInterner();
+        EdifactModel model1 = newModel(interner);
+        EdifactModel model2 = newModel(null);
+        Segment segment2 = getFirstSegment(model2);
+
+        assertNotSame(getFirstSegment(model1).getFields().get(0), segment2.getFields().get(0));
+        model2.setSegmentDefinitionInterner(interner);
+        assertSame(getFirstSegment(model1).getFields().get(0), segment2.getFields().get(0));
+    }
+
+    @Test
+    public void test_different_definitions_not_shared() throws IOException {
+        SegmentDefinitionInterner interner = new SegmentDefinitionInterner();
+        Segment segment = getFirstSegment(newModel(interner));
+
+        Field field1 = segment.getFields().get(0);
+        Field field2 = segment.getFields().get(1);
+        assertNotSame(field1, field2);
+    }
+
+    private EdifactModel newModel(SegmentDefinitionInterner interner) throws IOException {
+        EdifactModel model = new EdifactModel(URI.create(PACKAGE_NAME + "/edi-config-truncatableSegmentsExists-relativepath.xml"), URI.create(PACKAGE_NAME),
+                getClass().getResourceAsStream(PACKAGE_NAME + "/edi-config-truncatableSegmentsExists-relativepath.xml"));
+        model.setSegmentDefinitionInterner(interner);
+        return model;
+    }
+
+    private Segment getFirstSegment(EdifactModel model) {
+        SegmentGroup segmentGroup = model.getEdimap().getSegments().getSegments().get(0);
+        return (Segment) segmentGroup.getSegments().get(0);
+    }
+}
@@ -0,0 +1,111 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.model.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SegcodeDispatchTableTest {
+
+    @Test
+    public void test_next() {
+        SegmentGroup parent = new SegmentGroup();
+
+        parent.getSegments().add(segment("BGM", 1));  // 0
+        parent.getSegments().add(segment("DTM", 0));  // 1
+        parent.getSegments().add(segment("PAI", 0));  // 2
+        parent.getSegments().add(segment("ALI", 0));  // 3
+        parent.getSegments().add(segment("1A\\*a.*", 0));  // 4
+        parent.getSegments().add(segment("FTX", 0));  // 5
+        parent.getSegments().add(segment("ALI", 0));  // 6
+        parent.getSegments().add(group(segment("RFF", 1)));  // 7
+        parent.getSegments().add(segment("UNS", 1));  // 8
+        parent.getSegments().add(segment("CNT", 0));  // 9
+
+        SegcodeDispatchTable table = parent.getDispatchTable();
+
+        assertTrue(table.isLiteral(0));
+        assertFalse(table.isLiteral(4));
+        assertTrue(table.isLiteral(7));
+
+        // Jump to the first candidate...
+        assertEquals(3, next(table, 1, "ALI+1"));
+        assertEquals(6, next(table, 4 + 1, "ALI+1"));
+        assertEquals(9, next(table, 9, "CNT+2:1"));
+        assertEquals(10, next(table, 9, "XXX+2:1"));
+
+        // Regex segcodes and required segments are never jumped over...
+        assertEquals(4, next(table, 1, "FTX+1"));
+        assertEquals(8, next(table, 5, "CNT+2:1"));
+        assertEquals(7, next(table, 5, "RFF+ON:1"));
+
+        // Segments that are no longer than the longest segcode might match a segcode outright...
+        assertEquals(1, next(table, 1, "ALI"));
+
+        // The table is recompiled if the segments list changes...
+        parent.getSegments().add(segment("ALI", 0));
+        assertEquals(10, next(parent.getDispatchTable(), 9, "ALI+1"));
+    }
+
+    private int next(SegcodeDispatchTable table, int from, String segment) {
+        String tag = segment.split("\\+")[0];
+        return table.next(from, tag.toCharArray(), 0, tag.length(), segment.length());
+    }
+
+    private Segment segment(String segcode, int minOccurs) {
+        Segment segment = new Segment();
+        segment.setSegcode(segcode);
+        segment.setMinOccurs(minOccurs);
+        return segment;
+    }
+
+    private SegmentGroup group(Segment firstSegment) {
+        SegmentGroup group = new SegmentGroup();
+        group.getSegments().add(firstSegment);
+        group.setMinOccurs(0);
+        return group;
+    }
+}
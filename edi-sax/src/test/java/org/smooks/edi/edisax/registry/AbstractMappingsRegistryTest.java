@@ -0,0 +1,240 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.registry;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.edi.edisax.EDIConfigurationException;
+import org.smooks.edi.edisax.EDIParser;
+import org.smooks.edi.edisax.model.EdifactModel;
+import org.smooks.edi.edisax.model.ImportCache;
+import org.smooks.edi.edisax.model.internal.Delimiters;
+import org.smooks.edi.edisax.model.internal.Edimap;
+import org.smooks.support.StreamUtils;
+import org.xml.sax.SAXException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AbstractMappingsRegistryTest {
+
+    private static final Delimiters DELIMITERS = new Delimiters().setComponent(":").setEscape("?");
+
+    @Test
+    public void test_concurrent_misses_share_one_load() throws Exception {
+        EdifactModel model = EDIParser.parseMappingModel(getClass().getResourceAsStream("../unedifact/MSG1-model.xml"));
+        CountDownLatch loading = new CountDownLatch(1);
+        TestMappingsRegistry registry = new TestMappingsRegistry(model, loading);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<EdifactModel>> lookups = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                lookups.add(executorService.submit(() -> registry.getMappingModel("MSG1:S:93A:UN", DELIMITERS)));
+            }
+            Thread.sleep(100);
+            loading.countDown();
+
+            for (Future<EdifactModel> lookup : lookups) {
+                assertSame(model, lookup.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertEquals(1, registry.loads.get());
+        assertEquals(1, registry.getLoadCount());
+        assertEquals(8, registry.getMissCount());
+        assertTrue(registry.getTotalLoadTime() > 0);
+
+        assertSame(model, registry.getMappingModel("MSG1:S:93A:UN", DELIMITERS));
+        assertEquals(1, registry.getHitCount());
+    }
+
+    @Test
+    public void test_loaded_model_lookup_not_blocked_by_load() throws Exception {
+        EdifactModel model = EDIParser.parseMappingModel(getClass().getResourceAsStream("../unedifact/MSG1-model.xml"));
+        CountDownLatch loading = new CountDownLatch(1);
+        TestMappingsRegistry registry = new TestMappingsRegistry(model, loading);
+        registry.content.put("MSG1:S:93A:UN", model);
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<EdifactModel> blockedLookup = executorService.submit(() -> registry.getMappingModel("MSG2:S:96A:UN", DELIMITERS));
+            assertSame(model, registry.getMappingModel("MSG1:S:93A:UN", DELIMITERS));
+            loading.countDown();
+            assertThrows(Exception.class, () -> blockedLookup.get(10, TimeUnit.SECONDS));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_failed_load_is_retried() throws Exception {
+        EdifactModel model = EDIParser.parseMappingModel(getClass().getResourceAsStream("../unedifact/MSG1-model.xml"));
+        CountDownLatch loading = new CountDownLatch(0);
+        TestMappingsRegistry registry = new TestMappingsRegistry(model, loading);
+        registry.failures.set(1);
+
+        assertThrows(IOException.class, () -> registry.getMappingModel("MSG1:S:93A:UN", DELIMITERS));
+        assertSame(model, registry.getMappingModel("MSG1:S:93A:UN", DELIMITERS));
+        assertEquals(2, registry.loads.get());
+    }
+
+    @Test
+    public void test_miss_after_completed_load_is_retried() throws Exception {
+        EdifactModel model = EDIParser.parseMappingModel(getClass().getResourceAsStream("../unedifact/MSG1-model.xml"));
+        TestMappingsRegistry registry = new TestMappingsRegistry(model, new CountDownLatch(0));
+
+        assertSame(model, registry.getMappingModel("MSG1:S:93A:UN", DELIMITERS));
+        // Same load key as MSG1, but each miss loads again...
+        assertThrows(EDIConfigurationException.class, () -> registry.getMappingModel("MSG2:S:93A:UN", DELIMITERS));
+        assertThrows(EDIConfigurationException.class, () -> registry.getMappingModel("MSG2:S:93A:UN", DELIMITERS));
+        assertEquals(3, registry.loads.get());
+    }
+
+    @Test
+    public void test_lookup_by_message_name() throws Exception {
+        EdifactModel model = EDIParser.parseMappingModel(getClass().getResourceAsStream("../unedifact/MSG1-model.xml"));
+        TestMappingsRegistry registry = new TestMappingsRegistry(model, new CountDownLatch(0));
+
+        assertSame(model, registry.getMappingModel("MSG1:S:93A:UN:EAN008", DELIMITERS));
+        assertSame(model, registry.getMappingModel("MSG1:S:93A:UN:EAN008", DELIMITERS));
+        assertEquals(1, registry.getHitCount());
+
+        // The same message name, split on other delimiters, is not the same message...
+        Delimiters plusDelimiters = new Delimiters().setComponent("+").setEscape("?");
+        assertThrows(Exception.class, () -> registry.getMappingModel("MSG1:S:93A:UN:EAN008", plusDelimiters));
+        assertSame(model, registry.getMappingModel("MSG1+S+93A+UN+EAN008", plusDelimiters));
+        assertEquals(1, registry.loads.get());
+    }
+
+    @Test
+    public void test_directly_referenced_models_share_imports() throws Exception {
+        File modelDir = new File("target/shared-import-models");
+        new File(modelDir, "subs").mkdirs();
+
+        String msg3Model = StreamUtils.readStreamAsString(getClass().getResourceAsStream("../unedifact/MSG3-model.xml"), "UTF-8");
+        writeFile(new File(modelDir, "subs/MSG1-model.xml"), StreamUtils.readStream(getClass().getResourceAsStream("../unedifact/MSG1-model.xml")));
+        writeFile(new File(modelDir, "subs/MSG2-model.xml"), StreamUtils.readStream(getClass().getResourceAsStream("../unedifact/MSG2-model.xml")));
+        writeFile(new File(modelDir, "MSG3-model.xml"), msg3Model.getBytes(StandardCharsets.UTF_8));
+        writeFile(new File(modelDir, "MSG4-model.xml"), msg3Model.replace("name=\"MSG3\"", "name=\"MSG4\"").getBytes(StandardCharsets.UTF_8));
+
+        URI baseURI = modelDir.getAbsoluteFile().toURI();
+        DefaultMappingsRegistry registry = new DefaultMappingsRegistry("MSG3-model.xml,MSG4-model.xml", baseURI);
+        ImportCache importCache = registry.getImportCache();
+        URI importURI = baseURI.resolve("subs/MSG1-model.xml");
+
+        registry.getMappingModel("MSG3:S:93A:UN", DELIMITERS);
+        Edimap importedEdimap = importCache.getEdimap(importURI);
+        assertNotNull(importedEdimap);
+
+        // Both models imported through the registry import cache, so as they share the imported model...
+        registry.getMappingModel("MSG4:S:93A:UN", DELIMITERS);
+        assertEquals(2, importCache.size());
+        assertSame(importedEdimap, importCache.getEdimap(importURI));
+        assertEquals(1, registry.getLoadCount());
+    }
+
+    private void writeFile(File file, byte[] bytes) throws IOException {
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(bytes);
+        }
+    }
+
+    private static class TestMappingsRegistry extends AbstractMappingsRegistry {
+
+        private final EdifactModel model;
+        private final CountDownLatch loading;
+        private final AtomicInteger loads = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+
+        private TestMappingsRegistry(EdifactModel model, CountDownLatch loading) {
+            this.model = model;
+            this.loading = loading;
+        }
+
+        @Override
+        protected String getLoadKey(String[] nameComponents) {
+            return nameComponents[1] + nameComponents[2];
+        }
+
+        @Override
+        protected Map<String, EdifactModel> demandLoading(String[] nameComponents) throws IOException, SAXException {
+            loads.incrementAndGet();
+            try {
+                loading.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (failures.getAndDecrement() > 0) {
+                throw new IOException("Failed to load");
+            }
+
+            Map<String, EdifactModel> models = new HashMap<>();
+            if (nameComponents[2].equals("93A")) {
+                models.put("MSG1:S:93A:UN", model);
+            }
+            return models;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.registry;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Enumeration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.edi.edisax.model.EdifactModel;
+import org.smooks.edi.edisax.model.internal.Delimiters;
+import org.smooks.edi.edisax.util.EDIUtils;
+import org.smooks.support.StreamUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LazyMappingsRegistryTest {
+
+    private static final Delimiters DELIMITERS = new Delimiters().setComponent(":").setEscape("?");
+
+    @Test
+    public void test_indexed_lookup_loads_requested_model_only() throws Exception {
+        File jarFile = createJar("target/indexed-mapping-models.jar", true);
+        ClassLoader threadCCL = Thread.currentThread().getContextClassLoader();
+
+        try (URLClassLoader jarClassLoader = new URLClassLoader(new URL[]{jarFile.toURI().toURL()}, threadCCL)) {
+            Thread.currentThread().setContextClassLoader(jarClassLoader);
+
+            LazyMappingsRegistry registry = new LazyMappingsRegistry();
+            EdifactModel model = registry.getMappingModel("MSG3:S:93A:UN", DELIMITERS);
+
+            assertEquals("MSG3", model.getDescription().getName());
+            // The imports of the requested model are applied...
+            assertNotNull(model.getEdimap());
+            assertEquals(1, registry.content.size());
+
+            registry.getMappingModel("MSG1:S:93A:UN", DELIMITERS);
+            assertEquals(2, registry.content.size());
+            assertEquals(2, registry.getLoadCount());
+        } finally {
+            Thread.currentThread().setContextClassLoader(threadCCL);
+        }
+    }
+
+    @Test
+    public void test_indexed_lookup_reads_index_once_per_urn() throws Exception {
+        File jarFile = createJar("target/indexed-mapping-models-once.jar", true);
+        ClassLoader threadCCL = Thread.currentThread().getContextClassLoader();
+        AtomicInteger indexReads = new AtomicInteger();
+
+        try (URLClassLoader jarClassLoader = new URLClassLoader(new URL[]{jarFile.toURI().toURL()}, threadCCL) {
+            @Override
+            public Enumeration<URL> getResources(String name) throws IOException {
+                if (name.equals(EDIUtils.EDI_MAPPING_MODEL_INDEX_FILE)) {
+                    indexReads.incrementAndGet();
+                }
+                return super.getResources(name);
+            }
+        }) {
+            Thread.currentThread().setContextClassLoader(jarClassLoader);
+
+            LazyMappingsRegistry registry = new LazyMappingsRegistry();
+            registry.getMappingModel("MSG3:S:93A:UN", DELIMITERS);
+            int firstMissIndexReads = indexReads.get();
+            assertTrue(firstMissIndexReads > 0);
+
+            registry.getMappingModel("MSG1:S:93A:UN", DELIMITERS);
+            assertEquals(2, registry.getLoadCount());
+            assertEquals(firstMissIndexReads, indexReads.get());
+
+            // Resetting the loads forgets about the index too...
+            registry.resetLoads();
+            registry.getMappingModel("MSG2:S:93A:UN", DELIMITERS);
+            assertEquals(2 * firstMissIndexReads, indexReads.get());
+        } finally {
+            Thread.currentThread().setContextClassLoader(threadCCL);
+        }
+    }
+
+    @Test
+    public void test_unindexed_lookup_loads_all_models() throws Exception {
+        File jarFile = createJar("target/unindexed-mapping-models.jar", false);
+        ClassLoader threadCCL = Thread.currentThread().getContextClassLoader();
+
+        try (URLClassLoader jarClassLoader = new URLClassLoader(new URL[]{jarFile.toURI().toURL()}, threadCCL)) {
+            Thread.currentThread().setContextClassLoader(jarClassLoader);
+
+            LazyMappingsRegistry registry = new LazyMappingsRegistry();
+            EdifactModel model = registry.getMappingModel("MSG3:S:93A:UN", DELIMITERS);
+
+            assertEquals("MSG3", model.getDescription().getName());
+            assertEquals(3, registry.content.size());
+
+            registry.getMappingModel("MSG1:S:93A:UN", DELIMITERS);
+            assertEquals(1, registry.getLoadCount());
+            assertTrue(registry.getHitCount() > 0);
+        } finally {
+            Thread.currentThread().setContextClassLoader(threadCCL);
+        }
+    }
+
+    private File createJar(String path, boolean indexed) throws IOException {
+        File jarFile = new File(path);
+
+        jarFile.getParentFile().mkdirs();
+        jarFile.delete();
+
+        try (ZipOutputStream zipStream = new ZipOutputStream(new FileOutputStream(jarFile))) {
+            addZipEntry("test/models/subs/MSG1-model.xml", StreamUtils.readStream(getClass().getResourceAsStream("../unedifact/MSG1-model.xml")), zipStream);
+            addZipEntry("test/models/subs/MSG2-model.xml", StreamUtils.readStream(getClass().getResourceAsStream("../unedifact/MSG2-model.xml")), zipStream);
+            addZipEntry("test/models/MSG3-model.xml", StreamUtils.readStream(getClass().getResourceAsStream("../unedifact/MSG3-model.xml")), zipStream);
+            addZipEntry(EDIUtils.EDI_MAPPING_MODEL_ZIP_LIST_FILE, StreamUtils.readStream(getClass().getResourceAsStream("../unedifact/mapping-models.lst")), zipStream);
+            addZipEntry(EDIUtils.EDI_MAPPING_MODEL_URN, "org.smooks.edi.unedifact:s93a-mapping:1.0".getBytes(StandardCharsets.UTF_8), zipStream);
+            if (indexed) {
+                String index = "MSG1\\:S\\:93A\\:UN=/test/models/subs/MSG1-model.xml\n"
+                        + "MSG2\\:S\\:93A\\:UN=/test/models/subs/MSG2-model.xml\n"
+                        + "MSG3\\:S\\:93A\\:UN=/test/models/MSG3-model.xml\n";
+                addZipEntry(EDIUtils.EDI_MAPPING_MODEL_INDEX_FILE, index.getBytes(StandardCharsets.UTF_8), zipStream);
+            }
+        }
+
+        return jarFile;
+    }
+
+    private void addZipEntry(String name, byte[] bytes, ZipOutputStream zipStream) throws IOException {
+        zipStream.putNextEntry(new ZipEntry(name));
+        zipStream.write(bytes);
+    }
+}
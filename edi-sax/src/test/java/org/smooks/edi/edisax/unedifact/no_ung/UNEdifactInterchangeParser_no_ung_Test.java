@@ -45,17 +45,25 @@ package org.smooks.edi.edisax.unedifact.no_ung;
 import java.io.*;
 import java.net.URI;
 import java.net.URL;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import org.junit.jupiter.api.Test;
 import org.smooks.edi.edisax.EDIConfigurationException;
+import org.smooks.edi.edisax.EDIParseError;
+import org.smooks.edi.edisax.EDIParseErrorCollector;
 import org.smooks.edi.edisax.EDIParser;
 import org.smooks.edi.edisax.MockContentHandler;
+import org.smooks.edi.edisax.MockContentHandlerNS;
 import org.smooks.edi.edisax.model.EdifactModel;
 import org.smooks.edi.edisax.registry.DefaultMappingsRegistry;
 import org.smooks.edi.edisax.unedifact.UNEdifactInterchangeParser;
+import org.smooks.edi.edisax.unedifact.with_ung.NamespaceAwareHandler;
 import org.smooks.edi.edisax.util.EDIUtils;
+import org.smooks.namespace.NamespaceDeclarationStack;
 import org.smooks.support.StreamUtils;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -100,6 +108,147 @@ public class UNEdifactInterchangeParser_no_ung_Test {
         return parser;
     }
 
+    @Test
+    public void test_parallel() throws IOException, SAXException, EDIConfigurationException {
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            testExchanges(newUnEdifactInterchangeParser().setMessageExecutor(executorService));
+            testExchanges(newUnEdifactInterchangeParser().setMessageExecutor(executorService).setMaxPendingMessages(1));
+
+            // Same events, in the same order, as parsing serially...
+            String escapedSegmentDelimiter = "UNB+UNOA:3+Acme:1+AcmeRecipient:1+20051107:1159+6002'UNH+0001+MSG2:S:93A:UN'BBBB+f?'1+f2+f3'UNT+25+0001'UNZ+1+00000000000001'";
+            for (String edi : new String[]{
+                    StreamUtils.readStreamAsString(getClass().getResourceAsStream("unedifact-msg-01.edi"), "UTF-8"),
+                    StreamUtils.readStreamAsString(getClass().getResourceAsStream("unedifact-msg-02.edi"), "UTF-8"),
+                    escapedSegmentDelimiter}) {
+                MockContentHandler serialHandler = new MockContentHandler();
+                UNEdifactInterchangeParser serialParser = newUnEdifactInterchangeParser();
+                serialParser.setContentHandler(serialHandler);
+                serialParser.parse(new InputSource(new ByteArrayInputStream(edi.getBytes("UTF-8"))));
+
+                MockContentHandler parallelHandler = new MockContentHandler();
+                UNEdifactInterchangeParser parallelParser = newUnEdifactInterchangeParser().setMessageExecutor(executorService);
+                parallelParser.setContentHandler(parallelHandler);
+                parallelParser.parse(new InputSource(new ByteArrayInputStream(edi.getBytes("UTF-8"))));
+
+                assertEquals(serialHandler.xmlMapping.toString(), parallelHandler.xmlMapping.toString());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void test_parallel_container_managed_namespaces() throws IOException, SAXException {
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            String escapedSegmentDelimiter = "UNB+UNOA:3+Acme:1+AcmeRecipient:1+20051107:1159+6002'UNH+0001+MSG2:S:93A:UN'BBBB+f?'1+f?+2+f?:3'UNT+25+0001'UNZ+1+00000000000001'";
+            for (String edi : new String[]{
+                    StreamUtils.readStreamAsString(getClass().getResourceAsStream("unedifact-msg-01.edi"), "UTF-8"),
+                    escapedSegmentDelimiter}) {
+                String serialXml = parseContainerManaged(edi, null);
+                assertTrue(serialXml.contains("<msg2:segBB>"), serialXml);
+
+                // Same events, in the same order, as parsing serially...
+                assertEquals(serialXml, parseContainerManaged(edi, executorService));
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    private String parseContainerManaged(String edi, ExecutorService executorService) throws IOException, SAXException {
+        EdifactModel model1 = EDIParser.parseMappingModel(getClass().getResourceAsStream("../MSG1-ns-model.xml"));
+        EdifactModel model2 = EDIParser.parseMappingModel(getClass().getResourceAsStream("../MSG2-ns-model.xml"));
+        UNEdifactInterchangeParser parser = new UNEdifactInterchangeParser().setMessageExecutor(executorService);
+        parser.setMappingsRegistry(new DefaultMappingsRegistry(model1, model2));
+
+        // The namespace declarations are pushed by the container, as the events reach it...
+        MockContentHandlerNS handler = new MockContentHandlerNS();
+        NamespaceDeclarationStack namespaceDeclarationStack = new NamespaceDeclarationStack(parser);
+        parser.setNamespaceDeclarationStack(namespaceDeclarationStack);
+        parser.setContentHandler(new NamespaceAwareHandler(handler, namespaceDeclarationStack));
+        parser.parse(new InputSource(new ByteArrayInputStream(edi.getBytes("UTF-8"))));
+
+        return handler.xmlMapping.toString();
+    }
+
+    @Test
+    public void test_file() throws IOException, SAXException, EDIConfigurationException {
+        UNEdifactInterchangeParser parser = newUnEdifactInterchangeParser();
+
+        for (String edi : new String[]{"unedifact-msg-01.edi", "unedifact-msg-02.edi"}) {
+            File ediFile = new File("target/" + edi);
+            ediFile.getParentFile().mkdirs();
+            try (OutputStream ediStream = new FileOutputStream(ediFile)) {
+                ediStream.write(StreamUtils.readStream(getClass().getResourceAsStream(edi)));
+            }
+
+            MockContentHandler handler = new MockContentHandler();
+            parser.setContentHandler(handler);
+            parser.parse(ediFile.toPath());
+            assertFalse(DiffBuilder.compare(getClass().getResourceAsStream("unedifact-msg-expected.xml")).withTest(handler.xmlMapping.toString()).ignoreWhitespace().build().hasDifferences());
+        }
+    }
+
+    @Test
+    public void test_omit_indentation() throws IOException, SAXException {
+        UNEdifactInterchangeParser parser = newUnEdifactInterchangeParser();
+        parser.omitIndentation(true);
+
+        for (String edi : new String[]{"unedifact-msg-01.edi", "unedifact-msg-02.edi"}) {
+            final int[] whitespaceEvents = {0};
+            MockContentHandler handler = new MockContentHandler() {
+                public void characters(char[] ch, int start, int length) throws SAXException {
+                    if (new String(ch, start, length).trim().isEmpty()) {
+                        whitespaceEvents[0]++;
+                    }
+                    super.characters(ch, start, length);
+                }
+            };
+            parser.setContentHandler(handler);
+            parser.parse(new InputSource(getClass().getResourceAsStream(edi)));
+
+            assertEquals(0, whitespaceEvents[0]);
+            assertFalse(DiffBuilder.compare(getClass().getResourceAsStream("unedifact-msg-expected.xml")).withTest(handler.xmlMapping.toString()).ignoreWhitespace().build().hasDifferences());
+        }
+    }
+
+    @Test
+    public void test_collect_errors() throws IOException, SAXException {
+        String edi = "UNB+UNOA:3+Acme:1+AcmeRecipient:1+20051107:1159+6002'"
+                + "UNH+0001+MSG9:S:93A:UN'XXXX+f1'UNT+25+0001'"
+                + "UNH+0002+MSG2:S:93A:UN'BBBB+f1+f2'UNT+25+0002'"
+                + "UNH+0003+MSG2:S:93A:UN'BBBB+f11+f22+f33'UNT+25+0003'"
+                + "UNZ+3+00000000000001'";
+        EDIParseErrorCollector errorCollector = new EDIParseErrorCollector(10);
+        UNEdifactInterchangeParser parser = newUnEdifactInterchangeParser().setErrorCollector(errorCollector);
+        MockContentHandler handler = new MockContentHandler();
+        parser.setContentHandler(handler);
+        parser.parse(new InputSource(new ByteArrayInputStream(edi.getBytes("UTF-8"))));
+
+        // The message block with no mapping model is skipped, the other two are mapped...
+        List<EDIParseError> errors = errorCollector.getErrors();
+        assertEquals(2, errors.size());
+        assertEquals(2, errors.get(0).getSegmentNumber());
+        assertEquals(2, errors.get(0).getField());
+        assertEquals("MSG9:S:93A:UN", errors.get(0).getValue());
+        assertEquals(6, errors.get(1).getSegmentNumber());
+        assertEquals("segBB", errors.get(1).getNode().getXmltag());
+
+        String xml = handler.xmlMapping.toString();
+        assertFalse(xml.contains("XXXX"));
+        assertFalse(xml.contains("<field-a>f1</field-a>"));
+        assertTrue(xml.contains("<field-a>f11</field-a>"));
+        assertTrue(xml.contains("00000000000001"));
+        assertEquals(2, xml.split("<interchangeMessage").length - 1);
+
+        // Without a collector, the message block with no mapping model fails the parse...
+        parser.setErrorCollector(null);
+        parser.setContentHandler(new MockContentHandler());
+        assertThrows(EDIConfigurationException.class, () -> parser.parse(new InputSource(new ByteArrayInputStream(edi.getBytes("UTF-8")))));
+    }
+
     @Test
     public void test_zipped() throws IOException, SAXException, EDIConfigurationException {
         createZip();
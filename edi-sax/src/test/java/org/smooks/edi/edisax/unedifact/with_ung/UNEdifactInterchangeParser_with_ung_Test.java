@@ -43,8 +43,20 @@
 package org.smooks.edi.edisax.unedifact.with_ung;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
 
 import org.junit.jupiter.api.Test;
+import org.smooks.edi.edisax.interchange.InterchangeMessage;
+import org.smooks.edi.edisax.interchange.MessageListener;
 import org.smooks.edi.edisax.model.EdifactModel;
 import org.smooks.edi.edisax.registry.DefaultMappingsRegistry;
 import org.smooks.edi.edisax.unedifact.UNEdifactInterchangeParser;
@@ -156,4 +168,74 @@ public class UNEdifactInterchangeParser_with_ung_Test {
 //		System.out.println(handler.xmlMapping);
 		assertFalse(DiffBuilder.compare(getClass().getResourceAsStream("unedifact-msg-expected-03.xml")).ignoreWhitespace().withTest(handler.xmlMapping.toString()).build().hasDifferences());
     }
+
+    @Test
+    public void test_message_listener() throws IOException, SAXException, EDIConfigurationException, TransformerException {
+        EdifactModel model1 = EDIParser.parseMappingModel(getClass().getResourceAsStream("../MSG1-model.xml"));
+        EdifactModel model2 = EDIParser.parseMappingModel(getClass().getResourceAsStream("../MSG2-model.xml"));
+        final List<InterchangeMessage> messages = new ArrayList<InterchangeMessage>();
+        final List<String> documents = new ArrayList<String>();
+
+        UNEdifactInterchangeParser parser = new UNEdifactInterchangeParser();
+        parser.setMappingsRegistry(new DefaultMappingsRegistry(model1, model2));
+        parser.ignoreNewLines(true);
+        parser.setMessageListener(new MessageListener() {
+            public void onMessage(InterchangeMessage message) throws SAXException {
+                messages.add(message);
+                documents.add(serialize(message));
+            }
+        });
+
+        MockContentHandler handler = new MockContentHandler();
+        parser.setContentHandler(handler);
+        parser.parse(new InputSource(getClass().getResourceAsStream("unedifact-msg-01.edi")));
+
+        // The envelope only...
+        assertFalse(handler.xmlMapping.toString().contains("interchangeMessage"));
+        assertTrue(handler.xmlMapping.toString().contains("<UNE>"));
+
+        assertEquals(3, messages.size());
+        assertEquals("UNOA:3", messages.get(0).getInterchangeHeader()[1]);
+        assertEquals("G1", messages.get(0).getGroupHeader()[1]);
+        assertEquals("MSG2:S:93A:UN", messages.get(0).getMessageHeader()[2]);
+        assertEquals("6002", messages.get(2).getInterchangeHeader()[5]);
+        assertNull(messages.get(2).getGroupHeader());
+        assertEquals("MSG1:S:93A:UN", messages.get(2).getMessageHeader()[2]);
+
+        assertFalse(DiffBuilder.compare("" +
+                "<env:interchangeMessage xmlns:env=\"urn:org.smooks.edi.unedifact.v41\">" +
+                "  <env:UNH>" +
+                "    <env:messageRefNum>0001</env:messageRefNum>" +
+                "    <env:messageIdentifier>" +
+                "      <env:id>MSG1</env:id>" +
+                "      <env:versionNum>S</env:versionNum>" +
+                "      <env:releaseNum>93A</env:releaseNum>" +
+                "      <env:controllingAgencyCode>UN</env:controllingAgencyCode>" +
+                "    </env:messageIdentifier>" +
+                "  </env:UNH>" +
+                "  <message1>" +
+                "    <segA><field-1>f1</field-1><field-2>f2</field-2></segA>" +
+                "    <segB><field-11>f11</field-11></segB>" +
+                "  </message1>" +
+                "  <env:UNT>" +
+                "    <env:segmentCount>25</env:segmentCount>" +
+                "    <env:messageRefNum>0001</env:messageRefNum>" +
+                "  </env:UNT>" +
+                "</env:interchangeMessage>").ignoreWhitespace().withTest(documents.get(2)).build().hasDifferences());
+        assertTrue(documents.get(0).contains("<field-a>f1</field-a>"));
+        assertTrue(documents.get(1).contains("<field-a>f11</field-a>"));
+    }
+
+    private static String serialize(InterchangeMessage message) throws SAXException {
+        try {
+            SAXTransformerFactory transformerFactory = (SAXTransformerFactory) TransformerFactory.newInstance();
+            TransformerHandler transformerHandler = transformerFactory.newTransformerHandler();
+            StringWriter writer = new StringWriter();
+            transformerHandler.setResult(new StreamResult(writer));
+            message.replay(transformerHandler);
+            return writer.toString();
+        } catch (TransformerConfigurationException e) {
+            throw new SAXException(e);
+        }
+    }
 }
@@ -42,112 +42,147 @@
  */
 package org.smooks.edi.edisax.v1_2.validation;
 
+import org.junit.jupiter.api.Test;
+import org.smooks.edi.edisax.EDIConfigurationException;
+import org.smooks.edi.edisax.EDIParseException;
+import org.smooks.edi.edisax.EDIParser;
+import org.smooks.edi.edisax.model.EdifactModel;
+import org.smooks.edi.edisax.model.internal.SubComponent;
+import org.smooks.edi.edisax.model.internal.ValueNode;
+import org.smooks.edi.edisax.model.internal.ValueValidator;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
 /**
  * Tests validation of type in ValueNode.
  * @author bardl 
  */
 public class TypeValidatorTest {
 
-    public void test() {
+    @Test
+    public void test_type_String() {
+        assertValid("String", null, "testing123");
+        assertValid(null, null, "testing123");
+    }
+
+    @Test
+    public void test_length() {
+        ValueNode valueNode = newValueNode("String", null);
+        valueNode.setMinLength(2);
+        valueNode.setMaxLength(4);
+
+        assertEquals(ValueValidator.TOO_SHORT, validate(valueNode, "a", '.'));
+        assertEquals(ValueValidator.VALID, validate(valueNode, "ab", '.'));
+        assertEquals(ValueValidator.VALID, validate(valueNode, "abcd", '.'));
+        assertEquals(ValueValidator.TOO_LONG, validate(valueNode, "abcde", '.'));
+        assertEquals("Value [abcde] exceeds allowed maximum length of [4].", valueNode.getValidator().getErrorMessage(ValueValidator.TOO_LONG, "abcde"));
+    }
+
+    @Test
+    public void test_type_Numeric() {
+        for (String type : new String[]{"Numeric", "Decimal", "Double", "BigDecimal", "DABigDecimal"}) {
+            assertValid(type, null, "123");
+            assertValid(type, null, "123.00");
+            assertValid(type, null, "-0.5");
+            assertInvalid(type, null, "12A3");
+            assertInvalid(type, null, "1.2.3");
+            assertInvalid(type, null, "-");
+        }
 
+        ValueNode valueNode = newValueNode("Decimal", null);
+        assertEquals(ValueValidator.VALID, validate(valueNode, "123,00", ','));
+        assertEquals(ValueValidator.INVALID_TYPE, validate(valueNode, "123.00", ','));
     }
 
-//    public void test_type_String_valid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.String;
-//
-//        String value = "testing123";
-//        assertTrue("The value [" + value + "] should be a valid String.", ediType.validateType(value, null));
-//    }
-//
-//    public void test_type_String_invalid() throws IOException {
-//        //Can't think of any invalid cases.
-//    }
-//
-//    public void test_type_Numeric_valid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Numeric;
-//
-//        String value = "123";
-//        assertTrue("The value [" + value + "] should be a valid Numeric.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("fomat", "#0.00"))));
-//
-//        value = "123.00";
-//        assertTrue("The value [" + value + "] should be a valid Numeric.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("fomat", "#0.00"))));
-//    }
-//
-//    public void test_type_Numeric_invalid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Numeric;
-//
-//        String value = "12A3";
-//        assertFalse("The value [" + value + "] should not be a valid Numeric.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("fomat", "#0.00"))));
-//    }
-//
-//    public void test_type_Decimal_valid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Decimal;
-//
-//        String value = "123";
-//        assertTrue("The value [" + value + "] should be a valid Numeric.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("fomat", "#0.00"))));
-//
-//        value = "123.00";
-//        assertTrue("The value [" + value + "] should be a valid Numeric.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("format", "#0.00"))));
-//    }
-//
-//    public void test_type_Decimal_invalid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Date;
-//
-//        String value = "12A3";
-//        assertFalse("The value [" + value + "] should not be a valid Numeric.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("format", "#0.00"))));
-//    }
-//
-//    public void test_type_Date_valid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Date;
-//
-//        String value = "20090401";
-//        String format = "yyyyMMdd";
-//        assertTrue("The value [" + value + "] with format [" + format + "] should be a valid Date.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("format", format))));
-//    }
-//
-//    public void test_type_Date_invalid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Date;
-//
-//        String value = "200908bb";
-//        String format = "yyyyMMdd";
-//        assertFalse("The value [" + value + "] with format [" + format + "] should not be a valid Date.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("format", format))));
-//    }
-//
-//    public void test_type_Time_valid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Time;
-//
-//        String value = "2251";
-//        String format = "HHmm";
-//        assertTrue("The value [" + value + "] with format [" + format + "] should be a valid Time.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("format", format))));
-//    }
-//
-//    public void test_type_Time_invalid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Time;
-//
-//        String value = "22s";
-//        String format = "HHmm";
-//        assertFalse("The value [" + value + "] with format [" + format + "] should not be a valid Time.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("format", format))));
-//    }
-//
-//    public void test_type_Binary_valid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Binary;
-//
-//        String value = "0101010101111000";
-//        assertTrue("The value [" + value + "] should be a valid binary sequence.", ediType.validateType(value, null));
-//    }
-//
-//    public void test_type_Binary_invalid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Binary;
-//
-//        String value = "0101001200";
-//        assertFalse("The value [" + value + "] should not be a valid binary sequence.", ediType.validateType(value, null));
-//    }
-//
-//    private List<Map.Entry<String, String>> buildParameterList(Map.Entry<String, String>... entries) {
-//        List<Map.Entry<String, String>> list = new ArrayList<Map.Entry<String, String>>();
-//        for (Map.Entry<String, String> entry : entries) {
-//            list.add(entry);
-//        }
-//        return list;
-//    }
+    @Test
+    public void test_type_Integer() {
+        assertValid("Integer", null, "123");
+        assertValid("Long", null, "-123");
+        assertInvalid("Integer", null, "123.00");
+    }
+
+    @Test
+    public void test_type_Date() {
+        assertValid("Date", null, "20090401");
+        assertInvalid("Date", null, "200908bb");
+        assertInvalid("Date", null, "20091301");
+        assertInvalid("Date", null, "2009040");
+        assertValid("Date", "format=yyyy-MM-dd", "2009-04-01");
+        assertInvalid("Date", "format=yyyy-MM-dd", "2009/04/01");
+        assertValid("Date", "format=yyyyMMdd'T'HHmm;param2=value2", "20090401T1200");
+        assertInvalid("Date", "format=yyyyMMdd'T'HHmm", "20090401 1200");
+        assertEquals("Value [200908bb] is not a valid [Date] of format [yyyyMMdd].", newValueNode("Date", null).getValidator().getErrorMessage(ValueValidator.INVALID_TYPE, "200908bb"));
+    }
+
+    @Test
+    public void test_type_Time() {
+        assertValid("Time", null, "2251");
+        assertInvalid("Time", null, "22s");
+        assertInvalid("Time", null, "2460");
+        assertValid("Time", "format=HHmmss", "225159");
+        assertValid("Date", "format=HHmm", "1200");
+    }
+
+    @Test
+    public void test_recompiled_on_change() {
+        ValueNode valueNode = newValueNode("Date", null);
+        assertEquals(ValueValidator.INVALID_TYPE, validate(valueNode, "1200", '.'));
+
+        valueNode.setDataTypeParametersString("format=HHmm");
+        assertEquals(ValueValidator.VALID, validate(valueNode, "1200", '.'));
+    }
+
+    @Test
+    public void test_parse() throws IOException, SAXException, EDIConfigurationException {
+        EdifactModel model = EDIParser.parseMappingModel(new StringReader(""
+                + "<medi:edimap xmlns:medi=\"http://www.milyn.org/schema/edi-message-mapping-1.2.xsd\">"
+                + "<medi:description name=\"test\" version=\"1.0\"/>"
+                + "<medi:delimiters segment=\"'\" field=\"+\" component=\":\" sub-component=\"~\"/>"
+                + "<medi:segments xmltag=\"message\">"
+                + "<medi:segment segcode=\"SEG\" xmltag=\"seg\">"
+                + "<medi:field xmltag=\"date\" type=\"Date\" typeParameters=\"format=yyyyMMdd\"/>"
+                + "<medi:field xmltag=\"amount\" type=\"BigDecimal\"/>"
+                + "</medi:segment>"
+                + "</medi:segments>"
+                + "</medi:edimap>"));
+
+        parse(model, "SEG+20090401+12.5'");
+        EDIParseException e = assertThrows(EDIParseException.class, () -> parse(model, "SEG+20090401+12,5'"));
+        assertEquals("EDI message processing failed [test][1.0].  Value [12,5] is not a valid [BigDecimal]. Currently at segment number 1.", e.getMessage());
+    }
+
+    private void parse(EdifactModel model, String edi) throws IOException, SAXException {
+        EDIParser parser = new EDIParser();
+        parser.setContentHandler(new DefaultHandler());
+        parser.setMappingModel(model);
+        parser.setFeature(EDIParser.FEATURE_VALIDATE, true);
+        parser.parse(new InputSource(new StringReader(edi)));
+    }
+
+    private void assertValid(String type, String parameters, String value) {
+        assertEquals(ValueValidator.VALID, validate(newValueNode(type, parameters), value, '.'), "The value [" + value + "] should be a valid " + type + ".");
+    }
+
+    private void assertInvalid(String type, String parameters, String value) {
+        assertEquals(ValueValidator.INVALID_TYPE, validate(newValueNode(type, parameters), value, '.'), "The value [" + value + "] should not be a valid " + type + ".");
+    }
+
+    private int validate(ValueNode valueNode, String value, char decimalSeparator) {
+        char[] chars = ("#" + value + "#").toCharArray();
+        return valueNode.getValidator().validate(chars, 1, value.length(), decimalSeparator);
+    }
+
+    private ValueNode newValueNode(String type, String parameters) {
+        ValueNode valueNode = new SubComponent();
+        valueNode.setDataType(type);
+        valueNode.setDataTypeParametersString(parameters);
+        return valueNode;
+    }
 }
@@ -47,7 +47,8 @@ import com.github.mustachejava.Mustache;
 import org.apache.daffodil.japi.DataProcessor;
 import org.apache.daffodil.japi.ValidationMode;
 import org.apache.daffodil.lib.util.Misc;
-import org.smooks.cartridges.dfdl.DataProcessorFactory;
+import org.smooks.cartridges.edi.DfdlSchemaTrimmer;
+import org.smooks.cartridges.edi.EdiDataProcessorFactory;
 import org.smooks.cartridges.dfdl.DfdlSchema;
 import org.smooks.api.resource.config.Parameter;
 import org.smooks.api.SmooksConfigException;
@@ -67,15 +68,34 @@ import java.io.*;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
-public class EdifactDataProcessorFactory extends DataProcessorFactory {
+public class EdifactDataProcessorFactory extends EdiDataProcessorFactory {
 
     private static final Mustache MUSTACHE;
 
+    /**
+     * Process-wide caches, shared by all factory instances (and so by all Smooks instances) in the JVM.
+     * Keys are built from the resolved schema resource URI, so as the same schema URI loaded through
+     * different class loaders does not share entries.
+     */
+    private static final ConcurrentMap<String, String> VERSIONS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, URI> ENTRY_SCHEMAS = new ConcurrentHashMap<>();
+    /**
+     * Compiled data processors, by data processor key. The compile runs outside the map, so as it does not block
+     * other keys. Failed compiles are removed, so as they are retried on the next request.
+     */
+    private static final ConcurrentMap<String, CompletableFuture<DataProcessor>> DATA_PROCESSORS = new ConcurrentHashMap<>();
+
     static {
         try {
             MUSTACHE = new DefaultMustacheFactory().compile("EDIFACT-Common/EDIFACT-Interchange.dfdl.xsd.mustache");
@@ -91,29 +111,28 @@ public class EdifactDataProcessorFactory extends DataProcessorFactory {
     public DataProcessor createDataProcessor() {
         try {
             final Parameter<String> schemaUriParameter = resourceConfig.getParameter("schemaUri", String.class);
-            final String version = readVersion(schemaUriParameter);
+            final String schemaResource = Misc.getRequiredResource(schemaUriParameter.getValue()).toString();
+            final String version = getVersion(schemaResource, schemaUriParameter);
+            final List<String> messageTypes = getMessageTypes();
             final URI entrySchemaUri;
 
-            final List<Parameter<?>> messageTypeParameters = resourceConfig.getParameters("messageType");
-            if (messageTypeParameters == null || messageTypeParameters.isEmpty()) {
+            if (messageTypes.isEmpty()) {
                 entrySchemaUri = new URI("/" + version.toLowerCase() + "/EDIFACT-Interchange.dfdl.xsd");
             } else {
-                final List<String> messageTypes = (List) messageTypeParameters.stream().map(Parameter::getValue).collect(Collectors.toList());
-                entrySchemaUri = materialiseEntrySchema(schemaUriParameter.getValue(), messageTypes, version);
+                entrySchemaUri = getEntrySchema(schemaResource, schemaUriParameter.getValue(), messageTypes, version);
             }
 
-            final DfdlSchema dfdlSchema = new DfdlSchema(entrySchemaUri, ValidationMode.valueOf(resourceConfig.getParameterValue("validationMode", String.class, "Off")),
-                    Boolean.parseBoolean(resourceConfig.getParameterValue("cacheOnDisk", String.class, "false")),
-                    Boolean.parseBoolean(resourceConfig.getParameterValue("debugging", String.class, "false")), resourceConfig.getParameterValue("distinguishedRootNode", String.class),
-                    resourceConfig.getParameterValue("schematronUrl", String.class),
-                    Boolean.parseBoolean(resourceConfig.getParameterValue("schematronValidation", String.class))) {
-                @Override
-                public String getName() {
-                    return schemaUriParameter.getValue() + ":" + getValidationMode() + ":" + isCacheOnDisk() + ":" + isDebugging();
-                }
-            };
-
-            return compileOrGet(dfdlSchema);
+            final ValidationMode validationMode = ValidationMode.valueOf(resourceConfig.getParameterValue("validationMode", String.class, "Off"));
+            final boolean cacheOnDisk = Boolean.parseBoolean(resourceConfig.getParameterValue("cacheOnDisk", String.class, "false"));
+            final boolean debugging = Boolean.parseBoolean(resourceConfig.getParameterValue("debugging", String.class, "false"));
+            final String distinguishedRootNode = resourceConfig.getParameterValue("distinguishedRootNode", String.class);
+            final String schematronUrl = resourceConfig.getParameterValue("schematronUrl", String.class);
+            final boolean schematronValidation = Boolean.parseBoolean(resourceConfig.getParameterValue("schematronValidation", String.class));
+            final String dataProcessorKey = schemaResource + ":" + messageTypes + ":" + validationMode + ":" + cacheOnDisk + ":" + debugging + ":" + distinguishedRootNode + ":" + schematronUrl + ":" + schematronValidation;
+
+            final DfdlSchema dfdlSchema = newDfdlSchema(entrySchemaUri, validationMode, cacheOnDisk, debugging, distinguishedRootNode, schematronUrl, schematronValidation, dataProcessorKey);
+
+            return getDataProcessor(dataProcessorKey, dfdlSchema);
         } catch (FileNotFoundException t) {
             throw new SmooksConfigException(t.getMessage() + " Hint: are you sure you have added the right EDIFACT schema pack to the Java classpath?", t);
         } catch (Throwable t) {
@@ -121,13 +140,85 @@ public class EdifactDataProcessorFactory extends DataProcessorFactory {
         }
     }
 
+    private DataProcessor getDataProcessor(final String dataProcessorKey, final DfdlSchema dfdlSchema) throws Throwable {
+        final CompletableFuture<DataProcessor> dataProcessor = new CompletableFuture<>();
+        final CompletableFuture<DataProcessor> existingDataProcessor = DATA_PROCESSORS.putIfAbsent(dataProcessorKey, dataProcessor);
+        if (existingDataProcessor == null) {
+            try {
+                dataProcessor.complete(compileOrGet(dfdlSchema));
+            } catch (Throwable t) {
+                DATA_PROCESSORS.remove(dataProcessorKey, dataProcessor);
+                dataProcessor.completeExceptionally(t);
+                throw t;
+            }
+            return dataProcessor.get();
+        } else {
+            try {
+                return existingDataProcessor.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw e;
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Clear the process-wide caches of schema versions, materialised entry schemas and compiled data processors.
+     */
+    public static void clearCache() {
+        VERSIONS.clear();
+        ENTRY_SCHEMAS.clear();
+        DATA_PROCESSORS.clear();
+    }
+
+    protected List<String> getMessageTypes() {
+        final List<Parameter<?>> messageTypeParameters = resourceConfig.getParameters("messageType");
+        if (messageTypeParameters == null || messageTypeParameters.isEmpty()) {
+            return Collections.emptyList();
+        } else {
+            // The message types are a set: order and duplicates do not change the entry schema...
+            return messageTypeParameters.stream().map(parameter -> parameter.getValue().toString()).distinct().sorted().collect(Collectors.toList());
+        }
+    }
+
+    private String getVersion(final String schemaResource, final Parameter<String> schemaUriParameter) throws XPathExpressionException, ParserConfigurationException, IOException, SAXException {
+        String version = VERSIONS.get(schemaResource);
+        if (version == null) {
+            version = readVersion(schemaUriParameter);
+            VERSIONS.putIfAbsent(schemaResource, version);
+        }
+
+        return version;
+    }
+
+    private URI getEntrySchema(final String schemaResource, final String schemaUri, final List<String> messageTypes, final String version) throws IOException {
+        final String entrySchemaKey = schemaResource + ":" + messageTypes;
+        URI entrySchemaUri = ENTRY_SCHEMAS.get(entrySchemaKey);
+
+        // The materialised schema lives in a temp dir, which may have been cleaned up since...
+        if (entrySchemaUri == null || !new File(entrySchemaUri).exists()) {
+            entrySchemaUri = materialiseEntrySchema(schemaUri, messageTypes, version);
+            ENTRY_SCHEMAS.put(entrySchemaKey, entrySchemaUri);
+        }
+
+        return entrySchemaUri;
+    }
+
+    /**
+     * Materialise an entry schema which narrows the interchange to the given message types. The messages schema, and
+     * the segments schema it includes, are trimmed down to the definitions reachable from the message types, so as
+     * the compiled parser scales with the messages processed rather than with the whole directory.
+     */
     protected URI materialiseEntrySchema(final String schemaUri, final List<String> messageTypes, final String version) throws IOException {
         final File generatedEntrySchemaDir = Files.createTempDirectory(null).toFile();
         generatedEntrySchemaDir.deleteOnExit();
+        final URI trimmedSchemaUri = trimSchema(schemaUri, messageTypes, generatedEntrySchemaDir);
         final File generatedEntrySchema = new File(generatedEntrySchemaDir + "/EDIFACT-Interchange-" + UUID.nameUUIDFromBytes(String.join(":", messageTypes).getBytes()) + ".dfdl.xsd");
         try (Writer fileWriter = new OutputStreamWriter(Files.newOutputStream(generatedEntrySchema.toPath()), StandardCharsets.UTF_8)) {
             MUSTACHE.execute(fileWriter, new HashMap<String, Object>() {{
-                this.put("schemaLocation", schemaUri);
+                this.put("schemaLocation", new File(trimmedSchemaUri).getName());
                 this.put("messageTypes", messageTypes);
                 this.put("version", version);
             }});
@@ -136,6 +227,23 @@ public class EdifactDataProcessorFactory extends DataProcessorFactory {
         return generatedEntrySchema.toURI();
     }
 
+    protected URI trimSchema(final String schemaUri, final List<String> messageTypes, final File outputDir) throws IOException {
+        final List<String> roots = new ArrayList<>(messageTypes);
+        roots.add("BadMessage");
+        try {
+            final URI trimmedSchemaUri = new DfdlSchemaTrimmer(schemaUri).trim(roots, outputDir.toPath());
+            for (File trimmedSchema : outputDir.listFiles()) {
+                trimmedSchema.deleteOnExit();
+            }
+
+            return trimmedSchemaUri;
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to trim EDIFACT schema '" + schemaUri + "' to message types " + messageTypes, e);
+        }
+    }
+
     protected String readVersion(final Parameter<String> schemaUriParameter) throws XPathExpressionException, ParserConfigurationException, IOException, SAXException {
         final DocumentBuilder documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
         final Document document = documentBuilder.parse(Misc.getRequiredResource(schemaUriParameter.getValue()).toString());
@@ -46,6 +46,7 @@ import org.apache.daffodil.japi.DataProcessor;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.smooks.api.SmooksConfigException;
 import org.smooks.cartridges.dfdl.DfdlSchema;
 import org.smooks.engine.DefaultApplicationContextBuilder;
 import org.smooks.engine.resource.config.DefaultResourceConfig;
@@ -55,15 +56,20 @@ import java.io.File;
 import java.lang.reflect.Field;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class EdifactDataProcessorFactoryTestCase {
     
     @BeforeEach
     public void beforeEach() {
+        EdifactDataProcessorFactory.clearCache();
         File workingDir = new File(DfdlSchema.WORKING_DIRECTORY);
         if (workingDir.exists()) {
             FileUtils.deleteDir(workingDir);
@@ -149,4 +155,64 @@ public class EdifactDataProcessorFactoryTestCase {
         cachedEdifactDataProcessorFactory.createDataProcessor();
         assertEquals(2, new File(DfdlSchema.WORKING_DIRECTORY).listFiles().length);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testDoCreateDataProcessorIsProcessWideCacheHitGivenIdenticalMessageTypeSet() {
+        EdifactDataProcessorFactory edifactDataProcessorFactory = new EdifactDataProcessorFactory();
+        edifactDataProcessorFactory.setResourceConfig(new DefaultResourceConfig());
+        edifactDataProcessorFactory.setApplicationContext(new DefaultApplicationContextBuilder().build());
+        edifactDataProcessorFactory.getResourceConfig().setParameter("schemaUri", "/d03b/EDIFACT-Messages.dfdl.xsd");
+        edifactDataProcessorFactory.getResourceConfig().setParameter("messageType", "ORDERS");
+        edifactDataProcessorFactory.getResourceConfig().setParameter("messageType", "INVOIC");
+
+        EdifactDataProcessorFactory cachedEdifactDataProcessorFactory = new EdifactDataProcessorFactory();
+        cachedEdifactDataProcessorFactory.setResourceConfig(new DefaultResourceConfig());
+        cachedEdifactDataProcessorFactory.setApplicationContext(new DefaultApplicationContextBuilder().build());
+        cachedEdifactDataProcessorFactory.getResourceConfig().setParameter("schemaUri", "/d03b/EDIFACT-Messages.dfdl.xsd");
+        cachedEdifactDataProcessorFactory.getResourceConfig().setParameter("messageType", "INVOIC");
+        cachedEdifactDataProcessorFactory.getResourceConfig().setParameter("messageType", "ORDERS");
+
+        DataProcessor dataProcessor = edifactDataProcessorFactory.createDataProcessor();
+        assertSame(dataProcessor, cachedEdifactDataProcessorFactory.createDataProcessor());
+    }
+
+    @Test
+    public void testDoCreateDataProcessorIsProcessWideCacheMissGivenDifferentValidationMode() {
+        EdifactDataProcessorFactory edifactDataProcessorFactory = new EdifactDataProcessorFactory();
+        edifactDataProcessorFactory.setResourceConfig(new DefaultResourceConfig());
+        edifactDataProcessorFactory.setApplicationContext(new DefaultApplicationContextBuilder().build());
+        edifactDataProcessorFactory.getResourceConfig().setParameter("schemaUri", "/d03b/EDIFACT-Messages.dfdl.xsd");
+        edifactDataProcessorFactory.getResourceConfig().setParameter("messageType", "ORDERS");
+
+        EdifactDataProcessorFactory otherEdifactDataProcessorFactory = new EdifactDataProcessorFactory();
+        otherEdifactDataProcessorFactory.setResourceConfig(new DefaultResourceConfig());
+        otherEdifactDataProcessorFactory.setApplicationContext(new DefaultApplicationContextBuilder().build());
+        otherEdifactDataProcessorFactory.getResourceConfig().setParameter("schemaUri", "/d03b/EDIFACT-Messages.dfdl.xsd");
+        otherEdifactDataProcessorFactory.getResourceConfig().setParameter("messageType", "ORDERS");
+        otherEdifactDataProcessorFactory.getResourceConfig().setParameter("validationMode", "Limited");
+
+        assertNotSame(edifactDataProcessorFactory.createDataProcessor(), otherEdifactDataProcessorFactory.createDataProcessor());
+    }
+
+    @Test
+    public void testDoCreateDataProcessorRetriesCompileGivenPreviousCompileFailed() {
+        AtomicInteger compileCount = new AtomicInteger();
+        EdifactDataProcessorFactory edifactDataProcessorFactory = new EdifactDataProcessorFactory() {
+            @Override
+            protected DataProcessor compileOrGet(DfdlSchema dfdlSchema) {
+                if (compileCount.getAndIncrement() == 0) {
+                    throw new IllegalStateException("Compile failed");
+                }
+                return super.compileOrGet(dfdlSchema);
+            }
+        };
+        edifactDataProcessorFactory.setResourceConfig(new DefaultResourceConfig());
+        edifactDataProcessorFactory.setApplicationContext(new DefaultApplicationContextBuilder().build());
+        edifactDataProcessorFactory.getResourceConfig().setParameter("schemaUri", "/d03b/EDIFACT-Messages.dfdl.xsd");
+        edifactDataProcessorFactory.getResourceConfig().setParameter("messageType", "ORDERS");
+
+        assertThrows(SmooksConfigException.class, edifactDataProcessorFactory::createDataProcessor);
+        assertNotNull(edifactDataProcessorFactory.createDataProcessor());
+        assertEquals(2, compileCount.get());
+    }
+}